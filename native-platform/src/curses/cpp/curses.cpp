@@ -32,6 +32,9 @@
 #define TERMINAL_CHAR_TYPE int
 #endif
 
+jclass terminalCapabilitiesClass;
+jfieldID terminalNameField;
+
 const char* getcap(const char* capability) {
     return tgetstr((char*)capability, NULL);
 }
@@ -107,10 +110,8 @@ Java_net_rubygrapefruit_platform_internal_jni_TerminfoFunctions_initTerminal(JNI
             return;
         }
 
-        jclass destClass = env->GetObjectClass(capabilities);
-        jfieldID field = env->GetFieldID(destClass, "terminalName", "Ljava/lang/String;");
         jstring jtermType = char_to_java(env, termType, result);
-        env->SetObjectField(capabilities, field, jtermType);
+        env->SetObjectField(capabilities, terminalNameField, jtermType);
     }
     is_init = 1;
 }
@@ -180,4 +181,25 @@ Java_net_rubygrapefruit_platform_internal_jni_TerminfoFunctions_showCursor(JNIEn
     return read_capability(env, getcap("ve"), result);
 }
 
+JNIEXPORT jint JNICALL
+JNI_OnLoad(JavaVM* jvm, void*) {
+    JNIEnv* env;
+    jint ret = jvm->GetEnv((void**) &env, JNI_VERSION_1_6);
+    if (ret != JNI_OK) {
+        return -1;
+    }
+    if (!init_generic_ids(env)) {
+        return -1;
+    }
+    terminalCapabilitiesClass = find_global_class(env, "net/rubygrapefruit/platform/internal/TerminalCapabilities");
+    if (terminalCapabilitiesClass == NULL) {
+        return -1;
+    }
+    terminalNameField = env->GetFieldID(terminalCapabilitiesClass, "terminalName", "Ljava/lang/String;");
+    if (terminalNameField == NULL) {
+        return -1;
+    }
+    return JNI_VERSION_1_6;
+}
+
 #endif
@@ -20,6 +20,7 @@
 #if defined(__APPLE__)
 
 #include "generic.h"
+#include "jni_ids.h"
 #include "net_rubygrapefruit_platform_internal_jni_OsxMemoryFunctions.h"
 #include "net_rubygrapefruit_platform_internal_jni_PosixFileSystemFunctions.h"
 #include <mach/mach.h>
@@ -57,10 +58,6 @@ Java_net_rubygrapefruit_platform_internal_jni_PosixFileSystemFunctions_listFileS
         return;
     }
 
-    jclass info_class = env->GetObjectClass(info);
-    jmethodID method = env->GetMethodID(info_class, "add", "(Ljava/lang/String;Ljava/lang/String;Ljava/lang/String;ZZZ)V");
-    jmethodID unknownFsMethod = env->GetMethodID(info_class, "addForUnknownCaseSensitivity", "(Ljava/lang/String;Ljava/lang/String;Ljava/lang/String;Z)V");
-
     for (int i = 0; i < fs_count; i++) {
         struct attrlist alist;
         memset(&alist, 0, sizeof(alist));
@@ -76,7 +73,7 @@ Java_net_rubygrapefruit_platform_internal_jni_PosixFileSystemFunctions_listFileS
         // getattrlist requires the path to the actual mount point.
         int err = getattrlist(buf[i].f_mntonname, &alist, &buffer, sizeof(buffer), 0);
         if (err != 0) {
-            env->CallVoidMethod(info, unknownFsMethod, mount_point, file_system_type, device_name, remote);
+            env->CallVoidMethod(info, jni_ids.fileSystemListAddForUnknownCaseSensitivity, mount_point, file_system_type, device_name, remote);
         } else {
             jboolean caseSensitive = JNI_TRUE;
             jboolean casePreserving = JNI_TRUE;
@@ -90,7 +87,7 @@ Java_net_rubygrapefruit_platform_internal_jni_PosixFileSystemFunctions_listFileS
                 }
             }
 
-            env->CallVoidMethod(info, method, mount_point, file_system_type, device_name, remote, caseSensitive, casePreserving);
+            env->CallVoidMethod(info, jni_ids.fileSystemListAdd, mount_point, file_system_type, device_name, remote, caseSensitive, casePreserving);
         }
     }
     free(buf);
@@ -101,13 +98,6 @@ Java_net_rubygrapefruit_platform_internal_jni_PosixFileSystemFunctions_listFileS
  */
 JNIEXPORT void JNICALL
 Java_net_rubygrapefruit_platform_internal_jni_OsxMemoryFunctions_getOsxMemoryInfo(JNIEnv* env, jclass type, jobject dest, jobject result) {
-    jclass destClass = env->GetObjectClass(dest);
-    jmethodID mid = env->GetMethodID(destClass, "details", "(JJJJJJJJJ)V");
-    if (mid == NULL) {
-        mark_failed_with_message(env, "could not find method", result);
-        return;
-    }
-
     // Get total physical memory
     int mib[2];
     mib[0] = CTL_HW;
@@ -143,7 +133,7 @@ Java_net_rubygrapefruit_platform_internal_jni_OsxMemoryFunctions_getOsxMemoryInf
         * (int64_t) page_size;
 
     // Feed Java with details
-    env->CallVoidMethod(dest, mid,
+    env->CallVoidMethod(dest, jni_ids.osxMemoryInfoDetails,
         (jlong) page_size,
         (jlong) vm_stats.free_count,
         (jlong) vm_stats.inactive_count,
@@ -0,0 +1,250 @@
+/*
+ * Copyright 2012 Adam Murdoch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+/*
+ * File copy functions.
+ */
+#ifndef _WIN32
+
+#include "generic.h"
+#include "net_rubygrapefruit_platform_internal_jni_FileCopyFunctions.h"
+#include <errno.h>
+#include <fcntl.h>
+#include <stdlib.h>
+#include <sys/stat.h>
+#include <sys/types.h>
+#include <unistd.h>
+
+#ifdef __linux__
+#include <sys/ioctl.h>
+#include <sys/sendfile.h>
+#include <sys/syscall.h>
+#endif
+
+// Order is significant here, see CopyStrategy.java
+#define COPY_STRATEGY_CLONE 0
+#define COPY_STRATEGY_COPY_FILE_RANGE 1
+#define COPY_STRATEGY_SEND_FILE 2
+#define COPY_STRATEGY_READ_WRITE 3
+
+// Files are read in chunks of this size when the data cannot be copied by the kernel
+#define COPY_BUFFER_SIZE (1024 * 1024)
+
+// The maximum number of bytes to copy in each call to copy_file_range() or sendfile()
+#define COPY_CHUNK_SIZE (1024 * 1024 * 1024)
+
+#ifdef __linux__
+
+#ifndef FICLONE
+#define FICLONE _IOW(0x94, 9, int)
+#endif
+
+/*
+ * Returns true when the given error means that a strategy is not supported for the given files, rather than that the copy
+ * has failed. Some container runtimes reject unknown system calls with EPERM rather than ENOSYS.
+ */
+bool strategy_unsupported(int error) {
+    return error == ENOSYS || error == EOPNOTSUPP || error == ENOTSUP || error == ENOTTY || error == EXDEV || error == EINVAL || error == EPERM;
+}
+
+/*
+ * Copies using copy_file_range() or sendfile(). Returns 0 on success, -1 when the strategy is not supported for these files
+ * and nothing has been copied, or the value of errno on failure.
+ */
+int copy_in_kernel(int srcFd, int dstFd, off_t size, bool useSendFile) {
+    bool copied = false;
+    while (true) {
+        ssize_t count;
+        if (useSendFile) {
+            count = sendfile(dstFd, srcFd, NULL, COPY_CHUNK_SIZE);
+        } else {
+            // Use the system call directly, as older versions of glibc do not provide a wrapper
+            count = syscall(SYS_copy_file_range, srcFd, NULL, dstFd, NULL, (size_t) COPY_CHUNK_SIZE, 0);
+        }
+        if (count < 0) {
+            if (errno == EINTR) {
+                continue;
+            }
+            if (!copied && strategy_unsupported(errno)) {
+                return -1;
+            }
+            return errno;
+        }
+        if (count == 0) {
+            // Some file systems, such as procfs, report a size but copy nothing. Let the next strategy try
+            return !copied && size > 0 ? -1 : 0;
+        }
+        copied = true;
+    }
+}
+
+#endif
+
+/*
+ * Copies by reading into a buffer and writing it out. Returns 0 on success, or the value of errno on failure.
+ */
+int copy_read_write(int srcFd, int dstFd) {
+    char* buffer = (char*) malloc(COPY_BUFFER_SIZE);
+    if (buffer == NULL) {
+        return ENOMEM;
+    }
+    int error = 0;
+    while (error == 0) {
+        ssize_t count = read(srcFd, buffer, COPY_BUFFER_SIZE);
+        if (count < 0) {
+            if (errno != EINTR) {
+                error = errno;
+            }
+            continue;
+        }
+        if (count == 0) {
+            break;
+        }
+        for (ssize_t offset = 0; offset < count;) {
+            ssize_t written = write(dstFd, buffer + offset, count - offset);
+            if (written < 0) {
+                if (errno != EINTR) {
+                    error = errno;
+                    break;
+                }
+                continue;
+            }
+            offset += written;
+        }
+    }
+    free(buffer);
+    return error;
+}
+
+/*
+ * Copies the contents of the source file to the destination file, which is empty. Returns the strategy that was used, or -1
+ * on failure, with errno set.
+ */
+jint copy_contents(int srcFd, int dstFd, off_t size) {
+    int error;
+#ifdef __linux__
+    if (ioctl(dstFd, FICLONE, srcFd) == 0) {
+        return COPY_STRATEGY_CLONE;
+    }
+    if (!strategy_unsupported(errno)) {
+        return -1;
+    }
+    error = copy_in_kernel(srcFd, dstFd, size, false);
+    if (error == 0) {
+        return COPY_STRATEGY_COPY_FILE_RANGE;
+    }
+    if (error > 0) {
+        errno = error;
+        return -1;
+    }
+    error = copy_in_kernel(srcFd, dstFd, size, true);
+    if (error == 0) {
+        return COPY_STRATEGY_SEND_FILE;
+    }
+    if (error > 0) {
+        errno = error;
+        return -1;
+    }
+#endif
+    error = copy_read_write(srcFd, dstFd);
+    if (error != 0) {
+        errno = error;
+        return -1;
+    }
+    return COPY_STRATEGY_READ_WRITE;
+}
+
+JNIEXPORT jint JNICALL
+Java_net_rubygrapefruit_platform_internal_jni_FileCopyFunctions_copy(JNIEnv* env, jclass target, jstring source, jstring destination, jboolean preserveMode, jboolean preserveTimestamps, jobject result) {
+    char* sourceStr = java_to_char(env, source, result);
+    if (sourceStr == NULL) {
+        return -1;
+    }
+    int srcFd = open(sourceStr, O_RDONLY | O_CLOEXEC);
+    free(sourceStr);
+    if (srcFd < 0) {
+        mark_failed_with_errno(env, "could not open source file", result);
+        return -1;
+    }
+    struct stat srcInfo;
+    if (fstat(srcFd, &srcInfo) != 0) {
+        mark_failed_with_errno(env, "could not stat source file", result);
+        close(srcFd);
+        return -1;
+    }
+    if (!S_ISREG(srcInfo.st_mode)) {
+        mark_failed_with_message(env, "source is not a file", result);
+        close(srcFd);
+        return -1;
+    }
+
+    char* destinationStr = java_to_char(env, destination, result);
+    if (destinationStr == NULL) {
+        close(srcFd);
+        return -1;
+    }
+    // Do not truncate on open, in case the destination is the source file
+    int dstFd = open(destinationStr, O_WRONLY | O_CREAT | O_CLOEXEC, preserveMode ? (srcInfo.st_mode & 07777) : 0666);
+    free(destinationStr);
+    if (dstFd < 0) {
+        mark_failed_with_errno(env, "could not open destination file", result);
+        close(srcFd);
+        return -1;
+    }
+    jint strategy = -1;
+    struct stat dstInfo;
+    if (fstat(dstFd, &dstInfo) != 0) {
+        mark_failed_with_errno(env, "could not stat destination file", result);
+    } else if (dstInfo.st_dev == srcInfo.st_dev && dstInfo.st_ino == srcInfo.st_ino) {
+        mark_failed_with_message(env, "source and destination are the same file", result);
+    } else if (ftruncate(dstFd, 0) != 0) {
+        mark_failed_with_errno(env, "could not truncate destination file", result);
+    } else {
+        strategy = copy_contents(srcFd, dstFd, srcInfo.st_size);
+        if (strategy < 0) {
+            mark_failed_with_errno(env, "could not copy file contents", result);
+        }
+    }
+    // Set the mode explicitly, as the mode passed to open() is masked by the umask and is ignored for an existing file
+    if (strategy >= 0 && preserveMode && fchmod(dstFd, srcInfo.st_mode & 07777) != 0) {
+        mark_failed_with_errno(env, "could not set mode of destination file", result);
+        strategy = -1;
+    }
+    if (strategy >= 0 && preserveTimestamps) {
+        struct timespec times[2];
+#ifdef __linux__
+        times[0] = srcInfo.st_atim;
+        times[1] = srcInfo.st_mtim;
+#else
+        times[0] = srcInfo.st_atimespec;
+        times[1] = srcInfo.st_mtimespec;
+#endif
+        if (futimens(dstFd, times) != 0) {
+            mark_failed_with_errno(env, "could not set timestamps of destination file", result);
+            strategy = -1;
+        }
+    }
+    close(srcFd);
+    // Report errors from close(), as some network file systems only report write failures here
+    if (close(dstFd) != 0 && strategy >= 0) {
+        mark_failed_with_errno(env, "could not close destination file", result);
+        strategy = -1;
+    }
+    return strategy;
+}
+
+#endif
@@ -0,0 +1,236 @@
+/*
+ * Copyright 2012 Adam Murdoch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/*
+ * File hashing functions.
+ */
+#ifndef _WIN32
+
+#include "generic.h"
+#include "hash.h"
+#include "net_rubygrapefruit_platform_internal_jni_FileHashFunctions.h"
+#include <errno.h>
+#include <fcntl.h>
+#include <pthread.h>
+#include <stdlib.h>
+#include <string.h>
+#include <unistd.h>
+
+// Files are read in chunks of this size. Reading is used rather than mmap(), as a file that is truncated while it is
+// mapped raises SIGBUS, which would take down the JVM.
+#define HASH_BUFFER_SIZE (256 * 1024)
+
+/*
+ * Hashes the contents of the given file into the given digest, using the given buffer.
+ *
+ * Returns 0 on success, or the value of errno on failure.
+ */
+int hash_file(const char* path, int algorithm, unsigned char* buffer, unsigned char* digest) {
+    int fd = open(path, O_RDONLY | O_CLOEXEC);
+    if (fd < 0) {
+        return errno;
+    }
+#ifdef POSIX_FADV_SEQUENTIAL
+    posix_fadvise(fd, 0, 0, POSIX_FADV_SEQUENTIAL);
+#endif
+    hash_state_t state;
+    hash_init(&state, algorithm);
+    while (true) {
+        ssize_t count = read(fd, buffer, HASH_BUFFER_SIZE);
+        if (count == 0) {
+            break;
+        }
+        if (count < 0) {
+            if (errno == EINTR) {
+                continue;
+            }
+            int error = errno;
+            close(fd);
+            return error;
+        }
+        hash_update(&state, buffer, count);
+    }
+    close(fd);
+    hash_final(&state, digest);
+    return 0;
+}
+
+JNIEXPORT void JNICALL
+Java_net_rubygrapefruit_platform_internal_jni_FileHashFunctions_hash(JNIEnv* env, jclass target, jstring path, jint algorithm, jbyteArray digest, jobject result) {
+    size_t digestLength = hash_digest_length(algorithm);
+    if (digestLength == 0 || (size_t) env->GetArrayLength(digest) != digestLength) {
+        mark_failed_with_message(env, "unsupported algorithm", result);
+        return;
+    }
+    char* pathStr = java_to_char(env, path, result);
+    if (pathStr == NULL) {
+        return;
+    }
+    unsigned char* buffer = (unsigned char*) malloc(HASH_BUFFER_SIZE);
+    if (buffer == NULL) {
+        free(pathStr);
+        mark_failed_with_message(env, "could not allocate buffer", result);
+        return;
+    }
+    unsigned char digestBuf[SHA256_DIGEST_LENGTH];
+    int error = hash_file(pathStr, algorithm, buffer, digestBuf);
+    free(buffer);
+    free(pathStr);
+    if (error != 0) {
+        errno = error;
+        mark_failed_with_errno(env, "could not read file", result);
+        return;
+    }
+    env->SetByteArrayRegion(digest, 0, digestLength, (jbyte*) digestBuf);
+}
+
+JNIEXPORT void JNICALL
+Java_net_rubygrapefruit_platform_internal_jni_FileHashFunctions_hashBytes(JNIEnv* env, jclass target, jbyteArray data, jint length, jint algorithm, jbyteArray digest, jobject result) {
+    size_t digestLength = hash_digest_length(algorithm);
+    if (digestLength == 0 || (size_t) env->GetArrayLength(digest) != digestLength) {
+        mark_failed_with_message(env, "unsupported algorithm", result);
+        return;
+    }
+    hash_state_t state;
+    hash_init(&state, algorithm);
+    // The data is hashed without blocking, so the array can be accessed in place
+    void* bytes = env->GetPrimitiveArrayCritical(data, NULL);
+    if (bytes == NULL) {
+        mark_failed_with_message(env, "could not access data", result);
+        return;
+    }
+    hash_update(&state, bytes, length);
+    env->ReleasePrimitiveArrayCritical(data, bytes, JNI_ABORT);
+    unsigned char digestBuf[SHA256_DIGEST_LENGTH];
+    hash_final(&state, digestBuf);
+    env->SetByteArrayRegion(digest, 0, digestLength, (jbyte*) digestBuf);
+}
+
+typedef struct hash_batch {
+    char** paths;
+    jsize count;
+    int algorithm;
+    size_t digestLength;
+    unsigned char* digests;
+    jint* errnos;
+    // Index of the next file to hash, shared by the worker threads
+    jsize next;
+    pthread_mutex_t lock;
+} hash_batch_t;
+
+void* hash_batch_worker(void* arg) {
+    hash_batch_t* batch = (hash_batch_t*) arg;
+    unsigned char* buffer = (unsigned char*) malloc(HASH_BUFFER_SIZE);
+    while (true) {
+        pthread_mutex_lock(&batch->lock);
+        jsize index = batch->next++;
+        pthread_mutex_unlock(&batch->lock);
+        if (index >= batch->count) {
+            break;
+        }
+        if (buffer == NULL) {
+            batch->errnos[index] = ENOMEM;
+            continue;
+        }
+        batch->errnos[index] = hash_file(batch->paths[index], batch->algorithm, buffer, batch->digests + index * batch->digestLength);
+    }
+    free(buffer);
+    return NULL;
+}
+
+JNIEXPORT void JNICALL
+Java_net_rubygrapefruit_platform_internal_jni_FileHashFunctions_hashAll(JNIEnv* env, jclass target, jobjectArray paths, jint algorithm, jint threads, jbyteArray digests, jintArray failures, jintArray errnos, jobject result) {
+    size_t digestLength = hash_digest_length(algorithm);
+    if (digestLength == 0) {
+        mark_failed_with_message(env, "unsupported algorithm", result);
+        return;
+    }
+    jsize count = env->GetArrayLength(paths);
+    if (count == 0) {
+        return;
+    }
+
+    hash_batch_t batch;
+    memset(&batch, 0, sizeof(batch));
+    batch.count = count;
+    batch.algorithm = algorithm;
+    batch.digestLength = digestLength;
+    batch.paths = (char**) calloc(count, sizeof(char*));
+    batch.digests = (unsigned char*) calloc(count, digestLength);
+    batch.errnos = (jint*) calloc(count, sizeof(jint));
+    jint* failuresBuf = (jint*) calloc(count, sizeof(jint));
+    pthread_t* workers = NULL;
+    jint started = 0;
+    if (batch.paths == NULL || batch.digests == NULL || batch.errnos == NULL || failuresBuf == NULL) {
+        mark_failed_with_message(env, "could not allocate buffers", result);
+        goto done;
+    }
+
+    // Convert the paths up front, as the worker threads cannot use the JNIEnv
+    for (jsize i = 0; i < count; i++) {
+        jstring path = (jstring) env->GetObjectArrayElement(paths, i);
+        batch.paths[i] = java_to_char(env, path, result);
+        env->DeleteLocalRef(path);
+        if (batch.paths[i] == NULL) {
+            goto done;
+        }
+    }
+
+    if (threads > count) {
+        threads = count;
+    }
+    if (threads < 1) {
+        threads = 1;
+    }
+    pthread_mutex_init(&batch.lock, NULL);
+    workers = (pthread_t*) calloc(threads, sizeof(pthread_t));
+    if (workers != NULL) {
+        // The calling thread does its share of the work, so start one thread fewer than requested
+        for (; started < threads - 1; started++) {
+            if (pthread_create(&workers[started], NULL, hash_batch_worker, &batch) != 0) {
+                break;
+            }
+        }
+    }
+    hash_batch_worker(&batch);
+    for (jint i = 0; i < started; i++) {
+        pthread_join(workers[i], NULL);
+    }
+    pthread_mutex_destroy(&batch.lock);
+
+    for (jsize i = 0; i < count; i++) {
+        if (batch.errnos[i] != 0) {
+            failuresBuf[i] = map_error_code(batch.errnos[i]);
+        }
+    }
+    env->SetByteArrayRegion(digests, 0, count * digestLength, (jbyte*) batch.digests);
+    env->SetIntArrayRegion(failures, 0, count, failuresBuf);
+    env->SetIntArrayRegion(errnos, 0, count, batch.errnos);
+
+done:
+    if (batch.paths != NULL) {
+        for (jsize i = 0; i < count; i++) {
+            free(batch.paths[i]);
+        }
+    }
+    free(batch.paths);
+    free(batch.digests);
+    free(batch.errnos);
+    free(failuresBuf);
+    free(workers);
+}
+
+#endif
@@ -0,0 +1,322 @@
+/*
+ * Copyright 2012 Adam Murdoch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+/*
+ * Persistent file hash cache functions.
+ */
+#ifndef _WIN32
+
+#include "generic.h"
+#include "hash.h"
+#include "net_rubygrapefruit_platform_internal_jni_FileHashCacheFunctions.h"
+#include <errno.h>
+#include <fcntl.h>
+#include <stdint.h>
+#include <stdlib.h>
+#include <string.h>
+#include <sys/file.h>
+#include <sys/mman.h>
+#include <sys/stat.h>
+#include <unistd.h>
+
+#define CACHE_MAGIC 0x4e504843
+#define CACHE_VERSION 1
+// Large enough for the longest digest, SHA-256
+#define CACHE_DIGEST_WORDS 4
+// The number of slots searched for a key, after which an entry is evicted to make room
+#define CACHE_MAX_PROBES 16
+
+/*
+ * The cache file is a header followed by a power of two number of records, and is mapped into memory as is. The file
+ * uses the native byte order, and a file written on a machine with a different byte order is discarded.
+ */
+typedef struct cache_header {
+    uint32_t magic;
+    uint32_t version;
+    uint32_t recordSize;
+    uint32_t reserved;
+    uint64_t capacity;
+    uint64_t padding[5];
+} cache_header_t;
+
+/*
+ * A record is protected by its sequence number, which is 0 when the record is empty, odd while the record is being written,
+ * and even otherwise. Writers claim a record by incrementing the sequence number with a compare-and-swap, and readers retry
+ * or give up when the sequence number changes while they read. All fields are read and written as whole words, so readers
+ * never take a lock.
+ */
+typedef struct cache_record {
+    uint64_t sequence;
+    uint64_t device;
+    uint64_t inode;
+    uint64_t algorithm;
+    int64_t size;
+    int64_t lastModified;
+    int64_t changed;
+    uint64_t digest[CACHE_DIGEST_WORDS];
+} cache_record_t;
+
+typedef struct cache {
+    int fd;
+    void* base;
+    size_t length;
+    cache_record_t* records;
+    uint64_t mask;
+} cache_t;
+
+typedef enum {
+    RECORD_EMPTY,
+    RECORD_BUSY,
+    RECORD_VALID
+} record_state_t;
+
+uint64_t cache_slot(jlong device, jlong inode, jint algorithm) {
+    // Mix the key, as inode numbers are often allocated sequentially
+    uint64_t h = (uint64_t) inode * 0x9e3779b97f4a7c15ULL;
+    h ^= ((uint64_t) device + (uint64_t) algorithm) * 0xc2b2ae3d27d4eb4fULL;
+    h ^= h >> 31;
+    h *= 0xbf58476d1ce4e5b9ULL;
+    h ^= h >> 29;
+    return h;
+}
+
+/*
+ * Copies the given record without taking a lock. A copy is only returned as valid when no writer changed the record while
+ * it was being copied.
+ */
+record_state_t read_record(cache_record_t* record, cache_record_t* copy) {
+    for (int attempt = 0; attempt < 3; attempt++) {
+        uint64_t sequence = __atomic_load_n(&record->sequence, __ATOMIC_ACQUIRE);
+        if (sequence == 0) {
+            return RECORD_EMPTY;
+        }
+        if (sequence & 1) {
+            return RECORD_BUSY;
+        }
+        copy->device = __atomic_load_n(&record->device, __ATOMIC_RELAXED);
+        copy->inode = __atomic_load_n(&record->inode, __ATOMIC_RELAXED);
+        copy->algorithm = __atomic_load_n(&record->algorithm, __ATOMIC_RELAXED);
+        copy->size = __atomic_load_n(&record->size, __ATOMIC_RELAXED);
+        copy->lastModified = __atomic_load_n(&record->lastModified, __ATOMIC_RELAXED);
+        copy->changed = __atomic_load_n(&record->changed, __ATOMIC_RELAXED);
+        for (int i = 0; i < CACHE_DIGEST_WORDS; i++) {
+            copy->digest[i] = __atomic_load_n(&record->digest[i], __ATOMIC_RELAXED);
+        }
+        __atomic_thread_fence(__ATOMIC_ACQUIRE);
+        if (__atomic_load_n(&record->sequence, __ATOMIC_RELAXED) == sequence) {
+            return RECORD_VALID;
+        }
+    }
+    return RECORD_BUSY;
+}
+
+/*
+ * Overwrites the given record, provided its sequence number is still the expected one and no other writer is busy with it.
+ * Returns false when the record could not be claimed.
+ */
+bool write_record(cache_record_t* record, uint64_t expected, const cache_record_t* value) {
+    if (expected & 1) {
+        return false;
+    }
+    if (!__atomic_compare_exchange_n(&record->sequence, &expected, expected + 1, false, __ATOMIC_ACQUIRE, __ATOMIC_RELAXED)) {
+        return false;
+    }
+    __atomic_store_n(&record->device, value->device, __ATOMIC_RELAXED);
+    __atomic_store_n(&record->inode, value->inode, __ATOMIC_RELAXED);
+    __atomic_store_n(&record->algorithm, value->algorithm, __ATOMIC_RELAXED);
+    __atomic_store_n(&record->size, value->size, __ATOMIC_RELAXED);
+    __atomic_store_n(&record->lastModified, value->lastModified, __ATOMIC_RELAXED);
+    __atomic_store_n(&record->changed, value->changed, __ATOMIC_RELAXED);
+    for (int i = 0; i < CACHE_DIGEST_WORDS; i++) {
+        __atomic_store_n(&record->digest[i], value->digest[i], __ATOMIC_RELAXED);
+    }
+    __atomic_store_n(&record->sequence, expected + 2, __ATOMIC_RELEASE);
+    return true;
+}
+
+bool same_key(const cache_record_t* a, const cache_record_t* b) {
+    return a->device == b->device && a->inode == b->inode && a->algorithm == b->algorithm;
+}
+
+bool same_fingerprint(const cache_record_t* a, const cache_record_t* b) {
+    return a->size == b->size && a->lastModified == b->lastModified && a->changed == b->changed;
+}
+
+void to_record(jlong device, jlong inode, jint algorithm, jlong size, jlong lastModified, jlong changed, cache_record_t* record) {
+    memset(record, 0, sizeof(cache_record_t));
+    record->device = (uint64_t) device;
+    record->inode = (uint64_t) inode;
+    record->algorithm = (uint64_t) algorithm;
+    record->size = size;
+    record->lastModified = lastModified;
+    record->changed = changed;
+}
+
+bool valid_header(const cache_header_t* header, off_t fileSize) {
+    if (header->magic != CACHE_MAGIC || header->version != CACHE_VERSION || header->recordSize != sizeof(cache_record_t)) {
+        return false;
+    }
+    if (header->capacity == 0 || (header->capacity & (header->capacity - 1)) != 0) {
+        return false;
+    }
+    return (uint64_t) fileSize == sizeof(cache_header_t) + header->capacity * sizeof(cache_record_t);
+}
+
+JNIEXPORT jlong JNICALL
+Java_net_rubygrapefruit_platform_internal_jni_FileHashCacheFunctions_open(JNIEnv* env, jclass target, jstring path, jint capacity, jobject result) {
+    char* pathStr = java_to_char(env, path, result);
+    if (pathStr == NULL) {
+        return 0;
+    }
+    int fd = open(pathStr, O_RDWR | O_CREAT | O_CLOEXEC, 0644);
+    free(pathStr);
+    if (fd < 0) {
+        mark_failed_with_errno(env, "could not open cache file", result);
+        return 0;
+    }
+
+    // Every process using the cache holds a shared lock on the file. A process that can get an exclusive lock is the only
+    // user, and can safely create or repair the file. Changing the size of a file that another process has mapped would
+    // crash that process.
+    bool exclusive = flock(fd, LOCK_EX | LOCK_NB) == 0;
+    if (!exclusive) {
+        while (flock(fd, LOCK_SH) != 0) {
+            if (errno != EINTR) {
+                mark_failed_with_errno(env, "could not lock cache file", result);
+                close(fd);
+                return 0;
+            }
+        }
+    }
+
+    struct stat fileInfo;
+    cache_header_t header;
+    if (fstat(fd, &fileInfo) != 0) {
+        mark_failed_with_errno(env, "could not stat cache file", result);
+        close(fd);
+        return 0;
+    }
+    bool valid = fileInfo.st_size >= (off_t) sizeof(cache_header_t)
+        && pread(fd, &header, sizeof(header), 0) == sizeof(header)
+        && valid_header(&header, fileInfo.st_size);
+    if (!valid) {
+        if (!exclusive) {
+            mark_failed_with_message(env, "cache file is in use and is not valid", result);
+            close(fd);
+            return 0;
+        }
+        // Discard the contents, so the records start out empty
+        memset(&header, 0, sizeof(header));
+        header.magic = CACHE_MAGIC;
+        header.version = CACHE_VERSION;
+        header.recordSize = sizeof(cache_record_t);
+        header.capacity = (uint64_t) capacity;
+        off_t fileSize = sizeof(cache_header_t) + header.capacity * sizeof(cache_record_t);
+        if (ftruncate(fd, 0) != 0 || ftruncate(fd, fileSize) != 0) {
+            mark_failed_with_errno(env, "could not resize cache file", result);
+            close(fd);
+            return 0;
+        }
+        if (pwrite(fd, &header, sizeof(header), 0) != sizeof(header)) {
+            mark_failed_with_errno(env, "could not write cache file", result);
+            close(fd);
+            return 0;
+        }
+    }
+
+    size_t length = sizeof(cache_header_t) + header.capacity * sizeof(cache_record_t);
+    void* base = mmap(NULL, length, PROT_READ | PROT_WRITE, MAP_SHARED, fd, 0);
+    if (base == MAP_FAILED) {
+        mark_failed_with_errno(env, "could not map cache file", result);
+        close(fd);
+        return 0;
+    }
+    cache_t* cache = (cache_t*) malloc(sizeof(cache_t));
+    cache->fd = fd;
+    cache->base = base;
+    cache->length = length;
+    cache->records = (cache_record_t*) ((char*) base + sizeof(cache_header_t));
+    cache->mask = header.capacity - 1;
+
+    if (exclusive) {
+        // Discard records left half written by a process that died while writing them
+        for (uint64_t i = 0; i < header.capacity; i++) {
+            if (cache->records[i].sequence & 1) {
+                memset(&cache->records[i], 0, sizeof(cache_record_t));
+            }
+        }
+        flock(fd, LOCK_SH);
+    }
+    return (jlong) (intptr_t) cache;
+}
+
+JNIEXPORT void JNICALL
+Java_net_rubygrapefruit_platform_internal_jni_FileHashCacheFunctions_close(JNIEnv* env, jclass target, jlong handle) {
+    cache_t* cache = (cache_t*) (intptr_t) handle;
+    munmap(cache->base, cache->length);
+    // Also releases the lock
+    close(cache->fd);
+    free(cache);
+}
+
+JNIEXPORT jboolean JNICALL
+Java_net_rubygrapefruit_platform_internal_jni_FileHashCacheFunctions_lookup(JNIEnv* env, jclass target, jlong handle, jlong device, jlong inode, jint algorithm, jlong size, jlong lastModified, jlong changed, jbyteArray digest) {
+    cache_t* cache = (cache_t*) (intptr_t) handle;
+    cache_record_t key;
+    to_record(device, inode, algorithm, size, lastModified, changed, &key);
+    uint64_t slot = cache_slot(device, inode, algorithm);
+    for (int i = 0; i < CACHE_MAX_PROBES; i++) {
+        cache_record_t copy;
+        record_state_t state = read_record(&cache->records[(slot + i) & cache->mask], &copy);
+        if (state == RECORD_EMPTY) {
+            return JNI_FALSE;
+        }
+        if (state == RECORD_VALID && same_key(&copy, &key)) {
+            if (!same_fingerprint(&copy, &key)) {
+                return JNI_FALSE;
+            }
+            env->SetByteArrayRegion(digest, 0, hash_digest_length(algorithm), (jbyte*) copy.digest);
+            return JNI_TRUE;
+        }
+    }
+    return JNI_FALSE;
+}
+
+JNIEXPORT void JNICALL
+Java_net_rubygrapefruit_platform_internal_jni_FileHashCacheFunctions_store(JNIEnv* env, jclass target, jlong handle, jlong device, jlong inode, jint algorithm, jlong size, jlong lastModified, jlong changed, jbyteArray digest) {
+    cache_t* cache = (cache_t*) (intptr_t) handle;
+    cache_record_t value;
+    to_record(device, inode, algorithm, size, lastModified, changed, &value);
+    env->GetByteArrayRegion(digest, 0, hash_digest_length(algorithm), (jbyte*) value.digest);
+    uint64_t slot = cache_slot(device, inode, algorithm);
+    for (int i = 0; i < CACHE_MAX_PROBES; i++) {
+        cache_record_t* record = &cache->records[(slot + i) & cache->mask];
+        cache_record_t copy;
+        uint64_t sequence = __atomic_load_n(&record->sequence, __ATOMIC_ACQUIRE);
+        record_state_t state = read_record(record, &copy);
+        if (state == RECORD_EMPTY || (state == RECORD_VALID && same_key(&copy, &value))) {
+            // Another writer may win the race for the record, in which case this entry is dropped
+            write_record(record, sequence, &value);
+            return;
+        }
+    }
+    // No free record near the key, so evict one of the entries in its neighbourhood
+    cache_record_t* victim = &cache->records[(slot + ((uint64_t) lastModified % CACHE_MAX_PROBES)) & cache->mask];
+    write_record(victim, __atomic_load_n(&victim->sequence, __ATOMIC_ACQUIRE), &value);
+}
+
+#endif
@@ -0,0 +1,294 @@
+/*
+ * Copyright 2012 Adam Murdoch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/*
+ * Digest functions. SHA-256 follows FIPS 180-4 and XXH64 follows the xxHash specification.
+ */
+#include "hash.h"
+#include <string.h>
+
+/*
+ * SHA-256
+ */
+
+static const uint32_t SHA256_K[64] = {
+    0x428a2f98, 0x71374491, 0xb5c0fbcf, 0xe9b5dba5, 0x3956c25b, 0x59f111f1, 0x923f82a4, 0xab1c5ed5,
+    0xd807aa98, 0x12835b01, 0x243185be, 0x550c7dc3, 0x72be5d74, 0x80deb1fe, 0x9bdc06a7, 0xc19bf174,
+    0xe49b69c1, 0xefbe4786, 0x0fc19dc6, 0x240ca1cc, 0x2de92c6f, 0x4a7484aa, 0x5cb0a9dc, 0x76f988da,
+    0x983e5152, 0xa831c66d, 0xb00327c8, 0xbf597fc7, 0xc6e00bf3, 0xd5a79147, 0x06ca6351, 0x14292967,
+    0x27b70a85, 0x2e1b2138, 0x4d2c6dfc, 0x53380d13, 0x650a7354, 0x766a0abb, 0x81c2c92e, 0x92722c85,
+    0xa2bfe8a1, 0xa81a664b, 0xc24b8b70, 0xc76c51a3, 0xd192e819, 0xd6990624, 0xf40e3585, 0x106aa070,
+    0x19a4c116, 0x1e376c08, 0x2748774c, 0x34b0bcb5, 0x391c0cb3, 0x4ed8aa4a, 0x5b9cca4f, 0x682e6ff3,
+    0x748f82ee, 0x78a5636f, 0x84c87814, 0x8cc70208, 0x90befffa, 0xa4506ceb, 0xbef9a3f7, 0xc67178f2
+};
+
+static inline uint32_t rotr32(uint32_t x, int n) {
+    return (x >> n) | (x << (32 - n));
+}
+
+static void sha256_block(sha256_state_t* state, const unsigned char* block) {
+    uint32_t w[64];
+    for (int i = 0; i < 16; i++) {
+        w[i] = ((uint32_t) block[i * 4] << 24) | ((uint32_t) block[i * 4 + 1] << 16) | ((uint32_t) block[i * 4 + 2] << 8) | block[i * 4 + 3];
+    }
+    for (int i = 16; i < 64; i++) {
+        uint32_t s0 = rotr32(w[i - 15], 7) ^ rotr32(w[i - 15], 18) ^ (w[i - 15] >> 3);
+        uint32_t s1 = rotr32(w[i - 2], 17) ^ rotr32(w[i - 2], 19) ^ (w[i - 2] >> 10);
+        w[i] = w[i - 16] + s0 + w[i - 7] + s1;
+    }
+    uint32_t a = state->h[0], b = state->h[1], c = state->h[2], d = state->h[3];
+    uint32_t e = state->h[4], f = state->h[5], g = state->h[6], h = state->h[7];
+    for (int i = 0; i < 64; i++) {
+        uint32_t s1 = rotr32(e, 6) ^ rotr32(e, 11) ^ rotr32(e, 25);
+        uint32_t ch = (e & f) ^ (~e & g);
+        uint32_t t1 = h + s1 + ch + SHA256_K[i] + w[i];
+        uint32_t s0 = rotr32(a, 2) ^ rotr32(a, 13) ^ rotr32(a, 22);
+        uint32_t maj = (a & b) ^ (a & c) ^ (b & c);
+        uint32_t t2 = s0 + maj;
+        h = g;
+        g = f;
+        f = e;
+        e = d + t1;
+        d = c;
+        c = b;
+        b = a;
+        a = t1 + t2;
+    }
+    state->h[0] += a;
+    state->h[1] += b;
+    state->h[2] += c;
+    state->h[3] += d;
+    state->h[4] += e;
+    state->h[5] += f;
+    state->h[6] += g;
+    state->h[7] += h;
+}
+
+void sha256_init(sha256_state_t* state) {
+    static const uint32_t initial[8] = {
+        0x6a09e667, 0xbb67ae85, 0x3c6ef372, 0xa54ff53a, 0x510e527f, 0x9b05688c, 0x1f83d9ab, 0x5be0cd19
+    };
+    memcpy(state->h, initial, sizeof(initial));
+    state->length = 0;
+    state->bufferLength = 0;
+}
+
+void sha256_update(sha256_state_t* state, const void* data, size_t len) {
+    const unsigned char* input = (const unsigned char*) data;
+    state->length += len;
+    if (state->bufferLength > 0) {
+        size_t fill = 64 - state->bufferLength;
+        if (len < fill) {
+            memcpy(state->buffer + state->bufferLength, input, len);
+            state->bufferLength += len;
+            return;
+        }
+        memcpy(state->buffer + state->bufferLength, input, fill);
+        sha256_block(state, state->buffer);
+        state->bufferLength = 0;
+        input += fill;
+        len -= fill;
+    }
+    while (len >= 64) {
+        sha256_block(state, input);
+        input += 64;
+        len -= 64;
+    }
+    memcpy(state->buffer, input, len);
+    state->bufferLength = len;
+}
+
+void sha256_final(sha256_state_t* state, unsigned char* digest) {
+    uint64_t bitLength = state->length * 8;
+    unsigned char padding[72];
+    size_t padLength = (state->bufferLength < 56 ? 56 : 120) - state->bufferLength;
+    memset(padding, 0, sizeof(padding));
+    padding[0] = 0x80;
+    for (int i = 0; i < 8; i++) {
+        padding[padLength + i] = (unsigned char) (bitLength >> (56 - i * 8));
+    }
+    sha256_update(state, padding, padLength + 8);
+    for (int i = 0; i < 8; i++) {
+        digest[i * 4] = (unsigned char) (state->h[i] >> 24);
+        digest[i * 4 + 1] = (unsigned char) (state->h[i] >> 16);
+        digest[i * 4 + 2] = (unsigned char) (state->h[i] >> 8);
+        digest[i * 4 + 3] = (unsigned char) state->h[i];
+    }
+}
+
+/*
+ * XXH64
+ */
+
+static const uint64_t XXH_PRIME64_1 = 0x9E3779B185EBCA87ULL;
+static const uint64_t XXH_PRIME64_2 = 0xC2B2AE3D27D4EB4FULL;
+static const uint64_t XXH_PRIME64_3 = 0x165667B19E3779F9ULL;
+static const uint64_t XXH_PRIME64_4 = 0x85EBCA77C2B2AE63ULL;
+static const uint64_t XXH_PRIME64_5 = 0x27D4EB2F165667C5ULL;
+
+static inline uint64_t rotl64(uint64_t x, int n) {
+    return (x << n) | (x >> (64 - n));
+}
+
+static inline uint64_t read64le(const unsigned char* p) {
+    return (uint64_t) p[0] | ((uint64_t) p[1] << 8) | ((uint64_t) p[2] << 16) | ((uint64_t) p[3] << 24)
+        | ((uint64_t) p[4] << 32) | ((uint64_t) p[5] << 40) | ((uint64_t) p[6] << 48) | ((uint64_t) p[7] << 56);
+}
+
+static inline uint32_t read32le(const unsigned char* p) {
+    return (uint32_t) p[0] | ((uint32_t) p[1] << 8) | ((uint32_t) p[2] << 16) | ((uint32_t) p[3] << 24);
+}
+
+static inline uint64_t xxh64_round(uint64_t acc, uint64_t input) {
+    acc += input * XXH_PRIME64_2;
+    acc = rotl64(acc, 31);
+    return acc * XXH_PRIME64_1;
+}
+
+static inline uint64_t xxh64_merge_round(uint64_t acc, uint64_t value) {
+    acc ^= xxh64_round(0, value);
+    return acc * XXH_PRIME64_1 + XXH_PRIME64_4;
+}
+
+static inline void xxh64_stripe(xxh64_state_t* state, const unsigned char* input) {
+    state->v[0] = xxh64_round(state->v[0], read64le(input));
+    state->v[1] = xxh64_round(state->v[1], read64le(input + 8));
+    state->v[2] = xxh64_round(state->v[2], read64le(input + 16));
+    state->v[3] = xxh64_round(state->v[3], read64le(input + 24));
+}
+
+void xxh64_init(xxh64_state_t* state, uint64_t seed) {
+    state->seed = seed;
+    state->v[0] = seed + XXH_PRIME64_1 + XXH_PRIME64_2;
+    state->v[1] = seed + XXH_PRIME64_2;
+    state->v[2] = seed;
+    state->v[3] = seed - XXH_PRIME64_1;
+    state->length = 0;
+    state->bufferLength = 0;
+}
+
+void xxh64_update(xxh64_state_t* state, const void* data, size_t len) {
+    const unsigned char* input = (const unsigned char*) data;
+    state->length += len;
+    if (state->bufferLength > 0) {
+        size_t fill = 32 - state->bufferLength;
+        if (len < fill) {
+            memcpy(state->buffer + state->bufferLength, input, len);
+            state->bufferLength += len;
+            return;
+        }
+        memcpy(state->buffer + state->bufferLength, input, fill);
+        xxh64_stripe(state, state->buffer);
+        state->bufferLength = 0;
+        input += fill;
+        len -= fill;
+    }
+    while (len >= 32) {
+        xxh64_stripe(state, input);
+        input += 32;
+        len -= 32;
+    }
+    memcpy(state->buffer, input, len);
+    state->bufferLength = len;
+}
+
+uint64_t xxh64_digest(xxh64_state_t* state) {
+    uint64_t h;
+    if (state->length >= 32) {
+        h = rotl64(state->v[0], 1) + rotl64(state->v[1], 7) + rotl64(state->v[2], 12) + rotl64(state->v[3], 18);
+        h = xxh64_merge_round(h, state->v[0]);
+        h = xxh64_merge_round(h, state->v[1]);
+        h = xxh64_merge_round(h, state->v[2]);
+        h = xxh64_merge_round(h, state->v[3]);
+    } else {
+        h = state->seed + XXH_PRIME64_5;
+    }
+    h += state->length;
+
+    const unsigned char* p = state->buffer;
+    size_t remaining = state->bufferLength;
+    while (remaining >= 8) {
+        h ^= xxh64_round(0, read64le(p));
+        h = rotl64(h, 27) * XXH_PRIME64_1 + XXH_PRIME64_4;
+        p += 8;
+        remaining -= 8;
+    }
+    if (remaining >= 4) {
+        h ^= (uint64_t) read32le(p) * XXH_PRIME64_1;
+        h = rotl64(h, 23) * XXH_PRIME64_2 + XXH_PRIME64_3;
+        p += 4;
+        remaining -= 4;
+    }
+    while (remaining > 0) {
+        h ^= (*p) * XXH_PRIME64_5;
+        h = rotl64(h, 11) * XXH_PRIME64_1;
+        p++;
+        remaining--;
+    }
+
+    h ^= h >> 33;
+    h *= XXH_PRIME64_2;
+    h ^= h >> 29;
+    h *= XXH_PRIME64_3;
+    h ^= h >> 32;
+    return h;
+}
+
+void xxh64_canonical(uint64_t value, unsigned char* digest) {
+    for (int i = 0; i < 8; i++) {
+        digest[i] = (unsigned char) (value >> (56 - i * 8));
+    }
+}
+
+/*
+ * Generic
+ */
+
+size_t hash_digest_length(int algorithm) {
+    switch (algorithm) {
+        case HASH_ALGORITHM_SHA256:
+            return SHA256_DIGEST_LENGTH;
+        case HASH_ALGORITHM_XXH64:
+            return XXH64_DIGEST_LENGTH;
+        default:
+            return 0;
+    }
+}
+
+void hash_init(hash_state_t* state, int algorithm) {
+    state->algorithm = algorithm;
+    if (algorithm == HASH_ALGORITHM_SHA256) {
+        sha256_init(&state->state.sha256);
+    } else {
+        xxh64_init(&state->state.xxh64, 0);
+    }
+}
+
+void hash_update(hash_state_t* state, const void* data, size_t len) {
+    if (state->algorithm == HASH_ALGORITHM_SHA256) {
+        sha256_update(&state->state.sha256, data, len);
+    } else {
+        xxh64_update(&state->state.xxh64, data, len);
+    }
+}
+
+void hash_final(hash_state_t* state, unsigned char* digest) {
+    if (state->algorithm == HASH_ALGORITHM_SHA256) {
+        sha256_final(&state->state.sha256, digest);
+    } else {
+        xxh64_canonical(xxh64_digest(&state->state.xxh64), digest);
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2012 Adam Murdoch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/*
+ * Looks up the class references, method IDs and field IDs used by the native-platform library when it is loaded.
+ */
+#include "generic.h"
+#include "jni_ids.h"
+
+jni_ids_t jni_ids;
+
+#define FIND_CLASS(var, name) \
+    var = find_global_class(env, name); \
+    if (var == NULL) { \
+        return false; \
+    }
+
+#define GET_METHOD(var, clazz, name, signature) \
+    var = env->GetMethodID(clazz, name, signature); \
+    if (var == NULL) { \
+        return false; \
+    }
+
+#define GET_FIELD(var, clazz, name, signature) \
+    var = env->GetFieldID(clazz, name, signature); \
+    if (var == NULL) { \
+        return false; \
+    }
+
+bool init_jni_ids(JNIEnv* env) {
+    FIND_CLASS(jni_ids.systemInfoClass, "net/rubygrapefruit/platform/internal/MutableSystemInfo");
+#ifdef _WIN32
+    GET_METHOD(jni_ids.systemInfoWindows, jni_ids.systemInfoClass, "windows", "(IIIZLjava/lang/String;Ljava/lang/String;)V");
+#else
+    GET_FIELD(jni_ids.systemInfoOsName, jni_ids.systemInfoClass, "osName", "Ljava/lang/String;");
+    GET_FIELD(jni_ids.systemInfoOsVersion, jni_ids.systemInfoClass, "osVersion", "Ljava/lang/String;");
+    GET_FIELD(jni_ids.systemInfoHostname, jni_ids.systemInfoClass, "hostname", "Ljava/lang/String;");
+    GET_FIELD(jni_ids.systemInfoMachineArchitecture, jni_ids.systemInfoClass, "machineArchitecture", "Ljava/lang/String;");
+#endif
+
+    FIND_CLASS(jni_ids.terminalSizeClass, "net/rubygrapefruit/platform/internal/MutableTerminalSize");
+    GET_FIELD(jni_ids.terminalSizeCols, jni_ids.terminalSizeClass, "cols", "I");
+    GET_FIELD(jni_ids.terminalSizeRows, jni_ids.terminalSizeClass, "rows", "I");
+
+    FIND_CLASS(jni_ids.fileSystemListClass, "net/rubygrapefruit/platform/internal/FileSystemList");
+    GET_METHOD(jni_ids.fileSystemListAdd, jni_ids.fileSystemListClass, "add", "(Ljava/lang/String;Ljava/lang/String;Ljava/lang/String;ZZZ)V");
+    GET_METHOD(jni_ids.fileSystemListAddForUnknownCaseSensitivity, jni_ids.fileSystemListClass, "addForUnknownCaseSensitivity", "(Ljava/lang/String;Ljava/lang/String;Ljava/lang/String;Z)V");
+
+#ifdef _WIN32
+    FIND_CLASS(jni_ids.windowsFileStatClass, "net/rubygrapefruit/platform/internal/WindowsFileStat");
+    GET_METHOD(jni_ids.windowsFileStatDetails, jni_ids.windowsFileStatClass, "details", "(IJJ)V");
+
+    FIND_CLASS(jni_ids.dirListClass, "net/rubygrapefruit/platform/internal/DirList");
+    GET_METHOD(jni_ids.dirListAddFile, jni_ids.dirListClass, "addFile", "(Ljava/lang/String;IJJ)V");
+
+    FIND_CLASS(jni_ids.charInputBufferClass, "net/rubygrapefruit/platform/internal/CharInputBuffer");
+    GET_METHOD(jni_ids.charInputBufferKey, jni_ids.charInputBufferClass, "key", "(I)V");
+    GET_METHOD(jni_ids.charInputBufferCharacter, jni_ids.charInputBufferClass, "character", "(C)V");
+
+    FIND_CLASS(jni_ids.listClass, "java/util/List");
+    GET_METHOD(jni_ids.listAdd, jni_ids.listClass, "add", "(Ljava/lang/Object;)Z");
+
+    FIND_CLASS(jni_ids.windowsMemoryInfoClass, "net/rubygrapefruit/platform/internal/DefaultWindowsMemoryInfo");
+    GET_METHOD(jni_ids.windowsMemoryInfoDetails, jni_ids.windowsMemoryInfoClass, "details", "(JJJJ)V");
+#else
+    FIND_CLASS(jni_ids.typeInfoClass, "net/rubygrapefruit/platform/internal/MutableTypeInfo");
+    GET_FIELD(jni_ids.typeInfoIntBytes, jni_ids.typeInfoClass, "int_bytes", "I");
+    GET_FIELD(jni_ids.typeInfoULongBytes, jni_ids.typeInfoClass, "u_long_bytes", "I");
+    GET_FIELD(jni_ids.typeInfoSizeTBytes, jni_ids.typeInfoClass, "size_t_bytes", "I");
+    GET_FIELD(jni_ids.typeInfoUidTBytes, jni_ids.typeInfoClass, "uid_t_bytes", "I");
+    GET_FIELD(jni_ids.typeInfoGidTBytes, jni_ids.typeInfoClass, "gid_t_bytes", "I");
+    GET_FIELD(jni_ids.typeInfoOffTBytes, jni_ids.typeInfoClass, "off_t_bytes", "I");
+
+    FIND_CLASS(jni_ids.fileStatClass, "net/rubygrapefruit/platform/internal/FileStat");
+    GET_METHOD(jni_ids.fileStatDetails, jni_ids.fileStatClass, "details", "(IIIIJJIJJ)V");
+
+    FIND_CLASS(jni_ids.mutablePosixFileInfoClass, "net/rubygrapefruit/platform/file/MutablePosixFileInfo");
+    GET_METHOD(jni_ids.mutablePosixFileInfoDetails, jni_ids.mutablePosixFileInfoClass, "details", "(IIIIJJIJJ)V");
+
+    FIND_CLASS(jni_ids.extendedFileStatClass, "net/rubygrapefruit/platform/internal/ExtendedFileStat");
+    GET_METHOD(jni_ids.extendedFileStatDetails, jni_ids.extendedFileStatClass, "details", "(IIIIJIIJJJJJJJ)V");
+
+    FIND_CLASS(jni_ids.compactDirListClass, "net/rubygrapefruit/platform/internal/CompactDirList");
+    GET_METHOD(jni_ids.compactDirListEntries, jni_ids.compactDirListClass, "entries", "([B[I[B[J[J[J)V");
+
+    FIND_CLASS(jni_ids.fileTreeWalkClass, "net/rubygrapefruit/platform/internal/FileTreeWalk");
+    GET_METHOD(jni_ids.fileTreeWalkEnterDirectory, jni_ids.fileTreeWalkClass, "enterDirectory", "(Ljava/lang/String;JJJ)I");
+    GET_METHOD(jni_ids.fileTreeWalkVisitFile, jni_ids.fileTreeWalkClass, "visitFile", "(Ljava/lang/String;IJJJ)I");
+    GET_METHOD(jni_ids.fileTreeWalkExitDirectory, jni_ids.fileTreeWalkClass, "exitDirectory", "()I");
+    GET_METHOD(jni_ids.fileTreeWalkFailed, jni_ids.fileTreeWalkClass, "failed", "(II)I");
+    GET_METHOD(jni_ids.fileTreeWalkStatFailed, jni_ids.fileTreeWalkClass, "statFailed", "(Ljava/lang/String;II)I");
+#endif
+
+#ifdef __APPLE__
+    FIND_CLASS(jni_ids.osxMemoryInfoClass, "net/rubygrapefruit/platform/internal/DefaultOsxMemoryInfo");
+    GET_METHOD(jni_ids.osxMemoryInfoDetails, jni_ids.osxMemoryInfoClass, "details", "(JJJJJJJJJ)V");
+#endif
+    return true;
+}
+
+JNIEXPORT jint JNICALL
+JNI_OnLoad(JavaVM* jvm, void*) {
+    JNIEnv* env;
+    jint ret = jvm->GetEnv((void**) &env, JNI_VERSION_1_6);
+    if (ret != JNI_OK) {
+        return -1;
+    }
+    if (!init_generic_ids(env) || !init_jni_ids(env)) {
+        return -1;
+    }
+    return JNI_VERSION_1_6;
+}
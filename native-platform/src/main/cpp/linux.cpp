@@ -20,12 +20,22 @@
 #ifdef __linux__
 
 #include "generic.h"
+#include "jni_ids.h"
+#include "net_rubygrapefruit_platform_internal_jni_LinuxFileFunctions.h"
+#include "net_rubygrapefruit_platform_internal_jni_LinuxFileWatcherFunctions.h"
 #include "net_rubygrapefruit_platform_internal_jni_PosixFileSystemFunctions.h"
 #include <dirent.h>
+#include <errno.h>
+#include <fcntl.h>
+#include <limits.h>
 #include <mntent.h>
+#include <poll.h>
 #include <stdio.h>
 #include <stdlib.h>
+#include <stdint.h>
+#include <sys/eventfd.h>
 #include <sys/inotify.h>
+#include <sys/syscall.h>
 #include <unistd.h>
 
 /*
@@ -41,17 +51,171 @@ Java_net_rubygrapefruit_platform_internal_jni_PosixFileSystemFunctions_listFileS
     char buf[1024];
     struct mntent mount_info;
 
-    jclass info_class = env->GetObjectClass(info);
-    jmethodID method = env->GetMethodID(info_class, "add", "(Ljava/lang/String;Ljava/lang/String;Ljava/lang/String;ZZZ)V");
-
     while (getmntent_r(fp, &mount_info, buf, sizeof(buf)) != NULL) {
         jstring mount_point = char_to_java(env, mount_info.mnt_dir, result);
         jstring file_system_type = char_to_java(env, mount_info.mnt_type, result);
         jstring device_name = char_to_java(env, mount_info.mnt_fsname, result);
-        env->CallVoidMethod(info, method, mount_point, file_system_type, device_name, JNI_FALSE, JNI_TRUE, JNI_TRUE);
+        env->CallVoidMethod(info, jni_ids.fileSystemListAdd, mount_point, file_system_type, device_name, JNI_FALSE, JNI_TRUE, JNI_TRUE);
     }
 
     endmntent(fp);
 }
 
+/*
+ * File functions
+ */
+
+JNIEXPORT jint JNICALL
+Java_net_rubygrapefruit_platform_internal_jni_LinuxFileFunctions_openDir(JNIEnv* env, jclass target, jstring path, jobject result) {
+    char* pathStr = java_to_char(env, path, result);
+    if (pathStr == NULL) {
+        return -1;
+    }
+    int fd = open(pathStr, O_RDONLY | O_DIRECTORY | O_CLOEXEC);
+    free(pathStr);
+    if (fd < 0) {
+        mark_failed_with_errno(env, "could not open directory", result);
+    }
+    return fd;
+}
+
+JNIEXPORT jint JNICALL
+Java_net_rubygrapefruit_platform_internal_jni_LinuxFileFunctions_readDirEntries(JNIEnv* env, jclass target, jint fd, jobject buffer, jobject result) {
+    void* address = env->GetDirectBufferAddress(buffer);
+    jlong capacity = env->GetDirectBufferCapacity(buffer);
+    if (address == NULL || capacity < 0) {
+        mark_failed_with_message(env, "could not access buffer", result);
+        return 0;
+    }
+    // Use the system call directly, as older versions of glibc do not provide a wrapper for getdents64()
+    long bytes = syscall(SYS_getdents64, fd, address, (size_t) capacity);
+    if (bytes < 0) {
+        mark_failed_with_errno(env, "could not read directory entry", result);
+        return 0;
+    }
+    return (jint) bytes;
+}
+
+JNIEXPORT void JNICALL
+Java_net_rubygrapefruit_platform_internal_jni_LinuxFileFunctions_closeDir(JNIEnv* env, jclass target, jint fd) {
+    close(fd);
+}
+
+/*
+ * File watcher functions
+ */
+
+// The events that are watched for each directory
+#define WATCH_MASK (IN_CREATE | IN_DELETE | IN_MODIFY | IN_ATTRIB | IN_MOVED_FROM | IN_MOVED_TO | IN_DELETE_SELF | IN_MOVE_SELF | IN_ONLYDIR | IN_EXCL_UNLINK)
+
+// The space that must be available in the buffer to be sure that a read returns at least one event
+#define MIN_EVENT_BUFFER_SIZE (sizeof(struct inotify_event) + NAME_MAX + 1)
+
+JNIEXPORT void JNICALL
+Java_net_rubygrapefruit_platform_internal_jni_LinuxFileWatcherFunctions_createWatcher(JNIEnv* env, jclass target, jintArray fds, jobject result) {
+    int watchFd = inotify_init1(IN_NONBLOCK | IN_CLOEXEC);
+    if (watchFd < 0) {
+        mark_failed_with_errno(env, "could not create inotify instance", result);
+        return;
+    }
+    int wakeFd = eventfd(0, EFD_NONBLOCK | EFD_CLOEXEC);
+    if (wakeFd < 0) {
+        mark_failed_with_errno(env, "could not create event descriptor", result);
+        close(watchFd);
+        return;
+    }
+    jint fdsBuf[2] = { watchFd, wakeFd };
+    env->SetIntArrayRegion(fds, 0, 2, fdsBuf);
+}
+
+JNIEXPORT jint JNICALL
+Java_net_rubygrapefruit_platform_internal_jni_LinuxFileWatcherFunctions_addWatch(JNIEnv* env, jclass target, jint watchFd, jstring path, jobject result) {
+    char* pathStr = java_to_char(env, path, result);
+    if (pathStr == NULL) {
+        return -1;
+    }
+    int wd = inotify_add_watch(watchFd, pathStr, WATCH_MASK);
+    free(pathStr);
+    if (wd < 0) {
+        mark_failed_with_errno(env, "could not watch directory", result);
+    }
+    return wd;
+}
+
+JNIEXPORT void JNICALL
+Java_net_rubygrapefruit_platform_internal_jni_LinuxFileWatcherFunctions_removeWatch(JNIEnv* env, jclass target, jint watchFd, jint wd, jobject result) {
+    // EINVAL means the watch has already been removed, for example because the directory was deleted
+    if (inotify_rm_watch(watchFd, wd) != 0 && errno != EINVAL) {
+        mark_failed_with_errno(env, "could not stop watching directory", result);
+    }
+}
+
+JNIEXPORT jint JNICALL
+Java_net_rubygrapefruit_platform_internal_jni_LinuxFileWatcherFunctions_readEvents(JNIEnv* env, jclass target, jint watchFd, jint wakeFd, jint timeoutMillis, jobject buffer, jobject result) {
+    char* address = (char*) env->GetDirectBufferAddress(buffer);
+    jlong capacity = env->GetDirectBufferCapacity(buffer);
+    if (address == NULL || capacity < (jlong) MIN_EVENT_BUFFER_SIZE) {
+        mark_failed_with_message(env, "could not access buffer", result);
+        return -1;
+    }
+
+    struct pollfd fds[2];
+    fds[0].fd = watchFd;
+    fds[0].events = POLLIN;
+    fds[1].fd = wakeFd;
+    fds[1].events = POLLIN;
+    int ready;
+    while (true) {
+        ready = poll(fds, 2, timeoutMillis);
+        if (ready >= 0) {
+            break;
+        }
+        if (errno != EINTR) {
+            mark_failed_with_errno(env, "could not wait for events", result);
+            return -1;
+        }
+    }
+    if (ready == 0) {
+        return 0;
+    }
+    if (fds[1].revents != 0) {
+        // Reset the event descriptor, so that the reader can wait again when it was woken up for some other reason than closing
+        uint64_t value;
+        ssize_t count = read(wakeFd, &value, sizeof(value));
+        (void) count;
+        return -1;
+    }
+
+    // Keep reading until the queue is drained or the buffer is full, so that a burst of events is handled as a single batch
+    jlong count = 0;
+    while (capacity - count >= (jlong) MIN_EVENT_BUFFER_SIZE) {
+        ssize_t bytes = read(watchFd, address + count, capacity - count);
+        if (bytes < 0) {
+            if (errno == EINTR) {
+                continue;
+            }
+            if (errno == EAGAIN) {
+                break;
+            }
+            mark_failed_with_errno(env, "could not read events", result);
+            return -1;
+        }
+        count += bytes;
+    }
+    return (jint) count;
+}
+
+JNIEXPORT void JNICALL
+Java_net_rubygrapefruit_platform_internal_jni_LinuxFileWatcherFunctions_wake(JNIEnv* env, jclass target, jint wakeFd) {
+    uint64_t value = 1;
+    ssize_t count = write(wakeFd, &value, sizeof(value));
+    (void) count;
+}
+
+JNIEXPORT void JNICALL
+Java_net_rubygrapefruit_platform_internal_jni_LinuxFileWatcherFunctions_closeWatcher(JNIEnv* env, jclass target, jint watchFd, jint wakeFd) {
+    close(watchFd);
+    close(wakeFd);
+}
+
 #endif
@@ -20,6 +20,8 @@
 #ifndef _WIN32
 
 #include "generic.h"
+#include "hash.h"
+#include "jni_ids.h"
 #include "net_rubygrapefruit_platform_internal_jni_NativeLibraryFunctions.h"
 #include "net_rubygrapefruit_platform_internal_jni_PosixFileFunctions.h"
 #include "net_rubygrapefruit_platform_internal_jni_PosixProcessFunctions.h"
@@ -27,6 +29,7 @@
 #include "net_rubygrapefruit_platform_internal_jni_PosixTypeFunctions.h"
 #include <dirent.h>
 #include <errno.h>
+#include <fcntl.h>
 #include <stdlib.h>
 #include <string.h>
 #include <sys/ioctl.h>
@@ -36,34 +39,27 @@
 #include <termios.h>
 #include <unistd.h>
 #ifdef __linux__
+    #include <sys/sysmacros.h>
     #include <sys/utsname.h>
     // Don't include sys/sysctl.h on Linux - it's deprecated
 #else
     #include <sys/sysctl.h>  // Keep for BSD/macOS
 #endif
 
-jmethodID fileStatDetailsMethodId;
-
 JNIEXPORT void JNICALL
 Java_net_rubygrapefruit_platform_internal_jni_NativeLibraryFunctions_getSystemInfo(JNIEnv* env, jclass target, jobject info, jobject result) {
-    jclass infoClass = env->GetObjectClass(info);
-
     struct utsname machine_info;
     if (uname(&machine_info) != 0) {
         mark_failed_with_errno(env, "could not query machine details", result);
         return;
     }
 
-    jfieldID osNameField = env->GetFieldID(infoClass, "osName", "Ljava/lang/String;");
-    env->SetObjectField(info, osNameField, char_to_java(env, machine_info.sysname, result));
-    jfieldID osVersionField = env->GetFieldID(infoClass, "osVersion", "Ljava/lang/String;");
-    env->SetObjectField(info, osVersionField, char_to_java(env, machine_info.release, result));
-    jfieldID hostnameField = env->GetFieldID(infoClass, "hostname", "Ljava/lang/String;");
-    env->SetObjectField(info, hostnameField, char_to_java(env, machine_info.nodename, result));
+    env->SetObjectField(info, jni_ids.systemInfoOsName, char_to_java(env, machine_info.sysname, result));
+    env->SetObjectField(info, jni_ids.systemInfoOsVersion, char_to_java(env, machine_info.release, result));
+    env->SetObjectField(info, jni_ids.systemInfoHostname, char_to_java(env, machine_info.nodename, result));
 
-    jfieldID machineArchitectureField = env->GetFieldID(infoClass, "machineArchitecture", "Ljava/lang/String;");
 #ifndef __APPLE__
-    env->SetObjectField(info, machineArchitectureField, char_to_java(env, machine_info.machine, result));
+    env->SetObjectField(info, jni_ids.systemInfoMachineArchitecture, char_to_java(env, machine_info.machine, result));
 #else
     // On macOS, uname() reports the architecture of the current binary.
     // Instead, use a macOS specific sysctl() to query the CPU name, which can be mapped to the architecture
@@ -87,20 +83,19 @@ Java_net_rubygrapefruit_platform_internal_jni_NativeLibraryFunctions_getSystemIn
         mark_failed_with_errno(env, "could not query machine details", result);
         return;
     }
-    env->SetObjectField(info, machineArchitectureField, char_to_java(env, value, result));
+    env->SetObjectField(info, jni_ids.systemInfoMachineArchitecture, char_to_java(env, value, result));
     free(value);
 #endif
 }
 
 JNIEXPORT void JNICALL
 Java_net_rubygrapefruit_platform_internal_jni_PosixTypeFunctions_getNativeTypeInfo(JNIEnv* env, jclass target, jobject info) {
-    jclass infoClass = env->GetObjectClass(info);
-    env->SetIntField(info, env->GetFieldID(infoClass, "int_bytes", "I"), sizeof(int));
-    env->SetIntField(info, env->GetFieldID(infoClass, "u_long_bytes", "I"), sizeof(u_long));
-    env->SetIntField(info, env->GetFieldID(infoClass, "size_t_bytes", "I"), sizeof(size_t));
-    env->SetIntField(info, env->GetFieldID(infoClass, "uid_t_bytes", "I"), sizeof(uid_t));
-    env->SetIntField(info, env->GetFieldID(infoClass, "gid_t_bytes", "I"), sizeof(gid_t));
-    env->SetIntField(info, env->GetFieldID(infoClass, "off_t_bytes", "I"), sizeof(off_t));
+    env->SetIntField(info, jni_ids.typeInfoIntBytes, sizeof(int));
+    env->SetIntField(info, jni_ids.typeInfoULongBytes, sizeof(u_long));
+    env->SetIntField(info, jni_ids.typeInfoSizeTBytes, sizeof(size_t));
+    env->SetIntField(info, jni_ids.typeInfoUidTBytes, sizeof(uid_t));
+    env->SetIntField(info, jni_ids.typeInfoGidTBytes, sizeof(gid_t));
+    env->SetIntField(info, jni_ids.typeInfoOffTBytes, sizeof(off_t));
 }
 
 /*
@@ -149,109 +144,840 @@ void unpackStat(struct stat* source, file_stat_t* result) {
 #endif
 }
 
+/*
+ * Queries the details of the given path, relative to the given directory, and passes them to the given FileStat.
+ */
+void stat_at(JNIEnv* env, int dirFd, const char* path, bool followLink, jobject dest, jobject result) {
+    struct stat fileInfo;
+    int retval = fstatat(dirFd, path, &fileInfo, followLink ? 0 : AT_SYMLINK_NOFOLLOW);
+    if (retval != 0 && errno != ENOENT && errno != ENOTDIR) {
+        mark_failed_with_errno(env, "could not stat file", result);
+        return;
+    }
+
+    if (retval != 0) {
+        env->CallVoidMethod(dest, jni_ids.fileStatDetails, FILE_TYPE_MISSING, (jint) 0, (jint) 0, (jint) 0, (jlong) 0, (jlong) 0, (jint) 0, (jlong) 0, (jlong) 0);
+    } else {
+        file_stat_t fileResult;
+        unpackStat(&fileInfo, &fileResult);
+        env->CallVoidMethod(dest,
+            jni_ids.fileStatDetails,
+            fileResult.fileType,
+            (jint) (0777 & fileInfo.st_mode),
+            (jint) fileInfo.st_uid,
+            (jint) fileInfo.st_gid,
+            fileResult.size,
+            fileResult.lastModified,
+            (jint) fileInfo.st_blksize,
+            (jlong) fileInfo.st_dev,
+            (jlong) fileInfo.st_ino);
+    }
+}
+
 JNIEXPORT void JNICALL
 Java_net_rubygrapefruit_platform_internal_jni_PosixFileFunctions_stat(JNIEnv* env, jclass target, jstring path, jboolean followLink, jobject dest, jobject result) {
-    struct stat fileInfo;
     char* pathStr = java_to_char(env, path, result);
     if (pathStr == NULL) {
         return;
     }
+    stat_at(env, AT_FDCWD, pathStr, followLink, dest, result);
+    free(pathStr);
+}
+
+JNIEXPORT jint JNICALL
+Java_net_rubygrapefruit_platform_internal_jni_PosixFileFunctions_statInto(JNIEnv* env, jclass target, jstring path, jboolean followLink, jobject dest) {
+    struct stat fileInfo;
+    char* pathStr = java_to_char(env, path, NULL);
+    if (pathStr == NULL) {
+        return EILSEQ;
+    }
     int retval;
     if (followLink) {
         retval = stat(pathStr, &fileInfo);
     } else {
         retval = lstat(pathStr, &fileInfo);
     }
+    int error = errno;
     free(pathStr);
-    if (retval != 0 && errno != ENOENT && errno != ENOTDIR) {
-        mark_failed_with_errno(env, "could not stat file", result);
-        return;
+    if (retval != 0 && error != ENOENT && error != ENOTDIR) {
+        return error;
     }
 
     if (retval != 0) {
-        env->CallVoidMethod(dest, fileStatDetailsMethodId, FILE_TYPE_MISSING, (jint) 0, (jint) 0, (jint) 0, (jlong) 0, (jlong) 0, (jint) 0);
+        env->CallVoidMethod(dest, jni_ids.mutablePosixFileInfoDetails, FILE_TYPE_MISSING, (jint) 0, (jint) 0, (jint) 0, (jlong) 0, (jlong) 0, (jint) 0, (jlong) 0, (jlong) 0);
     } else {
         file_stat_t fileResult;
         unpackStat(&fileInfo, &fileResult);
         env->CallVoidMethod(dest,
-            fileStatDetailsMethodId,
+            jni_ids.mutablePosixFileInfoDetails,
             fileResult.fileType,
             (jint) (0777 & fileInfo.st_mode),
             (jint) fileInfo.st_uid,
             (jint) fileInfo.st_gid,
             fileResult.size,
             fileResult.lastModified,
-            (jint) fileInfo.st_blksize);
+            (jint) fileInfo.st_blksize,
+            (jlong) fileInfo.st_dev,
+            (jlong) fileInfo.st_ino);
     }
+    return 0;
 }
 
-JNIEXPORT void JNICALL
-Java_net_rubygrapefruit_platform_internal_jni_PosixFileFunctions_readdir(JNIEnv* env, jclass target, jstring path, jboolean followLink, jobject contents, jobject result) {
-    jclass contentsClass = env->GetObjectClass(contents);
-    jmethodID mid = env->GetMethodID(contentsClass, "addFile", "(Ljava/lang/String;IJJ)V");
-    if (mid == NULL) {
-        mark_failed_with_message(env, "could not find method", result);
-        return;
+jlong toNanos(struct timespec t) {
+    return (jlong)(t.tv_sec) * 1000000000 + (jlong)(t.tv_nsec);
+}
+
+jint fileTypeOf(mode_t mode) {
+    switch (mode & S_IFMT) {
+        case S_IFREG:
+            return FILE_TYPE_FILE;
+        case S_IFDIR:
+            return FILE_TYPE_DIRECTORY;
+        case S_IFLNK:
+            return FILE_TYPE_SYMLINK;
+        default:
+            return FILE_TYPE_OTHER;
+    }
+}
+
+typedef struct extended_file_stat {
+    jint fileType;
+    jint mode;
+    jint uid;
+    jint gid;
+    jlong size;
+    jint blockSize;
+    jint available;
+    jlong lastModified;
+    jlong changed;
+    jlong created;
+    jlong inode;
+    jlong device;
+    jlong linkCount;
+    jlong blocks;
+} extended_file_stat_t;
+
+#if defined(__linux__) && defined(STATX_BASIC_STATS)
+/*
+ * Queries the given file using statx(), asking only for the requested fields. Returns 0 on success, or -1 with errno set.
+ */
+int extendedStatx(const char* path, bool followLink, jint fields, extended_file_stat_t* result) {
+    // The last modified time is always queried, as it is one of the basic details of the file
+    unsigned int mask = STATX_TYPE | STATX_MODE | STATX_UID | STATX_GID | STATX_SIZE | STATX_MTIME;
+    if (fields & STAT_FIELD_CHANGE_TIME) {
+        mask |= STATX_CTIME;
+    }
+    if (fields & STAT_FIELD_CREATION_TIME) {
+        mask |= STATX_BTIME;
+    }
+    if (fields & STAT_FIELD_INODE) {
+        mask |= STATX_INO;
+    }
+    if (fields & STAT_FIELD_LINK_COUNT) {
+        mask |= STATX_NLINK;
+    }
+    if (fields & STAT_FIELD_ALLOCATED_BLOCKS) {
+        mask |= STATX_BLOCKS;
+    }
+    struct statx fileInfo;
+    if (statx(AT_FDCWD, path, followLink ? 0 : AT_SYMLINK_NOFOLLOW, mask, &fileInfo) != 0) {
+        return -1;
     }
 
+    // The kernel may return more than was asked for, so only report the requested fields that it actually filled in
+    result->fileType = fileTypeOf(fileInfo.stx_mode);
+    result->mode = 0777 & fileInfo.stx_mode;
+    result->uid = fileInfo.stx_uid;
+    result->gid = fileInfo.stx_gid;
+    result->size = result->fileType == FILE_TYPE_FILE ? fileInfo.stx_size : 0;
+    result->blockSize = fileInfo.stx_blksize;
+    result->device = makedev(fileInfo.stx_dev_major, fileInfo.stx_dev_minor);
+    result->available = 0;
+    if (fileInfo.stx_mask & STATX_MTIME) {
+        result->lastModified = (jlong)(fileInfo.stx_mtime.tv_sec) * 1000000000 + fileInfo.stx_mtime.tv_nsec;
+        if (fields & STAT_FIELD_LAST_MODIFIED_TIME) {
+            result->available |= STAT_FIELD_LAST_MODIFIED_TIME;
+        }
+    }
+    if ((fields & STAT_FIELD_CHANGE_TIME) && (fileInfo.stx_mask & STATX_CTIME)) {
+        result->available |= STAT_FIELD_CHANGE_TIME;
+        result->changed = (jlong)(fileInfo.stx_ctime.tv_sec) * 1000000000 + fileInfo.stx_ctime.tv_nsec;
+    }
+    if ((fields & STAT_FIELD_CREATION_TIME) && (fileInfo.stx_mask & STATX_BTIME)) {
+        result->available |= STAT_FIELD_CREATION_TIME;
+        result->created = (jlong)(fileInfo.stx_btime.tv_sec) * 1000000000 + fileInfo.stx_btime.tv_nsec;
+    }
+    if ((fields & STAT_FIELD_INODE) && (fileInfo.stx_mask & STATX_INO)) {
+        result->available |= STAT_FIELD_INODE;
+        result->inode = fileInfo.stx_ino;
+    }
+    if ((fields & STAT_FIELD_LINK_COUNT) && (fileInfo.stx_mask & STATX_NLINK)) {
+        result->available |= STAT_FIELD_LINK_COUNT;
+        result->linkCount = fileInfo.stx_nlink;
+    }
+    if ((fields & STAT_FIELD_ALLOCATED_BLOCKS) && (fileInfo.stx_mask & STATX_BLOCKS)) {
+        result->available |= STAT_FIELD_ALLOCATED_BLOCKS;
+        result->blocks = fileInfo.stx_blocks;
+    }
+    return 0;
+}
+#endif
+
+/*
+ * Queries the given file using stat(), for those platforms or kernels that do not support statx(). Returns 0 on success, or -1 with errno set.
+ */
+int extendedStat(const char* path, bool followLink, jint fields, extended_file_stat_t* result) {
+    struct stat fileInfo;
+    int retval = followLink ? stat(path, &fileInfo) : lstat(path, &fileInfo);
+    if (retval != 0) {
+        return -1;
+    }
+    result->fileType = fileTypeOf(fileInfo.st_mode);
+    result->mode = 0777 & fileInfo.st_mode;
+    result->uid = fileInfo.st_uid;
+    result->gid = fileInfo.st_gid;
+    result->size = result->fileType == FILE_TYPE_FILE ? fileInfo.st_size : 0;
+    result->blockSize = fileInfo.st_blksize;
+    result->device = fileInfo.st_dev;
+    result->available = fields & (STAT_FIELD_LAST_MODIFIED_TIME | STAT_FIELD_CHANGE_TIME | STAT_FIELD_INODE | STAT_FIELD_LINK_COUNT | STAT_FIELD_ALLOCATED_BLOCKS);
+#ifdef __linux__
+    result->lastModified = toNanos(fileInfo.st_mtim);
+    result->changed = toNanos(fileInfo.st_ctim);
+#elif defined(__APPLE__) || defined(__FreeBSD__)
+    result->lastModified = toNanos(fileInfo.st_mtimespec);
+    result->changed = toNanos(fileInfo.st_ctimespec);
+    result->created = toNanos(fileInfo.st_birthtimespec);
+    result->available |= fields & STAT_FIELD_CREATION_TIME;
+#else
+    result->lastModified = toNanos(fileInfo.st_mtimespec);
+    result->changed = toNanos(fileInfo.st_ctimespec);
+#endif
+    result->inode = fileInfo.st_ino;
+    result->linkCount = fileInfo.st_nlink;
+    result->blocks = fileInfo.st_blocks;
+    return 0;
+}
+
+JNIEXPORT void JNICALL
+Java_net_rubygrapefruit_platform_internal_jni_PosixFileFunctions_statExtended(JNIEnv* env, jclass target, jstring path, jboolean followLink, jint fields, jobject dest, jobject result) {
     char* pathStr = java_to_char(env, path, result);
     if (pathStr == NULL) {
         return;
     }
-    long pathLen = strlen(pathStr);
-    DIR* dir = opendir(pathStr);
-    if (dir == NULL) {
-        mark_failed_with_errno(env, "could not open directory", result);
-        free(pathStr);
+    extended_file_stat_t fileResult;
+    memset(&fileResult, 0, sizeof(fileResult));
+#if defined(__linux__) && defined(STATX_BASIC_STATS)
+    int retval = extendedStatx(pathStr, followLink, fields, &fileResult);
+    if (retval != 0 && (errno == ENOSYS || errno == EPERM)) {
+        // Kernel is older than 4.11, or statx() is blocked by a seccomp filter, so use plain stat() instead
+        retval = extendedStat(pathStr, followLink, fields, &fileResult);
+    }
+#else
+    int retval = extendedStat(pathStr, followLink, fields, &fileResult);
+#endif
+    free(pathStr);
+    if (retval != 0 && errno != ENOENT && errno != ENOTDIR) {
+        mark_failed_with_errno(env, "could not stat file", result);
         return;
     }
-    struct dirent entry;
-    struct dirent* next;
-    while (true) {
-        if (readdir_r(dir, &entry, &next) != 0) {
-            mark_failed_with_errno(env, "could not read directory entry", result);
-            break;
+    if (retval != 0) {
+        memset(&fileResult, 0, sizeof(fileResult));
+        fileResult.fileType = FILE_TYPE_MISSING;
+    }
+    // Report fields that were not queried as 0, rather than whatever the fallback happened to fetch. The last modified
+    // time is always reported, and the Java side hides the nanosecond value when it was not requested
+    if (!(fileResult.available & STAT_FIELD_CHANGE_TIME)) {
+        fileResult.changed = 0;
+    }
+    if (!(fileResult.available & STAT_FIELD_INODE)) {
+        fileResult.inode = 0;
+    }
+    if (!(fileResult.available & STAT_FIELD_LINK_COUNT)) {
+        fileResult.linkCount = 0;
+    }
+    if (!(fileResult.available & STAT_FIELD_ALLOCATED_BLOCKS)) {
+        fileResult.blocks = 0;
+    }
+    env->CallVoidMethod(dest,
+        jni_ids.extendedFileStatDetails,
+        fileResult.fileType,
+        fileResult.mode,
+        fileResult.uid,
+        fileResult.gid,
+        fileResult.size,
+        fileResult.blockSize,
+        fileResult.available,
+        fileResult.lastModified,
+        fileResult.changed,
+        fileResult.created,
+        fileResult.inode,
+        fileResult.device,
+        fileResult.linkCount,
+        fileResult.blocks);
+}
+
+JNIEXPORT void JNICALL
+Java_net_rubygrapefruit_platform_internal_jni_PosixFileFunctions_statAll(JNIEnv* env, jclass target, jobjectArray paths, jboolean followLink, jintArray types, jintArray modes, jlongArray sizes, jlongArray lastModified, jintArray failures, jintArray errnos, jobject result) {
+    jsize count = env->GetArrayLength(paths);
+    if (count == 0) {
+        return;
+    }
+    // Collect the details into native buffers and copy them back to the Java arrays once, at the end
+    jint* typesBuf = (jint*) calloc(count, sizeof(jint));
+    jint* modesBuf = (jint*) calloc(count, sizeof(jint));
+    jlong* sizesBuf = (jlong*) calloc(count, sizeof(jlong));
+    jlong* lastModifiedBuf = (jlong*) calloc(count, sizeof(jlong));
+    jint* failuresBuf = (jint*) calloc(count, sizeof(jint));
+    jint* errnosBuf = (jint*) calloc(count, sizeof(jint));
+    if (typesBuf == NULL || modesBuf == NULL || sizesBuf == NULL || lastModifiedBuf == NULL || failuresBuf == NULL || errnosBuf == NULL) {
+        mark_failed_with_message(env, "could not allocate buffers", result);
+        goto done;
+    }
+
+    for (jsize i = 0; i < count; i++) {
+        jstring path = (jstring) env->GetObjectArrayElement(paths, i);
+        char* pathStr = java_to_char(env, path, result);
+        env->DeleteLocalRef(path);
+        if (pathStr == NULL) {
+            goto done;
         }
-        if (next == NULL) {
-            break;
+        struct stat fileInfo;
+        int retval;
+        if (followLink) {
+            retval = stat(pathStr, &fileInfo);
+        } else {
+            retval = lstat(pathStr, &fileInfo);
         }
-        if (strcmp(".", entry.d_name) == 0 || strcmp("..", entry.d_name) == 0) {
+        free(pathStr);
+        if (retval != 0) {
+            typesBuf[i] = FILE_TYPE_MISSING;
+            if (errno != ENOENT && errno != ENOTDIR) {
+                // Report the failure against this entry only, and carry on with the remaining entries
+                failuresBuf[i] = map_error_code(errno);
+                errnosBuf[i] = errno;
+            }
             continue;
         }
+        file_stat_t fileResult;
+        unpackStat(&fileInfo, &fileResult);
+        typesBuf[i] = fileResult.fileType;
+        modesBuf[i] = (jint) (0777 & fileInfo.st_mode);
+        sizesBuf[i] = fileResult.size;
+        lastModifiedBuf[i] = fileResult.lastModified;
+    }
 
-        size_t childPathLen = pathLen + strlen(entry.d_name) + 2;
-        char* childPath = (char*) malloc(childPathLen);
-        strncpy(childPath, pathStr, pathLen);
-        childPath[pathLen] = '/';
-        strcpy(childPath + pathLen + 1, entry.d_name);
+    env->SetIntArrayRegion(types, 0, count, typesBuf);
+    env->SetIntArrayRegion(modes, 0, count, modesBuf);
+    env->SetLongArrayRegion(sizes, 0, count, sizesBuf);
+    env->SetLongArrayRegion(lastModified, 0, count, lastModifiedBuf);
+    env->SetIntArrayRegion(failures, 0, count, failuresBuf);
+    env->SetIntArrayRegion(errnos, 0, count, errnosBuf);
 
+done:
+    free(typesBuf);
+    free(modesBuf);
+    free(sizesBuf);
+    free(lastModifiedBuf);
+    free(failuresBuf);
+    free(errnosBuf);
+}
+
+JNIEXPORT void JNICALL
+Java_net_rubygrapefruit_platform_internal_jni_PosixFileFunctions_checkUnchanged(JNIEnv* env, jclass target, jobjectArray paths, jboolean followLink, jlongArray expectedSizes, jlongArray expectedLastModified, jlongArray changed, jobject result) {
+    jsize count = env->GetArrayLength(paths);
+    if (count == 0) {
+        return;
+    }
+    jsize words = (count + 63) / 64;
+    jlong* sizesBuf = (jlong*) malloc(count * sizeof(jlong));
+    jlong* lastModifiedBuf = (jlong*) malloc(count * sizeof(jlong));
+    jlong* changedBuf = (jlong*) calloc(words, sizeof(jlong));
+    if (sizesBuf == NULL || lastModifiedBuf == NULL || changedBuf == NULL) {
+        mark_failed_with_message(env, "could not allocate buffers", result);
+        goto done;
+    }
+    env->GetLongArrayRegion(expectedSizes, 0, count, sizesBuf);
+    env->GetLongArrayRegion(expectedLastModified, 0, count, lastModifiedBuf);
+
+    for (jsize i = 0; i < count; i++) {
+        jstring path = (jstring) env->GetObjectArrayElement(paths, i);
+        char* pathStr = java_to_char(env, path, result);
+        env->DeleteLocalRef(path);
+        if (pathStr == NULL) {
+            goto done;
+        }
         struct stat fileInfo;
         int retval;
         if (followLink) {
-            retval = stat(childPath, &fileInfo);
+            retval = stat(pathStr, &fileInfo);
         } else {
-            retval = lstat(childPath, &fileInfo);
+            retval = lstat(pathStr, &fileInfo);
         }
-        free(childPath);
-        file_stat fileResult;
+        free(pathStr);
+        file_stat_t fileResult;
         if (retval != 0) {
-            if (!followLink || errno != ENOENT) {
-                mark_failed_with_errno(env, "could not stat file", result);
-                break;
+            if (errno != ENOENT && errno != ENOTDIR) {
+                // Cannot tell, so report the file as changed and leave it to the caller to query it and report the failure
+                changedBuf[i / 64] |= (jlong) ((uint64_t) 1 << (i % 64));
+                continue;
             }
-            fileResult.fileType = FILE_TYPE_MISSING;
+            // Compare the details that are reported for a missing file
             fileResult.size = 0;
             fileResult.lastModified = 0;
         } else {
             unpackStat(&fileInfo, &fileResult);
         }
+        if (fileResult.size != sizesBuf[i] || fileResult.lastModified != lastModifiedBuf[i]) {
+            changedBuf[i / 64] |= (jlong) ((uint64_t) 1 << (i % 64));
+        }
+    }
+
+    env->SetLongArrayRegion(changed, 0, words, changedBuf);
+
+done:
+    free(sizesBuf);
+    free(lastModifiedBuf);
+    free(changedBuf);
+}
+
+/*
+ * Determines the type of a directory entry from its d_type, without querying the file system.
+ *
+ * Returns false when the type cannot be determined this way, and the entry needs to be queried using stat.
+ */
+bool unpackDirentType(struct dirent* entry, bool followLink, file_stat_t* result) {
+    result->size = 0;
+    result->lastModified = 0;
+#ifdef DT_UNKNOWN
+    switch (entry->d_type) {
+        case DT_REG:
+            result->fileType = FILE_TYPE_FILE;
+            return true;
+        case DT_DIR:
+            result->fileType = FILE_TYPE_DIRECTORY;
+            return true;
+        case DT_LNK:
+            if (followLink) {
+                return false;
+            }
+            result->fileType = FILE_TYPE_SYMLINK;
+            return true;
+        case DT_UNKNOWN:
+            return false;
+        default:
+            result->fileType = FILE_TYPE_OTHER;
+            return true;
+    }
+#else
+    return false;
+#endif
+}
+
+/*
+ * The entries of a directory, collected into native buffers so that they can be passed to Java all at once.
+ */
+typedef struct dir_entries {
+    jsize count;
+    jsize capacity;
+    char* names;
+    jsize namesLength;
+    jsize namesCapacity;
+    jint* nameEnds;
+    jbyte* types;
+    jlong* sizes;
+    jlong* lastModified;
+    jlong* inodes;
+} dir_entries_t;
+
+void free_dir_entries(dir_entries_t* entries) {
+    free(entries->names);
+    free(entries->nameEnds);
+    free(entries->types);
+    free(entries->sizes);
+    free(entries->lastModified);
+    free(entries->inodes);
+}
+
+/*
+ * Appends an entry. Returns false when the buffers cannot be grown.
+ */
+bool add_dir_entry(dir_entries_t* entries, const char* name, file_stat_t* fileResult, jlong inode) {
+    if (entries->count == entries->capacity) {
+        jsize capacity = entries->capacity == 0 ? 64 : entries->capacity * 2;
+        jint* nameEnds = (jint*) realloc(entries->nameEnds, capacity * sizeof(jint));
+        if (nameEnds == NULL) {
+            return false;
+        }
+        entries->nameEnds = nameEnds;
+        jbyte* types = (jbyte*) realloc(entries->types, capacity * sizeof(jbyte));
+        if (types == NULL) {
+            return false;
+        }
+        entries->types = types;
+        jlong* sizes = (jlong*) realloc(entries->sizes, capacity * sizeof(jlong));
+        if (sizes == NULL) {
+            return false;
+        }
+        entries->sizes = sizes;
+        jlong* lastModified = (jlong*) realloc(entries->lastModified, capacity * sizeof(jlong));
+        if (lastModified == NULL) {
+            return false;
+        }
+        entries->lastModified = lastModified;
+        jlong* inodes = (jlong*) realloc(entries->inodes, capacity * sizeof(jlong));
+        if (inodes == NULL) {
+            return false;
+        }
+        entries->inodes = inodes;
+        entries->capacity = capacity;
+    }
+    size_t nameLength = strlen(name);
+    if (entries->namesLength + nameLength > (size_t) entries->namesCapacity) {
+        jsize namesCapacity = entries->namesCapacity == 0 ? 4096 : entries->namesCapacity * 2;
+        while ((size_t) namesCapacity < entries->namesLength + nameLength) {
+            namesCapacity *= 2;
+        }
+        char* names = (char*) realloc(entries->names, namesCapacity);
+        if (names == NULL) {
+            return false;
+        }
+        entries->names = names;
+        entries->namesCapacity = namesCapacity;
+    }
+    memcpy(entries->names + entries->namesLength, name, nameLength);
+    entries->namesLength += nameLength;
+    entries->nameEnds[entries->count] = entries->namesLength;
+    entries->types[entries->count] = (jbyte) fileResult->fileType;
+    entries->sizes[entries->count] = fileResult->size;
+    entries->lastModified[entries->count] = fileResult->lastModified;
+    entries->inodes[entries->count] = inode;
+    entries->count++;
+    return true;
+}
 
-        jstring childName = char_to_java(env, entry.d_name, result);
-        env->CallVoidMethod(contents, mid, childName, fileResult.fileType, fileResult.size, fileResult.lastModified);
+/*
+ * Copies the entries into Java arrays and passes them to the given CompactDirList, using a single call.
+ */
+void dir_entries_to_java(JNIEnv* env, dir_entries_t* entries, bool namesAndTypesOnly, jobject contents, jobject result) {
+    jbyteArray names = env->NewByteArray(entries->namesLength);
+    jintArray nameEnds = env->NewIntArray(entries->count);
+    jbyteArray types = env->NewByteArray(entries->count);
+    jlongArray sizes = namesAndTypesOnly ? NULL : env->NewLongArray(entries->count);
+    jlongArray lastModified = namesAndTypesOnly ? NULL : env->NewLongArray(entries->count);
+    jlongArray inodes = env->NewLongArray(entries->count);
+    if (env->ExceptionCheck()) {
+        return;
     }
+    env->SetByteArrayRegion(names, 0, entries->namesLength, (jbyte*) entries->names);
+    env->SetIntArrayRegion(nameEnds, 0, entries->count, entries->nameEnds);
+    env->SetByteArrayRegion(types, 0, entries->count, entries->types);
+    env->SetLongArrayRegion(inodes, 0, entries->count, entries->inodes);
+    if (!namesAndTypesOnly) {
+        env->SetLongArrayRegion(sizes, 0, entries->count, entries->sizes);
+        env->SetLongArrayRegion(lastModified, 0, entries->count, entries->lastModified);
+    }
+    env->CallVoidMethod(contents, jni_ids.compactDirListEntries, names, nameEnds, types, sizes, lastModified, inodes);
+}
+
+/*
+ * Receives an entry of a directory, along with its inode number, or 0 when it is not known. Returns false when the entry
+ * cannot be accepted because buffers cannot be grown.
+ */
+typedef bool (*dir_entry_visitor_t)(void* context, const char* name, file_stat_t* details, jlong inode);
+
+bool add_dir_entry_visitor(void* context, const char* name, file_stat_t* details, jlong inode) {
+    return add_dir_entry((dir_entries_t*) context, name, details, inode);
+}
+
+/*
+ * Passes each entry of the given directory to the given visitor, in the order they are read, and closes the directory.
+ * Returns false on failure.
+ */
+bool visit_dir_entries(JNIEnv* env, DIR* dir, bool followLink, bool namesAndTypesOnly, dir_entry_visitor_t visitor, void* context, jobject result) {
+    // Query entries relative to the open directory, so the kernel does not need to resolve the full path of each entry
+    int dirFd = dirfd(dir);
+    int statFlags = followLink ? 0 : AT_SYMLINK_NOFOLLOW;
+    bool failed = false;
+    while (true) {
+        // readdir() is safe here, as the DIR is not shared with other threads
+        errno = 0;
+        struct dirent* entry = readdir(dir);
+        if (entry == NULL) {
+            if (errno != 0) {
+                mark_failed_with_errno(env, "could not read directory entry", result);
+                failed = true;
+            }
+            break;
+        }
+        if (strcmp(".", entry->d_name) == 0 || strcmp("..", entry->d_name) == 0) {
+            continue;
+        }
 
+        file_stat_t fileResult;
+        // Use the inode recorded in the directory unless the entry is queried below. It is the same as the one reported by
+        // stat, except for mount points
+        jlong inode = (jlong) entry->d_ino;
+        if (!namesAndTypesOnly || !unpackDirentType(entry, followLink, &fileResult)) {
+            struct stat fileInfo;
+            if (fstatat(dirFd, entry->d_name, &fileInfo, statFlags) != 0) {
+                if (!followLink || errno != ENOENT) {
+                    mark_failed_with_errno(env, "could not stat file", result);
+                    failed = true;
+                    break;
+                }
+                fileResult.fileType = FILE_TYPE_MISSING;
+                fileResult.size = 0;
+                fileResult.lastModified = 0;
+                inode = 0;
+            } else {
+                unpackStat(&fileInfo, &fileResult);
+                inode = (jlong) fileInfo.st_ino;
+            }
+            if (namesAndTypesOnly) {
+                fileResult.size = 0;
+                fileResult.lastModified = 0;
+            }
+        }
+
+        if (!visitor(context, entry->d_name, &fileResult, inode)) {
+            mark_failed_with_message(env, "could not allocate buffers", result);
+            failed = true;
+            break;
+        }
+    }
     closedir(dir);
+    return !failed;
+}
+
+/*
+ * Passes each entry of the directory with the given path to the given visitor. Returns false on failure.
+ */
+bool visit_dir_entries(JNIEnv* env, jstring path, bool followLink, bool namesAndTypesOnly, dir_entry_visitor_t visitor, void* context, jobject result) {
+    char* pathStr = java_to_char(env, path, result);
+    if (pathStr == NULL) {
+        return false;
+    }
+    DIR* dir = opendir(pathStr);
     free(pathStr);
+    if (dir == NULL) {
+        mark_failed_with_errno(env, "could not open directory", result);
+        return false;
+    }
+    return visit_dir_entries(env, dir, followLink, namesAndTypesOnly, visitor, context, result);
+}
+
+JNIEXPORT void JNICALL
+Java_net_rubygrapefruit_platform_internal_jni_PosixFileFunctions_readdir(JNIEnv* env, jclass target, jstring path, jboolean followLink, jboolean namesAndTypesOnly, jobject contents, jobject result) {
+    dir_entries_t entries;
+    memset(&entries, 0, sizeof(entries));
+    if (visit_dir_entries(env, path, followLink, namesAndTypesOnly, add_dir_entry_visitor, &entries, result)) {
+        dir_entries_to_java(env, &entries, namesAndTypesOnly, contents, result);
+    }
+    free_dir_entries(&entries);
+}
+
+// The seed of the second hash of a directory fingerprint
+#define FINGERPRINT_SEED 0x9e3779b97f4a7c15ULL
+
+/*
+ * Combines the hashes of the entries of a directory. The hashes are added together, so that the result does not depend on
+ * the order in which the entries are read, without the entries having to be collected and sorted.
+ */
+typedef struct dir_fingerprint {
+    uint64_t first;
+    uint64_t second;
+    uint64_t count;
+} dir_fingerprint_t;
+
+void put_long(unsigned char* buffer, jlong value) {
+    // Use a fixed byte order, so fingerprints do not depend on the machine
+    for (int i = 0; i < 8; i++) {
+        buffer[i] = (unsigned char) ((uint64_t) value >> (8 * i));
+    }
+}
+
+uint64_t xxh64_of(const void* name, size_t nameLength, const unsigned char* details, size_t detailsLength, uint64_t seed) {
+    xxh64_state_t state;
+    xxh64_init(&state, seed);
+    xxh64_update(&state, name, nameLength);
+    xxh64_update(&state, details, detailsLength);
+    return xxh64_digest(&state);
+}
+
+bool fingerprint_dir_entry(void* context, const char* name, file_stat_t* details, jlong inode) {
+    dir_fingerprint_t* fingerprint = (dir_fingerprint_t*) context;
+    // Names cannot contain a null byte, so one is used to terminate each name
+    unsigned char buffer[18];
+    buffer[0] = 0;
+    buffer[1] = (unsigned char) details->fileType;
+    put_long(buffer + 2, details->size);
+    put_long(buffer + 10, details->lastModified);
+    size_t nameLength = strlen(name);
+    fingerprint->first += xxh64_of(name, nameLength, buffer, sizeof(buffer), 0);
+    fingerprint->second += xxh64_of(name, nameLength, buffer, sizeof(buffer), FINGERPRINT_SEED);
+    fingerprint->count++;
+    return true;
+}
+
+JNIEXPORT void JNICALL
+Java_net_rubygrapefruit_platform_internal_jni_PosixFileFunctions_fingerprintDir(JNIEnv* env, jclass target, jstring path, jboolean followLink, jboolean namesAndTypesOnly, jbyteArray digest, jobject result) {
+    dir_fingerprint_t fingerprint;
+    memset(&fingerprint, 0, sizeof(fingerprint));
+    if (!visit_dir_entries(env, path, followLink, namesAndTypesOnly, fingerprint_dir_entry, &fingerprint, result)) {
+        return;
+    }
+    // Mix the sums, so that the digest is not a simple function of the hashes of the entries
+    unsigned char sums[24];
+    put_long(sums, (jlong) fingerprint.first);
+    put_long(sums + 8, (jlong) fingerprint.second);
+    put_long(sums + 16, (jlong) fingerprint.count);
+    unsigned char digestBuf[16];
+    xxh64_canonical(xxh64_of(sums, sizeof(sums), NULL, 0, 0), digestBuf);
+    xxh64_canonical(xxh64_of(sums, sizeof(sums), NULL, 0, FINGERPRINT_SEED), digestBuf + 8);
+    env->SetByteArrayRegion(digest, 0, sizeof(digestBuf), (jbyte*) digestBuf);
+}
+
+typedef struct file_tree_walk {
+    jobject walk;
+    jobject result;
+    bool followLinks;
+} file_tree_walk_t;
+
+/*
+ * Reports that the entries of the current directory could not be read, using the current value of errno.
+ */
+int walk_failed(JNIEnv* env, file_tree_walk_t* walk) {
+    int error = errno;
+    jint visitResult = env->CallIntMethod(walk->walk, jni_ids.fileTreeWalkFailed, map_error_code(error), error);
+    return env->ExceptionCheck() ? VISIT_RESULT_TERMINATE : visitResult;
+}
+
+/*
+ * Reports that the entry of the current directory with the given name could not be queried, using the current value of errno.
+ */
+int walk_stat_failed(JNIEnv* env, file_tree_walk_t* walk, const char* name) {
+    int error = errno;
+    jstring childName = char_to_java(env, name, walk->result);
+    if (childName == NULL) {
+        return VISIT_RESULT_TERMINATE;
+    }
+    jint visitResult = env->CallIntMethod(walk->walk, jni_ids.fileTreeWalkStatFailed, childName, map_error_code(error), error);
+    env->DeleteLocalRef(childName);
+    return env->ExceptionCheck() ? VISIT_RESULT_TERMINATE : visitResult;
+}
+
+/*
+ * Visits the entries of the directory with the given file descriptor, and takes ownership of the descriptor.
+ * Entries are queried relative to the open directory, so the kernel does not need to resolve the full path of each entry.
+ *
+ * Returns VISIT_RESULT_TERMINATE when the walk should stop.
+ */
+int walk_dir(JNIEnv* env, file_tree_walk_t* walk, int dirFd) {
+    DIR* dir = fdopendir(dirFd);
+    if (dir == NULL) {
+        int visitResult = walk_failed(env, walk);
+        close(dirFd);
+        return visitResult;
+    }
+    int visitResult = VISIT_RESULT_CONTINUE;
+    while (visitResult != VISIT_RESULT_TERMINATE) {
+        // readdir() is safe here, as the DIR is not shared with other threads
+        errno = 0;
+        struct dirent* entry = readdir(dir);
+        if (entry == NULL) {
+            if (errno != 0) {
+                visitResult = walk_failed(env, walk);
+            }
+            break;
+        }
+        if (strcmp(".", entry->d_name) == 0 || strcmp("..", entry->d_name) == 0) {
+            continue;
+        }
+
+        struct stat fileInfo;
+        file_stat_t fileResult;
+        if (fstatat(dirfd(dir), entry->d_name, &fileInfo, walk->followLinks ? 0 : AT_SYMLINK_NOFOLLOW) != 0) {
+            if (errno != ENOENT) {
+                visitResult = walk_stat_failed(env, walk, entry->d_name);
+                continue;
+            }
+            if (!walk->followLinks || fstatat(dirfd(dir), entry->d_name, &fileInfo, AT_SYMLINK_NOFOLLOW) != 0) {
+                // Entry has been removed since the directory was read
+                continue;
+            }
+            // A symlink whose target does not exist
+            fileResult.fileType = FILE_TYPE_MISSING;
+            fileResult.size = 0;
+            fileResult.lastModified = 0;
+            fileInfo.st_ino = 0;
+        } else {
+            unpackStat(&fileInfo, &fileResult);
+        }
+
+        jstring childName = char_to_java(env, entry->d_name, walk->result);
+        if (childName == NULL) {
+            visitResult = VISIT_RESULT_TERMINATE;
+            break;
+        }
+        if (fileResult.fileType == FILE_TYPE_DIRECTORY) {
+            visitResult = env->CallIntMethod(walk->walk, jni_ids.fileTreeWalkEnterDirectory, childName, fileResult.lastModified, (jlong) fileInfo.st_dev, (jlong) fileInfo.st_ino);
+            if (!env->ExceptionCheck() && visitResult == VISIT_RESULT_CONTINUE) {
+                int childFd = openat(dirfd(dir), entry->d_name, O_RDONLY | O_DIRECTORY | O_CLOEXEC | (walk->followLinks ? 0 : O_NOFOLLOW));
+                if (childFd < 0) {
+                    visitResult = walk_failed(env, walk);
+                } else {
+                    visitResult = walk_dir(env, walk, childFd);
+                }
+                if (visitResult != VISIT_RESULT_TERMINATE) {
+                    visitResult = env->CallIntMethod(walk->walk, jni_ids.fileTreeWalkExitDirectory);
+                }
+            }
+        } else {
+            visitResult = env->CallIntMethod(walk->walk, jni_ids.fileTreeWalkVisitFile, childName, fileResult.fileType, fileResult.size, fileResult.lastModified, (jlong) fileInfo.st_ino);
+        }
+        env->DeleteLocalRef(childName);
+        if (env->ExceptionCheck()) {
+            visitResult = VISIT_RESULT_TERMINATE;
+        }
+    }
+    closedir(dir);
+    return visitResult;
+}
+
+JNIEXPORT void JNICALL
+Java_net_rubygrapefruit_platform_internal_jni_PosixFileFunctions_walk(JNIEnv* env, jclass target, jstring path, jboolean followLinks, jobject walk, jobject result) {
+    file_tree_walk_t treeWalk;
+    treeWalk.walk = walk;
+    treeWalk.result = result;
+    treeWalk.followLinks = followLinks;
+
+    char* pathStr = java_to_char(env, path, result);
+    if (pathStr == NULL) {
+        return;
+    }
+    int dirFd = open(pathStr, O_RDONLY | O_DIRECTORY | O_CLOEXEC);
+    free(pathStr);
+    if (dirFd < 0) {
+        mark_failed_with_errno(env, "could not open directory", result);
+        return;
+    }
+    struct stat fileInfo;
+    if (fstat(dirFd, &fileInfo) != 0) {
+        mark_failed_with_errno(env, "could not stat directory", result);
+        close(dirFd);
+        return;
+    }
+    file_stat_t fileResult;
+    unpackStat(&fileInfo, &fileResult);
+
+    jint visitResult = env->CallIntMethod(walk, jni_ids.fileTreeWalkEnterDirectory, NULL, fileResult.lastModified, (jlong) fileInfo.st_dev, (jlong) fileInfo.st_ino);
+    if (env->ExceptionCheck() || visitResult != VISIT_RESULT_CONTINUE) {
+        close(dirFd);
+        return;
+    }
+    if (walk_dir(env, &treeWalk, dirFd) != VISIT_RESULT_TERMINATE) {
+        env->CallIntMethod(walk, jni_ids.fileTreeWalkExitDirectory);
+    }
 }
 
 JNIEXPORT void JNICALL
@@ -273,29 +999,24 @@ Java_net_rubygrapefruit_platform_internal_jni_PosixFileFunctions_symlink(JNIEnv*
     }
 }
 
-JNIEXPORT jstring JNICALL
-Java_net_rubygrapefruit_platform_internal_jni_PosixFileFunctions_readlink(JNIEnv* env, jclass target, jstring path, jobject result) {
+/*
+ * Reads the contents of the symlink with the given path, relative to the given directory.
+ */
+jstring read_link_at(JNIEnv* env, int dirFd, const char* path, jobject result) {
     struct stat link_info;
-    char* pathStr = java_to_char(env, path, result);
-    if (pathStr == NULL) {
-        return NULL;
-    }
-    int retval = lstat(pathStr, &link_info);
+    int retval = fstatat(dirFd, path, &link_info, AT_SYMLINK_NOFOLLOW);
     if (retval != 0) {
-        free(pathStr);
         mark_failed_with_errno(env, "could not lstat file", result);
         return NULL;
     }
 
     char* contents = (char*) malloc(link_info.st_size + 1);
     if (contents == NULL) {
-        free(pathStr);
         mark_failed_with_message(env, "could not create array", result);
         return NULL;
     }
 
-    retval = readlink(pathStr, contents, link_info.st_size);
-    free(pathStr);
+    retval = readlinkat(dirFd, path, contents, link_info.st_size);
     if (retval < 0) {
         free(contents);
         mark_failed_with_errno(env, "could not readlink", result);
@@ -307,6 +1028,99 @@ Java_net_rubygrapefruit_platform_internal_jni_PosixFileFunctions_readlink(JNIEnv
     return contents_str;
 }
 
+JNIEXPORT jstring JNICALL
+Java_net_rubygrapefruit_platform_internal_jni_PosixFileFunctions_readlink(JNIEnv* env, jclass target, jstring path, jobject result) {
+    char* pathStr = java_to_char(env, path, result);
+    if (pathStr == NULL) {
+        return NULL;
+    }
+    jstring contents = read_link_at(env, AT_FDCWD, pathStr, result);
+    free(pathStr);
+    return contents;
+}
+
+/*
+ * Directory handle functions
+ */
+
+/*
+ * Opens the directory with the given path, relative to the given directory. Returns -1 on failure.
+ */
+int open_dir_at(JNIEnv* env, int dirFd, jstring path, jobject result) {
+    char* pathStr = java_to_char(env, path, result);
+    if (pathStr == NULL) {
+        return -1;
+    }
+    // Open for reading rather than with O_PATH, so that the descriptor can also be used to list the directory
+    int fd = openat(dirFd, pathStr, O_RDONLY | O_DIRECTORY | O_CLOEXEC);
+    free(pathStr);
+    if (fd < 0) {
+        mark_failed_with_errno(env, "could not open directory", result);
+    }
+    return fd;
+}
+
+JNIEXPORT jint JNICALL
+Java_net_rubygrapefruit_platform_internal_jni_PosixFileFunctions_openDirectory(JNIEnv* env, jclass target, jstring path, jobject result) {
+    return open_dir_at(env, AT_FDCWD, path, result);
+}
+
+JNIEXPORT jint JNICALL
+Java_net_rubygrapefruit_platform_internal_jni_PosixFileFunctions_openDirectoryAt(JNIEnv* env, jclass target, jint dirFd, jstring path, jobject result) {
+    return open_dir_at(env, dirFd, path, result);
+}
+
+JNIEXPORT void JNICALL
+Java_net_rubygrapefruit_platform_internal_jni_PosixFileFunctions_closeDirectory(JNIEnv* env, jclass target, jint dirFd, jobject result) {
+    if (close(dirFd) != 0) {
+        mark_failed_with_errno(env, "could not close directory", result);
+    }
+}
+
+JNIEXPORT void JNICALL
+Java_net_rubygrapefruit_platform_internal_jni_PosixFileFunctions_statAt(JNIEnv* env, jclass target, jint dirFd, jstring path, jboolean followLink, jobject dest, jobject result) {
+    char* pathStr = java_to_char(env, path, result);
+    if (pathStr == NULL) {
+        return;
+    }
+    stat_at(env, dirFd, pathStr, followLink, dest, result);
+    free(pathStr);
+}
+
+JNIEXPORT void JNICALL
+Java_net_rubygrapefruit_platform_internal_jni_PosixFileFunctions_readdirAt(JNIEnv* env, jclass target, jint dirFd, jboolean followLink, jboolean namesAndTypesOnly, jobject contents, jobject result) {
+    // Open the directory again rather than duplicating the descriptor, so that the read position is not shared with
+    // other threads listing the same directory
+    int listFd = openat(dirFd, ".", O_RDONLY | O_DIRECTORY | O_CLOEXEC);
+    if (listFd < 0) {
+        mark_failed_with_errno(env, "could not open directory", result);
+        return;
+    }
+    DIR* dir = fdopendir(listFd);
+    if (dir == NULL) {
+        mark_failed_with_errno(env, "could not open directory", result);
+        close(listFd);
+        return;
+    }
+    dir_entries_t entries;
+    memset(&entries, 0, sizeof(entries));
+    if (visit_dir_entries(env, dir, followLink, namesAndTypesOnly, add_dir_entry_visitor, &entries, result)) {
+        dir_entries_to_java(env, &entries, namesAndTypesOnly, contents, result);
+    }
+    free_dir_entries(&entries);
+}
+
+JNIEXPORT jstring JNICALL
+Java_net_rubygrapefruit_platform_internal_jni_PosixFileFunctions_readlinkAt(JNIEnv* env, jclass target, jint dirFd, jstring path, jobject result) {
+    char* pathStr = java_to_char(env, path, result);
+    if (pathStr == NULL) {
+        return NULL;
+    }
+    jstring contents = read_link_at(env, dirFd, pathStr, result);
+    free(pathStr);
+    return contents;
+}
+
 /*
  * Process functions
  */
@@ -410,11 +1224,8 @@ Java_net_rubygrapefruit_platform_internal_jni_PosixTerminalFunctions_getTerminal
         mark_failed_with_errno(env, "could not fetch terminal size", result);
         return;
     }
-    jclass dimensionClass = env->GetObjectClass(dimension);
-    jfieldID widthField = env->GetFieldID(dimensionClass, "cols", "I");
-    env->SetIntField(dimension, widthField, screen_size.ws_col);
-    jfieldID heightField = env->GetFieldID(dimensionClass, "rows", "I");
-    env->SetIntField(dimension, heightField, screen_size.ws_row);
+    env->SetIntField(dimension, jni_ids.terminalSizeCols, screen_size.ws_col);
+    env->SetIntField(dimension, jni_ids.terminalSizeRows, screen_size.ws_row);
 }
 
 int input_init = 0;
@@ -440,16 +1251,4 @@ Java_net_rubygrapefruit_platform_internal_jni_PosixTerminalFunctions_resetInputM
     tcsetattr(STDIN_FILENO, TCSANOW, &original_input_mode);
 }
 
-JNIEXPORT jint JNICALL
-JNI_OnLoad(JavaVM* jvm, void*) {
-    JNIEnv* env;
-    jint ret = jvm->GetEnv((void**) &env, JNI_VERSION_1_6);
-    if (ret != JNI_OK) {
-        return -1;
-    }
-    jclass destClass = env->FindClass("net/rubygrapefruit/platform/internal/FileStat");
-    fileStatDetailsMethodId = env->GetMethodID(destClass, "details", "(IIIIJJI)V");
-    return JNI_VERSION_1_6;
-}
-
 #endif
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2012 Adam Murdoch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/*
+ * Unix domain socket functions.
+ */
+#ifndef _WIN32
+
+#include "generic.h"
+#include "net_rubygrapefruit_platform_internal_jni_UnixSocketFunctions.h"
+#include <errno.h>
+#include <fcntl.h>
+#include <stdlib.h>
+#include <string.h>
+#include <sys/socket.h>
+#include <sys/un.h>
+#include <unistd.h>
+
+// Data is copied between the Java arrays and the socket in chunks of this size
+#define SOCKET_BUFFER_SIZE (16 * 1024)
+
+#ifndef MSG_NOSIGNAL
+#define MSG_NOSIGNAL 0
+#endif
+
+/*
+ * Fills in the address of the socket with the given path. Returns false on failure.
+ */
+bool socket_address(JNIEnv* env, jstring path, struct sockaddr_un* address, jobject result) {
+    char* pathStr = java_to_char(env, path, result);
+    if (pathStr == NULL) {
+        return false;
+    }
+    memset(address, 0, sizeof(struct sockaddr_un));
+    address->sun_family = AF_UNIX;
+    if (strlen(pathStr) >= sizeof(address->sun_path)) {
+        free(pathStr);
+        mark_failed_with_message(env, "socket path is too long", result);
+        return false;
+    }
+    strcpy(address->sun_path, pathStr);
+    free(pathStr);
+    return true;
+}
+
+int new_socket(JNIEnv* env, jobject result) {
+    int fd = socket(AF_UNIX, SOCK_STREAM, 0);
+    if (fd < 0) {
+        mark_failed_with_errno(env, "could not create socket", result);
+        return -1;
+    }
+    // Do not leak the socket into child processes
+    fcntl(fd, F_SETFD, FD_CLOEXEC);
+    return fd;
+}
+
+JNIEXPORT jint JNICALL
+Java_net_rubygrapefruit_platform_internal_jni_UnixSocketFunctions_listen(JNIEnv* env, jclass target, jstring path, jint backlog, jobject result) {
+    struct sockaddr_un address;
+    if (!socket_address(env, path, &address, result)) {
+        return -1;
+    }
+    int fd = new_socket(env, result);
+    if (fd < 0) {
+        return -1;
+    }
+    if (bind(fd, (struct sockaddr*) &address, sizeof(address)) != 0) {
+        mark_failed_with_errno(env, "could not bind socket", result);
+        close(fd);
+        return -1;
+    }
+    if (listen(fd, backlog) != 0) {
+        mark_failed_with_errno(env, "could not listen on socket", result);
+        close(fd);
+        return -1;
+    }
+    return fd;
+}
+
+JNIEXPORT jint JNICALL
+Java_net_rubygrapefruit_platform_internal_jni_UnixSocketFunctions_accept(JNIEnv* env, jclass target, jint fd, jobject result) {
+    while (true) {
+        int connection = accept(fd, NULL, NULL);
+        if (connection >= 0) {
+            fcntl(connection, F_SETFD, FD_CLOEXEC);
+            return connection;
+        }
+        if (errno != EINTR && errno != ECONNABORTED) {
+            mark_failed_with_errno(env, "could not accept connection", result);
+            return -1;
+        }
+    }
+}
+
+JNIEXPORT jint JNICALL
+Java_net_rubygrapefruit_platform_internal_jni_UnixSocketFunctions_connect(JNIEnv* env, jclass target, jstring path, jobject result) {
+    struct sockaddr_un address;
+    if (!socket_address(env, path, &address, result)) {
+        return -1;
+    }
+    int fd = new_socket(env, result);
+    if (fd < 0) {
+        return -1;
+    }
+    if (connect(fd, (struct sockaddr*) &address, sizeof(address)) != 0) {
+        mark_failed_with_errno(env, "could not connect to socket", result);
+        close(fd);
+        return -1;
+    }
+    return fd;
+}
+
+JNIEXPORT jint JNICALL
+Java_net_rubygrapefruit_platform_internal_jni_UnixSocketFunctions_read(JNIEnv* env, jclass target, jint fd, jbyteArray buffer, jint offset, jint length, jobject result) {
+    char chunk[SOCKET_BUFFER_SIZE];
+    size_t count = length < SOCKET_BUFFER_SIZE ? length : SOCKET_BUFFER_SIZE;
+    while (true) {
+        ssize_t bytes = recv(fd, chunk, count, 0);
+        if (bytes >= 0) {
+            env->SetByteArrayRegion(buffer, offset, (jsize) bytes, (jbyte*) chunk);
+            return (jint) bytes;
+        }
+        if (errno != EINTR) {
+            mark_failed_with_errno(env, "could not read from socket", result);
+            return -1;
+        }
+    }
+}
+
+JNIEXPORT void JNICALL
+Java_net_rubygrapefruit_platform_internal_jni_UnixSocketFunctions_write(JNIEnv* env, jclass target, jint fd, jbyteArray buffer, jint offset, jint length, jobject result) {
+    char chunk[SOCKET_BUFFER_SIZE];
+    while (length > 0) {
+        jint count = length < SOCKET_BUFFER_SIZE ? length : SOCKET_BUFFER_SIZE;
+        env->GetByteArrayRegion(buffer, offset, count, (jbyte*) chunk);
+        jint written = 0;
+        while (written < count) {
+            // Report a closed connection as a failure rather than raising SIGPIPE
+            ssize_t bytes = send(fd, chunk + written, count - written, MSG_NOSIGNAL);
+            if (bytes < 0) {
+                if (errno == EINTR) {
+                    continue;
+                }
+                mark_failed_with_errno(env, "could not write to socket", result);
+                return;
+            }
+            written += (jint) bytes;
+        }
+        offset += count;
+        length -= count;
+    }
+}
+
+JNIEXPORT void JNICALL
+Java_net_rubygrapefruit_platform_internal_jni_UnixSocketFunctions_shutdown(JNIEnv* env, jclass target, jint fd) {
+    shutdown(fd, SHUT_RDWR);
+}
+
+JNIEXPORT void JNICALL
+Java_net_rubygrapefruit_platform_internal_jni_UnixSocketFunctions_close(JNIEnv* env, jclass target, jint fd) {
+    close(fd);
+}
+
+#endif
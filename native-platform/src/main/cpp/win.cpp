@@ -18,6 +18,7 @@
 
 #include "win.h"
 #include "generic.h"
+#include "jni_ids.h"
 #include "net_rubygrapefruit_platform_internal_jni_WindowsMemoryFunctions.h"
 #include "net_rubygrapefruit_platform_internal_jni_NativeLibraryFunctions.h"
 #include "net_rubygrapefruit_platform_internal_jni_PosixFileSystemFunctions.h"
@@ -195,8 +196,6 @@ DWORD get_file_stat(wchar_t* pathStr, jboolean followLink, file_stat_t* pFileSta
 
 JNIEXPORT void JNICALL
 Java_net_rubygrapefruit_platform_internal_jni_NativeLibraryFunctions_getSystemInfo(JNIEnv* env, jclass target, jobject info, jobject result) {
-    jclass infoClass = env->GetObjectClass(info);
-
     OSVERSIONINFOEX versionInfo;
     versionInfo.dwOSVersionInfoSize = sizeof(OSVERSIONINFOEX);
     if (GetVersionEx((OSVERSIONINFO*) &versionInfo) == 0) {
@@ -227,8 +226,7 @@ Java_net_rubygrapefruit_platform_internal_jni_NativeLibraryFunctions_getSystemIn
     }
     free(computerName);
 
-    jmethodID method = env->GetMethodID(infoClass, "windows", "(IIIZLjava/lang/String;Ljava/lang/String;)V");
-    env->CallVoidMethod(info, method, versionInfo.dwMajorVersion, versionInfo.dwMinorVersion,
+    env->CallVoidMethod(info, jni_ids.systemInfoWindows, versionInfo.dwMajorVersion, versionInfo.dwMinorVersion,
         versionInfo.dwBuildNumber, versionInfo.wProductType == VER_NT_WORKSTATION,
         arch, hostname);
 }
@@ -335,9 +333,6 @@ Java_net_rubygrapefruit_platform_internal_jni_PosixProcessFunctions_setEnvironme
 
 JNIEXPORT void JNICALL
 Java_net_rubygrapefruit_platform_internal_jni_PosixFileSystemFunctions_listFileSystems(JNIEnv* env, jclass target, jobject info, jobject result) {
-    jclass info_class = env->GetObjectClass(info);
-    jmethodID method = env->GetMethodID(info_class, "add", "(Ljava/lang/String;Ljava/lang/String;Ljava/lang/String;ZZZ)V");
-    jmethodID unknownFsMethod = env->GetMethodID(info_class, "addForUnknownCaseSensitivity", "(Ljava/lang/String;Ljava/lang/String;Ljava/lang/String;Z)V");
 
     DWORD required = GetLogicalDriveStringsW(0, NULL);
     if (required == 0) {
@@ -399,7 +394,7 @@ Java_net_rubygrapefruit_platform_internal_jni_PosixFileSystemFunctions_listFileS
             if (available) {
                 DWORD flags;
                 if (GetVolumeInformationW(cur, NULL, 0, NULL, NULL, &flags, fileSystemName, MAX_PATH + 1) == 0) {
-                    env->CallVoidMethod(info, unknownFsMethod,
+                    env->CallVoidMethod(info, jni_ids.fileSystemListAddForUnknownCaseSensitivity,
                         mount_point,
                         NULL,
                         device_name,
@@ -416,7 +411,7 @@ Java_net_rubygrapefruit_platform_internal_jni_PosixFileSystemFunctions_listFileS
             }
 
             jstring file_system_type = wchar_to_java(env, fileSystemName, wcslen(fileSystemName), result);
-            env->CallVoidMethod(info, method,
+            env->CallVoidMethod(info, jni_ids.fileSystemListAdd,
                 mount_point,
                 file_system_type,
                 device_name,
@@ -431,12 +426,6 @@ Java_net_rubygrapefruit_platform_internal_jni_PosixFileSystemFunctions_listFileS
 
 JNIEXPORT void JNICALL
 Java_net_rubygrapefruit_platform_internal_jni_WindowsFileFunctions_stat(JNIEnv* env, jclass target, jstring path, jboolean followLink, jobject dest, jobject result) {
-    jclass destClass = env->GetObjectClass(dest);
-    jmethodID mid = env->GetMethodID(destClass, "details", "(IJJ)V");
-    if (mid == NULL) {
-        mark_failed_with_message(env, "could not find method", result);
-        return;
-    }
 
     wchar_t* pathStr = java_to_wchar_path(env, path);
     file_stat_t fileStat;
@@ -446,17 +435,11 @@ Java_net_rubygrapefruit_platform_internal_jni_WindowsFileFunctions_stat(JNIEnv*
         mark_failed_with_code(env, "could not file attributes", errorCode, NULL, result);
         return;
     }
-    env->CallVoidMethod(dest, mid, fileStat.fileType, fileStat.size, fileStat.lastModified);
+    env->CallVoidMethod(dest, jni_ids.windowsFileStatDetails, fileStat.fileType, fileStat.size, fileStat.lastModified);
 }
 
 JNIEXPORT void JNICALL
 Java_net_rubygrapefruit_platform_internal_jni_WindowsFileFunctions_readdir(JNIEnv* env, jclass target, jstring path, jboolean followLink, jobject contents, jobject result) {
-    jclass contentsClass = env->GetObjectClass(contents);
-    jmethodID mid = env->GetMethodID(contentsClass, "addFile", "(Ljava/lang/String;IJJ)V");
-    if (mid == NULL) {
-        mark_failed_with_message(env, "could not find method", result);
-        return;
-    }
 
     WIN32_FIND_DATAW entry;
     wchar_t* pathStr = java_to_wchar_path(env, path);
@@ -498,7 +481,7 @@ Java_net_rubygrapefruit_platform_internal_jni_WindowsFileFunctions_readdir(JNIEn
 
         // Add entry
         jstring childName = wchar_to_java(env, entry.cFileName, wcslen(entry.cFileName), result);
-        env->CallVoidMethod(contents, mid, childName, fileInfo.fileType, fileInfo.size, fileInfo.lastModified);
+        env->CallVoidMethod(contents, jni_ids.dirListAddFile, childName, fileInfo.fileType, fileInfo.size, fileInfo.lastModified);
     } while (FindNextFileW(dirHandle, &entry) != 0);
 
     DWORD error = GetLastError();
@@ -615,11 +598,8 @@ Java_net_rubygrapefruit_platform_internal_jni_WindowsConsoleFunctions_getConsole
         return;
     }
 
-    jclass dimensionClass = env->GetObjectClass(dimension);
-    jfieldID widthField = env->GetFieldID(dimensionClass, "cols", "I");
-    env->SetIntField(dimension, widthField, console_info.srWindow.Right - console_info.srWindow.Left + 1);
-    jfieldID heightField = env->GetFieldID(dimensionClass, "rows", "I");
-    env->SetIntField(dimension, heightField, console_info.srWindow.Bottom - console_info.srWindow.Top + 1);
+    env->SetIntField(dimension, jni_ids.terminalSizeCols, console_info.srWindow.Right - console_info.srWindow.Left + 1);
+    env->SetIntField(dimension, jni_ids.terminalSizeRows, console_info.srWindow.Bottom - console_info.srWindow.Top + 1);
 }
 
 HANDLE console_buffer = NULL;
@@ -655,15 +635,11 @@ Java_net_rubygrapefruit_platform_internal_jni_WindowsConsoleFunctions_resetInput
 }
 
 void control_key(JNIEnv* env, jint key, jobject char_buffer, jobject result) {
-    jclass bufferClass = env->GetObjectClass(char_buffer);
-    jmethodID method = env->GetMethodID(bufferClass, "key", "(I)V");
-    env->CallVoidMethod(char_buffer, method, key);
+    env->CallVoidMethod(char_buffer, jni_ids.charInputBufferKey, key);
 }
 
 void character(JNIEnv* env, jchar char_value, jobject char_buffer, jobject result) {
-    jclass bufferClass = env->GetObjectClass(char_buffer);
-    jmethodID method = env->GetMethodID(bufferClass, "character", "(C)V");
-    env->CallVoidMethod(char_buffer, method, char_value);
+    env->CallVoidMethod(char_buffer, jni_ids.charInputBufferCharacter, char_value);
 }
 
 JNIEXPORT void JNICALL
@@ -979,8 +955,6 @@ Java_net_rubygrapefruit_platform_internal_jni_WindowsRegistryFunctions_getString
 JNIEXPORT jboolean JNICALL
 Java_net_rubygrapefruit_platform_internal_jni_WindowsRegistryFunctions_getSubkeys(JNIEnv* env, jclass target, jint keyNum, jstring subkey, jobject subkeys, jobject result) {
     wchar_t* subkeyStr = java_to_wchar(env, subkey, result);
-    jclass subkeys_class = env->GetObjectClass(subkeys);
-    jmethodID method = env->GetMethodID(subkeys_class, "add", "(Ljava/lang/Object;)Z");
 
     HKEY key;
     LONG retval = RegOpenKeyExW(get_key_from_ordinal(keyNum), subkeyStr, 0, KEY_READ, &key);
@@ -1006,7 +980,7 @@ Java_net_rubygrapefruit_platform_internal_jni_WindowsRegistryFunctions_getSubkey
                 mark_failed_with_code(env, "could enumerate registry subkey", retval, NULL, result);
                 break;
             }
-            env->CallVoidMethod(subkeys, method, wchar_to_java(env, keyNameStr, wcslen(keyNameStr), result));
+            env->CallVoidMethod(subkeys, jni_ids.listAdd, wchar_to_java(env, keyNameStr, wcslen(keyNameStr), result));
         }
         free(keyNameStr);
     }
@@ -1019,8 +993,6 @@ Java_net_rubygrapefruit_platform_internal_jni_WindowsRegistryFunctions_getSubkey
 JNIEXPORT jboolean JNICALL
 Java_net_rubygrapefruit_platform_internal_jni_WindowsRegistryFunctions_getValueNames(JNIEnv* env, jclass target, jint keyNum, jstring subkey, jobject names, jobject result) {
     wchar_t* subkeyStr = java_to_wchar(env, subkey, result);
-    jclass names_class = env->GetObjectClass(names);
-    jmethodID method = env->GetMethodID(names_class, "add", "(Ljava/lang/Object;)Z");
 
     HKEY key;
     LONG retval = RegOpenKeyExW(get_key_from_ordinal(keyNum), subkeyStr, 0, KEY_READ, &key);
@@ -1046,7 +1018,7 @@ Java_net_rubygrapefruit_platform_internal_jni_WindowsRegistryFunctions_getValueN
                 mark_failed_with_code(env, "could enumerate registry value name", retval, NULL, result);
                 break;
             }
-            env->CallVoidMethod(names, method, wchar_to_java(env, valueNameStr, wcslen(valueNameStr), result));
+            env->CallVoidMethod(names, jni_ids.listAdd, wchar_to_java(env, valueNameStr, wcslen(valueNameStr), result));
         }
         free(valueNameStr);
     }
@@ -1061,12 +1033,6 @@ Java_net_rubygrapefruit_platform_internal_jni_WindowsRegistryFunctions_getValueN
  */
 JNIEXPORT void JNICALL
 Java_net_rubygrapefruit_platform_internal_jni_WindowsMemoryFunctions_getWindowsMemoryInfo(JNIEnv* env, jclass type, jobject dest, jobject result) {
-    jclass destClass = env->GetObjectClass(dest);
-    jmethodID mid = env->GetMethodID(destClass, "details", "(JJJJ)V");
-    if (mid == NULL) {
-        mark_failed_with_message(env, "could not find method", result);
-        return;
-    }
 
     // Get total/avail physical memory
     MEMORYSTATUSEX statex;
@@ -1104,7 +1070,7 @@ Java_net_rubygrapefruit_platform_internal_jni_WindowsMemoryFunctions_getWindowsM
     }
 
     // Feed Java with details
-    env->CallVoidMethod(dest, mid,
+    env->CallVoidMethod(dest, jni_ids.windowsMemoryInfoDetails,
         (jlong) commitTotalInBytes,
         (jlong) commitLimitInBytes,
         (jlong) statex.ullTotalPhys,
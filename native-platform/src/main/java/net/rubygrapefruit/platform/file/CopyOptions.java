@@ -0,0 +1,75 @@
+/*
+ * Copyright 2012 Adam Murdoch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package net.rubygrapefruit.platform.file;
+
+import net.rubygrapefruit.platform.ThreadSafe;
+
+/**
+ * Options that control how {@link PosixFiles#copy(java.io.File, java.io.File, CopyOptions)} copies a file. Instances are immutable.
+ */
+@ThreadSafe
+public final class CopyOptions {
+    private static final CopyOptions DEFAULTS = new CopyOptions(false, false);
+
+    private final boolean preserveMode;
+    private final boolean preserveTimestamps;
+
+    private CopyOptions(boolean preserveMode, boolean preserveTimestamps) {
+        this.preserveMode = preserveMode;
+        this.preserveTimestamps = preserveTimestamps;
+    }
+
+    /**
+     * Returns options that copy only the contents of the file. A new destination file is created with the default mode
+     * for the process, and the timestamps of the destination file are set to the time of the copy.
+     */
+    public static CopyOptions defaults() {
+        return DEFAULTS;
+    }
+
+    /**
+     * Returns a copy of these options that, when true, sets the mode of the destination file to the mode of the source file.
+     */
+    public CopyOptions withPreserveMode(boolean preserveMode) {
+        return new CopyOptions(preserveMode, preserveTimestamps);
+    }
+
+    /**
+     * Returns a copy of these options that, when true, sets the last access and last modification times of the
+     * destination file to those of the source file.
+     */
+    public CopyOptions withPreserveTimestamps(boolean preserveTimestamps) {
+        return new CopyOptions(preserveMode, preserveTimestamps);
+    }
+
+    public boolean isPreserveMode() {
+        return preserveMode;
+    }
+
+    public boolean isPreserveTimestamps() {
+        return preserveTimestamps;
+    }
+
+    @Override
+    public String toString() {
+        return "CopyOptions{" +
+            "preserveMode=" + preserveMode +
+            ", preserveTimestamps=" + preserveTimestamps +
+            '}';
+    }
+}
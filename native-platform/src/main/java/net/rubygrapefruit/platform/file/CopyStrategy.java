@@ -0,0 +1,46 @@
+/*
+ * Copyright 2012 Adam Murdoch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package net.rubygrapefruit.platform.file;
+
+/**
+ * The strategy that {@link PosixFiles#copy(java.io.File, java.io.File, CopyOptions)} used to copy the contents of a file.
+ */
+public enum CopyStrategy {
+    // Order is significant here, see file_copy.cpp
+
+    /**
+     * The destination shares the data blocks of the source file, using a reflink. No data was copied.
+     */
+    Clone,
+
+    /**
+     * The data was copied by the kernel using {@code copy_file_range()}. Some file systems copy the data on the server or
+     * on the storage device.
+     */
+    CopyFileRange,
+
+    /**
+     * The data was copied by the kernel using {@code sendfile()}, without passing through user space.
+     */
+    SendFile,
+
+    /**
+     * The data was copied by reading it into a buffer and writing it out.
+     */
+    ReadWrite
+}
@@ -27,4 +27,14 @@ public interface DirEntry extends FileInfo {
      * Returns the name of the file.
      */
     String getName();
+
+    /**
+     * Returns the inode number of the file, or 0 when it is not known, for example on Windows or for a {@link FileSnapshot}.
+     * When the entry describes the target of a symlink, this is the inode number of the target.
+     *
+     * <p>The inode number identifies the file only in combination with the device that contains it. This is the device of
+     * the directory containing the entry, except when the entry is a mount point. For a mount point, the inode number is
+     * that of the directory underneath the mount point, unless the details of the entry have been queried.</p>
+     */
+    long getInode();
 }
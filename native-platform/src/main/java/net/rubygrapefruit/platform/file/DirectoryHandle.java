@@ -0,0 +1,96 @@
+/*
+ * Copyright 2012 Adam Murdoch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package net.rubygrapefruit.platform.file;
+
+import net.rubygrapefruit.platform.NativeException;
+import net.rubygrapefruit.platform.ResourceClosedException;
+import net.rubygrapefruit.platform.ThreadSafe;
+
+import java.io.Closeable;
+import java.io.File;
+import java.util.List;
+
+/**
+ * An open directory on a Posix file system. Files are queried relative to the open directory, so the kernel does not
+ * need to resolve the path of the directory again for each query. This makes querying many files in a directory that is
+ * deep in a tree cheaper. It also means that the queries continue to apply to the same directory when the directory, or
+ * one of its ancestors, is renamed. Use {@link PosixFiles#openDirectory(File)} to create an instance.
+ *
+ * <p>The names passed to the methods of this handle are resolved relative to this directory, and may contain multiple
+ * path components. An absolute path ignores this directory.</p>
+ *
+ * <p>All methods throw a {@link ResourceClosedException} when the handle has been closed.</p>
+ */
+@ThreadSafe
+public interface DirectoryHandle extends Closeable {
+    /**
+     * Returns the path that was used to open this directory. The directory may since have been moved.
+     */
+    File getDirectory();
+
+    /**
+     * Queries the details of the given file. Does not follow symlinks.
+     *
+     * @throws NativeException On failure.
+     */
+    @ThreadSafe
+    PosixFileInfo stat(String name) throws NativeException;
+
+    /**
+     * Queries the details of the given file.
+     *
+     * @param linkTarget When true and the file is a symlink, return details of the target of the symlink instead of details of the symlink itself.
+     * @throws NativeException On failure.
+     */
+    @ThreadSafe
+    PosixFileInfo stat(String name, boolean linkTarget) throws NativeException;
+
+    /**
+     * Lists the entries of this directory, in no particular order.
+     *
+     * @throws NativeException On failure.
+     */
+    @ThreadSafe
+    List<? extends DirEntry> listDir(ListOptions options) throws NativeException;
+
+    /**
+     * Reads the contents of the given symbolic link.
+     *
+     * @throws NativeException On failure.
+     */
+    @ThreadSafe
+    String readLink(String name) throws NativeException;
+
+    /**
+     * Opens the given child directory. The returned handle is independent of this handle, and can be used after this
+     * handle has been closed.
+     *
+     * @throws NativeException On failure, e.g. when the directory does not exist or is not a directory.
+     */
+    @ThreadSafe
+    DirectoryHandle openDirectory(String name) throws NativeException;
+
+    /**
+     * Closes this handle. Does nothing when this handle has already been closed. Queries in progress on other threads
+     * finish before the underlying file descriptor is released.
+     *
+     * @throws NativeException On failure.
+     */
+    @ThreadSafe
+    void close() throws NativeException;
+}
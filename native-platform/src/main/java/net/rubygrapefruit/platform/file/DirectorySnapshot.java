@@ -0,0 +1,39 @@
+/*
+ * Copyright 2012 Adam Murdoch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.rubygrapefruit.platform.file;
+
+import net.rubygrapefruit.platform.ThreadSafe;
+
+import javax.annotation.Nullable;
+import java.util.List;
+
+/**
+ * An immutable snapshot of a directory and its descendants.
+ */
+@ThreadSafe
+public interface DirectorySnapshot extends FileSnapshot {
+    /**
+     * Returns the snapshots of the children of this directory, sorted by name.
+     */
+    List<? extends FileSnapshot> getChildren();
+
+    /**
+     * Returns the snapshot of the child with the given name, or null when there is no such child.
+     */
+    @Nullable
+    FileSnapshot getChild(String name);
+}
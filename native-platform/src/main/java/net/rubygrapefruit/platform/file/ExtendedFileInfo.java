@@ -0,0 +1,76 @@
+/*
+ * Copyright 2012 Adam Murdoch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package net.rubygrapefruit.platform.file;
+
+import net.rubygrapefruit.platform.ThreadSafe;
+
+/**
+ * Provides extended information about a file on a Posix file system, with nanosecond precision timestamps. This is a
+ * snapshot and does not change.
+ *
+ * <p>A snapshot can be fetched using {@link PosixFiles#statExtended(java.io.File, boolean, java.util.Set)}. Only the
+ * requested fields are queried, so that the operating system can skip work that is not needed. Use {@link #isAvailable(Field)}
+ * to determine whether a field was queried, as some fields are not supported by all operating systems and file systems.
+ * Fields that are not available are reported as 0, including {@link #getLastModifiedTime()} when {@link Field#LastModifiedTime}
+ * is not available.</p>
+ */
+@ThreadSafe
+public interface ExtendedFileInfo extends PosixFileInfo {
+    // Order is significant here, see generic.h
+    enum Field {
+        LastModifiedTime, ChangeTime, CreationTime, Inode, LinkCount, AllocatedBlocks
+    }
+
+    /**
+     * Returns true if the given field was queried for this file.
+     */
+    boolean isAvailable(Field field);
+
+    /**
+     * Returns the last modification time of this file, in ns since epoch.
+     */
+    long getLastModifiedTimeNanos();
+
+    /**
+     * Returns the last status change time of this file, in ns since epoch.
+     */
+    long getChangeTimeNanos();
+
+    /**
+     * Returns the creation time of this file, in ns since epoch.
+     */
+    long getCreationTimeNanos();
+
+    /**
+     * Returns the inode number of this file. Available only when {@link Field#Inode} was queried.
+     */
+    long getInode();
+
+    /**
+     * {@inheritDoc} This is always available for an existing file.
+     */
+    long getDevice();
+
+    /**
+     * Returns the number of hard links to this file.
+     */
+    long getLinkCount();
+
+    /**
+     * Returns the number of 512 byte blocks allocated to this file.
+     */
+    long getAllocatedBlocks();
+}
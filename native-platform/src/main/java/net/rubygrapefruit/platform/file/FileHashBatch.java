@@ -0,0 +1,59 @@
+/*
+ * Copyright 2012 Adam Murdoch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package net.rubygrapefruit.platform.file;
+
+import net.rubygrapefruit.platform.NativeException;
+import net.rubygrapefruit.platform.ThreadSafe;
+
+import javax.annotation.Nullable;
+import java.io.File;
+
+/**
+ * The hashes of a batch of files. This is a snapshot and does not change.
+ *
+ * <p>A snapshot can be fetched using {@link FileHasher#hashAll(java.util.List, FileHasher.Algorithm)}. Entries are indexed
+ * in the same order as the files that were hashed.</p>
+ */
+@ThreadSafe
+public interface FileHashBatch {
+    /**
+     * Returns the number of entries in this batch.
+     */
+    int size();
+
+    /**
+     * Returns the file at the given index.
+     */
+    File getFile(int index);
+
+    /**
+     * Returns the digest of the file at the given index.
+     *
+     * @throws NativeException When the file could not be hashed.
+     */
+    byte[] getHash(int index) throws NativeException;
+
+    /**
+     * Returns true when the file at the given index could not be hashed.
+     */
+    boolean isFailed(int index);
+
+    /**
+     * Returns the failure to hash the file at the given index, or null when the file was hashed successfully.
+     */
+    @Nullable
+    NativeException getFailure(int index);
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2012 Adam Murdoch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package net.rubygrapefruit.platform.file;
+
+import net.rubygrapefruit.platform.NativeException;
+import net.rubygrapefruit.platform.ThreadSafe;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.File;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * A persistent cache of file hashes, stored in a memory-mapped file. Entries are keyed by the device and inode of the file,
+ * and are used only while the size, modification time and change time of the file are the same as when the file was hashed.
+ * The cache can be shared by the threads of a process and by multiple processes. Created using {@link FileHasher#openCache(File, int)}.
+ *
+ * <p>Files that have changed in the last couple of seconds are not cached, as a later change may not alter the timestamps
+ * of the file on file systems with coarse timestamps.</p>
+ */
+@ThreadSafe
+public interface FileHashCache extends Closeable {
+    /**
+     * The fields that must be available in the details passed to {@link #get(ExtendedFileInfo, FileHasher.Algorithm)} and
+     * {@link #put(ExtendedFileInfo, FileHasher.Algorithm, byte[])}.
+     */
+    Set<ExtendedFileInfo.Field> FIELDS = Collections.unmodifiableSet(EnumSet.of(ExtendedFileInfo.Field.LastModifiedTime, ExtendedFileInfo.Field.ChangeTime, ExtendedFileInfo.Field.Inode));
+
+    File getCacheFile();
+
+    /**
+     * Calculates the hash of the contents of the given file, using the cached hash when the file has not changed since
+     * it was last hashed.
+     *
+     * @return The digest. Has length {@link FileHasher.Algorithm#getDigestLength()}.
+     * @throws NativeException On failure, e.g. when the file does not exist or cannot be read.
+     */
+    @ThreadSafe
+    byte[] hash(File file, FileHasher.Algorithm algorithm) throws NativeException;
+
+    /**
+     * Returns the cached hash of the file with the given details, as returned by {@link PosixFiles#statExtended(File, boolean, Set)}
+     * for {@link #FIELDS}.
+     *
+     * @return The digest, or null when the file is not cached or has changed since it was hashed.
+     */
+    @ThreadSafe
+    @Nullable
+    byte[] get(ExtendedFileInfo details, FileHasher.Algorithm algorithm);
+
+    /**
+     * Records the hash of the file with the given details. The details should be queried before the file is hashed, so that a change
+     * made while the file is being hashed is not missed. Does nothing when the details are missing one of {@link #FIELDS}.
+     */
+    @ThreadSafe
+    void put(ExtendedFileInfo details, FileHasher.Algorithm algorithm, byte[] hash);
+
+    /**
+     * Unmaps the cache file. The entries remain in the file for the next time it is opened.
+     */
+    @ThreadSafe
+    void close();
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2012 Adam Murdoch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.rubygrapefruit.platform.file;
+
+import net.rubygrapefruit.platform.NativeException;
+import net.rubygrapefruit.platform.NativeIntegration;
+import net.rubygrapefruit.platform.ThreadSafe;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Calculates hashes of the contents of files. The contents are read and hashed in native code.
+ */
+@ThreadSafe
+public interface FileHasher extends NativeIntegration {
+    /**
+     * The supported hash algorithms.
+     */
+    // Order is significant here, see hash.h
+    enum Algorithm {
+        /**
+         * SHA-256, producing a 32 byte digest.
+         */
+        SHA256(32),
+        /**
+         * XXH64, a fast non-cryptographic hash producing an 8 byte digest. The digest is in big-endian byte order.
+         */
+        XXH64(8);
+
+        private final int digestLength;
+
+        Algorithm(int digestLength) {
+            this.digestLength = digestLength;
+        }
+
+        /**
+         * Returns the length of the digests produced by this algorithm, in bytes.
+         */
+        public int getDigestLength() {
+            return digestLength;
+        }
+    }
+
+    /**
+     * Calculates the hash of the contents of the given file.
+     *
+     * @return The digest. Has length {@link Algorithm#getDigestLength()}.
+     * @throws NativeException On failure, e.g. when the file does not exist or cannot be read.
+     */
+    @ThreadSafe
+    byte[] hash(File file, Algorithm algorithm) throws NativeException;
+
+    /**
+     * Calculates the hashes of the contents of the given files. The files are hashed concurrently using a pool of native
+     * threads. A failure to hash one file does not stop the other files from being hashed, instead it is reported
+     * by {@link FileHashBatch#getFailure(int)}.
+     *
+     * @throws NativeException On failure to hash the batch as a whole.
+     */
+    @ThreadSafe
+    FileHashBatch hashAll(List<File> files, Algorithm algorithm) throws NativeException;
+
+    /**
+     * Opens the given persistent hash cache, creating it when it does not exist. An existing cache that was written by an
+     * incompatible version of this library is discarded.
+     *
+     * @param capacity The maximum number of files to create the cache for. Is rounded up to a power of two and ignored
+     * when the cache already exists.
+     * @throws NativeException On failure, e.g. when the cache file cannot be created.
+     */
+    @ThreadSafe
+    FileHashCache openCache(File cacheFile, int capacity) throws NativeException;
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2012 Adam Murdoch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package net.rubygrapefruit.platform.file;
+
+/**
+ * A set of file identities, each made up of a device ID and an inode number as reported by {@link PosixFileInfo#getDevice()}
+ * and {@link PosixFileInfo#getInode()}. Can be used to detect hard links, or to avoid visiting a directory twice when
+ * walking a tree that contains symlinks.
+ *
+ * <p>The identities are stored in a single array of primitive values, so adding and querying an identity take constant
+ * time and do not allocate. This set is not thread safe.</p>
+ */
+public final class FileIdentitySet {
+    private static final int MIN_CAPACITY = 16;
+
+    // Each identity takes 2 slots, the device followed by the inode. A slot pair of (0, 0) is empty
+    private long[] table;
+    private int mask;
+    private int size;
+    private boolean containsZero;
+
+    public FileIdentitySet() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * Creates a set that can hold the given number of identities before it needs to grow.
+     */
+    public FileIdentitySet(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < expectedSize * 2L && capacity < 1 << 29) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    /**
+     * Returns the number of identities in this set.
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns true when this set contains the given identity.
+     */
+    public boolean contains(long device, long inode) {
+        if (device == 0 && inode == 0) {
+            return containsZero;
+        }
+        int slot = slotOf(device, inode);
+        return table[slot] != 0 || table[slot + 1] != 0;
+    }
+
+    /**
+     * Returns true when this set contains the identity of the given file.
+     */
+    public boolean contains(PosixFileInfo file) {
+        return contains(file.getDevice(), file.getInode());
+    }
+
+    /**
+     * Adds the given identity to this set.
+     *
+     * @return true when the identity was added, false when it was already in this set.
+     */
+    public boolean add(long device, long inode) {
+        if (device == 0 && inode == 0) {
+            if (containsZero) {
+                return false;
+            }
+            containsZero = true;
+            size++;
+            return true;
+        }
+        int slot = slotOf(device, inode);
+        if (table[slot] != 0 || table[slot + 1] != 0) {
+            return false;
+        }
+        table[slot] = device;
+        table[slot + 1] = inode;
+        size++;
+        // Keep the table at most half full, so that probe sequences stay short
+        if (size * 4 > table.length) {
+            grow();
+        }
+        return true;
+    }
+
+    /**
+     * Adds the identity of the given file to this set.
+     *
+     * @return true when the identity was added, false when it was already in this set.
+     */
+    public boolean add(PosixFileInfo file) {
+        return add(file.getDevice(), file.getInode());
+    }
+
+    /**
+     * Removes all identities from this set.
+     */
+    public void clear() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = 0;
+        }
+        size = 0;
+        containsZero = false;
+    }
+
+    /**
+     * Returns the slot of the given identity, or the empty slot where it would be added.
+     */
+    private int slotOf(long device, long inode) {
+        int slot = hash(device, inode) & mask;
+        while (true) {
+            long slotDevice = table[slot];
+            long slotInode = table[slot + 1];
+            if ((slotDevice == device && slotInode == inode) || (slotDevice == 0 && slotInode == 0)) {
+                return slot;
+            }
+            slot = (slot + 2) & mask;
+        }
+    }
+
+    private static int hash(long device, long inode) {
+        // Inode numbers are often allocated sequentially, so mix the bits to spread them across the table
+        long h = inode * 0x9e3779b97f4a7c15L + device;
+        h ^= h >>> 32;
+        h *= 0xd6e8feb86659fd93L;
+        h ^= h >>> 32;
+        // Align to the start of a slot pair
+        return (int) h << 1;
+    }
+
+    private void allocate(int capacity) {
+        table = new long[capacity * 2];
+        mask = table.length - 1;
+    }
+
+    private void grow() {
+        long[] oldTable = table;
+        allocate(table.length);
+        for (int i = 0; i < oldTable.length; i += 2) {
+            long device = oldTable[i];
+            long inode = oldTable[i + 1];
+            if (device != 0 || inode != 0) {
+                int slot = slotOf(device, inode);
+                table[slot] = device;
+                table[slot + 1] = inode;
+            }
+        }
+    }
+}
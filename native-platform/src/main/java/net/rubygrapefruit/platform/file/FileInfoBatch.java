@@ -0,0 +1,67 @@
+/*
+ * Copyright 2012 Adam Murdoch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package net.rubygrapefruit.platform.file;
+
+import net.rubygrapefruit.platform.NativeException;
+import net.rubygrapefruit.platform.ThreadSafe;
+
+import javax.annotation.Nullable;
+import java.io.File;
+
+/**
+ * Provides some information about a batch of files. This is a snapshot and does not change.
+ *
+ * <p>A snapshot can be fetched using {@link Files#statAll(java.util.List, boolean)}. Entries are indexed in the same
+ * order as the files that were queried.</p>
+ */
+@ThreadSafe
+public interface FileInfoBatch {
+    /**
+     * Returns the number of entries in this batch.
+     */
+    int size();
+
+    /**
+     * Returns the file at the given index.
+     */
+    File getFile(int index);
+
+    /**
+     * Returns the type of the file at the given index. Returns {@link FileInfo.Type#Missing} when the file could not be queried.
+     */
+    FileInfo.Type getType(int index);
+
+    /**
+     * Returns the size of the file at the given index, in bytes. Returns 0 when the file is not a regular file.
+     */
+    long getSize(int index);
+
+    /**
+     * Returns the last modification time of the file at the given index, in ms since epoch. Returns 0 when the file does not exist.
+     */
+    long getLastModifiedTime(int index);
+
+    /**
+     * Returns true when the file at the given index could not be queried.
+     */
+    boolean isFailed(int index);
+
+    /**
+     * Returns the failure to query the file at the given index, or null when the file was queried successfully.
+     */
+    @Nullable
+    NativeException getFailure(int index);
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2012 Adam Murdoch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.rubygrapefruit.platform.file;
+
+import net.rubygrapefruit.platform.ThreadSafe;
+
+/**
+ * An immutable snapshot of a file, directory or symlink, taken by a {@link TreeSnapshotter}.
+ */
+@ThreadSafe
+public interface FileSnapshot extends DirEntry {
+    /**
+     * Returns the hash of this file:
+     *
+     * <ul>
+     * <li>For a regular file, the hash of its contents.</li>
+     * <li>For a symlink, the hash of the path it points to.</li>
+     * <li>For a directory, the hash of the names, types and hashes of its children. Two directories with the same hash
+     * have the same contents.</li>
+     * </ul>
+     *
+     * @return A copy of the digest.
+     */
+    byte[] getHash();
+
+    /**
+     * Returns true when this snapshot has the same hash as the given snapshot. Comparing the snapshots of the roots of
+     * two trees tells whether anything in the trees differs, without visiting the trees.
+     */
+    boolean hasSameHash(FileSnapshot other);
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2012 Adam Murdoch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package net.rubygrapefruit.platform.file;
+
+import net.rubygrapefruit.platform.NativeException;
+
+/**
+ * Receives the entries of a directory tree, as they are visited by {@link Files#walk(java.io.File, FileVisitor)}.
+ *
+ * <p>Each method receives the path of the entry, which is the path of the root directory joined with the names of the
+ * entries leading to it.</p>
+ */
+public interface FileVisitor {
+    // Order is significant here, see generic.h
+    enum Result {
+        /**
+         * Continue the walk.
+         */
+        Continue,
+        /**
+         * Do not visit the entries of the current directory. Treated as {@link #Continue} when not returned from
+         * {@link #preVisitDirectory(String, DirEntry)}.
+         */
+        SkipSubtree,
+        /**
+         * Stop the walk.
+         */
+        Terminate
+    }
+
+    /**
+     * Called for a directory, before its entries are visited.
+     */
+    Result preVisitDirectory(String path, DirEntry dir);
+
+    /**
+     * Called for an entry that is not a directory, such as a file or symlink. Also called for a directory that has already
+     * been visited, when symlinks are followed by {@link PosixFiles#walk(java.io.File, boolean, FileVisitor)}.
+     */
+    Result visitFile(String path, DirEntry file);
+
+    /**
+     * Called for a directory, after its entries have been visited.
+     */
+    Result postVisitDirectory(String path, DirEntry dir);
+
+    /**
+     * Called when the entries of a directory cannot be visited, for example due to insufficient permissions, or when the
+     * details of an entry cannot be queried. The path is that of the directory or the entry, respectively.
+     */
+    Result visitFailed(String path, NativeException failure);
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2012 Adam Murdoch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.rubygrapefruit.platform.file;
+
+import net.rubygrapefruit.platform.NativeException;
+import net.rubygrapefruit.platform.ThreadSafe;
+
+import java.io.Closeable;
+import java.io.File;
+
+/**
+ * A set of directory trees that are being watched for changes. Use {@link FileWatcher#newWatch(FileWatchListener)} to
+ * create an instance.
+ *
+ * <p>The directory trees of a watch should not overlap.</p>
+ */
+@ThreadSafe
+public interface FileWatch extends Closeable {
+    /**
+     * Starts watching the given directory and all of its descendants. Directories that are created in the tree
+     * are watched as they are created. Directories that cannot be watched natively, e.g. when there are not enough
+     * watches available, are polled for changes instead, see {@link FileWatchOptions#withMaxWatches(int)}.
+     *
+     * @throws NativeException On failure, e.g. when the directory does not exist.
+     */
+    @ThreadSafe
+    void startWatching(File root) throws NativeException;
+
+    /**
+     * Stops watching the given directory tree. Does nothing when the tree is not being watched.
+     *
+     * @throws NativeException On failure.
+     */
+    @ThreadSafe
+    void stopWatching(File root) throws NativeException;
+
+    /**
+     * Stops watching all directory trees and waits for the listener to finish handling any events. Does nothing when
+     * this watch has already been closed.
+     *
+     * @throws NativeException On failure.
+     */
+    @ThreadSafe
+    void close() throws NativeException;
+}
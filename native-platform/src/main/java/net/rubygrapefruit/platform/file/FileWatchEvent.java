@@ -0,0 +1,62 @@
+/*
+ * Copyright 2012 Adam Murdoch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.rubygrapefruit.platform.file;
+
+import javax.annotation.Nullable;
+import java.io.File;
+
+/**
+ * A change to a file or directory in a watched directory tree.
+ */
+public interface FileWatchEvent {
+    enum Type {
+        /**
+         * The file was created, or moved into a watched directory.
+         */
+        Created,
+        /**
+         * The contents or attributes of the file changed.
+         */
+        Modified,
+        /**
+         * The file was deleted, or moved out of a watched directory.
+         */
+        Removed,
+        /**
+         * The file was moved from {@link FileWatchEvent#getPreviousFile()}. Only reported when events are coalesced, see
+         * {@link FileWatchOptions#withLatency(long)}.
+         */
+        Renamed,
+        /**
+         * Some events were lost for the watched directory tree, and any file in the tree may have changed.
+         */
+        Overflow
+    }
+
+    Type getType();
+
+    /**
+     * Returns the file that changed. For {@link Type#Overflow} events, returns the root of the watched directory tree.
+     */
+    File getFile();
+
+    /**
+     * Returns the previous location of the file for {@link Type#Renamed} events, or null for other events.
+     */
+    @Nullable
+    File getPreviousFile();
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2012 Adam Murdoch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.rubygrapefruit.platform.file;
+
+import java.io.File;
+
+/**
+ * Selects the change events of a {@link FileWatch} that are delivered to its listener. The filter is applied to each event
+ * before a {@link File} or {@link String} is created for it, so rejecting events here is cheap.
+ */
+public interface FileWatchFilter {
+    /**
+     * Returns true when the given event should be delivered. {@link FileWatchEvent.Type#Overflow} events are always delivered.
+     *
+     * @param directory The watched directory that contains the file that changed.
+     * @param name The name of the file that changed, or an empty sequence when the event is for the directory itself. Only
+     * valid during this call, use {@link CharSequence#toString()} to keep a copy.
+     */
+    boolean accept(FileWatchEvent.Type type, File directory, CharSequence name);
+}
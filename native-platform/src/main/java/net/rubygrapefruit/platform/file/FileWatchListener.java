@@ -0,0 +1,37 @@
+/*
+ * Copyright 2012 Adam Murdoch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.rubygrapefruit.platform.file;
+
+import net.rubygrapefruit.platform.NativeException;
+
+import java.util.List;
+
+/**
+ * Receives change events from a {@link FileWatch}. Methods are called on the thread of the watch, one at a time.
+ */
+public interface FileWatchListener {
+    /**
+     * Called with a batch of change events, in the order that they happened.
+     */
+    void onChanges(List<FileWatchEvent> events);
+
+    /**
+     * Called when a failure occurs. When the failure happens while reading events, the watch is closed after this method
+     * returns. Other failures, such as failing to watch a directory that was created, do not close the watch.
+     */
+    void onFailure(NativeException failure);
+}
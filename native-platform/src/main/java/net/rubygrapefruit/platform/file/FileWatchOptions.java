@@ -0,0 +1,135 @@
+/*
+ * Copyright 2012 Adam Murdoch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.rubygrapefruit.platform.file;
+
+import net.rubygrapefruit.platform.ThreadSafe;
+
+import javax.annotation.Nullable;
+
+/**
+ * Options that control which change events a {@link FileWatch} delivers and when. Instances are immutable.
+ */
+@ThreadSafe
+public final class FileWatchOptions {
+    private static final FileWatchOptions DEFAULTS = new FileWatchOptions(null, 0, false, Integer.MAX_VALUE);
+
+    private final FileWatchFilter filter;
+    private final long latencyMillis;
+    private final boolean overflowRecovery;
+    private final int maxWatches;
+
+    private FileWatchOptions(@Nullable FileWatchFilter filter, long latencyMillis, boolean overflowRecovery, int maxWatches) {
+        this.filter = filter;
+        this.latencyMillis = latencyMillis;
+        this.overflowRecovery = overflowRecovery;
+        this.maxWatches = maxWatches;
+    }
+
+    /**
+     * Returns options that deliver all events, as soon as they are read. This is the same as {@link FileWatcher#newWatch(FileWatchListener)}.
+     */
+    public static FileWatchOptions defaults() {
+        return DEFAULTS;
+    }
+
+    /**
+     * Returns a copy of these options that delivers only the events accepted by the given filter.
+     */
+    public FileWatchOptions withFilter(@Nullable FileWatchFilter filter) {
+        return new FileWatchOptions(filter, latencyMillis, overflowRecovery, maxWatches);
+    }
+
+    /**
+     * Returns a copy of these options that coalesces events over the given latency window, in milliseconds. When greater
+     * than 0, the events are held from the first event of the window until the window ends, and are then delivered as a
+     * single batch with at most one event per path:
+     *
+     * <ul>
+     * <li>Repeated changes to a file are reported as a single event.</li>
+     * <li>A file that is created and then removed within the window is not reported.</li>
+     * <li>A file moved within the watched trees is reported as a {@link FileWatchEvent.Type#Renamed} event.</li>
+     * <li>The changes to the descendants of a removed directory are not reported.</li>
+     * <li>A file that is removed and then created again within the window is reported as a {@link FileWatchEvent.Type#Created}
+     * event.</li>
+     * </ul>
+     *
+     * <p>When 0, which is the default, each event is delivered as soon as it is read.</p>
+     */
+    public FileWatchOptions withLatency(long latencyMillis) {
+        if (latencyMillis < 0) {
+            throw new IllegalArgumentException("Latency must not be negative.");
+        }
+        return new FileWatchOptions(filter, latencyMillis, overflowRecovery, maxWatches);
+    }
+
+    /**
+     * Returns a copy of these options that, when true, recovers from lost events by rescanning the watched directory
+     * trees. The watch keeps a snapshot of the name, type, size and last modification time of the entries of each watched
+     * directory. When events are lost, the trees are listed again and the differences from the snapshots are reported as
+     * {@link FileWatchEvent.Type#Created}, {@link FileWatchEvent.Type#Modified} and {@link FileWatchEvent.Type#Removed}
+     * events, instead of an {@link FileWatchEvent.Type#Overflow} event.
+     *
+     * <p>The snapshots are taken when each directory is first watched and are not updated as events are delivered, so a
+     * file that changed since then may be reported again after events have been lost.</p>
+     */
+    public FileWatchOptions withOverflowRecovery(boolean overflowRecovery) {
+        return new FileWatchOptions(filter, latencyMillis, overflowRecovery, maxWatches);
+    }
+
+    /**
+     * Returns a copy of these options that uses at most the given number of native watches. The directories that cannot be
+     * watched natively, because this limit or the limit of the operating system has been reached, are polled for changes
+     * instead. Polling is less timely and uses more CPU, so the watch prefers to stop natively watching directory trees that
+     * have been inactive for some time and poll these instead.
+     *
+     * <p>Directories on network and FUSE file systems, for which the operating system does not report all changes, are
+     * always polled.</p>
+     */
+    public FileWatchOptions withMaxWatches(int maxWatches) {
+        if (maxWatches < 0) {
+            throw new IllegalArgumentException("Max watches must not be negative.");
+        }
+        return new FileWatchOptions(filter, latencyMillis, overflowRecovery, maxWatches);
+    }
+
+    @Nullable
+    public FileWatchFilter getFilter() {
+        return filter;
+    }
+
+    public long getLatencyMillis() {
+        return latencyMillis;
+    }
+
+    public boolean isOverflowRecovery() {
+        return overflowRecovery;
+    }
+
+    public int getMaxWatches() {
+        return maxWatches;
+    }
+
+    @Override
+    public String toString() {
+        return "FileWatchOptions{" +
+            "filter=" + filter +
+            ", latencyMillis=" + latencyMillis +
+            ", overflowRecovery=" + overflowRecovery +
+            ", maxWatches=" + maxWatches +
+            '}';
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2012 Adam Murdoch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.rubygrapefruit.platform.file;
+
+import net.rubygrapefruit.platform.NativeException;
+import net.rubygrapefruit.platform.ThreadSafe;
+
+import java.io.Closeable;
+import java.io.File;
+
+/**
+ * A running file watch server. See {@link FileWatchService}.
+ */
+@ThreadSafe
+public interface FileWatchServer extends Closeable {
+    File getSocketFile();
+
+    /**
+     * Stops the server, disconnecting its clients and removing the socket file.
+     *
+     * @throws NativeException On failure.
+     */
+    @ThreadSafe
+    void close() throws NativeException;
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2012 Adam Murdoch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.rubygrapefruit.platform.file;
+
+import net.rubygrapefruit.platform.NativeException;
+import net.rubygrapefruit.platform.NativeIntegration;
+import net.rubygrapefruit.platform.ThreadSafe;
+
+import java.io.File;
+
+/**
+ * Shares file watches between processes on the same machine. A server process watches the directory trees requested by
+ * all of its clients using a single watch, and sends the change events to each client over a Unix domain socket. A
+ * directory tree requested by several clients is watched only once. Currently only supported on Linux.
+ */
+@ThreadSafe
+public interface FileWatchService extends NativeIntegration {
+    /**
+     * Starts a server that accepts clients on the given socket file. The directory trees requested by the clients are
+     * watched by a single watch created using the given options, so the coalescing, overflow recovery and watch limits
+     * of these options apply to all clients.
+     *
+     * <p>A socket file left behind by a server that is no longer running is replaced.</p>
+     *
+     * @throws NativeException On failure, e.g. when another server is listening on the socket file.
+     */
+    @ThreadSafe
+    FileWatchServer startServer(File socketFile, FileWatchOptions options) throws NativeException;
+
+    /**
+     * Returns a watcher that watches directory trees using the server that listens on the given socket file. Each watch
+     * created by the returned watcher connects to the server when it is created. Only the filter of the options given to
+     * the watcher is used, and is applied to the events received from the server.
+     */
+    @ThreadSafe
+    FileWatcher connect(File socketFile);
+}
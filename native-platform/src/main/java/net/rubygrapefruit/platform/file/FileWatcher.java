@@ -0,0 +1,55 @@
+/*
+ * Copyright 2012 Adam Murdoch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.rubygrapefruit.platform.file;
+
+import net.rubygrapefruit.platform.NativeException;
+import net.rubygrapefruit.platform.NativeIntegration;
+import net.rubygrapefruit.platform.ThreadSafe;
+
+/**
+ * Watches directory trees for changes. Currently only supported on Linux.
+ */
+@ThreadSafe
+public interface FileWatcher extends NativeIntegration {
+    /**
+     * Creates a new watch, which delivers change events to the given listener. The watch initially watches nothing, use
+     * {@link FileWatch#startWatching(java.io.File)} to add directory trees to the watch.
+     *
+     * <p>Each watch uses a single thread to read the events for all of its directory trees. The listener is notified on
+     * this thread.</p>
+     *
+     * @throws NativeException On failure.
+     */
+    @ThreadSafe
+    FileWatch newWatch(FileWatchListener listener) throws NativeException;
+
+    /**
+     * Creates a new watch, which delivers the change events accepted by the given filter to the given listener.
+     *
+     * @throws NativeException On failure.
+     */
+    @ThreadSafe
+    FileWatch newWatch(FileWatchFilter filter, FileWatchListener listener) throws NativeException;
+
+    /**
+     * Creates a new watch, which delivers change events to the given listener as specified by the given options.
+     *
+     * @throws NativeException On failure.
+     */
+    @ThreadSafe
+    FileWatch newWatch(FileWatchOptions options, FileWatchListener listener) throws NativeException;
+}
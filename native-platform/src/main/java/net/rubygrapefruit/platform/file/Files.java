@@ -21,6 +21,7 @@ import net.rubygrapefruit.platform.NativeIntegration;
 import net.rubygrapefruit.platform.ThreadSafe;
 
 import java.io.File;
+import java.util.BitSet;
 import java.util.List;
 
 /**
@@ -83,4 +84,83 @@ public interface Files extends NativeIntegration {
      */
     @ThreadSafe
     List<? extends DirEntry> listDir(File dir, boolean linkTarget) throws NativeException;
+
+    /**
+     * Lists the entries of the given directory, using the given options to control which details are reported.
+     *
+     * @param dir The path of the directory to list. Follows symlinks to this directory.
+     * @throws NativeException On failure.
+     * @throws NoSuchFileException When the specified directory does not exist.
+     * @throws NotADirectoryException When the specified file is not a directory.
+     * @throws FilePermissionException When the user has insufficient permissions to list the entries
+     */
+    @ThreadSafe
+    List<? extends DirEntry> listDir(File dir, ListOptions options) throws NativeException;
+
+    /**
+     * Calculates a fingerprint of the entries of the given directory, from the name, type, size and last modification time
+     * of each entry as reported by {@link #listDir(File, ListOptions)}. The fingerprint changes when an entry is added, removed
+     * or changed, and is cheaper to calculate than listing the directory, as the entries are not returned.
+     *
+     * <p>Fingerprints can only be compared with other fingerprints calculated on the same operating system, using the same options.</p>
+     *
+     * @param dir The path of the directory. Follows symlinks to this directory.
+     * @return The fingerprint, a 16 byte digest.
+     * @throws NativeException On failure.
+     * @throws NoSuchFileException When the specified directory does not exist.
+     * @throws NotADirectoryException When the specified file is not a directory.
+     * @throws FilePermissionException When the user has insufficient permissions to list the entries
+     */
+    @ThreadSafe
+    byte[] fingerprintDir(File dir, ListOptions options) throws NativeException;
+
+    /**
+     * Returns basic information about each of the given files. This is equivalent to calling {@link #stat(File, boolean)}
+     * for each file, but queries the whole batch in a single call into native code.
+     *
+     * <p>A failure to query one file does not prevent the remaining files from being queried. Instead, the failure is
+     * reported for that entry using {@link FileInfoBatch#getFailure(int)}.</p>
+     *
+     * @param files The paths of the files to get details of. Follows symlinks to the parent directory of each file.
+     * @param linkTarget When true and a file is a symlink, return details of the target of the symlink instead of details of the symlink itself.
+     * @return Details of the files, in the same order as the given files.
+     * @throws NativeException On failure to query the batch.
+     */
+    @ThreadSafe
+    FileInfoBatch statAll(List<File> files, boolean linkTarget) throws NativeException;
+
+    /**
+     * Checks which of the given files have a different size or last modification time to the given values. This is equivalent to
+     * calling {@link #stat(File, boolean)} for each file and comparing {@link FileInfo#getSize()} and {@link FileInfo#getLastModifiedTime()},
+     * but queries and compares the whole batch in a single call into native code, and creates no objects for the files that
+     * are unchanged.
+     *
+     * <p>A missing file is compared using a size and last modification time of 0, as reported by {@link #stat(File, boolean)}.
+     * A file that cannot be queried, for example due to insufficient permissions, is reported as changed.</p>
+     *
+     * @param files The paths of the files to check. Follows symlinks to the parent directory of each file.
+     * @param linkTarget When true and a file is a symlink, check the target of the symlink instead of the symlink itself.
+     * @param expectedSizes The expected size of each file, in the same order as the given files.
+     * @param expectedLastModifiedTimes The expected last modification time of each file, in ms since epoch, in the same order as the given files.
+     * @return The indexes of the files that have changed.
+     * @throws NativeException On failure to check the batch.
+     */
+    @ThreadSafe
+    BitSet checkUnchanged(List<File> files, boolean linkTarget, long[] expectedSizes, long[] expectedLastModifiedTimes) throws NativeException;
+
+    /**
+     * Walks the directory tree with the given root, passing each entry to the given visitor. Directories are visited
+     * depth-first, with each directory visited before and after its entries.
+     *
+     * <p>When a directory entry is a symlink, details about the symlink is passed to the visitor and the walk does not
+     * descend into the target of the symlink.</p>
+     *
+     * @param root The path of the root directory. Follows symlinks to this directory.
+     * @throws NativeException On failure.
+     * @throws NoSuchFileException When the specified directory does not exist.
+     * @throws NotADirectoryException When the specified file is not a directory.
+     * @throws FilePermissionException When the user has insufficient permissions to list the entries of the root directory
+     */
+    @ThreadSafe
+    void walk(File root, FileVisitor visitor) throws NativeException;
 }
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2012 Adam Murdoch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package net.rubygrapefruit.platform.file;
+
+import net.rubygrapefruit.platform.ThreadSafe;
+
+/**
+ * Options that control what {@link Files#listDir(java.io.File, ListOptions)} reports for each directory entry. Instances are immutable.
+ */
+@ThreadSafe
+public final class ListOptions {
+    private static final ListOptions DEFAULTS = new ListOptions(false, false);
+    private static final ListOptions NAMES_AND_TYPES_ONLY = new ListOptions(false, true);
+
+    private final boolean linkTarget;
+    private final boolean namesAndTypesOnly;
+
+    private ListOptions(boolean linkTarget, boolean namesAndTypesOnly) {
+        this.linkTarget = linkTarget;
+        this.namesAndTypesOnly = namesAndTypesOnly;
+    }
+
+    /**
+     * Returns options that report all details of each entry. This is the same as {@link Files#listDir(java.io.File)}.
+     */
+    public static ListOptions defaults() {
+        return DEFAULTS;
+    }
+
+    /**
+     * Returns options that report only the name and type of each entry. The size and last modification time of each
+     * entry are reported as 0.
+     *
+     * <p>This is more efficient than querying all details, as the type can often be determined from the directory
+     * itself, without querying each entry.</p>
+     */
+    public static ListOptions namesAndTypesOnly() {
+        return NAMES_AND_TYPES_ONLY;
+    }
+
+    /**
+     * Returns a copy of these options that, when true and a directory entry is a symlink, reports details of the
+     * target of the symlink instead of details of the symlink itself.
+     */
+    public ListOptions withLinkTarget(boolean linkTarget) {
+        return new ListOptions(linkTarget, namesAndTypesOnly);
+    }
+
+    public boolean isLinkTarget() {
+        return linkTarget;
+    }
+
+    public boolean isNamesAndTypesOnly() {
+        return namesAndTypesOnly;
+    }
+
+    @Override
+    public String toString() {
+        return "ListOptions{" +
+            "linkTarget=" + linkTarget +
+            ", namesAndTypesOnly=" + namesAndTypesOnly +
+            '}';
+    }
+}
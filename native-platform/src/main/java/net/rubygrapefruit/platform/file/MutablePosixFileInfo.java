@@ -0,0 +1,97 @@
+/*
+ * Copyright 2012 Adam Murdoch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package net.rubygrapefruit.platform.file;
+
+import java.io.File;
+
+/**
+ * A reusable holder for the details of a file on a Posix file system, which is filled in by
+ * {@link PosixFiles#stat(File, boolean, MutablePosixFileInfo)}.
+ *
+ * <p>Unlike the other implementations of {@link PosixFileInfo}, this is not a snapshot: its details are replaced each time it
+ * is passed to {@code stat()}, and it is not thread safe. Reusing one holder for many queries avoids allocating any objects
+ * per query, which can make a difference in loops that query a very large number of files.</p>
+ */
+public final class MutablePosixFileInfo implements PosixFileInfo {
+    private static final Type[] TYPES = Type.values();
+
+    private Type type = Type.Missing;
+    private int mode;
+    private int uid;
+    private int gid;
+    private long size;
+    private long modificationTime;
+    private long blockSize;
+    private long device;
+    private long inode;
+
+    // Called from native code
+    @SuppressWarnings("UnusedDeclaration")
+    void details(int type, int mode, int uid, int gid, long size, long modificationTime, int blockSize, long device, long inode) {
+        this.type = TYPES[type];
+        this.mode = mode;
+        this.uid = uid;
+        this.gid = gid;
+        this.size = size;
+        this.modificationTime = modificationTime;
+        this.blockSize = blockSize;
+        this.device = device;
+        this.inode = inode;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public int getMode() {
+        return mode;
+    }
+
+    public int getUid() {
+        return uid;
+    }
+
+    public int getGid() {
+        return gid;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getBlockSize() {
+        return blockSize;
+    }
+
+    public long getLastModifiedTime() {
+        return modificationTime;
+    }
+
+    public long getDevice() {
+        return device;
+    }
+
+    public long getInode() {
+        return inode;
+    }
+
+    @Override
+    public String toString() {
+        return "MutablePosixFileInfo{type=" + type + ", mode=" + Integer.toOctalString(mode) + ", size=" + size + ", lastModified=" + modificationTime + "}";
+    }
+}
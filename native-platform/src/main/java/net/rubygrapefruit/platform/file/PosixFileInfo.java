@@ -50,4 +50,16 @@ public interface PosixFileInfo extends FileInfo {
      * Returns the last modification time of this file, in ms since epoch.
      */
     long getLastModifiedTime();
+
+    /**
+     * Returns the ID of the device that contains this file. Together with {@link #getInode()}, identifies this file on the
+     * machine, for example to detect hard links or directories that are reachable through multiple symlinks. See
+     * {@link FileIdentitySet}. Returns 0 when this file does not exist.
+     */
+    long getDevice();
+
+    /**
+     * Returns the inode number of this file. Returns 0 when this file does not exist.
+     */
+    long getInode();
 }
@@ -0,0 +1,31 @@
+/*
+ * Copyright 2012 Adam Murdoch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package net.rubygrapefruit.platform.file;
+
+import net.rubygrapefruit.platform.ThreadSafe;
+
+/**
+ * Provides some information about a batch of files on a Posix file system. This is a snapshot and does not change.
+ *
+ * <p>A snapshot can be fetched using {@link PosixFiles#statAll(java.util.List, boolean)}.</p>
+ */
+@ThreadSafe
+public interface PosixFileInfoBatch extends FileInfoBatch {
+    /**
+     * Returns the mode, or permissions, of the file at the given index.
+     */
+    int getMode(int index);
+}
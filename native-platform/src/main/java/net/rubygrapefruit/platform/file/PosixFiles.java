@@ -21,6 +21,8 @@ import net.rubygrapefruit.platform.NativeIntegration;
 import net.rubygrapefruit.platform.ThreadSafe;
 
 import java.io.File;
+import java.util.List;
+import java.util.Set;
 
 /**
  * Functions to query and modify files on a Posix file system.
@@ -79,4 +81,86 @@ public interface PosixFiles extends Files, NativeIntegration {
      */
     @ThreadSafe
     PosixFileInfo stat(File file, boolean linkTarget) throws NativeException;
+
+    /**
+     * Queries the details of the given file into the given holder, without allocating any objects. Use this instead of
+     * {@link #stat(File, boolean)} in loops that query a very large number of files.
+     *
+     * <p>Failures are reported using the returned code rather than an exception. When this method returns a non-zero value,
+     * the contents of the holder are unspecified. A file that does not exist is not a failure and is reported as type
+     * {@link FileInfo.Type#Missing}, as for {@link #stat(File, boolean)}.</p>
+     *
+     * @param linkTarget When true and the file is a symlink, return details of the target of the symlink instead of details of the symlink itself.
+     * @param details The holder to receive the details of the file.
+     * @return 0 on success, or the error code (the value of {@code errno}) on failure. Call {@link #stat(File, boolean)} to
+     * get a descriptive exception for a failure.
+     */
+    @ThreadSafe
+    int stat(File file, boolean linkTarget, MutablePosixFileInfo details);
+
+    /**
+     * Queries extended details of the given file, including nanosecond precision timestamps. Does not follow symlinks.
+     *
+     * @param fields The fields to query. The basic details of the file are always queried.
+     * @throws NativeException On failure.
+     */
+    @ThreadSafe
+    ExtendedFileInfo statExtended(File file, Set<ExtendedFileInfo.Field> fields) throws NativeException;
+
+    /**
+     * Queries extended details of the given file, including nanosecond precision timestamps.
+     *
+     * @param linkTarget When true and the file is a symlink, return details of the target of the symlink instead of details of the symlink itself.
+     * @param fields The fields to query. The basic details of the file are always queried.
+     * @throws NativeException On failure.
+     */
+    @ThreadSafe
+    ExtendedFileInfo statExtended(File file, boolean linkTarget, Set<ExtendedFileInfo.Field> fields) throws NativeException;
+
+    /**
+     * Walks the directory tree with the given root, passing each entry to the given visitor. This is the same as
+     * {@link #walk(File, FileVisitor)}, except that symlinks can be followed.
+     *
+     * <p>When symlinks are followed, details of the target of each symlink are passed to the visitor, and the walk descends
+     * into symlinks to directories. Each directory is visited at most once, as identified by its device and inode. A
+     * directory that is reached again, for example through a symlink that forms a cycle, is passed to
+     * {@link FileVisitor#visitFile(String, DirEntry)} instead. A symlink whose target does not exist is passed to
+     * {@link FileVisitor#visitFile(String, DirEntry)} with type {@link FileInfo.Type#Missing}.</p>
+     *
+     * @param root The path of the root directory. Follows symlinks to this directory.
+     * @param followLinks When true, follow symlinks.
+     * @throws NativeException On failure.
+     */
+    @ThreadSafe
+    void walk(File root, boolean followLinks, FileVisitor visitor) throws NativeException;
+
+    /**
+     * Opens the given directory, so that files in the directory can be queried relative to it.
+     *
+     * @throws NativeException On failure, e.g. when the directory does not exist or is not a directory.
+     */
+    @ThreadSafe
+    DirectoryHandle openDirectory(File dir) throws NativeException;
+
+    /**
+     * Copies the contents of the given file to the given destination, using the most efficient strategy that the file
+     * systems support. On Linux, attempts to clone the file using a reflink, then to copy the data in the kernel using
+     * {@code copy_file_range()} and then {@code sendfile()}, before falling back to reading and writing the data through a
+     * large buffer. On other platforms, the data is always read and written through a buffer.
+     *
+     * <p>Follows symlinks to the source and destination files. The destination file is created when it does not exist, and
+     * its contents are replaced when it does. On failure, the destination file may be left partially written.</p>
+     *
+     * @return The strategy that was used to copy the contents of the file.
+     * @throws NativeException On failure, e.g. when the source file does not exist or is not a file, or the destination is
+     * the source file.
+     */
+    @ThreadSafe
+    CopyStrategy copy(File source, File destination, CopyOptions options) throws NativeException;
+
+    /**
+     * {@inheritDoc}
+     */
+    @ThreadSafe
+    PosixFileInfoBatch statAll(List<File> files, boolean linkTarget) throws NativeException;
 }
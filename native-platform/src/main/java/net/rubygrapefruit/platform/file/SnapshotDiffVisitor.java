@@ -0,0 +1,52 @@
+/*
+ * Copyright 2012 Adam Murdoch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package net.rubygrapefruit.platform.file;
+
+/**
+ * Receives the differences between two snapshots of a directory tree, as they are found by
+ * {@link TreeSnapshotter#diff(DirectorySnapshot, DirectorySnapshot, SnapshotDiffVisitor)}. The differences are reported in the
+ * order of their paths.
+ *
+ * <p>Each method receives the path of the entry relative to the root of the snapshots, which is the names of the entries
+ * leading to it separated by '/'.</p>
+ */
+public interface SnapshotDiffVisitor {
+    /**
+     * Called for an entry that is only in the current snapshot. When the entry is a directory, its descendants are then reported
+     * as added too, unless {@link FileVisitor.Result#SkipSubtree} is returned.
+     */
+    FileVisitor.Result added(String path, FileSnapshot current);
+
+    /**
+     * Called for an entry that is only in the previous snapshot. When the entry is a directory, its descendants are then reported
+     * as removed too, unless {@link FileVisitor.Result#SkipSubtree} is returned.
+     */
+    FileVisitor.Result removed(String path, FileSnapshot previous);
+
+    /**
+     * Called for an entry that is not a directory and has the same type but a different hash in both snapshots. Directories
+     * are not reported as modified, instead their descendants that differ are reported.
+     */
+    FileVisitor.Result modified(String path, FileSnapshot previous, FileSnapshot current);
+
+    /**
+     * Called for an entry that has a different type in each snapshot. When either entry is a directory, its descendants are then
+     * reported as removed or added, unless {@link FileVisitor.Result#SkipSubtree} is returned.
+     */
+    FileVisitor.Result typeChanged(String path, FileSnapshot previous, FileSnapshot current);
+}
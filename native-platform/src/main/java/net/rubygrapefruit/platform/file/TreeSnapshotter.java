@@ -0,0 +1,68 @@
+/*
+ * Copyright 2012 Adam Murdoch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.rubygrapefruit.platform.file;
+
+import net.rubygrapefruit.platform.NativeException;
+import net.rubygrapefruit.platform.NativeIntegration;
+import net.rubygrapefruit.platform.ThreadSafe;
+
+import javax.annotation.Nullable;
+import java.io.File;
+
+/**
+ * Takes snapshots of directory trees, including the hashes of the contents of their files. Currently only supported on UNIX.
+ */
+@ThreadSafe
+public interface TreeSnapshotter extends NativeIntegration {
+    /**
+     * Takes a snapshot of the given directory tree. The directories are listed and the files hashed in parallel, using a
+     * pool of threads shared by all snapshots taken by this snapshotter. Symlinks in the tree are not followed. Files and directories
+     * that are removed while the snapshot is being taken are left out of the snapshot.
+     *
+     * @throws NativeException On failure, e.g. when the directory does not exist or a file cannot be read.
+     */
+    @ThreadSafe
+    DirectorySnapshot snapshot(File root, FileHasher.Algorithm algorithm) throws NativeException;
+
+    /**
+     * Takes a snapshot of the given directory tree, as for {@link #snapshot(File, FileHasher.Algorithm)}. The hashes of files that
+     * have not changed since they were last hashed are taken from the given cache, and the hashes of the other files are added
+     * to it.
+     *
+     * @throws NativeException On failure, e.g. when the directory does not exist or a file cannot be read.
+     */
+    @ThreadSafe
+    DirectorySnapshot snapshot(File root, FileHasher.Algorithm algorithm, FileHashCache cache) throws NativeException;
+
+    /**
+     * Takes a snapshot of the given directory tree and keeps it up to date using a watch created by the given watcher. Changes
+     * reported by the watch are applied when the snapshot is next queried, so that the cost of querying is proportional to the
+     * size of the changes rather than the size of the tree.
+     *
+     * @param cache The cache to use for file hashes, or null to hash the files directly.
+     * @throws NativeException On failure, e.g. when the directory does not exist or a file cannot be read.
+     */
+    @ThreadSafe
+    WatchedTreeSnapshot watch(File root, FileHasher.Algorithm algorithm, FileWatcher watcher, @Nullable FileHashCache cache) throws NativeException;
+
+    /**
+     * Reports the differences between the given snapshots to the given visitor. The snapshots should be taken with the same algorithm.
+     * Directories that have the same hash in both snapshots are not visited.
+     */
+    @ThreadSafe
+    void diff(DirectorySnapshot previous, DirectorySnapshot current, SnapshotDiffVisitor visitor);
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2012 Adam Murdoch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package net.rubygrapefruit.platform.file;
+
+import net.rubygrapefruit.platform.NativeException;
+import net.rubygrapefruit.platform.ThreadSafe;
+
+import java.io.Closeable;
+import java.io.File;
+
+/**
+ * A snapshot of a directory tree that is kept up to date using a file watch. See {@link TreeSnapshotter#watch(File, FileHasher.Algorithm, FileWatcher, FileHashCache)}.
+ */
+@ThreadSafe
+public interface WatchedTreeSnapshot extends Closeable {
+    File getRoot();
+
+    /**
+     * Returns a snapshot of the tree that includes the changes reported by the watch so far. Only the files and directories
+     * that have changed since the previous snapshot are listed and hashed again, and the other parts of the previous snapshot
+     * are reused. Changes that have not yet been reported by the watch are not included, see {@link FileWatchOptions#withLatency(long)}.
+     *
+     * <p>When the watch fails, or the root directory is removed, each call takes a new snapshot of the whole tree.</p>
+     *
+     * @throws NativeException On failure, e.g. when the root directory no longer exists.
+     */
+    @ThreadSafe
+    DirectorySnapshot getSnapshot() throws NativeException;
+
+    /**
+     * Stops watching the tree.
+     *
+     * @throws NativeException On failure.
+     */
+    @ThreadSafe
+    void close() throws NativeException;
+}
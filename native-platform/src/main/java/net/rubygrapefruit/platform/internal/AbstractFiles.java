@@ -17,15 +17,162 @@
 package net.rubygrapefruit.platform.internal;
 
 import net.rubygrapefruit.platform.*;
+import net.rubygrapefruit.platform.file.DirEntry;
+import net.rubygrapefruit.platform.file.FileInfo;
+import net.rubygrapefruit.platform.file.FileInfoBatch;
 import net.rubygrapefruit.platform.file.FilePermissionException;
+import net.rubygrapefruit.platform.file.FileVisitor;
 import net.rubygrapefruit.platform.file.Files;
+import net.rubygrapefruit.platform.file.ListOptions;
 import net.rubygrapefruit.platform.file.NoSuchFileException;
 import net.rubygrapefruit.platform.file.NotADirectoryException;
 
 import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
 
 public abstract class AbstractFiles implements Files {
-    protected NativeException listDirFailure(File dir, FunctionResult result) {
+    static final int FINGERPRINT_LENGTH = 16;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    public FileInfoBatch statAll(List<File> files, boolean linkTarget) throws NativeException {
+        FileStatBatch batch = new FileStatBatch(files);
+        for (int i = 0; i < files.size(); i++) {
+            try {
+                batch.set(i, stat(files.get(i), linkTarget));
+            } catch (NativeException e) {
+                batch.failed(i, e);
+            }
+        }
+        return batch;
+    }
+
+    public BitSet checkUnchanged(List<File> files, boolean linkTarget, long[] expectedSizes, long[] expectedLastModifiedTimes) throws NativeException {
+        checkExpectedDetails(files, expectedSizes, expectedLastModifiedTimes);
+        BitSet changed = new BitSet(files.size());
+        for (int i = 0; i < files.size(); i++) {
+            try {
+                FileInfo details = stat(files.get(i), linkTarget);
+                if (details.getSize() != expectedSizes[i] || details.getLastModifiedTime() != expectedLastModifiedTimes[i]) {
+                    changed.set(i);
+                }
+            } catch (NativeException e) {
+                changed.set(i);
+            }
+        }
+        return changed;
+    }
+
+    static void checkExpectedDetails(List<File> files, long[] expectedSizes, long[] expectedLastModifiedTimes) {
+        if (expectedSizes.length != files.size() || expectedLastModifiedTimes.length != files.size()) {
+            throw new IllegalArgumentException(String.format("Expected the details of %s files, got %s sizes and %s last modification times.", files.size(), expectedSizes.length, expectedLastModifiedTimes.length));
+        }
+    }
+
+    public List<? extends DirEntry> listDir(File dir, ListOptions options) throws NativeException {
+        return listDir(dir, options.isLinkTarget());
+    }
+
+    /**
+     * Calculates the fingerprint from the listing of the directory. Implementations that can do so should calculate it natively instead.
+     */
+    public byte[] fingerprintDir(File dir, ListOptions options) throws NativeException {
+        List<? extends DirEntry> entries = listDir(dir, options);
+        byte[][] names = new byte[entries.size()][];
+        Integer[] order = new Integer[entries.size()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = entries.get(i).getName().getBytes(UTF_8);
+            order[i] = i;
+        }
+        final byte[][] sortNames = names;
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(Integer o1, Integer o2) {
+                return compareBytes(sortNames[o1], sortNames[o2]);
+            }
+        });
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new NativeException(String.format("Could not fingerprint directory %s.", dir), e);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(18).order(ByteOrder.LITTLE_ENDIAN);
+        for (Integer index : order) {
+            DirEntry entry = entries.get(index);
+            digest.update(names[index]);
+            buffer.clear();
+            buffer.put((byte) 0).put((byte) entry.getType().ordinal()).putLong(entry.getSize()).putLong(entry.getLastModifiedTime());
+            digest.update(buffer.array());
+        }
+        return Arrays.copyOf(digest.digest(), FINGERPRINT_LENGTH);
+    }
+
+    /**
+     * Compares the given names by their unsigned bytes.
+     */
+    private static int compareBytes(byte[] left, byte[] right) {
+        int length = Math.min(left.length, right.length);
+        for (int i = 0; i < length; i++) {
+            int diff = (left[i] & 0xff) - (right[i] & 0xff);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return left.length - right.length;
+    }
+
+    public void walk(File root, FileVisitor visitor) throws NativeException {
+        List<? extends DirEntry> entries = listDir(root);
+        FileTreeWalk walk = new FileTreeWalk(root, visitor);
+        int result = walk.enterDirectory(null, stat(root, true).getLastModifiedTime(), 0, 0);
+        if (result == FileVisitor.Result.Continue.ordinal()) {
+            if (visitEntries(root, entries, walk)) {
+                walk.exitDirectory();
+            }
+        }
+    }
+
+    /**
+     * Returns false when the walk should stop.
+     */
+    private boolean visitEntries(File dir, List<? extends DirEntry> entries, FileTreeWalk walk) {
+        for (DirEntry entry : entries) {
+            int result;
+            if (entry.getType() == FileInfo.Type.Directory) {
+                result = walk.enterDirectory(entry.getName(), entry.getLastModifiedTime(), 0, entry.getInode());
+                if (result == FileVisitor.Result.Continue.ordinal()) {
+                    File childDir = new File(dir, entry.getName());
+                    List<? extends DirEntry> childEntries = null;
+                    try {
+                        childEntries = listDir(childDir);
+                    } catch (NativeException e) {
+                        result = walk.failed(e);
+                    }
+                    if (childEntries != null && !visitEntries(childDir, childEntries, walk)) {
+                        return false;
+                    }
+                    if (result != FileVisitor.Result.Terminate.ordinal()) {
+                        result = walk.exitDirectory();
+                    }
+                }
+            } else {
+                result = walk.visitFile(entry.getName(), entry.getType().ordinal(), entry.getSize(), entry.getLastModifiedTime(), entry.getInode());
+            }
+            if (result == FileVisitor.Result.Terminate.ordinal()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    protected static NativeException listDirFailure(File dir, FunctionResult result) {
         if (result.getFailure() == FunctionResult.Failure.NoSuchFile) {
             throw new NoSuchFileException(String.format("Could not list directory %s as this directory does not exist.", dir));
         }
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2012 Adam Murdoch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package net.rubygrapefruit.platform.internal;
+
+import net.rubygrapefruit.platform.file.DirEntry;
+import net.rubygrapefruit.platform.file.FileInfo;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * A list of directory entries that stores the entries in primitive arrays, rather than as an object per entry. The names
+ * are held as encoded bytes in a single shared array. A {@link DirEntry} view and the {@link String} name of an entry
+ * are created only when the entry is accessed.
+ *
+ * <p>The list is filled in either by native code, all at once, or by calling {@link #add(ByteBuffer, int, int, int, long)}.
+ * Names are decoded using the same encoding that the JVM uses for file names.</p>
+ *
+ * <p>Once returned to the caller, the list can be modified, for example sorted in place. The first change copies the
+ * entries into an {@link ArrayList}, which holds the list from then on. The index based accessors, such as
+ * {@link #getName(int)}, always refer to the entries in the order in which they were received.</p>
+ */
+public class CompactDirList extends AbstractList<DirEntry> implements RandomAccess {
+    static final Charset FILE_NAME_CHARSET = fileNameCharset();
+
+    private static final FileInfo.Type[] TYPES = FileInfo.Type.values();
+    private static final byte[] NO_BYTES = new byte[0];
+    private static final int[] NO_INTS = new int[0];
+    private static final long[] NO_LONGS = new long[0];
+
+    private int count;
+    private byte[] names = NO_BYTES;
+    private int namesLength;
+    private int[] nameEnds = NO_INTS;
+    private byte[] types = NO_BYTES;
+    private long[] sizes;
+    private long[] lastModified;
+    private long[] inodes = NO_LONGS;
+    // Null until the list is first modified by the caller
+    private List<DirEntry> modified;
+
+    // Called from native code, once per directory, with arrays that are exactly the right size. The sizes and last modified
+    // times are null when only the names and types were queried
+    @SuppressWarnings("UnusedDeclaration")
+    public void entries(byte[] names, int[] nameEnds, byte[] types, long[] sizes, long[] lastModified, long[] inodes) {
+        this.count = types.length;
+        this.names = names;
+        this.namesLength = names.length;
+        this.nameEnds = nameEnds;
+        this.types = types;
+        this.sizes = sizes;
+        this.lastModified = lastModified;
+        this.inodes = inodes;
+    }
+
+    /**
+     * Adds an entry whose size and last modification time are not known, copying the encoded name from the given buffer.
+     */
+    public void add(ByteBuffer buffer, int nameStart, int nameLength, int type, long inode) {
+        if (count == types.length) {
+            int capacity = Math.max(16, count * 2);
+            nameEnds = Arrays.copyOf(nameEnds, capacity);
+            types = Arrays.copyOf(types, capacity);
+            inodes = Arrays.copyOf(inodes, capacity);
+        }
+        if (namesLength + nameLength > names.length) {
+            names = Arrays.copyOf(names, Math.max(names.length * 2, namesLength + Math.max(nameLength, 256)));
+        }
+        for (int i = 0; i < nameLength; i++) {
+            names[namesLength + i] = buffer.get(nameStart + i);
+        }
+        namesLength += nameLength;
+        nameEnds[count] = namesLength;
+        types[count] = (byte) type;
+        inodes[count] = inode;
+        count++;
+    }
+
+    @Override
+    public int size() {
+        return modified == null ? count : modified.size();
+    }
+
+    @Override
+    public DirEntry get(int index) {
+        if (modified != null) {
+            return modified.get(index);
+        }
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException(String.format("Index: %s, Size: %s", index, count));
+        }
+        return new CompactDirEntry(index);
+    }
+
+    @Override
+    public DirEntry set(int index, DirEntry entry) {
+        return modify().set(index, entry);
+    }
+
+    @Override
+    public void add(int index, DirEntry entry) {
+        modify().add(index, entry);
+        modCount++;
+    }
+
+    @Override
+    public DirEntry remove(int index) {
+        DirEntry removed = modify().remove(index);
+        modCount++;
+        return removed;
+    }
+
+    private List<DirEntry> modify() {
+        if (modified == null) {
+            List<DirEntry> entries = new ArrayList<DirEntry>(count);
+            for (int i = 0; i < count; i++) {
+                entries.add(new CompactDirEntry(i));
+            }
+            modified = entries;
+        }
+        return modified;
+    }
+
+    public String getName(int index) {
+        int start = index == 0 ? 0 : nameEnds[index - 1];
+        return new String(names, start, nameEnds[index] - start, FILE_NAME_CHARSET);
+    }
+
+    public FileInfo.Type getType(int index) {
+        return TYPES[types[index]];
+    }
+
+    public long getSize(int index) {
+        return sizes == null ? 0 : sizes[index];
+    }
+
+    public long getLastModifiedTime(int index) {
+        return lastModified == null ? 0 : lastModified[index];
+    }
+
+    public long getInode(int index) {
+        return inodes[index];
+    }
+
+    private static Charset fileNameCharset() {
+        String encoding = System.getProperty("sun.jnu.encoding");
+        if (encoding != null && Charset.isSupported(encoding)) {
+            return Charset.forName(encoding);
+        }
+        return Charset.defaultCharset();
+    }
+
+    private class CompactDirEntry implements DirEntry {
+        private final int index;
+        private String name;
+
+        CompactDirEntry(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public String toString() {
+            return getName();
+        }
+
+        public String getName() {
+            if (name == null) {
+                name = CompactDirList.this.getName(index);
+            }
+            return name;
+        }
+
+        public Type getType() {
+            return CompactDirList.this.getType(index);
+        }
+
+        public long getSize() {
+            return CompactDirList.this.getSize(index);
+        }
+
+        public long getLastModifiedTime() {
+            return CompactDirList.this.getLastModifiedTime(index);
+        }
+
+        public long getInode() {
+            return CompactDirList.this.getInode(index);
+        }
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2012 Adam Murdoch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package net.rubygrapefruit.platform.internal;
+
+import net.rubygrapefruit.platform.NativeException;
+import net.rubygrapefruit.platform.ResourceClosedException;
+import net.rubygrapefruit.platform.file.DirEntry;
+import net.rubygrapefruit.platform.file.DirectoryHandle;
+import net.rubygrapefruit.platform.file.FilePermissionException;
+import net.rubygrapefruit.platform.file.ListOptions;
+import net.rubygrapefruit.platform.file.NoSuchFileException;
+import net.rubygrapefruit.platform.file.NotADirectoryException;
+import net.rubygrapefruit.platform.file.PosixFileInfo;
+import net.rubygrapefruit.platform.internal.jni.PosixFileFunctions;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Holds the file descriptor of the directory. The descriptor is released by whichever of {@link #close()} and the
+ * queries in progress finishes last, so that a query never uses a descriptor that has been closed and possibly reused.
+ */
+public class DefaultDirectoryHandle implements DirectoryHandle {
+    private final File directory;
+    private final int dirFd;
+    // One reference for the handle itself, plus one for each query in progress
+    private final AtomicInteger references = new AtomicInteger(1);
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    private DefaultDirectoryHandle(File directory, int dirFd) {
+        this.directory = directory;
+        this.dirFd = dirFd;
+    }
+
+    public static DirectoryHandle open(File directory) throws NativeException {
+        FunctionResult result = new FunctionResult();
+        int dirFd = PosixFileFunctions.openDirectory(directory.getPath(), result);
+        if (result.isFailed()) {
+            throw openFailure(directory, result);
+        }
+        return new DefaultDirectoryHandle(directory, dirFd);
+    }
+
+    @Override
+    public String toString() {
+        return "DirectoryHandle{" + directory + "}";
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    public PosixFileInfo stat(String name) throws NativeException {
+        return stat(name, false);
+    }
+
+    public PosixFileInfo stat(String name, boolean linkTarget) throws NativeException {
+        File file = new File(directory, name);
+        FunctionResult result = new FunctionResult();
+        FileStat stat = new FileStat(file.getPath());
+        acquire();
+        try {
+            PosixFileFunctions.statAt(dirFd, name, linkTarget, stat, result);
+        } finally {
+            release();
+        }
+        if (result.isFailed()) {
+            if (result.getFailure() == FunctionResult.Failure.Permissions) {
+                throw new FilePermissionException(String.format("Could not get file details of %s: permission denied", file));
+            }
+            throw new NativeException(String.format("Could not get file details of %s: %s", file, result.getMessage()));
+        }
+        return stat;
+    }
+
+    public List<? extends DirEntry> listDir(ListOptions options) throws NativeException {
+        FunctionResult result = new FunctionResult();
+        CompactDirList dirList = new CompactDirList();
+        acquire();
+        try {
+            PosixFileFunctions.readdirAt(dirFd, options.isLinkTarget(), options.isNamesAndTypesOnly(), dirList, result);
+        } finally {
+            release();
+        }
+        if (result.isFailed()) {
+            throw AbstractFiles.listDirFailure(directory, result);
+        }
+        return dirList;
+    }
+
+    public String readLink(String name) throws NativeException {
+        FunctionResult result = new FunctionResult();
+        String contents;
+        acquire();
+        try {
+            contents = PosixFileFunctions.readlinkAt(dirFd, name, result);
+        } finally {
+            release();
+        }
+        if (result.isFailed()) {
+            throw new NativeException(String.format("Could not read symlink %s: %s", new File(directory, name), result.getMessage()));
+        }
+        return contents;
+    }
+
+    public DirectoryHandle openDirectory(String name) throws NativeException {
+        File child = new File(directory, name);
+        FunctionResult result = new FunctionResult();
+        int childFd;
+        acquire();
+        try {
+            childFd = PosixFileFunctions.openDirectoryAt(dirFd, name, result);
+        } finally {
+            release();
+        }
+        if (result.isFailed()) {
+            throw openFailure(child, result);
+        }
+        return new DefaultDirectoryHandle(child, childFd);
+    }
+
+    public void close() throws NativeException {
+        if (closed.compareAndSet(false, true)) {
+            release();
+        }
+    }
+
+    private void acquire() {
+        while (true) {
+            int current = references.get();
+            if (current == 0 || closed.get()) {
+                throw new ResourceClosedException(String.format("Directory handle for %s has been closed.", directory));
+            }
+            if (references.compareAndSet(current, current + 1)) {
+                return;
+            }
+        }
+    }
+
+    private void release() {
+        if (references.decrementAndGet() == 0) {
+            FunctionResult result = new FunctionResult();
+            PosixFileFunctions.closeDirectory(dirFd, result);
+            if (result.isFailed()) {
+                throw new NativeException(String.format("Could not close directory %s: %s", directory, result.getMessage()));
+            }
+        }
+    }
+
+    private static NativeException openFailure(File dir, FunctionResult result) {
+        if (result.getFailure() == FunctionResult.Failure.NoSuchFile) {
+            return new NoSuchFileException(String.format("Could not open directory %s as this directory does not exist.", dir));
+        }
+        if (result.getFailure() == FunctionResult.Failure.NotADirectory) {
+            return new NotADirectoryException(String.format("Could not open directory %s as it is not a directory.", dir));
+        }
+        if (result.getFailure() == FunctionResult.Failure.Permissions) {
+            return new FilePermissionException(String.format("Could not open directory %s: permission denied", dir));
+        }
+        return new NativeException(String.format("Could not open directory %s: %s", dir, result.getMessage()));
+    }
+}
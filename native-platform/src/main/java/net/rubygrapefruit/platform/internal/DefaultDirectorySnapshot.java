@@ -0,0 +1,118 @@
+/*
+ * Copyright 2012 Adam Murdoch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.rubygrapefruit.platform.internal;
+
+import net.rubygrapefruit.platform.file.DirectorySnapshot;
+import net.rubygrapefruit.platform.file.FileHasher;
+import net.rubygrapefruit.platform.file.FileSnapshot;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A directory snapshot, whose hash is calculated from its children when first requested.
+ */
+class DefaultDirectorySnapshot extends DefaultFileSnapshot implements DirectorySnapshot {
+    static final Comparator<FileSnapshot> BY_NAME = new Comparator<FileSnapshot>() {
+        public int compare(FileSnapshot o1, FileSnapshot o2) {
+            return o1.getName().compareTo(o2.getName());
+        }
+    };
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final DefaultFileSnapshot[] children;
+    private final FileHasher.Algorithm algorithm;
+    private volatile byte[] hash;
+
+    /**
+     * @param children The children, sorted by name.
+     */
+    DefaultDirectorySnapshot(String name, long size, long lastModified, DefaultFileSnapshot[] children, FileHasher.Algorithm algorithm) {
+        super(name, Type.Directory, size, lastModified, null);
+        this.children = children;
+        this.algorithm = algorithm;
+    }
+
+    public List<? extends FileSnapshot> getChildren() {
+        return Collections.unmodifiableList(Arrays.asList(children));
+    }
+
+    @Nullable
+    public FileSnapshot getChild(String name) {
+        int index = indexOf(name);
+        return index >= 0 ? children[index] : null;
+    }
+
+    /**
+     * Returns the children without copying them.
+     */
+    DefaultFileSnapshot[] children() {
+        return children;
+    }
+
+    /**
+     * Returns the index of the child with the given name, or {@code -(insertion point) - 1} when there is no such child.
+     */
+    int indexOf(String name) {
+        int low = 0;
+        int high = children.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int diff = children[mid].getName().compareTo(name);
+            if (diff < 0) {
+                low = mid + 1;
+            } else if (diff > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    @Override
+    byte[] hash() {
+        byte[] hash = this.hash;
+        if (hash == null) {
+            // Racing threads calculate the same value
+            hash = combine();
+            this.hash = hash;
+        }
+        return hash;
+    }
+
+    /**
+     * Hashes the type, name and hash of each child. Names cannot contain a null byte, so one is used to terminate each name.
+     */
+    private byte[] combine() {
+        ByteArrayOutputStream data = new ByteArrayOutputStream(children.length * (32 + algorithm.getDigestLength()));
+        for (DefaultFileSnapshot child : children) {
+            data.write(child.getType().ordinal());
+            byte[] name = child.getName().getBytes(UTF_8);
+            data.write(name, 0, name.length);
+            data.write(0);
+            byte[] childHash = child.hash();
+            data.write(childHash, 0, childHash.length);
+        }
+        return DefaultFileHasher.hashBytes(data.toByteArray(), data.size(), algorithm);
+    }
+}
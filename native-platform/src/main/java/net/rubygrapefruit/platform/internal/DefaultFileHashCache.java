@@ -0,0 +1,181 @@
+/*
+ * Copyright 2012 Adam Murdoch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package net.rubygrapefruit.platform.internal;
+
+import net.rubygrapefruit.platform.NativeException;
+import net.rubygrapefruit.platform.file.ExtendedFileInfo;
+import net.rubygrapefruit.platform.file.FileHashCache;
+import net.rubygrapefruit.platform.file.FileHasher;
+import net.rubygrapefruit.platform.file.FileInfo;
+import net.rubygrapefruit.platform.file.PosixFiles;
+import net.rubygrapefruit.platform.internal.jni.FileHashCacheFunctions;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The entries live in the mapped file and are read and written by native code, without any locking. The only state held in
+ * Java is the count of the threads currently using the mapping, so that it is not unmapped underneath them.
+ */
+public class DefaultFileHashCache implements FileHashCache {
+    private static final int MIN_CAPACITY = 1024;
+    private static final int MAX_CAPACITY = 1 << 30;
+    private static final long RACY_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(2);
+
+    private final File cacheFile;
+    private final PosixFiles files;
+    private final FileHasher hasher;
+    private final long handle;
+    private final AtomicInteger users = new AtomicInteger();
+    private volatile boolean closed;
+
+    public DefaultFileHashCache(File cacheFile, int capacity, PosixFiles files, FileHasher hasher) throws NativeException {
+        this.cacheFile = cacheFile;
+        this.files = files;
+        this.hasher = hasher;
+        FunctionResult result = new FunctionResult();
+        handle = FileHashCacheFunctions.open(cacheFile.getPath(), toPowerOfTwo(capacity), result);
+        if (result.isFailed()) {
+            throw new NativeException(String.format("Could not open file hash cache %s: %s", cacheFile, result.getMessage()));
+        }
+    }
+
+    static int toPowerOfTwo(int capacity) {
+        if (capacity <= MIN_CAPACITY) {
+            return MIN_CAPACITY;
+        }
+        if (capacity >= MAX_CAPACITY) {
+            return MAX_CAPACITY;
+        }
+        return Integer.highestOneBit(capacity - 1) << 1;
+    }
+
+    @Override
+    public String toString() {
+        return "FileHashCache{" + cacheFile + "}";
+    }
+
+    public File getCacheFile() {
+        return cacheFile;
+    }
+
+    public byte[] hash(File file, FileHasher.Algorithm algorithm) throws NativeException {
+        ExtendedFileInfo before = files.statExtended(file, true, FIELDS);
+        if (before.getType() == FileInfo.Type.Missing) {
+            throw DefaultFileHasher.hashFailure(file, FunctionResult.Failure.NoSuchFile, null);
+        }
+        if (before.getType() != FileInfo.Type.File) {
+            // Let the hasher report the failure
+            return hasher.hash(file, algorithm);
+        }
+        byte[] cached = get(before, algorithm);
+        if (cached != null) {
+            return cached;
+        }
+        byte[] digest = hasher.hash(file, algorithm);
+        ExtendedFileInfo after = files.statExtended(file, true, FIELDS);
+        if (sameFingerprint(before, after)) {
+            put(before, algorithm, digest);
+        }
+        return digest;
+    }
+
+    @Nullable
+    public byte[] get(ExtendedFileInfo details, FileHasher.Algorithm algorithm) {
+        if (!isCacheable(details)) {
+            return null;
+        }
+        byte[] digest = new byte[algorithm.getDigestLength()];
+        acquire();
+        try {
+            if (!FileHashCacheFunctions.lookup(handle, details.getDevice(), details.getInode(), algorithm.ordinal(), details.getSize(), details.getLastModifiedTimeNanos(), details.getChangeTimeNanos(), digest)) {
+                return null;
+            }
+        } finally {
+            release();
+        }
+        return digest;
+    }
+
+    public void put(ExtendedFileInfo details, FileHasher.Algorithm algorithm, byte[] hash) {
+        if (hash.length != algorithm.getDigestLength()) {
+            throw new IllegalArgumentException(String.format("Expected a %s byte digest, got %s bytes.", algorithm.getDigestLength(), hash.length));
+        }
+        if (!isCacheable(details) || isRacy(details)) {
+            return;
+        }
+        acquire();
+        try {
+            FileHashCacheFunctions.store(handle, details.getDevice(), details.getInode(), algorithm.ordinal(), details.getSize(), details.getLastModifiedTimeNanos(), details.getChangeTimeNanos(), hash);
+        } finally {
+            release();
+        }
+    }
+
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        // Wait for the threads that are using the mapping, which do not block and so finish quickly
+        while (users.get() != 0) {
+            Thread.yield();
+        }
+        FileHashCacheFunctions.close(handle);
+    }
+
+    private void acquire() {
+        users.incrementAndGet();
+        if (closed) {
+            users.decrementAndGet();
+            throw new IllegalStateException(String.format("File hash cache %s has been closed.", cacheFile));
+        }
+    }
+
+    private void release() {
+        users.decrementAndGet();
+    }
+
+    private static boolean isCacheable(ExtendedFileInfo details) {
+        return details.getType() == FileInfo.Type.File
+            && details.isAvailable(ExtendedFileInfo.Field.Inode)
+            && details.isAvailable(ExtendedFileInfo.Field.LastModifiedTime)
+            && details.isAvailable(ExtendedFileInfo.Field.ChangeTime);
+    }
+
+    /**
+     * Returns true when the file has changed so recently that another change within the same timestamp granularity could go unnoticed.
+     */
+    private static boolean isRacy(ExtendedFileInfo details) {
+        long now = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis());
+        return now - Math.max(details.getLastModifiedTimeNanos(), details.getChangeTimeNanos()) < RACY_INTERVAL_NANOS;
+    }
+
+    private static boolean sameFingerprint(ExtendedFileInfo a, ExtendedFileInfo b) {
+        return a.getType() == b.getType()
+            && a.getDevice() == b.getDevice()
+            && a.getInode() == b.getInode()
+            && a.getSize() == b.getSize()
+            && a.getLastModifiedTimeNanos() == b.getLastModifiedTimeNanos()
+            && a.getChangeTimeNanos() == b.getChangeTimeNanos();
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2012 Adam Murdoch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package net.rubygrapefruit.platform.internal;
+
+import net.rubygrapefruit.platform.NativeException;
+import net.rubygrapefruit.platform.file.FileHashBatch;
+import net.rubygrapefruit.platform.file.FileHashCache;
+import net.rubygrapefruit.platform.file.FileHasher;
+import net.rubygrapefruit.platform.file.FilePermissionException;
+import net.rubygrapefruit.platform.file.NoSuchFileException;
+import net.rubygrapefruit.platform.internal.jni.FileHashFunctions;
+
+import java.io.File;
+import java.util.List;
+
+public class DefaultFileHasher implements FileHasher {
+    private final int threads = Runtime.getRuntime().availableProcessors();
+
+    public byte[] hash(File file, Algorithm algorithm) throws NativeException {
+        FunctionResult result = new FunctionResult();
+        byte[] digest = new byte[algorithm.getDigestLength()];
+        FileHashFunctions.hash(file.getPath(), algorithm.ordinal(), digest, result);
+        if (result.isFailed()) {
+            throw hashFailure(file, result.getFailure(), result.getMessage());
+        }
+        return digest;
+    }
+
+    public FileHashBatch hashAll(List<File> files, Algorithm algorithm) throws NativeException {
+        FunctionResult result = new FunctionResult();
+        FileHashBatchResult batch = new FileHashBatchResult(files, algorithm);
+        FileHashFunctions.hashAll(batch.getPaths(), algorithm.ordinal(), threads, batch.digests, batch.failures, batch.errnos, result);
+        if (result.isFailed()) {
+            throw new NativeException(String.format("Could not hash %s files: %s", files.size(), result.getMessage()));
+        }
+        return batch;
+    }
+
+    public FileHashCache openCache(File cacheFile, int capacity) throws NativeException {
+        return new DefaultFileHashCache(cacheFile, capacity, new DefaultPosixFiles(), this);
+    }
+
+    /**
+     * Hashes the first {@code length} bytes of the given array.
+     */
+    static byte[] hashBytes(byte[] data, int length, Algorithm algorithm) throws NativeException {
+        FunctionResult result = new FunctionResult();
+        byte[] digest = new byte[algorithm.getDigestLength()];
+        FileHashFunctions.hashBytes(data, length, algorithm.ordinal(), digest, result);
+        if (result.isFailed()) {
+            throw new NativeException(String.format("Could not hash %s bytes: %s", length, result.getMessage()));
+        }
+        return digest;
+    }
+
+    static NativeException hashFailure(File file, FunctionResult.Failure failure, String message) {
+        if (failure == FunctionResult.Failure.NoSuchFile) {
+            return new NoSuchFileException(String.format("Could not hash file %s as it does not exist.", file));
+        }
+        if (failure == FunctionResult.Failure.Permissions) {
+            return new FilePermissionException(String.format("Could not hash file %s: permission denied", file));
+        }
+        return new NativeException(String.format("Could not hash file %s: %s", file, message));
+    }
+}
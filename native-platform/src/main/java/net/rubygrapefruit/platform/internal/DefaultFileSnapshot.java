@@ -0,0 +1,81 @@
+/*
+ * Copyright 2012 Adam Murdoch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.rubygrapefruit.platform.internal;
+
+import net.rubygrapefruit.platform.file.FileSnapshot;
+
+import java.util.Arrays;
+
+class DefaultFileSnapshot implements FileSnapshot {
+    private final String name;
+    private final Type type;
+    private final long size;
+    private final long lastModified;
+    private final byte[] hash;
+
+    DefaultFileSnapshot(String name, Type type, long size, long lastModified, byte[] hash) {
+        this.name = name;
+        this.type = type;
+        this.size = size;
+        this.lastModified = lastModified;
+        this.hash = hash;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getLastModifiedTime() {
+        return lastModified;
+    }
+
+    public long getInode() {
+        // Snapshots describe the contents of files rather than their identity, and are compared across file systems
+        return 0;
+    }
+
+    public byte[] getHash() {
+        return hash().clone();
+    }
+
+    public boolean hasSameHash(FileSnapshot other) {
+        if (other instanceof DefaultFileSnapshot) {
+            return Arrays.equals(hash(), ((DefaultFileSnapshot) other).hash());
+        }
+        return Arrays.equals(hash(), other.getHash());
+    }
+
+    /**
+     * Returns the digest without copying it.
+     */
+    byte[] hash() {
+        return hash;
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2012 Adam Murdoch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.rubygrapefruit.platform.internal;
+
+import net.rubygrapefruit.platform.file.FileWatchEvent;
+
+import javax.annotation.Nullable;
+import java.io.File;
+
+public class DefaultFileWatchEvent implements FileWatchEvent {
+    private final Type type;
+    private final File file;
+    private final File previousFile;
+
+    public DefaultFileWatchEvent(Type type, File file) {
+        this(type, file, null);
+    }
+
+    public DefaultFileWatchEvent(Type type, File file, @Nullable File previousFile) {
+        this.type = type;
+        this.file = file;
+        this.previousFile = previousFile;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    @Nullable
+    public File getPreviousFile() {
+        return previousFile;
+    }
+
+    @Override
+    public String toString() {
+        if (previousFile != null) {
+            return type + " " + previousFile + " -> " + file;
+        }
+        return type + " " + file;
+    }
+}
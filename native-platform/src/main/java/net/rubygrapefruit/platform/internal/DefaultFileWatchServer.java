@@ -0,0 +1,476 @@
+/*
+ * Copyright 2012 Adam Murdoch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.rubygrapefruit.platform.internal;
+
+import net.rubygrapefruit.platform.NativeException;
+import net.rubygrapefruit.platform.file.FileWatch;
+import net.rubygrapefruit.platform.file.FileWatchEvent;
+import net.rubygrapefruit.platform.file.FileWatchListener;
+import net.rubygrapefruit.platform.file.FileWatchOptions;
+import net.rubygrapefruit.platform.file.FileWatchServer;
+import net.rubygrapefruit.platform.file.FileWatcher;
+
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Watches the directory trees requested by its clients using a single {@link FileWatch}, and sends each client the events
+ * for its trees.
+ *
+ * <p>The watch is given the requested roots that are not inside another requested root, so that the watched trees do not
+ * overlap. Each client connection has a thread that reads its requests and a thread that writes its messages, so that
+ * a slow client does not hold up the watch or the other clients.</p>
+ */
+public class DefaultFileWatchServer implements FileWatchServer {
+    private static final byte[] END_OF_MESSAGES = new byte[0];
+
+    private final UnixServerSocket serverSocket;
+    private final FileWatch watch;
+    private final Thread acceptThread;
+    private final Object lock = new Object();
+    // The following are guarded by lock
+    private final Set<Connection> connections = new LinkedHashSet<Connection>();
+    // The number of clients that requested each root
+    private final Map<File, Integer> requestedRoots = new HashMap<File, Integer>();
+    // The requested roots that are not inside another requested root
+    private final Set<File> watchedRoots = new HashSet<File>();
+    private boolean closed;
+
+    private DefaultFileWatchServer(FileWatcher watcher, FileWatchOptions options, UnixServerSocket serverSocket) throws NativeException {
+        this.serverSocket = serverSocket;
+        this.watch = watcher.newWatch(options, new FileWatchListener() {
+            public void onChanges(List<FileWatchEvent> events) {
+                dispatch(events);
+            }
+
+            public void onFailure(NativeException failure) {
+                broadcast(FileWatchProtocol.failure(failure));
+            }
+        });
+        this.acceptThread = new Thread(new Runnable() {
+            public void run() {
+                acceptConnections();
+            }
+        }, "native-platform file watch server");
+        acceptThread.setDaemon(true);
+    }
+
+    public static DefaultFileWatchServer start(FileWatcher watcher, File socketFile, FileWatchOptions options) throws NativeException {
+        File absoluteSocketFile = socketFile.getAbsoluteFile();
+        UnixServerSocket serverSocket = listen(absoluteSocketFile);
+        DefaultFileWatchServer server;
+        try {
+            server = new DefaultFileWatchServer(watcher, options, serverSocket);
+        } catch (NativeException e) {
+            serverSocket.close();
+            throw e;
+        }
+        server.acceptThread.start();
+        return server;
+    }
+
+    private static UnixServerSocket listen(File socketFile) throws NativeException {
+        if (socketFile.exists()) {
+            boolean running;
+            try {
+                UnixSocket.connect(socketFile).close();
+                running = true;
+            } catch (NativeException e) {
+                running = false;
+            }
+            if (running) {
+                throw new NativeException(String.format("Could not start file watch server on %s as another server is listening on this socket.", socketFile));
+            }
+            // Left behind by a server that is no longer running
+            socketFile.delete();
+        }
+        return UnixServerSocket.listen(socketFile);
+    }
+
+    public File getSocketFile() {
+        return serverSocket.getSocketFile();
+    }
+
+    public void close() throws NativeException {
+        List<Connection> connected;
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            connected = new ArrayList<Connection>(connections);
+        }
+        serverSocket.shutdown();
+        join(acceptThread);
+        serverSocket.close();
+        for (Connection connection : connected) {
+            connection.socket.shutdown();
+        }
+        for (Connection connection : connected) {
+            join(connection.reader);
+        }
+        watch.close();
+    }
+
+    private void acceptConnections() {
+        while (true) {
+            UnixSocket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (NativeException e) {
+                // Cannot accept any more clients, the connected clients are not affected
+                return;
+            }
+            if (socket == null) {
+                return;
+            }
+            synchronized (lock) {
+                if (closed) {
+                    socket.close();
+                    return;
+                }
+                Connection connection = new Connection(socket);
+                connections.add(connection);
+                connection.reader.start();
+                connection.writer.start();
+            }
+        }
+    }
+
+    private void readRequests(Connection connection) {
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(connection.socket.getInputStream()));
+            if (in.readInt() != FileWatchProtocol.MAGIC || in.readByte() != FileWatchProtocol.VERSION) {
+                connection.send(FileWatchProtocol.result(new NativeException("Could not connect to file watch server: unsupported protocol version.")));
+                return;
+            }
+            connection.send(FileWatchProtocol.result(null));
+            while (true) {
+                int type = in.read();
+                if (type == FileWatchProtocol.WATCH) {
+                    connection.send(FileWatchProtocol.result(startWatching(connection, new File(in.readUTF()))));
+                } else if (type == FileWatchProtocol.UNWATCH) {
+                    connection.send(FileWatchProtocol.result(stopWatching(connection, new File(in.readUTF()))));
+                } else {
+                    // End of stream or an unknown request
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            // Client has gone away
+        } finally {
+            disconnect(connection);
+            join(connection.writer);
+            connection.socket.close();
+        }
+    }
+
+    private void writeMessages(Connection connection) {
+        OutputStream out = connection.socket.getOutputStream();
+        try {
+            while (true) {
+                byte[] message = connection.outgoing.take();
+                if (message == END_OF_MESSAGES) {
+                    return;
+                }
+                out.write(message);
+            }
+        } catch (IOException e) {
+            // Client has gone away, stop reading its requests
+            connection.socket.shutdown();
+        } catch (InterruptedException e) {
+            connection.socket.shutdown();
+        }
+    }
+
+    private void disconnect(Connection connection) {
+        synchronized (lock) {
+            connections.remove(connection);
+            for (File root : connection.roots) {
+                try {
+                    release(root);
+                } catch (NativeException e) {
+                    // Continue, there is no longer a client to report the failure to
+                }
+            }
+            connection.roots.clear();
+        }
+        connection.outgoing.add(END_OF_MESSAGES);
+    }
+
+    @Nullable
+    private NativeException startWatching(Connection connection, File root) {
+        synchronized (lock) {
+            if (!connection.roots.add(root)) {
+                return null;
+            }
+            try {
+                acquire(root);
+                return null;
+            } catch (NativeException e) {
+                connection.roots.remove(root);
+                return e;
+            }
+        }
+    }
+
+    @Nullable
+    private NativeException stopWatching(Connection connection, File root) {
+        synchronized (lock) {
+            if (!connection.roots.remove(root)) {
+                return null;
+            }
+            try {
+                release(root);
+                return null;
+            } catch (NativeException e) {
+                return e;
+            }
+        }
+    }
+
+    private void acquire(File root) throws NativeException {
+        Integer count = requestedRoots.get(root);
+        if (count != null) {
+            requestedRoots.put(root, count + 1);
+            return;
+        }
+        if (!isInside(root, watchedRoots)) {
+            List<File> covered = new ArrayList<File>();
+            for (File watched : watchedRoots) {
+                if (isSameOrDescendant(watched, root)) {
+                    covered.add(watched);
+                }
+            }
+            // The trees of the watch must not overlap, so stop watching the trees inside the new root first
+            for (File watched : covered) {
+                watch.stopWatching(watched);
+                watchedRoots.remove(watched);
+            }
+            try {
+                watch.startWatching(root);
+            } catch (NativeException e) {
+                for (File watched : covered) {
+                    restartWatching(watched);
+                }
+                throw e;
+            }
+            watchedRoots.add(root);
+            for (File watched : covered) {
+                // Changes made while the watches were replaced may have been missed
+                overflow(watched);
+            }
+        }
+        requestedRoots.put(root, 1);
+    }
+
+    private void release(File root) throws NativeException {
+        int count = requestedRoots.get(root);
+        if (count > 1) {
+            requestedRoots.put(root, count - 1);
+            return;
+        }
+        requestedRoots.remove(root);
+        if (!watchedRoots.remove(root)) {
+            // Inside another requested root
+            return;
+        }
+        watch.stopWatching(root);
+        Set<File> nested = new HashSet<File>();
+        for (File requested : requestedRoots.keySet()) {
+            if (isSameOrDescendant(requested, root)) {
+                nested.add(requested);
+            }
+        }
+        for (File requested : nested) {
+            if (!isInside(requested, nested)) {
+                restartWatching(requested);
+            }
+        }
+    }
+
+    /**
+     * Watches a requested root again once it is no longer covered by another root, reporting an overflow or a failure to
+     * the clients that requested it.
+     */
+    private void restartWatching(File root) {
+        try {
+            watch.startWatching(root);
+            watchedRoots.add(root);
+            overflow(root);
+        } catch (NativeException e) {
+            byte[] failure = FileWatchProtocol.failure(e);
+            for (Connection connection : connections) {
+                for (File requested : connection.roots) {
+                    if (isSameOrDescendant(requested, root)) {
+                        connection.send(failure);
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Reports an overflow to the clients that requested roots in the given tree.
+     */
+    private void overflow(File tree) {
+        dispatch(Collections.<FileWatchEvent>singletonList(new DefaultFileWatchEvent(FileWatchEvent.Type.Overflow, tree)));
+    }
+
+    private void dispatch(List<FileWatchEvent> events) {
+        synchronized (lock) {
+            for (Connection connection : connections) {
+                List<FileWatchEvent> selected = connection.select(events);
+                if (!selected.isEmpty()) {
+                    connection.send(FileWatchProtocol.events(selected));
+                }
+            }
+        }
+    }
+
+    private void broadcast(byte[] message) {
+        synchronized (lock) {
+            for (Connection connection : connections) {
+                connection.send(message);
+            }
+        }
+    }
+
+    /**
+     * Returns true when the given file is inside one of the given roots, other than itself.
+     */
+    private static boolean isInside(File file, Set<File> roots) {
+        for (File parent = file.getParentFile(); parent != null; parent = parent.getParentFile()) {
+            if (roots.contains(parent)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isSameOrDescendant(File file, File root) {
+        String path = file.getPath();
+        String rootPath = root.getPath();
+        return path.startsWith(rootPath) && (path.length() == rootPath.length() || rootPath.endsWith(File.separator) || path.charAt(rootPath.length()) == File.separatorChar);
+    }
+
+    private static void join(Thread thread) {
+        if (Thread.currentThread() == thread) {
+            return;
+        }
+        boolean interrupted = false;
+        while (true) {
+            try {
+                thread.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private class Connection {
+        final UnixSocket socket;
+        final BlockingQueue<byte[]> outgoing = new LinkedBlockingQueue<byte[]>();
+        // Guarded by lock
+        final Set<File> roots = new LinkedHashSet<File>();
+        final Thread reader;
+        final Thread writer;
+
+        Connection(UnixSocket socket) {
+            this.socket = socket;
+            this.reader = new Thread(new Runnable() {
+                public void run() {
+                    readRequests(Connection.this);
+                }
+            }, "native-platform file watch server connection");
+            this.writer = new Thread(new Runnable() {
+                public void run() {
+                    writeMessages(Connection.this);
+                }
+            }, "native-platform file watch server writer");
+            reader.setDaemon(true);
+            writer.setDaemon(true);
+        }
+
+        void send(byte[] message) {
+            outgoing.add(message);
+        }
+
+        /**
+         * Selects the events for the roots of this client.
+         */
+        List<FileWatchEvent> select(List<FileWatchEvent> events) {
+            List<FileWatchEvent> selected = new ArrayList<FileWatchEvent>();
+            for (FileWatchEvent event : events) {
+                switch (event.getType()) {
+                    case Overflow:
+                        // Reported for the root of the watch, which may contain several roots of this client
+                        for (File root : roots) {
+                            if (isSameOrDescendant(root, event.getFile())) {
+                                selected.add(new DefaultFileWatchEvent(FileWatchEvent.Type.Overflow, root));
+                            }
+                        }
+                        break;
+                    case Renamed:
+                        boolean to = contains(event.getFile());
+                        boolean from = contains(event.getPreviousFile());
+                        if (to && from) {
+                            selected.add(event);
+                        } else if (to) {
+                            selected.add(new DefaultFileWatchEvent(FileWatchEvent.Type.Created, event.getFile()));
+                        } else if (from) {
+                            selected.add(new DefaultFileWatchEvent(FileWatchEvent.Type.Removed, event.getPreviousFile()));
+                        }
+                        break;
+                    default:
+                        if (contains(event.getFile())) {
+                            selected.add(event);
+                        }
+                }
+            }
+            return selected;
+        }
+
+        private boolean contains(File file) {
+            for (File root : roots) {
+                if (isSameOrDescendant(file, root)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2012 Adam Murdoch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.rubygrapefruit.platform.internal;
+
+import net.rubygrapefruit.platform.NativeException;
+import net.rubygrapefruit.platform.file.FileWatchService;
+import net.rubygrapefruit.platform.file.FileWatchOptions;
+import net.rubygrapefruit.platform.file.FileWatchServer;
+import net.rubygrapefruit.platform.file.FileWatcher;
+
+import java.io.File;
+
+public class DefaultFileWatchService implements FileWatchService {
+    private final FileWatcher watcher;
+
+    public DefaultFileWatchService(FileWatcher watcher) {
+        this.watcher = watcher;
+    }
+
+    public FileWatchServer startServer(File socketFile, FileWatchOptions options) throws NativeException {
+        return DefaultFileWatchServer.start(watcher, socketFile, options);
+    }
+
+    public FileWatcher connect(File socketFile) {
+        return new RemoteFileWatcher(socketFile);
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2012 Adam Murdoch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package net.rubygrapefruit.platform.internal;
+
+import net.rubygrapefruit.platform.NativeException;
+import net.rubygrapefruit.platform.file.DirEntry;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+public class DefaultLinuxFiles extends DefaultPosixFiles {
+    private static final int BUFFER_SIZE = 32 * 1024;
+
+    private final ThreadLocal<LinuxDirentReader> readers = new ThreadLocal<LinuxDirentReader>() {
+        @Override
+        protected LinuxDirentReader initialValue() {
+            return new LinuxDirentReader(ByteBuffer.allocateDirect(BUFFER_SIZE));
+        }
+    };
+
+    @Override
+    protected List<DirEntry> listNamesAndTypes(File dir, boolean linkTarget) throws NativeException {
+        FunctionResult result = new FunctionResult();
+        CompactDirList dirList = new CompactDirList();
+        readers.get().read(dir.getPath(), linkTarget, dirList, result);
+        if (result.isFailed()) {
+            throw listDirFailure(dir, result);
+        }
+        return dirList;
+    }
+}
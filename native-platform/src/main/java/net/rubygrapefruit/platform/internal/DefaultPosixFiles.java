@@ -17,14 +17,25 @@
 package net.rubygrapefruit.platform.internal;
 
 import net.rubygrapefruit.platform.NativeException;
+import net.rubygrapefruit.platform.file.CopyOptions;
+import net.rubygrapefruit.platform.file.CopyStrategy;
 import net.rubygrapefruit.platform.file.DirEntry;
+import net.rubygrapefruit.platform.file.DirectoryHandle;
+import net.rubygrapefruit.platform.file.ExtendedFileInfo;
 import net.rubygrapefruit.platform.file.FilePermissionException;
+import net.rubygrapefruit.platform.file.FileVisitor;
+import net.rubygrapefruit.platform.file.ListOptions;
+import net.rubygrapefruit.platform.file.MutablePosixFileInfo;
 import net.rubygrapefruit.platform.file.PosixFileInfo;
+import net.rubygrapefruit.platform.file.PosixFileInfoBatch;
 import net.rubygrapefruit.platform.file.PosixFiles;
+import net.rubygrapefruit.platform.internal.jni.FileCopyFunctions;
 import net.rubygrapefruit.platform.internal.jni.PosixFileFunctions;
 
 import java.io.File;
+import java.util.BitSet;
 import java.util.List;
+import java.util.Set;
 
 public class DefaultPosixFiles extends AbstractFiles implements PosixFiles {
     public PosixFileInfo stat(File file) throws NativeException {
@@ -44,18 +55,115 @@ public class DefaultPosixFiles extends AbstractFiles implements PosixFiles {
         return stat;
     }
 
+    public int stat(File file, boolean linkTarget, MutablePosixFileInfo details) {
+        return PosixFileFunctions.statInto(file.getPath(), linkTarget, details);
+    }
+
+    public ExtendedFileInfo statExtended(File file, Set<ExtendedFileInfo.Field> fields) throws NativeException {
+        return statExtended(file, false, fields);
+    }
+
+    public ExtendedFileInfo statExtended(File file, boolean linkTarget, Set<ExtendedFileInfo.Field> fields) throws NativeException {
+        FunctionResult result = new FunctionResult();
+        ExtendedFileStat stat = new ExtendedFileStat(file.getPath());
+        PosixFileFunctions.statExtended(file.getPath(), linkTarget, ExtendedFileStat.toMask(fields), stat, result);
+        if (result.isFailed()) {
+            if (result.getFailure() == FunctionResult.Failure.Permissions) {
+                throw new FilePermissionException(String.format("Could not get file details of %s: permission denied", file));
+            }
+            throw new NativeException(String.format("Could not get file details of %s: %s", file, result.getMessage()));
+        }
+        return stat;
+    }
+
+    public PosixFileInfoBatch statAll(List<File> files, boolean linkTarget) throws NativeException {
+        FunctionResult result = new FunctionResult();
+        FileStatBatch batch = new FileStatBatch(files);
+        PosixFileFunctions.statAll(batch.getPaths(), linkTarget, batch.types, batch.modes, batch.sizes, batch.lastModified, batch.failures, batch.errnos, result);
+        if (result.isFailed()) {
+            throw new NativeException(String.format("Could not get file details of %s files: %s", files.size(), result.getMessage()));
+        }
+        return batch;
+    }
+
+    @Override
+    public BitSet checkUnchanged(List<File> files, boolean linkTarget, long[] expectedSizes, long[] expectedLastModifiedTimes) throws NativeException {
+        checkExpectedDetails(files, expectedSizes, expectedLastModifiedTimes);
+        FunctionResult result = new FunctionResult();
+        long[] changed = new long[(files.size() + 63) / 64];
+        PosixFileFunctions.checkUnchanged(FileStatBatch.toPaths(files), linkTarget, expectedSizes, expectedLastModifiedTimes, changed, result);
+        if (result.isFailed()) {
+            throw new NativeException(String.format("Could not check %s files: %s", files.size(), result.getMessage()));
+        }
+        return BitSet.valueOf(changed);
+    }
+
     public List<DirEntry> listDir(File dir) throws NativeException {
         return listDir(dir, false);
     }
 
     public List<DirEntry> listDir(File dir, boolean linkTarget) throws NativeException {
+        return listDir(dir, linkTarget, false);
+    }
+
+    public List<DirEntry> listDir(File dir, ListOptions options) throws NativeException {
+        if (options.isNamesAndTypesOnly()) {
+            return listNamesAndTypes(dir, options.isLinkTarget());
+        }
+        return listDir(dir, options.isLinkTarget());
+    }
+
+    protected List<DirEntry> listNamesAndTypes(File dir, boolean linkTarget) throws NativeException {
+        return listDir(dir, linkTarget, true);
+    }
+
+    private List<DirEntry> listDir(File dir, boolean linkTarget, boolean namesAndTypesOnly) throws NativeException {
         FunctionResult result = new FunctionResult();
-        DirList dirList = new DirList();
-        PosixFileFunctions.readdir(dir.getPath(), linkTarget, dirList, result);
+        CompactDirList dirList = new CompactDirList();
+        PosixFileFunctions.readdir(dir.getPath(), linkTarget, namesAndTypesOnly, dirList, result);
         if (result.isFailed()) {
             throw listDirFailure(dir, result);
         }
-        return dirList.files;
+        return dirList;
+    }
+
+    @Override
+    public byte[] fingerprintDir(File dir, ListOptions options) throws NativeException {
+        FunctionResult result = new FunctionResult();
+        byte[] digest = new byte[FINGERPRINT_LENGTH];
+        PosixFileFunctions.fingerprintDir(dir.getPath(), options.isLinkTarget(), options.isNamesAndTypesOnly(), digest, result);
+        if (result.isFailed()) {
+            throw listDirFailure(dir, result);
+        }
+        return digest;
+    }
+
+    public CopyStrategy copy(File source, File destination, CopyOptions options) throws NativeException {
+        FunctionResult result = new FunctionResult();
+        int strategy = FileCopyFunctions.copy(source.getPath(), destination.getPath(), options.isPreserveMode(), options.isPreserveTimestamps(), result);
+        if (result.isFailed()) {
+            if (result.getFailure() == FunctionResult.Failure.Permissions) {
+                throw new FilePermissionException(String.format("Could not copy %s to %s: permission denied", source, destination));
+            }
+            throw new NativeException(String.format("Could not copy %s to %s: %s", source, destination, result.getMessage()));
+        }
+        return CopyStrategy.values()[strategy];
+    }
+
+    public DirectoryHandle openDirectory(File dir) throws NativeException {
+        return DefaultDirectoryHandle.open(dir);
+    }
+
+    public void walk(File root, FileVisitor visitor) throws NativeException {
+        walk(root, false, visitor);
+    }
+
+    public void walk(File root, boolean followLinks, FileVisitor visitor) throws NativeException {
+        FunctionResult result = new FunctionResult();
+        PosixFileFunctions.walk(root.getPath(), followLinks, new FileTreeWalk(root, followLinks, visitor), result);
+        if (result.isFailed()) {
+            throw listDirFailure(root, result);
+        }
     }
 
     public void setMode(File file, int perms) {
@@ -0,0 +1,226 @@
+/*
+ * Copyright 2012 Adam Murdoch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.rubygrapefruit.platform.internal;
+
+import net.rubygrapefruit.platform.NativeException;
+import net.rubygrapefruit.platform.file.DirEntry;
+import net.rubygrapefruit.platform.file.DirectorySnapshot;
+import net.rubygrapefruit.platform.file.FileHashCache;
+import net.rubygrapefruit.platform.file.FileHasher;
+import net.rubygrapefruit.platform.file.FileInfo;
+import net.rubygrapefruit.platform.file.FileWatcher;
+import net.rubygrapefruit.platform.file.ListOptions;
+import net.rubygrapefruit.platform.file.NoSuchFileException;
+import net.rubygrapefruit.platform.file.NotADirectoryException;
+import net.rubygrapefruit.platform.file.PosixFiles;
+import net.rubygrapefruit.platform.file.SnapshotDiffVisitor;
+import net.rubygrapefruit.platform.file.TreeSnapshotter;
+import net.rubygrapefruit.platform.file.WatchedTreeSnapshot;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Takes snapshots on a fork-join pool. Each directory is a task, which forks a task for each of its subdirectories and for
+ * each batch of its files, so that idle threads steal work from busy subtrees.
+ */
+public class DefaultTreeSnapshotter implements TreeSnapshotter {
+    // The number of files hashed by a single task, small enough to spread a large directory over the threads
+    private static final int FILES_PER_TASK = 16;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final byte[] NO_CONTENT = new byte[0];
+
+    private final PosixFiles files;
+    private final FileHasher hasher;
+    private final ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    public DefaultTreeSnapshotter(PosixFiles files, FileHasher hasher) {
+        this.files = files;
+        this.hasher = hasher;
+    }
+
+    public DirectorySnapshot snapshot(File root, FileHasher.Algorithm algorithm) throws NativeException {
+        return snapshot(root, algorithm, null);
+    }
+
+    public DirectorySnapshot snapshot(File root, FileHasher.Algorithm algorithm, @Nullable FileHashCache cache) throws NativeException {
+        DefaultDirectorySnapshot snapshot = pool.invoke(new SnapshotDirectory(root, statRoot(root), algorithm, cache));
+        if (snapshot == null) {
+            throw new NoSuchFileException(String.format("Could not snapshot directory %s as it does not exist.", root));
+        }
+        return snapshot;
+    }
+
+    public WatchedTreeSnapshot watch(File root, FileHasher.Algorithm algorithm, FileWatcher watcher, @Nullable FileHashCache cache) throws NativeException {
+        DefaultWatchedTreeSnapshot snapshot = new DefaultWatchedTreeSnapshot(root.getAbsoluteFile(), algorithm, cache, this, files);
+        snapshot.start(watcher);
+        return snapshot;
+    }
+
+    public void diff(DirectorySnapshot previous, DirectorySnapshot current, SnapshotDiffVisitor visitor) {
+        new SnapshotDiff(visitor).diff(previous, current);
+    }
+
+    /**
+     * Returns the details of the given root directory, following symlinks.
+     */
+    DirEntry statRoot(File root) throws NativeException {
+        FileInfo details = files.stat(root, true);
+        if (details.getType() == FileInfo.Type.Missing) {
+            throw new NoSuchFileException(String.format("Could not snapshot directory %s as it does not exist.", root));
+        }
+        if (details.getType() != FileInfo.Type.Directory) {
+            throw new NotADirectoryException(String.format("Could not snapshot directory %s as it is not a directory.", root));
+        }
+        return new DefaultDirEntry(root.getName(), details.getType(), details.getSize(), details.getLastModifiedTime());
+    }
+
+    /**
+     * Takes a snapshot of the given file, or of the given directory tree. Returns null when the file has been removed.
+     */
+    @Nullable
+    DefaultFileSnapshot snapshotEntry(File file, DirEntry details, FileHasher.Algorithm algorithm, @Nullable FileHashCache cache) throws NativeException {
+        if (details.getType() == FileInfo.Type.Directory) {
+            return pool.invoke(new SnapshotDirectory(file, details, algorithm, cache));
+        }
+        try {
+            return new DefaultFileSnapshot(details.getName(), details.getType(), details.getSize(), details.getLastModifiedTime(), hash(file, details.getType(), algorithm, cache));
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    private byte[] hash(File file, FileInfo.Type type, FileHasher.Algorithm algorithm, @Nullable FileHashCache cache) {
+        switch (type) {
+            case File:
+                return cache != null ? cache.hash(file, algorithm) : hasher.hash(file, algorithm);
+            case Symlink:
+                byte[] target = files.readLink(file).getBytes(UTF_8);
+                return DefaultFileHasher.hashBytes(target, target.length, algorithm);
+            default:
+                // Do not read devices, pipes and sockets
+                return DefaultFileHasher.hashBytes(NO_CONTENT, 0, algorithm);
+        }
+    }
+
+    private static DefaultFileSnapshot[] sorted(List<DefaultFileSnapshot> snapshots) {
+        DefaultFileSnapshot[] array = snapshots.toArray(new DefaultFileSnapshot[0]);
+        Arrays.sort(array, DefaultDirectorySnapshot.BY_NAME);
+        return array;
+    }
+
+    private class SnapshotDirectory extends RecursiveTask<DefaultDirectorySnapshot> {
+        private final File dir;
+        private final DirEntry details;
+        private final FileHasher.Algorithm algorithm;
+        @Nullable
+        private final FileHashCache cache;
+
+        SnapshotDirectory(File dir, DirEntry details, FileHasher.Algorithm algorithm, @Nullable FileHashCache cache) {
+            this.dir = dir;
+            this.details = details;
+            this.algorithm = algorithm;
+            this.cache = cache;
+        }
+
+        /**
+         * Returns null when the directory has been removed or replaced.
+         */
+        @Override
+        @Nullable
+        protected DefaultDirectorySnapshot compute() {
+            List<? extends DirEntry> entries;
+            try {
+                entries = files.listDir(dir, ListOptions.defaults());
+            } catch (NoSuchFileException e) {
+                return null;
+            } catch (NotADirectoryException e) {
+                return null;
+            }
+
+            List<ForkJoinTask<DefaultDirectorySnapshot>> directories = new ArrayList<ForkJoinTask<DefaultDirectorySnapshot>>();
+            List<ForkJoinTask<List<DefaultFileSnapshot>>> batches = new ArrayList<ForkJoinTask<List<DefaultFileSnapshot>>>();
+            List<DirEntry> batch = new ArrayList<DirEntry>(FILES_PER_TASK);
+            for (DirEntry entry : entries) {
+                if (entry.getType() == FileInfo.Type.Directory) {
+                    directories.add(new SnapshotDirectory(new File(dir, entry.getName()), entry, algorithm, cache).fork());
+                } else {
+                    batch.add(entry);
+                    if (batch.size() == FILES_PER_TASK) {
+                        batches.add(new SnapshotFiles(dir, batch, algorithm, cache).fork());
+                        batch = new ArrayList<DirEntry>(FILES_PER_TASK);
+                    }
+                }
+            }
+
+            // Hash the remaining files on this thread while the other tasks run
+            List<DefaultFileSnapshot> children = new SnapshotFiles(dir, batch, algorithm, cache).compute();
+            for (ForkJoinTask<List<DefaultFileSnapshot>> task : batches) {
+                children.addAll(task.join());
+            }
+            for (ForkJoinTask<DefaultDirectorySnapshot> task : directories) {
+                DefaultDirectorySnapshot child = task.join();
+                if (child != null) {
+                    children.add(child);
+                }
+            }
+            DefaultDirectorySnapshot snapshot = new DefaultDirectorySnapshot(details.getName(), details.getSize(), details.getLastModifiedTime(), sorted(children), algorithm);
+            // Calculate the hash here, so that the hashes of the directories are calculated in parallel too
+            snapshot.hash();
+            return snapshot;
+        }
+    }
+
+    private class SnapshotFiles extends RecursiveTask<List<DefaultFileSnapshot>> {
+        private final File dir;
+        private final List<DirEntry> entries;
+        private final FileHasher.Algorithm algorithm;
+        @Nullable
+        private final FileHashCache cache;
+
+        SnapshotFiles(File dir, List<DirEntry> entries, FileHasher.Algorithm algorithm, @Nullable FileHashCache cache) {
+            this.dir = dir;
+            this.entries = entries;
+            this.algorithm = algorithm;
+            this.cache = cache;
+        }
+
+        @Override
+        protected List<DefaultFileSnapshot> compute() {
+            List<DefaultFileSnapshot> snapshots = new ArrayList<DefaultFileSnapshot>(entries.size());
+            for (DirEntry entry : entries) {
+                File file = new File(dir, entry.getName());
+                byte[] hash;
+                try {
+                    hash = hash(file, entry.getType(), algorithm, cache);
+                } catch (NoSuchFileException e) {
+                    // Removed since the directory was listed
+                    continue;
+                }
+                snapshots.add(new DefaultFileSnapshot(entry.getName(), entry.getType(), entry.getSize(), entry.getLastModifiedTime(), hash));
+            }
+            return snapshots;
+        }
+    }
+}
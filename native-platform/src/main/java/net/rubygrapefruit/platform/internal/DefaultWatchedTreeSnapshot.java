@@ -0,0 +1,292 @@
+/*
+ * Copyright 2012 Adam Murdoch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package net.rubygrapefruit.platform.internal;
+
+import net.rubygrapefruit.platform.NativeException;
+import net.rubygrapefruit.platform.file.DirEntry;
+import net.rubygrapefruit.platform.file.DirectorySnapshot;
+import net.rubygrapefruit.platform.file.FileHashCache;
+import net.rubygrapefruit.platform.file.FileHasher;
+import net.rubygrapefruit.platform.file.FileInfo;
+import net.rubygrapefruit.platform.file.FileWatch;
+import net.rubygrapefruit.platform.file.FileWatchEvent;
+import net.rubygrapefruit.platform.file.FileWatchListener;
+import net.rubygrapefruit.platform.file.FileWatcher;
+import net.rubygrapefruit.platform.file.ListOptions;
+import net.rubygrapefruit.platform.file.NoSuchFileException;
+import net.rubygrapefruit.platform.file.NotADirectoryException;
+import net.rubygrapefruit.platform.file.PosixFiles;
+import net.rubygrapefruit.platform.file.WatchedTreeSnapshot;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects the paths reported by the watch into a tree of changes, and applies the changes to the current snapshot when the
+ * snapshot is queried. Directories along the path to a change are copied, and everything else is shared with the previous
+ * snapshot, including the hashes that have already been calculated. The hashes of the copied directories are calculated
+ * when first requested.
+ */
+public class DefaultWatchedTreeSnapshot implements WatchedTreeSnapshot {
+    private final File root;
+    private final FileHasher.Algorithm algorithm;
+    @Nullable
+    private final FileHashCache cache;
+    private final DefaultTreeSnapshotter snapshotter;
+    private final PosixFiles files;
+    private final Object lock = new Object();
+    // Guarded by lock
+    private Change changes = new Change();
+    // Guarded by lock
+    private boolean unreliable;
+    // Guarded by this
+    private DefaultDirectorySnapshot snapshot;
+    private FileWatch watch;
+
+    DefaultWatchedTreeSnapshot(File root, FileHasher.Algorithm algorithm, @Nullable FileHashCache cache, DefaultTreeSnapshotter snapshotter, PosixFiles files) {
+        this.root = root;
+        this.algorithm = algorithm;
+        this.cache = cache;
+        this.snapshotter = snapshotter;
+        this.files = files;
+    }
+
+    /**
+     * Starts the watch and then takes the initial snapshot, so that no change made while the snapshot is being taken is missed.
+     */
+    void start(FileWatcher watcher) throws NativeException {
+        watch = watcher.newWatch(new FileWatchListener() {
+            public void onChanges(List<FileWatchEvent> events) {
+                changed(events);
+            }
+
+            public void onFailure(NativeException failure) {
+                synchronized (lock) {
+                    unreliable = true;
+                }
+            }
+        });
+        try {
+            watch.startWatching(root);
+            synchronized (this) {
+                snapshot = (DefaultDirectorySnapshot) snapshotter.snapshot(root, algorithm, cache);
+            }
+        } catch (NativeException e) {
+            watch.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "WatchedTreeSnapshot{" + root + "}";
+    }
+
+    public File getRoot() {
+        return root;
+    }
+
+    public synchronized DirectorySnapshot getSnapshot() throws NativeException {
+        Change changes;
+        boolean unreliable;
+        synchronized (lock) {
+            changes = this.changes;
+            unreliable = this.unreliable;
+            this.changes = new Change();
+        }
+        if (unreliable || changes.rescan) {
+            snapshot = (DefaultDirectorySnapshot) snapshotter.snapshot(root, algorithm, cache);
+        } else if (changes.refresh || changes.relist || !changes.children.isEmpty()) {
+            DirEntry details = changes.refresh ? snapshotter.statRoot(root) : snapshot;
+            DefaultFileSnapshot updated = updateDirectory(root, snapshot, details, changes);
+            if (updated == null) {
+                // Removed while it was being updated
+                throw new NoSuchFileException(String.format("Could not snapshot directory %s as it does not exist.", root));
+            }
+            snapshot = (DefaultDirectorySnapshot) updated;
+        }
+        return snapshot;
+    }
+
+    public void close() throws NativeException {
+        watch.close();
+    }
+
+    private void changed(List<FileWatchEvent> events) {
+        synchronized (lock) {
+            for (FileWatchEvent event : events) {
+                switch (event.getType()) {
+                    case Overflow:
+                        changes.find(path(event.getFile())).rescan = true;
+                        break;
+                    case Modified:
+                        changes.find(path(event.getFile())).refresh = true;
+                        break;
+                    case Renamed:
+                        added(event.getPreviousFile());
+                        added(event.getFile());
+                        break;
+                    default:
+                        added(event.getFile());
+                }
+            }
+        }
+    }
+
+    /**
+     * Records that the given file was created or removed, which also changes the listing of its parent. The file is snapshotted
+     * again along with all of its descendants, as a directory may have been replaced by another directory, in which case
+     * none of the previous contents can be kept.
+     */
+    private void added(File file) {
+        List<String> path = path(file);
+        if (path == null) {
+            return;
+        }
+        if (path.isEmpty()) {
+            // The root itself has been removed or replaced, and is no longer being watched
+            unreliable = true;
+            return;
+        }
+        changes.find(path).rescan = true;
+        changes.find(path.subList(0, path.size() - 1)).relist = true;
+    }
+
+    /**
+     * Returns the names of the path from the root to the given file, or null when the file is not in the tree.
+     */
+    @Nullable
+    private List<String> path(File file) {
+        String rootPath = root.getPath();
+        String path = file.getPath();
+        if (path.equals(rootPath)) {
+            return new ArrayList<String>();
+        }
+        String prefix = rootPath.endsWith(File.separator) ? rootPath : rootPath + File.separatorChar;
+        if (!path.startsWith(prefix)) {
+            return null;
+        }
+        return new ArrayList<String>(Arrays.asList(path.substring(prefix.length()).split(File.separator)));
+    }
+
+    /**
+     * Applies the given changes to the given file or directory. Returns null when the file has been removed.
+     */
+    @Nullable
+    private DefaultFileSnapshot update(File file, @Nullable DefaultFileSnapshot previous, Change change) throws NativeException {
+        if (!change.rescan && previous != null && previous.getType() == FileInfo.Type.Directory && !change.refresh) {
+            return updateDirectory(file, (DefaultDirectorySnapshot) previous, previous, change);
+        }
+        FileInfo info = files.stat(file);
+        if (info.getType() == FileInfo.Type.Missing) {
+            return null;
+        }
+        DirEntry details = new DefaultDirEntry(file.getName(), info.getType(), info.getSize(), info.getLastModifiedTime());
+        if (!change.rescan && previous != null && previous.getType() == FileInfo.Type.Directory && details.getType() == FileInfo.Type.Directory) {
+            return updateDirectory(file, (DefaultDirectorySnapshot) previous, details, change);
+        }
+        return snapshotter.snapshotEntry(file, details, algorithm, cache);
+    }
+
+    /**
+     * Applies the given changes to the children of the given directory. Returns null when the directory has been removed.
+     */
+    @Nullable
+    private DefaultFileSnapshot updateDirectory(File dir, DefaultDirectorySnapshot previous, DirEntry details, Change change) throws NativeException {
+        List<DefaultFileSnapshot> children = new ArrayList<DefaultFileSnapshot>();
+        if (change.relist) {
+            List<? extends DirEntry> entries;
+            try {
+                entries = files.listDir(dir, ListOptions.defaults());
+            } catch (NoSuchFileException e) {
+                return null;
+            } catch (NotADirectoryException e) {
+                // Replaced since it was queried
+                return update(dir, null, change);
+            }
+            for (DirEntry entry : entries) {
+                File file = new File(dir, entry.getName());
+                DefaultFileSnapshot child = (DefaultFileSnapshot) previous.getChild(entry.getName());
+                Change childChange = change.children.get(entry.getName());
+                if (childChange != null) {
+                    child = update(file, child, childChange);
+                } else if (child == null || child.getType() != entry.getType()) {
+                    child = snapshotter.snapshotEntry(file, entry, algorithm, cache);
+                }
+                if (child != null) {
+                    children.add(child);
+                }
+            }
+        } else {
+            DefaultFileSnapshot[] previousChildren = previous.children().clone();
+            for (Map.Entry<String, Change> entry : change.children.entrySet()) {
+                int index = previous.indexOf(entry.getKey());
+                DefaultFileSnapshot child = update(new File(dir, entry.getKey()), index >= 0 ? previousChildren[index] : null, entry.getValue());
+                if (index >= 0) {
+                    previousChildren[index] = null;
+                }
+                if (child != null) {
+                    children.add(child);
+                }
+            }
+            for (DefaultFileSnapshot child : previousChildren) {
+                if (child != null) {
+                    children.add(child);
+                }
+            }
+        }
+        DefaultFileSnapshot[] sorted = children.toArray(new DefaultFileSnapshot[0]);
+        Arrays.sort(sorted, DefaultDirectorySnapshot.BY_NAME);
+        return new DefaultDirectorySnapshot(details.getName(), details.getSize(), details.getLastModifiedTime(), sorted, algorithm);
+    }
+
+    /**
+     * The changes to a file and its descendants.
+     */
+    private static class Change {
+        // Take a new snapshot of the file and all of its descendants
+        boolean rescan;
+        // Query the file again
+        boolean refresh;
+        // List the directory again
+        boolean relist;
+        final Map<String, Change> children = new HashMap<String, Change>();
+
+        Change find(@Nullable List<String> path) {
+            Change change = this;
+            if (path == null) {
+                // Not in the tree, so discard
+                return new Change();
+            }
+            for (String name : path) {
+                Change child = change.children.get(name);
+                if (child == null) {
+                    child = new Change();
+                    change.children.put(name, child);
+                }
+                change = child;
+            }
+            return change;
+        }
+    }
+}
@@ -31,39 +31,4 @@ public class DirList {
         DefaultDirEntry fileStat = new DefaultDirEntry(name, FileInfo.Type.values()[type], size, lastModified);
         files.add(fileStat);
     }
-
-    private static class DefaultDirEntry implements DirEntry {
-        private final String name;
-        private final Type type;
-        private final long size;
-        private final long lastModified;
-
-        DefaultDirEntry(String name, Type type, long size, long lastModified) {
-            this.name = name;
-            this.type = type;
-            this.size = size;
-            this.lastModified = lastModified;
-        }
-
-        @Override
-        public String toString() {
-            return name;
-        }
-
-        public String getName() {
-            return name;
-        }
-
-        public Type getType() {
-            return type;
-        }
-
-        public long getLastModifiedTime() {
-            return lastModified;
-        }
-
-        public long getSize() {
-            return size;
-        }
-    }
 }
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2012 Adam Murdoch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package net.rubygrapefruit.platform.internal;
+
+import net.rubygrapefruit.platform.file.ExtendedFileInfo;
+
+import java.util.Set;
+
+public class ExtendedFileStat extends FileStat implements ExtendedFileInfo {
+    private int availableFields;
+    private long modificationTimeNanos;
+    private long changeTimeNanos;
+    private long creationTimeNanos;
+    private long linkCount;
+    private long allocatedBlocks;
+
+    public ExtendedFileStat(String path) {
+        super(path);
+    }
+
+    static int toMask(Set<Field> fields) {
+        int mask = 0;
+        for (Field field : fields) {
+            mask |= 1 << field.ordinal();
+        }
+        return mask;
+    }
+
+    // Called from native code
+    @SuppressWarnings("UnusedDeclaration")
+    public void details(int type, int mode, int uid, int gid, long size, int blockSize, int availableFields, long modificationTimeNanos, long changeTimeNanos, long creationTimeNanos, long inode, long device, long linkCount, long allocatedBlocks) {
+        details(type, mode, uid, gid, size, Math.floorDiv(modificationTimeNanos, 1000000L), blockSize, device, inode);
+        this.availableFields = availableFields;
+        this.modificationTimeNanos = isAvailable(Field.LastModifiedTime) ? modificationTimeNanos : 0;
+        this.changeTimeNanos = changeTimeNanos;
+        this.creationTimeNanos = creationTimeNanos;
+        this.linkCount = linkCount;
+        this.allocatedBlocks = allocatedBlocks;
+    }
+
+    public boolean isAvailable(Field field) {
+        return (availableFields & (1 << field.ordinal())) != 0;
+    }
+
+    public long getLastModifiedTimeNanos() {
+        return modificationTimeNanos;
+    }
+
+    public long getChangeTimeNanos() {
+        return changeTimeNanos;
+    }
+
+    public long getCreationTimeNanos() {
+        return creationTimeNanos;
+    }
+
+    public long getLinkCount() {
+        return linkCount;
+    }
+
+    public long getAllocatedBlocks() {
+        return allocatedBlocks;
+    }
+}
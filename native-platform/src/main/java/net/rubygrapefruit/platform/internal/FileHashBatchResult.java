@@ -0,0 +1,83 @@
+/*
+ * Copyright 2012 Adam Murdoch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package net.rubygrapefruit.platform.internal;
+
+import net.rubygrapefruit.platform.NativeException;
+import net.rubygrapefruit.platform.file.FileHashBatch;
+import net.rubygrapefruit.platform.file.FileHasher;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Holds the digests of a batch of files in a single array, which is filled in by native code in a single call.
+ */
+public class FileHashBatchResult implements FileHashBatch {
+    private final List<File> files;
+    private final int digestLength;
+    final byte[] digests;
+    // Values of FunctionResult.Failure, only meaningful when the corresponding errno is not 0
+    final int[] failures;
+    final int[] errnos;
+
+    public FileHashBatchResult(List<File> files, FileHasher.Algorithm algorithm) {
+        this.files = files;
+        this.digestLength = algorithm.getDigestLength();
+        int count = files.size();
+        digests = new byte[count * digestLength];
+        failures = new int[count];
+        errnos = new int[count];
+    }
+
+    String[] getPaths() {
+        String[] paths = new String[files.size()];
+        for (int i = 0; i < paths.length; i++) {
+            paths[i] = files.get(i).getPath();
+        }
+        return paths;
+    }
+
+    public int size() {
+        return files.size();
+    }
+
+    public File getFile(int index) {
+        return files.get(index);
+    }
+
+    public byte[] getHash(int index) throws NativeException {
+        NativeException failure = getFailure(index);
+        if (failure != null) {
+            throw failure;
+        }
+        int start = index * digestLength;
+        return Arrays.copyOfRange(digests, start, start + digestLength);
+    }
+
+    public boolean isFailed(int index) {
+        return errnos[index] != 0;
+    }
+
+    @Nullable
+    public NativeException getFailure(int index) {
+        if (errnos[index] == 0) {
+            return null;
+        }
+        return DefaultFileHasher.hashFailure(files.get(index), FunctionResult.Failure.values()[failures[index]], String.format("could not read file (errno %d)", errnos[index]));
+    }
+}
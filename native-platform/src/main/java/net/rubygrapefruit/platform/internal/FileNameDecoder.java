@@ -0,0 +1,74 @@
+/*
+ * Copyright 2012 Adam Murdoch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.rubygrapefruit.platform.internal;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Decodes file names held in a buffer into a reusable character buffer, so that a name can be inspected without
+ * creating a {@link String} for it.
+ *
+ * <p>Not thread safe, as the character buffer is reused for each name that is decoded.</p>
+ */
+public class FileNameDecoder {
+    private final ByteBuffer source;
+    private final CharsetDecoder decoder = CompactDirList.FILE_NAME_CHARSET.newDecoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private CharBuffer chars = CharBuffer.allocate(256);
+
+    public FileNameDecoder(ByteBuffer buffer) {
+        this.source = buffer.duplicate();
+    }
+
+    /**
+     * Decodes the given bytes of the buffer. The result is only valid until the next call to this method.
+     */
+    public CharSequence decode(int start, int length) {
+        if (chars.capacity() < length) {
+            // A name never decodes to more characters than it has bytes
+            chars = CharBuffer.allocate(length);
+        }
+        chars.clear();
+        if (isAscii(start, length)) {
+            for (int i = 0; i < length; i++) {
+                chars.put((char) source.get(start + i));
+            }
+        } else {
+            source.limit(start + length);
+            source.position(start);
+            decoder.reset();
+            decoder.decode(source, chars, true);
+            decoder.flush(chars);
+            source.clear();
+        }
+        chars.flip();
+        return chars;
+    }
+
+    private boolean isAscii(int start, int length) {
+        for (int i = start; i < start + length; i++) {
+            if (source.get(i) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -27,12 +27,14 @@ public class FileStat implements PosixFileInfo {
     private long size;
     private long modificationTime;
     private long blockSize;
+    private long device;
+    private long inode;
 
     public FileStat(String path) {
         this.path = path;
     }
 
-    public void details(int type, int mode, int uid, int gid, long size, long modificationTime, int blockSize) {
+    public void details(int type, int mode, int uid, int gid, long size, long modificationTime, int blockSize, long device, long inode) {
         this.type = Type.values()[type];
         this.mode = mode;
         this.uid = uid;
@@ -40,6 +42,8 @@ public class FileStat implements PosixFileInfo {
         this.size = size;
         this.modificationTime = modificationTime;
         this.blockSize = blockSize;
+        this.device = device;
+        this.inode = inode;
     }
 
     @Override
@@ -74,4 +78,12 @@ public class FileStat implements PosixFileInfo {
     public long getLastModifiedTime() {
         return modificationTime;
     }
+
+    public long getDevice() {
+        return device;
+    }
+
+    public long getInode() {
+        return inode;
+    }
 }
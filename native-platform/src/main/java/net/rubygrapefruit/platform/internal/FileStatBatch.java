@@ -0,0 +1,120 @@
+/*
+ * Copyright 2012 Adam Murdoch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package net.rubygrapefruit.platform.internal;
+
+import net.rubygrapefruit.platform.NativeException;
+import net.rubygrapefruit.platform.file.FileInfo;
+import net.rubygrapefruit.platform.file.FilePermissionException;
+import net.rubygrapefruit.platform.file.PosixFileInfoBatch;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.util.List;
+
+/**
+ * Holds the details of a batch of files in parallel arrays, which are filled in by native code in a single call.
+ */
+public class FileStatBatch implements PosixFileInfoBatch {
+    private final List<File> files;
+    final int[] types;
+    final int[] modes;
+    final long[] sizes;
+    final long[] lastModified;
+    // Values of FunctionResult.Failure, only meaningful when the corresponding errno is not 0
+    final int[] failures;
+    final int[] errnos;
+    private NativeException[] exceptions;
+
+    public FileStatBatch(List<File> files) {
+        this.files = files;
+        int count = files.size();
+        types = new int[count];
+        modes = new int[count];
+        sizes = new long[count];
+        lastModified = new long[count];
+        failures = new int[count];
+        errnos = new int[count];
+    }
+
+    String[] getPaths() {
+        return toPaths(files);
+    }
+
+    static String[] toPaths(List<File> files) {
+        String[] paths = new String[files.size()];
+        for (int i = 0; i < paths.length; i++) {
+            paths[i] = files.get(i).getPath();
+        }
+        return paths;
+    }
+
+    void set(int index, FileInfo info) {
+        types[index] = info.getType().ordinal();
+        sizes[index] = info.getSize();
+        lastModified[index] = info.getLastModifiedTime();
+    }
+
+    void failed(int index, NativeException failure) {
+        if (exceptions == null) {
+            exceptions = new NativeException[files.size()];
+        }
+        exceptions[index] = failure;
+        types[index] = FileInfo.Type.Missing.ordinal();
+    }
+
+    public int size() {
+        return files.size();
+    }
+
+    public File getFile(int index) {
+        return files.get(index);
+    }
+
+    public FileInfo.Type getType(int index) {
+        return FileInfo.Type.values()[types[index]];
+    }
+
+    public int getMode(int index) {
+        return modes[index];
+    }
+
+    public long getSize(int index) {
+        return sizes[index];
+    }
+
+    public long getLastModifiedTime(int index) {
+        return lastModified[index];
+    }
+
+    public boolean isFailed(int index) {
+        return errnos[index] != 0 || (exceptions != null && exceptions[index] != null);
+    }
+
+    @Nullable
+    public NativeException getFailure(int index) {
+        if (exceptions != null && exceptions[index] != null) {
+            return exceptions[index];
+        }
+        if (errnos[index] == 0) {
+            return null;
+        }
+        File file = files.get(index);
+        if (FunctionResult.Failure.values()[failures[index]] == FunctionResult.Failure.Permissions) {
+            return new FilePermissionException(String.format("Could not get file details of %s: permission denied", file));
+        }
+        return new NativeException(String.format("Could not get file details of %s: could not stat file (errno %d)", file, errnos[index]));
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2012 Adam Murdoch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package net.rubygrapefruit.platform.internal;
+
+import net.rubygrapefruit.platform.NativeException;
+import net.rubygrapefruit.platform.file.DirEntry;
+import net.rubygrapefruit.platform.file.FileIdentitySet;
+import net.rubygrapefruit.platform.file.FileInfo;
+import net.rubygrapefruit.platform.file.FilePermissionException;
+import net.rubygrapefruit.platform.file.FileVisitor;
+import net.rubygrapefruit.platform.file.NoSuchFileException;
+import net.rubygrapefruit.platform.file.NotADirectoryException;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tracks the state of a walk of a directory tree and forwards the entries to a {@link FileVisitor}. Native code
+ * reports only the name of each entry, and the paths are built here from the directories currently being visited.
+ */
+public class FileTreeWalk {
+    private final File root;
+    private final FileVisitor visitor;
+    private final List<String> paths = new ArrayList<String>();
+    private final List<DirEntry> dirs = new ArrayList<DirEntry>();
+    // The directories visited so far, when symlinks are followed
+    @Nullable
+    private final FileIdentitySet visited;
+
+    public FileTreeWalk(File root, FileVisitor visitor) {
+        this(root, false, visitor);
+    }
+
+    public FileTreeWalk(File root, boolean followLinks, FileVisitor visitor) {
+        this.root = root;
+        this.visitor = visitor;
+        this.visited = followLinks ? new FileIdentitySet() : null;
+    }
+
+    private String childPath(String name) {
+        return paths.get(paths.size() - 1) + File.separatorChar + name;
+    }
+
+    // Called from native code
+    // The name is null for the root directory
+    @SuppressWarnings("UnusedDeclaration")
+    int enterDirectory(String name, long lastModified, long device, long inode) {
+        String path = name == null ? root.getPath() : childPath(name);
+        DirEntry dir = new DefaultDirEntry(name == null ? root.getName() : name, FileInfo.Type.Directory, 0, lastModified, inode);
+        if (visited != null && !visited.add(device, inode)) {
+            // Reached again through a symlink, possibly one that forms a cycle. Report it without visiting its entries again
+            FileVisitor.Result result = visitor.visitFile(path, dir);
+            return result == FileVisitor.Result.Continue ? FileVisitor.Result.SkipSubtree.ordinal() : result.ordinal();
+        }
+        FileVisitor.Result result = visitor.preVisitDirectory(path, dir);
+        if (result == FileVisitor.Result.Continue) {
+            paths.add(path);
+            dirs.add(dir);
+        }
+        return result.ordinal();
+    }
+
+    // Called from native code
+    @SuppressWarnings("UnusedDeclaration")
+    int visitFile(String name, int type, long size, long lastModified, long inode) {
+        DirEntry file = new DefaultDirEntry(name, FileInfo.Type.values()[type], size, lastModified, inode);
+        return visitor.visitFile(childPath(name), file).ordinal();
+    }
+
+    // Called from native code
+    @SuppressWarnings("UnusedDeclaration")
+    int exitDirectory() {
+        String path = paths.remove(paths.size() - 1);
+        DirEntry dir = dirs.remove(dirs.size() - 1);
+        return visitor.postVisitDirectory(path, dir).ordinal();
+    }
+
+    // Called from native code, when the entries of the current directory cannot be read
+    @SuppressWarnings("UnusedDeclaration")
+    int failed(int failure, int errno) {
+        String path = paths.get(paths.size() - 1);
+        NativeException exception;
+        switch (FunctionResult.Failure.values()[failure]) {
+            case NoSuchFile:
+                exception = new NoSuchFileException(String.format("Could not list directory %s as this directory does not exist.", path));
+                break;
+            case NotADirectory:
+                exception = new NotADirectoryException(String.format("Could not list directory %s as it is not a directory.", path));
+                break;
+            case Permissions:
+                exception = new FilePermissionException(String.format("Could not list directory %s: permission denied", path));
+                break;
+            default:
+                exception = new NativeException(String.format("Could not list directory %s: could not read directory (errno %d)", path, errno));
+        }
+        return failed(exception);
+    }
+
+    // Called from native code, when the details of an entry of the current directory cannot be queried
+    @SuppressWarnings("UnusedDeclaration")
+    int statFailed(String name, int failure, int errno) {
+        String path = childPath(name);
+        NativeException exception;
+        if (FunctionResult.Failure.values()[failure] == FunctionResult.Failure.Permissions) {
+            exception = new FilePermissionException(String.format("Could not get file details of %s: permission denied", path));
+        } else {
+            exception = new NativeException(String.format("Could not get file details of %s: could not stat file (errno %d)", path, errno));
+        }
+        return visitor.visitFailed(path, exception).ordinal();
+    }
+
+    int failed(NativeException failure) {
+        return visitor.visitFailed(paths.get(paths.size() - 1), failure).ordinal();
+    }
+}
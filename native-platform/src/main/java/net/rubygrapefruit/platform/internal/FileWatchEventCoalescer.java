@@ -0,0 +1,320 @@
+/*
+ * Copyright 2012 Adam Murdoch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.rubygrapefruit.platform.internal;
+
+import net.rubygrapefruit.platform.file.FileWatchEvent;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Folds the change events for each path over a latency window, so that a burst of changes to a path is delivered as a
+ * single event. Pending events are held in a trie keyed by path segment, so that the pending events for the
+ * descendants of a directory can be discarded in one step when the directory is removed or its events overflow.
+ *
+ * <p>Not thread safe.</p>
+ */
+public class FileWatchEventCoalescer {
+    private final long latencyNanos;
+    private Node root = new Node();
+    private boolean hasPending;
+    private long windowStart;
+    // The source of a move, waiting for the event for the destination. The kernel queues the two events together
+    private File moveSource;
+    private int moveCookie;
+
+    public FileWatchEventCoalescer(long latencyMillis) {
+        this.latencyNanos = TimeUnit.MILLISECONDS.toNanos(latencyMillis);
+    }
+
+    /**
+     * Adds an event.
+     *
+     * @param moveCookie Non-zero when the event is one half of a move, in which case a {@link FileWatchEvent.Type#Removed}
+     * event for the source is followed by a {@link FileWatchEvent.Type#Created} event for the destination with the same cookie.
+     */
+    public void add(FileWatchEvent.Type type, File file, int moveCookie, long now) {
+        if (!hasPending) {
+            hasPending = true;
+            windowStart = now;
+        }
+        if (moveCookie != 0 && type == FileWatchEvent.Type.Created && moveSource != null && moveCookie == this.moveCookie) {
+            File source = moveSource;
+            moveSource = null;
+            renamed(source, file);
+            return;
+        }
+        completeMove();
+        if (moveCookie != 0 && type == FileWatchEvent.Type.Removed) {
+            moveSource = file;
+            this.moveCookie = moveCookie;
+            return;
+        }
+        switch (type) {
+            case Overflow:
+                overflow(file);
+                break;
+            case Removed:
+                removed(file);
+                break;
+            default:
+                changed(type, file);
+        }
+    }
+
+    /**
+     * Returns the time until the pending events should be delivered, in milliseconds, or -1 when there are no pending events.
+     */
+    public int getFlushDelayMillis(long now) {
+        if (!hasPending) {
+            return -1;
+        }
+        long remaining = windowStart + latencyNanos - now;
+        if (remaining <= 0) {
+            return 0;
+        }
+        // Round up, to avoid waking up just before the window ends
+        return (int) Math.min(Integer.MAX_VALUE, TimeUnit.NANOSECONDS.toMillis(remaining + TimeUnit.MILLISECONDS.toNanos(1) - 1));
+    }
+
+    /**
+     * Adds the pending events to the given list when the latency window has ended.
+     */
+    public void flushDue(long now, List<FileWatchEvent> dest) {
+        if (hasPending && now - windowStart >= latencyNanos) {
+            flush(dest);
+        }
+    }
+
+    /**
+     * Adds the pending events to the given list, parents before their children.
+     */
+    public void flush(List<FileWatchEvent> dest) {
+        completeMove();
+        root.collect(dest);
+        root = new Node();
+        hasPending = false;
+    }
+
+    /**
+     * Reports a move whose destination is not watched as a removal of the source.
+     */
+    private void completeMove() {
+        if (moveSource != null) {
+            File source = moveSource;
+            moveSource = null;
+            removed(source);
+        }
+    }
+
+    private void changed(FileWatchEvent.Type type, File file) {
+        Node node = node(file);
+        if (node == null) {
+            return;
+        }
+        if (node.type == null) {
+            node.set(type, file, null);
+        } else if (node.type == FileWatchEvent.Type.Removed) {
+            // Replaced. The events for the descendants were discarded with the removal, so report the file as created
+            // rather than modified, so that the listener does not keep any of the previous contents
+            node.set(FileWatchEvent.Type.Created, file, null);
+        } else if (node.type == FileWatchEvent.Type.Modified && type == FileWatchEvent.Type.Created) {
+            node.set(FileWatchEvent.Type.Modified, file, null);
+        }
+        // Otherwise, a created, modified or renamed file that changes again is still created, modified or renamed
+    }
+
+    private void removed(File file) {
+        Node node = node(file);
+        if (node == null) {
+            return;
+        }
+        List<File> movedIn = node.clearDescendants(file.getPath());
+        FileWatchEvent.Type previous = node.type;
+        File previousFile = node.previousFile;
+        if (previous == FileWatchEvent.Type.Created) {
+            // Created and removed within the window
+            node.clear();
+        } else if (previous == FileWatchEvent.Type.Renamed) {
+            // Moved here and then removed, so it is the original location that has gone
+            node.clear();
+            removed(previousFile);
+        } else {
+            node.set(FileWatchEvent.Type.Removed, file, null);
+        }
+        for (File source : movedIn) {
+            removed(source);
+        }
+    }
+
+    private void renamed(File source, File destination) {
+        Node sourceNode = find(source);
+        FileWatchEvent.Type sourceType = sourceNode == null ? null : sourceNode.type;
+        File origin = source;
+        if (sourceNode != null) {
+            if (sourceType == FileWatchEvent.Type.Renamed) {
+                origin = sourceNode.previousFile;
+            }
+            // The event for the destination covers the whole tree, so discard the events for the old locations of its
+            // descendants, as removed() does
+            List<File> movedIn = sourceNode.clearDescendants(source.getPath());
+            sourceNode.clear();
+            for (File movedSource : movedIn) {
+                removed(movedSource);
+            }
+        }
+        if (sourceType == FileWatchEvent.Type.Created) {
+            // A new file, such as the temporary file of an editor, moved into place
+            changed(FileWatchEvent.Type.Created, destination);
+            return;
+        }
+        Node node = node(destination);
+        if (node == null) {
+            removed(origin);
+        } else if (origin.equals(destination)) {
+            // Moved back again
+            node.set(FileWatchEvent.Type.Modified, destination, null);
+        } else {
+            node.set(FileWatchEvent.Type.Renamed, destination, origin);
+        }
+    }
+
+    private void overflow(File file) {
+        Node node = node(file);
+        if (node != null) {
+            node.clearDescendants(file.getPath());
+            node.set(FileWatchEvent.Type.Overflow, file, null);
+        }
+    }
+
+    /**
+     * Returns the node for the given file, creating it if required. Returns null when the events for the file have been
+     * discarded because the events for one of its ancestors have overflowed.
+     */
+    @Nullable
+    private Node node(File file) {
+        String path = file.getPath();
+        Node node = root;
+        int start = 0;
+        while (start < path.length()) {
+            if (node.type == FileWatchEvent.Type.Overflow) {
+                return null;
+            }
+            int end = path.indexOf(File.separatorChar, start);
+            if (end < 0) {
+                end = path.length();
+            }
+            if (end > start) {
+                node = node.child(path.substring(start, end));
+            }
+            start = end + 1;
+        }
+        return node.type == FileWatchEvent.Type.Overflow && !file.equals(node.file) ? null : node;
+    }
+
+    /**
+     * Returns the node for the given file, or null when there is none.
+     */
+    @Nullable
+    private Node find(File file) {
+        String path = file.getPath();
+        Node node = root;
+        int start = 0;
+        while (node != null && start < path.length()) {
+            int end = path.indexOf(File.separatorChar, start);
+            if (end < 0) {
+                end = path.length();
+            }
+            if (end > start) {
+                node = node.children == null ? null : node.children.get(path.substring(start, end));
+            }
+            start = end + 1;
+        }
+        return node;
+    }
+
+    private static class Node {
+        @Nullable
+        Map<String, Node> children;
+        @Nullable
+        FileWatchEvent.Type type;
+        File file;
+        @Nullable
+        File previousFile;
+
+        Node child(String name) {
+            if (children == null) {
+                children = new LinkedHashMap<String, Node>();
+            }
+            Node child = children.get(name);
+            if (child == null) {
+                child = new Node();
+                children.put(name, child);
+            }
+            return child;
+        }
+
+        void set(FileWatchEvent.Type type, File file, @Nullable File previousFile) {
+            this.type = type;
+            this.file = file;
+            this.previousFile = previousFile;
+        }
+
+        void clear() {
+            set(null, null, null);
+        }
+
+        /**
+         * Discards the pending events of the descendants of this node. Returns the original locations of any descendants that
+         * were moved from outside the given directory, as these have now gone.
+         */
+        List<File> clearDescendants(String path) {
+            List<File> movedIn = new ArrayList<File>();
+            collectMovedIn(path + File.separatorChar, movedIn);
+            children = null;
+            return movedIn;
+        }
+
+        private void collectMovedIn(String prefix, List<File> movedIn) {
+            if (children == null) {
+                return;
+            }
+            for (Node child : children.values()) {
+                if (child.type == FileWatchEvent.Type.Renamed && !child.previousFile.getPath().startsWith(prefix)) {
+                    movedIn.add(child.previousFile);
+                }
+                child.collectMovedIn(prefix, movedIn);
+            }
+        }
+
+        void collect(List<FileWatchEvent> dest) {
+            if (type != null) {
+                dest.add(new DefaultFileWatchEvent(type, file, previousFile));
+            }
+            if (children != null) {
+                for (Node child : children.values()) {
+                    child.collect(dest);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2012 Adam Murdoch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.rubygrapefruit.platform.internal;
+
+import net.rubygrapefruit.platform.NativeException;
+import net.rubygrapefruit.platform.file.FilePermissionException;
+import net.rubygrapefruit.platform.file.FileWatchEvent;
+import net.rubygrapefruit.platform.file.NoSuchFileException;
+import net.rubygrapefruit.platform.file.NotADirectoryException;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The messages exchanged between a {@link DefaultFileWatchServer} and a {@link RemoteFileWatch}.
+ *
+ * <p>A client starts by sending {@link #MAGIC} and {@link #VERSION}, and the server replies with a {@link #RESULT}
+ * message. Each message after that starts with a type byte. The client sends {@link #WATCH} and {@link #UNWATCH}
+ * requests, one at a time, and the server replies to each with a {@link #RESULT} message. The server sends
+ * {@link #EVENTS} and {@link #FAILURE} messages at any time. Paths are written in modified UTF-8.</p>
+ */
+class FileWatchProtocol {
+    static final int MAGIC = 0x4e504657;
+    static final int VERSION = 1;
+
+    // Client to server: path
+    static final byte WATCH = 1;
+    static final byte UNWATCH = 2;
+    // Server to client: status, message when not OK
+    static final byte RESULT = 3;
+    // Server to client: count, then for each event its type ordinal, path and, for renames, previous path
+    static final byte EVENTS = 4;
+    // Server to client: message
+    static final byte FAILURE = 5;
+
+    private static final byte OK = 0;
+    private static final byte FAILED = 1;
+    private static final byte NO_SUCH_FILE = 2;
+    private static final byte NOT_A_DIRECTORY = 3;
+    private static final byte PERMISSIONS = 4;
+
+    static byte[] request(byte type, File path) {
+        MessageBuilder message = new MessageBuilder();
+        try {
+            message.out.writeByte(type);
+            message.out.writeUTF(path.getPath());
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return message.toByteArray();
+    }
+
+    /**
+     * Encodes the result of a request, which failed when the given failure is not null.
+     */
+    static byte[] result(@Nullable NativeException failure) {
+        MessageBuilder message = new MessageBuilder();
+        try {
+            message.out.writeByte(RESULT);
+            if (failure == null) {
+                message.out.writeByte(OK);
+            } else {
+                message.out.writeByte(status(failure));
+                message.out.writeUTF(String.valueOf(failure.getMessage()));
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return message.toByteArray();
+    }
+
+    private static byte status(NativeException failure) {
+        if (failure instanceof NoSuchFileException) {
+            return NO_SUCH_FILE;
+        }
+        if (failure instanceof NotADirectoryException) {
+            return NOT_A_DIRECTORY;
+        }
+        if (failure instanceof FilePermissionException) {
+            return PERMISSIONS;
+        }
+        return FAILED;
+    }
+
+    /**
+     * Decodes the body of a {@link #RESULT} message, returning the failure or null when the request succeeded.
+     */
+    @Nullable
+    static NativeException readResult(DataInputStream in) throws IOException {
+        byte status = in.readByte();
+        if (status == OK) {
+            return null;
+        }
+        String message = in.readUTF();
+        switch (status) {
+            case NO_SUCH_FILE:
+                return new NoSuchFileException(message);
+            case NOT_A_DIRECTORY:
+                return new NotADirectoryException(message);
+            case PERMISSIONS:
+                return new FilePermissionException(message);
+            default:
+                return new NativeException(message);
+        }
+    }
+
+    static byte[] events(List<FileWatchEvent> events) {
+        MessageBuilder message = new MessageBuilder();
+        try {
+            message.out.writeByte(EVENTS);
+            message.out.writeInt(events.size());
+            for (FileWatchEvent event : events) {
+                message.out.writeByte(event.getType().ordinal());
+                message.out.writeUTF(event.getFile().getPath());
+                if (event.getType() == FileWatchEvent.Type.Renamed) {
+                    message.out.writeUTF(event.getPreviousFile().getPath());
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return message.toByteArray();
+    }
+
+    /**
+     * Decodes the body of an {@link #EVENTS} message.
+     */
+    static List<FileWatchEvent> readEvents(DataInputStream in) throws IOException {
+        FileWatchEvent.Type[] types = FileWatchEvent.Type.values();
+        int count = in.readInt();
+        List<FileWatchEvent> events = new ArrayList<FileWatchEvent>(count);
+        for (int i = 0; i < count; i++) {
+            FileWatchEvent.Type type = types[in.readByte()];
+            File file = new File(in.readUTF());
+            File previousFile = type == FileWatchEvent.Type.Renamed ? new File(in.readUTF()) : null;
+            events.add(new DefaultFileWatchEvent(type, file, previousFile));
+        }
+        return events;
+    }
+
+    static byte[] failure(NativeException failure) {
+        MessageBuilder message = new MessageBuilder();
+        try {
+            message.out.writeByte(FAILURE);
+            message.out.writeUTF(String.valueOf(failure.getMessage()));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return message.toByteArray();
+    }
+
+    private static class MessageBuilder {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+
+        byte[] toByteArray() {
+            return bytes.toByteArray();
+        }
+    }
+}
@@ -22,7 +22,8 @@ public class FunctionResult {
         Generic,
         NoSuchFile,
         NotADirectory,
-        Permissions
+        Permissions,
+        InsufficientResources
     }
     private String message;
     private int errno;
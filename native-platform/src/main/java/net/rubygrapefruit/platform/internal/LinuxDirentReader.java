@@ -0,0 +1,145 @@
+/*
+ * Copyright 2012 Adam Murdoch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package net.rubygrapefruit.platform.internal;
+
+import net.rubygrapefruit.platform.file.FileInfo;
+import net.rubygrapefruit.platform.internal.jni.LinuxFileFunctions;
+import net.rubygrapefruit.platform.internal.jni.PosixFileFunctions;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Lists the names and types of the entries of a directory on Linux. Native code reads raw {@code linux_dirent64}
+ * records into a direct buffer in large chunks using {@code getdents64()}, and the records are decoded here. This
+ * avoids a call from native code back into Java for each entry, and the names are copied into the list without being decoded.
+ *
+ * <p>Not thread safe, as the buffer is reused for each directory that is read.</p>
+ */
+public class LinuxDirentReader {
+    public static final int MIN_BUFFER_SIZE = 4096;
+
+    // Layout of struct linux_dirent64
+    private static final int D_INO_OFFSET = 0;
+    private static final int D_RECLEN_OFFSET = 16;
+    private static final int D_TYPE_OFFSET = 18;
+    private static final int D_NAME_OFFSET = 19;
+
+    // Values of d_type
+    private static final int DT_UNKNOWN = 0;
+    private static final int DT_DIR = 4;
+    private static final int DT_REG = 8;
+    private static final int DT_LNK = 10;
+
+    private final ByteBuffer buffer;
+
+    /**
+     * @param buffer A direct buffer to read the records into.
+     */
+    public LinuxDirentReader(ByteBuffer buffer) {
+        if (!buffer.isDirect()) {
+            throw new IllegalArgumentException("Buffer must be a direct buffer.");
+        }
+        if (buffer.capacity() < MIN_BUFFER_SIZE) {
+            throw new IllegalArgumentException(String.format("Buffer must have a capacity of at least %s bytes.", MIN_BUFFER_SIZE));
+        }
+        this.buffer = buffer.duplicate().order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Adds the name and type of each entry of the given directory to the given list. The size and last modification time are reported as 0.
+     */
+    public void read(String path, boolean followLink, CompactDirList dest, FunctionResult result) {
+        int fd = LinuxFileFunctions.openDir(path, result);
+        if (result.isFailed()) {
+            return;
+        }
+        try {
+            while (true) {
+                int count = LinuxFileFunctions.readDirEntries(fd, buffer, result);
+                if (result.isFailed() || count == 0) {
+                    return;
+                }
+                decode(path, followLink, count, dest, result);
+                if (result.isFailed()) {
+                    return;
+                }
+            }
+        } finally {
+            LinuxFileFunctions.closeDir(fd);
+        }
+    }
+
+    private void decode(String path, boolean followLink, int count, CompactDirList dest, FunctionResult result) {
+        int offset = 0;
+        while (offset < count) {
+            long inode = buffer.getLong(offset + D_INO_OFFSET);
+            int recordLength = buffer.getShort(offset + D_RECLEN_OFFSET) & 0xFFFF;
+            int type = buffer.get(offset + D_TYPE_OFFSET) & 0xFF;
+            int nameStart = offset + D_NAME_OFFSET;
+            int nameEnd = nameStart;
+            while (buffer.get(nameEnd) != 0) {
+                nameEnd++;
+            }
+            int nameLength = nameEnd - nameStart;
+            offset += recordLength;
+
+            if (isDotOrDotDot(nameStart, nameLength)) {
+                continue;
+            }
+            FileInfo.Type fileType;
+            if (type == DT_UNKNOWN || (type == DT_LNK && followLink)) {
+                FileStat stat = stat(path, nameStart, nameLength, followLink, result);
+                if (result.isFailed()) {
+                    return;
+                }
+                fileType = stat.getType();
+                inode = stat.getInode();
+            } else if (type == DT_REG) {
+                fileType = FileInfo.Type.File;
+            } else if (type == DT_DIR) {
+                fileType = FileInfo.Type.Directory;
+            } else if (type == DT_LNK) {
+                fileType = FileInfo.Type.Symlink;
+            } else {
+                fileType = FileInfo.Type.Other;
+            }
+            dest.add(buffer, nameStart, nameLength, fileType.ordinal(), inode);
+        }
+    }
+
+    private boolean isDotOrDotDot(int nameStart, int nameLength) {
+        if (nameLength == 0 || nameLength > 2 || buffer.get(nameStart) != '.') {
+            return false;
+        }
+        return nameLength == 1 || buffer.get(nameStart + 1) == '.';
+    }
+
+    /**
+     * Queries the details of an entry whose type cannot be determined from its directory record.
+     */
+    private FileStat stat(String dir, int nameStart, int nameLength, boolean followLink, FunctionResult result) {
+        byte[] nameBytes = new byte[nameLength];
+        for (int i = 0; i < nameLength; i++) {
+            nameBytes[i] = buffer.get(nameStart + i);
+        }
+        String path = dir + File.separatorChar + new String(nameBytes, CompactDirList.FILE_NAME_CHARSET);
+        FileStat stat = new FileStat(path);
+        PosixFileFunctions.stat(path, followLink, stat, result);
+        return stat;
+    }
+}
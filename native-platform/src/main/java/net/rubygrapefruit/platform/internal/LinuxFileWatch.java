@@ -0,0 +1,864 @@
+/*
+ * Copyright 2012 Adam Murdoch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.rubygrapefruit.platform.internal;
+
+import net.rubygrapefruit.platform.NativeException;
+import net.rubygrapefruit.platform.file.DirEntry;
+import net.rubygrapefruit.platform.file.FileInfo;
+import net.rubygrapefruit.platform.file.FilePermissionException;
+import net.rubygrapefruit.platform.file.FileSystemInfo;
+import net.rubygrapefruit.platform.file.FileSystems;
+import net.rubygrapefruit.platform.file.FileWatch;
+import net.rubygrapefruit.platform.file.FileWatchEvent;
+import net.rubygrapefruit.platform.file.FileWatchFilter;
+import net.rubygrapefruit.platform.file.FileWatchListener;
+import net.rubygrapefruit.platform.file.FileWatchOptions;
+import net.rubygrapefruit.platform.file.Files;
+import net.rubygrapefruit.platform.file.ListOptions;
+import net.rubygrapefruit.platform.file.NoSuchFileException;
+import net.rubygrapefruit.platform.file.NotADirectoryException;
+import net.rubygrapefruit.platform.internal.jni.InsufficientResourcesForWatchingException;
+import net.rubygrapefruit.platform.internal.jni.LinuxFileWatcherFunctions;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import static net.rubygrapefruit.platform.internal.jni.LinuxFileWatcherFunctions.*;
+
+/**
+ * A watch backed by an inotify instance. A single thread reads the events for all watched directories and notifies the listener.
+ *
+ * <p>Native code reads raw {@code inotify_event} records into a direct buffer that is reused for each batch, and the
+ * records are decoded here in place. A {@link File} and an event object are only created for the events accepted by the
+ * filter, so the memory used while handling a burst of events is bounded by the size of the buffer.</p>
+ *
+ * <p>The number of inotify watches is limited, both by the options of the watch and by the per-user limit shared with
+ * other processes. When a directory cannot be watched, the watches of a directory tree that has been inactive for some time
+ * are removed and that tree is polled instead. When there is no such tree, the directory itself is polled. A polled tree
+ * is listed at an interval that backs off while nothing changes, and is watched again once it becomes active and there are
+ * watches available. Directories on file systems that do not report changes made by other hosts are always polled.</p>
+ */
+public class LinuxFileWatch implements FileWatch {
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    // Layout of struct inotify_event
+    private static final int MASK_OFFSET = 4;
+    private static final int COOKIE_OFFSET = 8;
+    private static final int LEN_OFFSET = 12;
+    private static final int NAME_OFFSET = 16;
+
+    private static final long MIN_POLL_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+    private static final long MAX_POLL_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(8);
+    // The number of consecutive polls of a tree that find changes before the tree is watched again
+    private static final int ACTIVE_POLLS_BEFORE_WATCHING = 2;
+    // How long a tree must have been inactive before its watches are given to another tree
+    private static final long COLD_AFTER_NANOS = TimeUnit.SECONDS.toNanos(60);
+    // Network and FUSE file systems, for which inotify does not report the changes made by other hosts or by the file system itself
+    private static final Set<String> POLLED_FILE_SYSTEM_TYPES = new HashSet<String>(Arrays.asList("nfs", "nfs4", "cifs", "smb3", "smbfs", "9p", "vboxsf", "fuse", "fuseblk"));
+
+    private static final FileWatchFilter ACCEPT_ALL = new FileWatchFilter() {
+        public boolean accept(FileWatchEvent.Type type, File directory, CharSequence name) {
+            return true;
+        }
+    };
+
+    private final Files files;
+    private final FileSystems fileSystems;
+    private final WatchBudget budget;
+    private final FileWatchFilter filter;
+    @Nullable
+    private final FileWatchEventCoalescer coalescer;
+    private final boolean overflowRecovery;
+    private final int maxWatches;
+    private final FileWatchListener listener;
+    private final int watchFd;
+    private final int wakeFd;
+    private final Thread thread;
+    private final Object lock = new Object();
+    // The following are guarded by lock
+    private final Set<File> roots = new LinkedHashSet<File>();
+    // Natively watched directories by watch descriptor
+    private final Map<Integer, WatchedDirectory> directories = new HashMap<Integer, WatchedDirectory>();
+    // Watched and polled directories by path, sorted so that the directories of a tree can be found efficiently
+    private final TreeMap<String, WatchedDirectory> watchesByPath = new TreeMap<String, WatchedDirectory>();
+    // The top directory of each polled tree by path
+    private final TreeMap<String, PolledTree> polledTrees = new TreeMap<String, PolledTree>();
+    // Directories that must be polled, because they are on a file system that inotify does not support
+    private final Set<String> pollingPaths = new HashSet<String>();
+    private boolean closed;
+    // The following are only used by the reader thread
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.nativeOrder());
+    private final FileNameDecoder names = new FileNameDecoder(buffer);
+    private List<FileWatchEvent> pendingEvents = new ArrayList<FileWatchEvent>();
+    private final List<NativeException> pendingFailures = new ArrayList<NativeException>();
+    private long readTime;
+
+    private LinuxFileWatch(Files files, FileSystems fileSystems, WatchBudget budget, FileWatchOptions options, FileWatchListener listener, int watchFd, int wakeFd) {
+        this.files = files;
+        this.fileSystems = fileSystems;
+        this.budget = budget;
+        this.filter = options.getFilter() == null ? ACCEPT_ALL : options.getFilter();
+        this.coalescer = options.getLatencyMillis() > 0 ? new FileWatchEventCoalescer(options.getLatencyMillis()) : null;
+        this.overflowRecovery = options.isOverflowRecovery();
+        this.maxWatches = options.getMaxWatches();
+        this.listener = listener;
+        this.watchFd = watchFd;
+        this.wakeFd = wakeFd;
+        this.thread = new Thread(new Runnable() {
+            public void run() {
+                readEvents();
+            }
+        }, "native-platform file watcher");
+        thread.setDaemon(true);
+    }
+
+    public static LinuxFileWatch start(Files files, FileSystems fileSystems, WatchBudget budget, FileWatchOptions options, FileWatchListener listener) throws NativeException {
+        FunctionResult result = new FunctionResult();
+        int[] fds = new int[2];
+        LinuxFileWatcherFunctions.createWatcher(fds, result);
+        if (result.isFailed()) {
+            if (result.getFailure() == FunctionResult.Failure.InsufficientResources) {
+                throw new InsufficientResourcesForWatchingException(String.format("Could not create file watcher: %s", result.getMessage()));
+            }
+            throw new NativeException(String.format("Could not create file watcher: %s", result.getMessage()));
+        }
+        LinuxFileWatch watch = new LinuxFileWatch(files, fileSystems, budget, options, listener, fds[0], fds[1]);
+        watch.thread.start();
+        return watch;
+    }
+
+    public void startWatching(File root) throws NativeException {
+        File absoluteRoot = root.getAbsoluteFile();
+        synchronized (lock) {
+            if (closed) {
+                throw new NativeException(String.format("Could not watch directory %s as this watch has been closed.", root));
+            }
+            if (!roots.add(absoluteRoot)) {
+                return;
+            }
+            findPollingPaths(absoluteRoot);
+            try {
+                watchTree(absoluteRoot, absoluteRoot, false, false);
+            } catch (NativeException e) {
+                roots.remove(absoluteRoot);
+                unwatchTree(absoluteRoot);
+                throw e;
+            }
+            if (!polledTrees.isEmpty()) {
+                // Wake up the reader, so that it schedules the polls of any new trees
+                LinuxFileWatcherFunctions.wake(wakeFd);
+            }
+        }
+    }
+
+    public void stopWatching(File root) throws NativeException {
+        File absoluteRoot = root.getAbsoluteFile();
+        synchronized (lock) {
+            if (closed || !roots.remove(absoluteRoot)) {
+                return;
+            }
+            unwatchTree(absoluteRoot);
+        }
+    }
+
+    public void close() throws NativeException {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            LinuxFileWatcherFunctions.wake(wakeFd);
+        }
+        if (Thread.currentThread() == thread) {
+            // Called from the listener, the reader thread will stop once the listener returns
+            return;
+        }
+        boolean interrupted = false;
+        while (true) {
+            try {
+                thread.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Finds the mount points in the given tree, and the root itself, that are on file systems that must be polled.
+     */
+    private void findPollingPaths(File root) {
+        List<FileSystemInfo> mounted;
+        try {
+            mounted = fileSystems.getFileSystems();
+        } catch (NativeException e) {
+            // Assume that inotify works for the tree
+            return;
+        }
+        String rootPath = root.getPath();
+        FileSystemInfo containingRoot = null;
+        for (FileSystemInfo fileSystem : mounted) {
+            String mountPoint = fileSystem.getMountPoint().getPath();
+            if (isSameOrDescendant(rootPath, mountPoint)) {
+                // Later entries hide earlier entries with the same mount point
+                if (containingRoot == null || mountPoint.length() >= containingRoot.getMountPoint().getPath().length()) {
+                    containingRoot = fileSystem;
+                }
+            } else if (isSameOrDescendant(mountPoint, rootPath) && requiresPolling(fileSystem)) {
+                pollingPaths.add(mountPoint);
+            }
+        }
+        if (containingRoot != null && requiresPolling(containingRoot)) {
+            pollingPaths.add(rootPath);
+        }
+    }
+
+    private static boolean requiresPolling(FileSystemInfo fileSystem) {
+        String type = fileSystem.getFileSystemType();
+        return POLLED_FILE_SYSTEM_TYPES.contains(type) || type.startsWith("fuse.");
+    }
+
+    private static boolean isSameOrDescendant(String path, String dir) {
+        if (!path.startsWith(dir)) {
+            return false;
+        }
+        return path.length() == dir.length() || dir.endsWith(File.separator) || path.charAt(dir.length()) == File.separatorChar;
+    }
+
+    /**
+     * Watches the given directory and its descendants. When {@code reportCreated} is true, adds an event for each
+     * descendant, as these may have been created before the directory was watched.
+     *
+     * @param parentPolled Whether the parent of the directory is polled, in which case the directory is polled too.
+     */
+    private void watchTree(File root, File dir, boolean reportCreated, boolean parentPolled) throws NativeException {
+        WatchedDirectory watched = register(root, dir, parentPolled);
+        List<? extends DirEntry> entries;
+        try {
+            entries = listDir(watched);
+        } catch (NoSuchFileException e) {
+            // Directory has been removed since it was watched, which will be reported as an event
+            return;
+        } catch (NotADirectoryException e) {
+            return;
+        }
+        for (DirEntry entry : entries) {
+            if (reportCreated) {
+                emitIfAccepted(FileWatchEvent.Type.Created, dir, entry.getName());
+            }
+            if (entry.getType() == FileInfo.Type.Directory) {
+                watchTree(root, new File(dir, entry.getName()), reportCreated, watched.isPolled());
+            }
+        }
+    }
+
+    /**
+     * Watches the given directory, without its descendants, or polls it when it cannot be watched.
+     */
+    private WatchedDirectory register(File root, File dir, boolean parentPolled) throws NativeException {
+        if (watchesByPath.containsKey(dir.getPath())) {
+            // Replaced since it was watched, for example when a poll found the directory before its event was read
+            unwatchTree(dir);
+        }
+        boolean mustPoll = pollingPaths.contains(dir.getPath());
+        if (!parentPolled && !mustPoll) {
+            WatchedDirectory watched = tryWatch(root, dir);
+            if (watched != null) {
+                return watched;
+            }
+        }
+        WatchedDirectory watched = new WatchedDirectory(root, dir, -1, System.nanoTime());
+        watchesByPath.put(dir.getPath(), watched);
+        if (!parentPolled) {
+            polledTrees.put(dir.getPath(), new PolledTree(root, dir, mustPoll, System.nanoTime()));
+        }
+        return watched;
+    }
+
+    /**
+     * Watches the given directory, returning null when there are no watches available.
+     */
+    @Nullable
+    private WatchedDirectory tryWatch(File root, File dir) throws NativeException {
+        while (true) {
+            if (directories.size() < maxWatches && budget.tryReserve(root)) {
+                FunctionResult result = new FunctionResult();
+                int wd = LinuxFileWatcherFunctions.addWatch(watchFd, dir.getPath(), result);
+                if (!result.isFailed()) {
+                    WatchedDirectory watched = new WatchedDirectory(root, dir, wd, System.nanoTime());
+                    directories.put(wd, watched);
+                    watchesByPath.put(dir.getPath(), watched);
+                    return watched;
+                }
+                budget.release(root);
+                if (result.getFailure() != FunctionResult.Failure.InsufficientResources) {
+                    throw watchFailure(dir, result);
+                }
+            }
+            if (!demoteColdTree(dir)) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Polls the coldest tree below a root, other than the tree that contains the given directory, to free its watches.
+     * Returns false when no tree has been inactive for long enough.
+     */
+    private boolean demoteColdTree(File needed) {
+        long now = System.nanoTime();
+        WatchedDirectory coldest = null;
+        long coldestActivity = 0;
+        for (WatchedDirectory candidate : directories.values()) {
+            if (!candidate.root.equals(candidate.file.getParentFile()) || isSameOrDescendant(needed.getPath(), candidate.file.getPath())) {
+                continue;
+            }
+            long activity = lastActivity(candidate);
+            if (now - activity >= COLD_AFTER_NANOS && (coldest == null || activity - coldestActivity < 0)) {
+                coldest = candidate;
+                coldestActivity = activity;
+            }
+        }
+        if (coldest == null) {
+            return false;
+        }
+        List<WatchedDirectory> tree = new ArrayList<WatchedDirectory>();
+        tree.add(coldest);
+        tree.addAll(descendants(watchesByPath, coldest.file.getPath()).values());
+        for (WatchedDirectory watched : tree) {
+            if (watched.snapshot == null) {
+                // List the directory before its watch is removed, so that a change made in between is found by the first poll
+                try {
+                    watched.snapshot = files.listDir(watched.file, ListOptions.defaults());
+                } catch (NativeException e) {
+                    watched.snapshot = Collections.emptyList();
+                }
+            }
+        }
+        for (WatchedDirectory watched : tree) {
+            if (!watched.isPolled()) {
+                removeWatch(watched);
+            }
+        }
+        String path = coldest.file.getPath();
+        descendants(polledTrees, path).clear();
+        polledTrees.put(path, new PolledTree(coldest.root, coldest.file, false, now));
+        return true;
+    }
+
+    private long lastActivity(WatchedDirectory tree) {
+        long activity = tree.lastActivity;
+        for (WatchedDirectory watched : descendants(watchesByPath, tree.file.getPath()).values()) {
+            if (watched.lastActivity - activity > 0) {
+                activity = watched.lastActivity;
+            }
+        }
+        return activity;
+    }
+
+    /**
+     * Watches the directories of the given polled tree again, when there are enough watches available for all of them.
+     */
+    private void promote(PolledTree tree) {
+        String path = tree.dir.getPath();
+        List<WatchedDirectory> polled = new ArrayList<WatchedDirectory>();
+        polled.add(watchesByPath.get(path));
+        polled.addAll(descendants(watchesByPath, path).values());
+        if (directories.size() + polled.size() > maxWatches || budget.getAvailable() < polled.size()) {
+            return;
+        }
+        long now = System.nanoTime();
+        for (WatchedDirectory watched : polled) {
+            FunctionResult result = new FunctionResult();
+            int wd = -1;
+            if (budget.tryReserve(watched.root)) {
+                wd = LinuxFileWatcherFunctions.addWatch(watchFd, watched.file.getPath(), result);
+                if (result.isFailed()) {
+                    budget.release(watched.root);
+                    wd = -1;
+                }
+            }
+            if (wd < 0) {
+                // Keep polling the whole tree
+                for (WatchedDirectory promoted : polled) {
+                    if (!promoted.isPolled()) {
+                        removeWatch(promoted);
+                    }
+                }
+                return;
+            }
+            watched.wd = wd;
+            watched.lastActivity = now;
+            directories.put(wd, watched);
+        }
+        polledTrees.remove(path);
+        if (!overflowRecovery) {
+            for (WatchedDirectory watched : polled) {
+                watched.snapshot = null;
+            }
+        }
+    }
+
+    /**
+     * Lists the entries of the given directory. When the directory is polled or overflow recovery is enabled, keeps the
+     * entries as the snapshot of the directory.
+     */
+    private List<? extends DirEntry> listDir(WatchedDirectory watched) throws NativeException {
+        if (!overflowRecovery && !watched.isPolled()) {
+            return files.listDir(watched.file, ListOptions.namesAndTypesOnly());
+        }
+        List<? extends DirEntry> entries = files.listDir(watched.file, ListOptions.defaults());
+        watched.snapshot = entries;
+        return entries;
+    }
+
+    /**
+     * Stops watching or polling the given directory and its descendants.
+     */
+    private void unwatchTree(File dir) {
+        String path = dir.getPath();
+        SortedMap<String, WatchedDirectory> descendants = descendants(watchesByPath, path);
+        List<WatchedDirectory> removed = new ArrayList<WatchedDirectory>(descendants.values());
+        descendants.clear();
+        WatchedDirectory watched = watchesByPath.remove(path);
+        if (watched != null) {
+            removed.add(watched);
+        }
+        for (WatchedDirectory directory : removed) {
+            if (!directory.isPolled()) {
+                removeWatch(directory);
+            }
+        }
+        descendants(polledTrees, path).clear();
+        polledTrees.remove(path);
+    }
+
+    private void removeWatch(WatchedDirectory watched) {
+        directories.remove(watched.wd);
+        LinuxFileWatcherFunctions.removeWatch(watchFd, watched.wd, new FunctionResult());
+        budget.release(watched.root);
+        watched.wd = -1;
+    }
+
+    /**
+     * Returns the entries for the descendants of the given directory.
+     */
+    private static <T> SortedMap<String, T> descendants(TreeMap<String, T> byPath, String path) {
+        // All paths that start with "<dir>/", as '0' is the character after '/'
+        return byPath.subMap(path + File.separatorChar, path + (char) (File.separatorChar + 1));
+    }
+
+    /**
+     * Rescans the given directory tree after events have been lost, and adds events for the differences from the snapshots
+     * of its directories.
+     */
+    private void recover(File root) {
+        try {
+            rescanTree(root, root, false);
+        } catch (NoSuchFileException e) {
+            emit(FileWatchEvent.Type.Removed, root, 0);
+            unwatchTree(root);
+        } catch (NotADirectoryException e) {
+            emit(FileWatchEvent.Type.Removed, root, 0);
+            unwatchTree(root);
+        } catch (NativeException e) {
+            pendingFailures.add(e);
+            emit(FileWatchEvent.Type.Overflow, root, 0);
+        }
+    }
+
+    /**
+     * Lists the given polled tree, and adjusts the interval until the next poll of the tree depending on whether anything changed.
+     */
+    private void poll(PolledTree tree, long now) {
+        boolean changed;
+        try {
+            changed = rescanTree(tree.root, tree.dir, false);
+        } catch (NoSuchFileException e) {
+            treeRemoved(tree);
+            return;
+        } catch (NotADirectoryException e) {
+            treeRemoved(tree);
+            return;
+        } catch (NativeException e) {
+            pendingFailures.add(e);
+            changed = false;
+        }
+        if (changed) {
+            tree.interval = MIN_POLL_INTERVAL_NANOS;
+            tree.activePolls++;
+        } else {
+            tree.interval = Math.min(tree.interval * 2, MAX_POLL_INTERVAL_NANOS);
+            tree.activePolls = 0;
+        }
+        tree.nextPoll = now + tree.interval;
+        if (tree.activePolls >= ACTIVE_POLLS_BEFORE_WATCHING && !tree.mustPoll) {
+            promote(tree);
+        }
+    }
+
+    private void treeRemoved(PolledTree tree) {
+        if (tree.dir.equals(tree.root)) {
+            emit(FileWatchEvent.Type.Removed, tree.root, 0);
+            unwatchTree(tree.root);
+        }
+        // Otherwise, the removal is reported for the watched parent of the tree
+    }
+
+    /**
+     * Lists the given directory tree and adds events for the differences from the snapshots of its directories.
+     * Returns true when anything changed.
+     */
+    private boolean rescanTree(File root, File dir, boolean parentPolled) throws NativeException {
+        WatchedDirectory watched = watchesByPath.get(dir.getPath());
+        List<? extends DirEntry> previous = null;
+        if (watched == null) {
+            // A directory that was created since the tree was last listed
+            watched = register(root, dir, parentPolled);
+        } else {
+            previous = watched.snapshot;
+        }
+        Map<String, DirEntry> previousByName = new HashMap<String, DirEntry>();
+        if (previous != null) {
+            for (DirEntry entry : previous) {
+                previousByName.put(entry.getName(), entry);
+            }
+        }
+
+        boolean changed = false;
+        List<? extends DirEntry> current = listDir(watched);
+        for (DirEntry entry : current) {
+            File child = new File(dir, entry.getName());
+            DirEntry old = previousByName.remove(entry.getName());
+            if (old == null) {
+                emitIfAccepted(FileWatchEvent.Type.Created, dir, entry.getName());
+                changed = true;
+            } else if (hasChanged(old, entry)) {
+                emitIfAccepted(FileWatchEvent.Type.Modified, dir, entry.getName());
+                changed = true;
+                if (old.getType() == FileInfo.Type.Directory) {
+                    unwatchTree(child);
+                }
+            }
+            if (entry.getType() == FileInfo.Type.Directory) {
+                try {
+                    changed |= rescanTree(root, child, watched.isPolled());
+                } catch (NoSuchFileException e) {
+                    // Removed again, which will be reported as an event or by the next poll
+                } catch (NotADirectoryException e) {
+                    // Replaced, which will be reported as an event or by the next poll
+                }
+            }
+        }
+        for (DirEntry old : previousByName.values()) {
+            emitIfAccepted(FileWatchEvent.Type.Removed, dir, old.getName());
+            changed = true;
+            if (old.getType() == FileInfo.Type.Directory) {
+                unwatchTree(new File(dir, old.getName()));
+            }
+        }
+        return changed;
+    }
+
+    private static boolean hasChanged(DirEntry previous, DirEntry current) {
+        if (previous.getType() != current.getType()) {
+            return true;
+        }
+        // The timestamps of a directory change whenever its entries change, which are reported separately
+        return current.getType() != FileInfo.Type.Directory && (previous.getSize() != current.getSize() || previous.getLastModifiedTime() != current.getLastModifiedTime());
+    }
+
+    private NativeException watchFailure(File dir, FunctionResult result) {
+        switch (result.getFailure()) {
+            case NoSuchFile:
+                return new NoSuchFileException(String.format("Could not watch directory %s as this directory does not exist.", dir));
+            case NotADirectory:
+                return new NotADirectoryException(String.format("Could not watch directory %s as it is not a directory.", dir));
+            case Permissions:
+                return new FilePermissionException(String.format("Could not watch directory %s: permission denied", dir));
+            case InsufficientResources:
+                return new InsufficientResourcesForWatchingException(String.format("Could not watch directory %s: the inotify watch limit has been reached, see /proc/sys/fs/inotify/max_user_watches", dir));
+            default:
+                return new NativeException(String.format("Could not watch directory %s: %s", dir, result.getMessage()));
+        }
+    }
+
+    private void readEvents() {
+        FunctionResult result = new FunctionResult();
+        try {
+            while (true) {
+                int count = LinuxFileWatcherFunctions.readEvents(watchFd, wakeFd, getTimeoutMillis(), buffer, result);
+                if (count < 0 && (result.isFailed() || isClosed())) {
+                    break;
+                }
+                // Otherwise, when woken up, new trees may need to be polled
+                readTime = System.nanoTime();
+                if (count > 0) {
+                    decode(count);
+                }
+                pollDue(readTime);
+                if (coalescer != null) {
+                    coalescer.flushDue(System.nanoTime(), pendingEvents);
+                }
+                deliverPending();
+            }
+            if (!result.isFailed() && coalescer != null) {
+                // Closed, deliver whatever is pending
+                coalescer.flush(pendingEvents);
+                deliverPending();
+            }
+            if (result.isFailed()) {
+                listener.onFailure(new NativeException(String.format("Could not read file events: %s", result.getMessage())));
+            }
+        } finally {
+            synchronized (lock) {
+                closed = true;
+                for (WatchedDirectory watched : directories.values()) {
+                    budget.release(watched.root);
+                }
+                roots.clear();
+                directories.clear();
+                watchesByPath.clear();
+                polledTrees.clear();
+                LinuxFileWatcherFunctions.closeWatcher(watchFd, wakeFd);
+            }
+        }
+    }
+
+    private boolean isClosed() {
+        synchronized (lock) {
+            return closed;
+        }
+    }
+
+    /**
+     * Returns the time to wait for events before the coalescer must be flushed or a tree must be polled, or -1 to wait indefinitely.
+     */
+    private int getTimeoutMillis() {
+        long now = System.nanoTime();
+        int timeout = coalescer == null ? -1 : coalescer.getFlushDelayMillis(now);
+        synchronized (lock) {
+            for (PolledTree tree : polledTrees.values()) {
+                long remaining = Math.max(0, tree.nextPoll - now);
+                int delay = (int) Math.min(Integer.MAX_VALUE, TimeUnit.NANOSECONDS.toMillis(remaining + TimeUnit.MILLISECONDS.toNanos(1) - 1));
+                timeout = timeout < 0 ? delay : Math.min(timeout, delay);
+            }
+        }
+        return timeout;
+    }
+
+    private void pollDue(long now) {
+        synchronized (lock) {
+            if (polledTrees.isEmpty()) {
+                return;
+            }
+            for (PolledTree tree : new ArrayList<PolledTree>(polledTrees.values())) {
+                // A tree may have been removed by the poll of an earlier tree
+                if (tree.nextPoll - now <= 0 && polledTrees.get(tree.dir.getPath()) == tree) {
+                    poll(tree, now);
+                }
+            }
+        }
+    }
+
+    private void deliverPending() {
+        if (!pendingEvents.isEmpty()) {
+            List<FileWatchEvent> events = pendingEvents;
+            pendingEvents = new ArrayList<FileWatchEvent>();
+            listener.onChanges(Collections.unmodifiableList(events));
+        }
+        if (!pendingFailures.isEmpty()) {
+            List<NativeException> failures = new ArrayList<NativeException>(pendingFailures);
+            pendingFailures.clear();
+            for (NativeException failure : failures) {
+                listener.onFailure(failure);
+            }
+        }
+    }
+
+    private void decode(int count) {
+        int offset = 0;
+        while (offset < count) {
+            int wd = buffer.getInt(offset);
+            int mask = buffer.getInt(offset + MASK_OFFSET);
+            int cookie = buffer.getInt(offset + COOKIE_OFFSET);
+            int nameStart = offset + NAME_OFFSET;
+            int nameCapacity = buffer.getInt(offset + LEN_OFFSET);
+            // The name is padded with null bytes
+            int nameEnd = nameStart;
+            while (nameEnd < nameStart + nameCapacity && buffer.get(nameEnd) != 0) {
+                nameEnd++;
+            }
+            offset = nameStart + nameCapacity;
+            event(wd, mask, cookie, names.decode(nameStart, nameEnd - nameStart));
+        }
+    }
+
+    private void event(int wd, int mask, int cookie, CharSequence name) {
+        synchronized (lock) {
+            if ((mask & IN_Q_OVERFLOW) != 0) {
+                // Events have been lost for every watched directory
+                for (File root : new ArrayList<File>(roots)) {
+                    if (overflowRecovery) {
+                        recover(root);
+                    } else {
+                        emit(FileWatchEvent.Type.Overflow, root, 0);
+                    }
+                }
+                return;
+            }
+            WatchedDirectory dir = directories.get(wd);
+            if (dir == null) {
+                // An event for a directory that is no longer watched
+                return;
+            }
+            if ((mask & IN_IGNORED) != 0) {
+                // The watch has been removed, because the directory was deleted
+                directories.remove(wd);
+                watchesByPath.remove(dir.file.getPath(), dir);
+                budget.release(dir.root);
+                return;
+            }
+            dir.lastActivity = readTime;
+            if (name.length() == 0) {
+                // An event for the watched directory itself. Changes to a directory other than the root are also reported for its parent
+                if ((mask & (IN_DELETE_SELF | IN_MOVE_SELF)) != 0 && dir.file.equals(dir.root)) {
+                    if (filter.accept(FileWatchEvent.Type.Removed, dir.file, name)) {
+                        emit(FileWatchEvent.Type.Removed, dir.file, 0);
+                    }
+                    unwatchTree(dir.file);
+                }
+                return;
+            }
+            boolean isDirectory = (mask & IN_ISDIR) != 0;
+            if ((mask & (IN_CREATE | IN_MOVED_TO)) != 0) {
+                File file = add(FileWatchEvent.Type.Created, dir, name, (mask & IN_MOVED_TO) != 0 ? cookie : 0, isDirectory);
+                if (isDirectory) {
+                    try {
+                        watchTree(dir.root, file, true, false);
+                    } catch (NoSuchFileException e) {
+                        // Directory has already been removed again
+                    } catch (NotADirectoryException e) {
+                        // Directory has already been replaced
+                    } catch (NativeException e) {
+                        pendingFailures.add(e);
+                    }
+                }
+            } else if ((mask & (IN_DELETE | IN_MOVED_FROM)) != 0) {
+                boolean moved = (mask & IN_MOVED_FROM) != 0;
+                File file = add(FileWatchEvent.Type.Removed, dir, name, moved ? cookie : 0, isDirectory && moved);
+                if (file != null) {
+                    // The watches remain in place for a directory that has been moved, so remove them
+                    unwatchTree(file);
+                }
+            } else if ((mask & (IN_MODIFY | IN_ATTRIB)) != 0) {
+                add(FileWatchEvent.Type.Modified, dir, name, 0, false);
+            }
+        }
+    }
+
+    /**
+     * Adds an event for the given file when accepted by the filter.
+     *
+     * @param moveCookie Non-zero when the event is one half of a move.
+     * @param needFile Whether the file is required by the caller, regardless of whether the event is accepted.
+     * @return The file, or null when the event was not accepted and the file is not required.
+     */
+    @Nullable
+    private File add(FileWatchEvent.Type type, WatchedDirectory dir, CharSequence name, int moveCookie, boolean needFile) {
+        boolean accepted = filter.accept(type, dir.file, name);
+        if (!accepted && !needFile) {
+            return null;
+        }
+        File file = new File(dir.file, name.toString());
+        if (accepted) {
+            emit(type, file, moveCookie);
+        }
+        return file;
+    }
+
+    private void emitIfAccepted(FileWatchEvent.Type type, File dir, String name) {
+        if (filter.accept(type, dir, name)) {
+            emit(type, new File(dir, name), 0);
+        }
+    }
+
+    private void emit(FileWatchEvent.Type type, File file, int moveCookie) {
+        if (coalescer != null) {
+            coalescer.add(type, file, moveCookie, System.nanoTime());
+        } else {
+            pendingEvents.add(new DefaultFileWatchEvent(type, file));
+        }
+    }
+
+    private static class WatchedDirectory {
+        final File root;
+        final File file;
+        // The watch descriptor, or -1 when the directory is polled
+        int wd;
+        // The entries of the directory when it was last listed, only kept when the directory is polled or overflow recovery is enabled
+        @Nullable
+        List<? extends DirEntry> snapshot;
+        long lastActivity;
+
+        WatchedDirectory(File root, File file, int wd, long lastActivity) {
+            this.root = root;
+            this.file = file;
+            this.wd = wd;
+            this.lastActivity = lastActivity;
+        }
+
+        boolean isPolled() {
+            return wd < 0;
+        }
+    }
+
+    private static class PolledTree {
+        final File root;
+        final File dir;
+        // Whether the tree is on a file system that inotify does not support, so it is never watched
+        final boolean mustPoll;
+        long interval = MIN_POLL_INTERVAL_NANOS;
+        long nextPoll;
+        // The number of consecutive polls that found changes
+        int activePolls;
+
+        PolledTree(File root, File dir, boolean mustPoll, long now) {
+            this.root = root;
+            this.dir = dir;
+            this.mustPoll = mustPoll;
+            this.nextPoll = now + interval;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2012 Adam Murdoch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.rubygrapefruit.platform.internal;
+
+import net.rubygrapefruit.platform.NativeException;
+import net.rubygrapefruit.platform.file.FileSystems;
+import net.rubygrapefruit.platform.file.FileWatch;
+import net.rubygrapefruit.platform.file.FileWatchFilter;
+import net.rubygrapefruit.platform.file.FileWatchListener;
+import net.rubygrapefruit.platform.file.FileWatchOptions;
+import net.rubygrapefruit.platform.file.FileWatcher;
+import net.rubygrapefruit.platform.file.Files;
+
+public class LinuxFileWatcher implements FileWatcher {
+    private final Files files;
+    private final FileSystems fileSystems;
+    private final WatchBudget budget;
+
+    public LinuxFileWatcher(Files files, FileSystems fileSystems, WatchBudget budget) {
+        this.files = files;
+        this.fileSystems = fileSystems;
+        this.budget = budget;
+    }
+
+    public FileWatch newWatch(FileWatchListener listener) throws NativeException {
+        return newWatch(FileWatchOptions.defaults(), listener);
+    }
+
+    public FileWatch newWatch(FileWatchFilter filter, FileWatchListener listener) throws NativeException {
+        return newWatch(FileWatchOptions.defaults().withFilter(filter), listener);
+    }
+
+    public FileWatch newWatch(FileWatchOptions options, FileWatchListener listener) throws NativeException {
+        return LinuxFileWatch.start(files, fileSystems, budget, options, listener);
+    }
+}
@@ -23,9 +23,13 @@ import net.rubygrapefruit.platform.Process;
 import net.rubygrapefruit.platform.ProcessLauncher;
 import net.rubygrapefruit.platform.SystemInfo;
 import net.rubygrapefruit.platform.WindowsRegistry;
+import net.rubygrapefruit.platform.file.FileHasher;
 import net.rubygrapefruit.platform.file.FileSystems;
+import net.rubygrapefruit.platform.file.FileWatchService;
+import net.rubygrapefruit.platform.file.FileWatcher;
 import net.rubygrapefruit.platform.file.Files;
 import net.rubygrapefruit.platform.file.PosixFiles;
+import net.rubygrapefruit.platform.file.TreeSnapshotter;
 import net.rubygrapefruit.platform.file.WindowsFiles;
 import net.rubygrapefruit.platform.internal.jni.NativeVersion;
 import net.rubygrapefruit.platform.internal.jni.PosixTypeFunctions;
@@ -254,6 +258,12 @@ public abstract class Platform {
             if (type.equals(FileSystems.class)) {
                 return type.cast(new PosixFileSystems());
             }
+            if (type.equals(FileHasher.class)) {
+                return type.cast(new DefaultFileHasher());
+            }
+            if (type.equals(TreeSnapshotter.class)) {
+                return type.cast(new DefaultTreeSnapshotter(new DefaultPosixFiles(), new DefaultFileHasher()));
+            }
             if (type.equals(MutableTypeInfo.class)) {
                 MutableTypeInfo typeInfo = new MutableTypeInfo();
                 PosixTypeFunctions.getNativeTypeInfo(typeInfo);
@@ -281,6 +291,23 @@ public abstract class Platform {
             return Arrays.asList(getId() + "-ncurses5", getId() + "-ncurses6");
         }
 
+        @Override
+        public <T extends NativeIntegration> T get(Class<T> type, NativeLibraryLoader nativeLibraryLoader) {
+            if (type.equals(PosixFiles.class)) {
+                return type.cast(new DefaultLinuxFiles());
+            }
+            if (type.equals(TreeSnapshotter.class)) {
+                return type.cast(new DefaultTreeSnapshotter(new DefaultLinuxFiles(), new DefaultFileHasher()));
+            }
+            if (type.equals(FileWatcher.class)) {
+                return type.cast(new LinuxFileWatcher(new DefaultLinuxFiles(), new PosixFileSystems(), WatchBudget.fromProcFs()));
+            }
+            if (type.equals(FileWatchService.class)) {
+                return type.cast(new DefaultFileWatchService(new LinuxFileWatcher(new DefaultLinuxFiles(), new PosixFileSystems(), WatchBudget.fromProcFs())));
+            }
+            return super.get(type, nativeLibraryLoader);
+        }
+
         @Override
         public boolean isLinux() {
             return true;
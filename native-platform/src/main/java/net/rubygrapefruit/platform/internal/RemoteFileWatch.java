@@ -0,0 +1,302 @@
+/*
+ * Copyright 2012 Adam Murdoch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.rubygrapefruit.platform.internal;
+
+import net.rubygrapefruit.platform.NativeException;
+import net.rubygrapefruit.platform.file.FileWatch;
+import net.rubygrapefruit.platform.file.FileWatchEvent;
+import net.rubygrapefruit.platform.file.FileWatchFilter;
+import net.rubygrapefruit.platform.file.FileWatchListener;
+
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * A watch whose directory trees are watched by a {@link DefaultFileWatchServer}. A single thread reads the messages
+ * from the server and notifies the listener. Requests are sent one at a time, and the reader thread hands the result of
+ * each request to the thread that sent it.
+ */
+public class RemoteFileWatch implements FileWatch {
+    private static final Object SUCCEEDED = new Object();
+    private static final Object DISCONNECTED = new Object();
+
+    private final File socketFile;
+    private final UnixSocket socket;
+    private final DataInputStream in;
+    @Nullable
+    private final FileWatchFilter filter;
+    private final FileWatchListener listener;
+    private final Thread thread;
+    private final BlockingQueue<Object> results = new LinkedBlockingQueue<Object>();
+    // Read by the reader thread to filter events, so not guarded by a lock
+    private final Set<File> roots = new CopyOnWriteArraySet<File>();
+    // Held while a request is waiting for its result
+    private final Object requestLock = new Object();
+    private final Object lock = new Object();
+    // The following are guarded by lock
+    private boolean closed;
+    private boolean disconnected;
+    // The following are only used by the reader thread
+    private List<FileWatchEvent> pendingEvents = new ArrayList<FileWatchEvent>();
+    private final List<NativeException> pendingFailures = new ArrayList<NativeException>();
+
+    private RemoteFileWatch(File socketFile, UnixSocket socket, DataInputStream in, @Nullable FileWatchFilter filter, FileWatchListener listener) {
+        this.socketFile = socketFile;
+        this.socket = socket;
+        this.in = in;
+        this.filter = filter;
+        this.listener = listener;
+        this.thread = new Thread(new Runnable() {
+            public void run() {
+                readMessages();
+            }
+        }, "native-platform remote file watcher");
+        thread.setDaemon(true);
+    }
+
+    public static RemoteFileWatch connect(File socketFile, @Nullable FileWatchFilter filter, FileWatchListener listener) throws NativeException {
+        UnixSocket socket = UnixSocket.connect(socketFile);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        NativeException failure;
+        try {
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            out.writeInt(FileWatchProtocol.MAGIC);
+            out.writeByte(FileWatchProtocol.VERSION);
+            if (in.readByte() != FileWatchProtocol.RESULT) {
+                throw new IOException("unexpected message");
+            }
+            failure = FileWatchProtocol.readResult(in);
+        } catch (IOException e) {
+            failure = new NativeException(String.format("Could not connect to file watch server %s: %s", socketFile, e.getMessage()));
+        }
+        if (failure != null) {
+            socket.close();
+            throw failure;
+        }
+        RemoteFileWatch watch = new RemoteFileWatch(socketFile, socket, in, filter, listener);
+        watch.thread.start();
+        return watch;
+    }
+
+    public void startWatching(File root) throws NativeException {
+        File absoluteRoot = root.getAbsoluteFile();
+        synchronized (requestLock) {
+            if (isClosed()) {
+                throw new NativeException(String.format("Could not watch directory %s as this watch has been closed.", root));
+            }
+            request(FileWatchProtocol.WATCH, absoluteRoot);
+            roots.add(absoluteRoot);
+        }
+    }
+
+    public void stopWatching(File root) throws NativeException {
+        File absoluteRoot = root.getAbsoluteFile();
+        synchronized (requestLock) {
+            if (isClosed() || !roots.remove(absoluteRoot)) {
+                return;
+            }
+            request(FileWatchProtocol.UNWATCH, absoluteRoot);
+        }
+    }
+
+    public void close() throws NativeException {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            socket.shutdown();
+        }
+        if (Thread.currentThread() == thread) {
+            // Called from the listener, the reader thread will stop once the listener returns
+            return;
+        }
+        boolean interrupted = false;
+        while (true) {
+            try {
+                thread.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Sends a request and waits for its result. Must be called while holding the request lock.
+     */
+    private void request(byte type, File root) throws NativeException {
+        if (isDisconnected()) {
+            throw new NativeException(String.format("Could not watch directory %s as the connection to file watch server %s has been lost.", root, socketFile));
+        }
+        Object result;
+        try {
+            socket.getOutputStream().write(FileWatchProtocol.request(type, root));
+            if (Thread.currentThread() == thread) {
+                // Called from the listener, so read messages here until the result arrives. Events are delivered once the listener returns
+                while (results.isEmpty()) {
+                    if (!readMessage()) {
+                        results.add(DISCONNECTED);
+                    }
+                }
+            }
+            result = results.take();
+        } catch (IOException e) {
+            result = DISCONNECTED;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new NativeException(String.format("Could not watch directory %s as the thread was interrupted.", root));
+        }
+        if (result == DISCONNECTED) {
+            synchronized (lock) {
+                disconnected = true;
+            }
+            throw new NativeException(String.format("Could not watch directory %s as the connection to file watch server %s has been lost.", root, socketFile));
+        }
+        if (result != SUCCEEDED) {
+            throw (NativeException) result;
+        }
+    }
+
+    private void readMessages() {
+        try {
+            while (readMessage()) {
+                deliverPending();
+            }
+            results.add(DISCONNECTED);
+            deliverPending();
+            if (!isClosed()) {
+                listener.onFailure(new NativeException(String.format("Lost connection to file watch server %s.", socketFile)));
+            }
+        } finally {
+            // Wait for any request to finish with the socket before closing it
+            synchronized (requestLock) {
+                synchronized (lock) {
+                    closed = true;
+                    disconnected = true;
+                    socket.close();
+                }
+            }
+            roots.clear();
+        }
+    }
+
+    private boolean isClosed() {
+        synchronized (lock) {
+            return closed;
+        }
+    }
+
+    private boolean isDisconnected() {
+        synchronized (lock) {
+            return disconnected;
+        }
+    }
+
+    /**
+     * Reads the next message from the server. Returns false at the end of the stream.
+     */
+    private boolean readMessage() {
+        try {
+            int type = in.read();
+            switch (type) {
+                case FileWatchProtocol.RESULT:
+                    NativeException failure = FileWatchProtocol.readResult(in);
+                    results.add(failure == null ? SUCCEEDED : failure);
+                    return true;
+                case FileWatchProtocol.EVENTS:
+                    for (FileWatchEvent event : FileWatchProtocol.readEvents(in)) {
+                        FileWatchEvent accepted = accept(event);
+                        if (accepted != null) {
+                            pendingEvents.add(accepted);
+                        }
+                    }
+                    return true;
+                case FileWatchProtocol.FAILURE:
+                    pendingFailures.add(new NativeException(in.readUTF()));
+                    return true;
+                default:
+                    // End of stream or an unknown message
+                    return false;
+            }
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Applies the filter to the given event. The halves of a rename are filtered separately, as they would be for a local watch.
+     */
+    @Nullable
+    private FileWatchEvent accept(FileWatchEvent event) {
+        if (filter == null || event.getType() == FileWatchEvent.Type.Overflow) {
+            return event;
+        }
+        if (event.getType() == FileWatchEvent.Type.Renamed) {
+            boolean to = accept(FileWatchEvent.Type.Created, event.getFile());
+            boolean from = accept(FileWatchEvent.Type.Removed, event.getPreviousFile());
+            if (to && from) {
+                return event;
+            }
+            if (to) {
+                return new DefaultFileWatchEvent(FileWatchEvent.Type.Created, event.getFile());
+            }
+            if (from) {
+                return new DefaultFileWatchEvent(FileWatchEvent.Type.Removed, event.getPreviousFile());
+            }
+            return null;
+        }
+        return accept(event.getType(), event.getFile()) ? event : null;
+    }
+
+    private boolean accept(FileWatchEvent.Type type, File file) {
+        if (roots.contains(file)) {
+            // Events for a root are passed to the filter with the root as the directory, as for a local watch
+            return filter.accept(type, file, "");
+        }
+        return filter.accept(type, file.getParentFile(), file.getName());
+    }
+
+    private void deliverPending() {
+        if (!pendingEvents.isEmpty()) {
+            List<FileWatchEvent> events = pendingEvents;
+            pendingEvents = new ArrayList<FileWatchEvent>();
+            listener.onChanges(Collections.unmodifiableList(events));
+        }
+        if (!pendingFailures.isEmpty()) {
+            List<NativeException> failures = new ArrayList<NativeException>(pendingFailures);
+            pendingFailures.clear();
+            for (NativeException failure : failures) {
+                listener.onFailure(failure);
+            }
+        }
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2012 Adam Murdoch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.rubygrapefruit.platform.internal;
+
+import net.rubygrapefruit.platform.NativeException;
+import net.rubygrapefruit.platform.file.FileWatch;
+import net.rubygrapefruit.platform.file.FileWatchFilter;
+import net.rubygrapefruit.platform.file.FileWatchListener;
+import net.rubygrapefruit.platform.file.FileWatchOptions;
+import net.rubygrapefruit.platform.file.FileWatcher;
+
+import java.io.File;
+
+/**
+ * A {@link FileWatcher} whose watches are backed by a {@link DefaultFileWatchServer}, possibly in another process.
+ */
+public class RemoteFileWatcher implements FileWatcher {
+    private final File socketFile;
+
+    public RemoteFileWatcher(File socketFile) {
+        this.socketFile = socketFile.getAbsoluteFile();
+    }
+
+    public FileWatch newWatch(FileWatchListener listener) throws NativeException {
+        return newWatch(FileWatchOptions.defaults(), listener);
+    }
+
+    public FileWatch newWatch(FileWatchFilter filter, FileWatchListener listener) throws NativeException {
+        return newWatch(FileWatchOptions.defaults().withFilter(filter), listener);
+    }
+
+    public FileWatch newWatch(FileWatchOptions options, FileWatchListener listener) throws NativeException {
+        return RemoteFileWatch.connect(socketFile, options.getFilter(), listener);
+    }
+}
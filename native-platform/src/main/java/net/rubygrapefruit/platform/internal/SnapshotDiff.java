@@ -0,0 +1,155 @@
+/*
+ * Copyright 2012 Adam Murdoch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package net.rubygrapefruit.platform.internal;
+
+import net.rubygrapefruit.platform.file.DirectorySnapshot;
+import net.rubygrapefruit.platform.file.FileInfo;
+import net.rubygrapefruit.platform.file.FileSnapshot;
+import net.rubygrapefruit.platform.file.FileVisitor;
+import net.rubygrapefruit.platform.file.SnapshotDiffVisitor;
+
+import java.util.List;
+
+/**
+ * Finds the differences between two snapshots, skipping the directories that have the same hash in both. The children of
+ * each pair of directories are sorted by name, so they are compared with a single merge pass. Differences are reported as they
+ * are found, and the only state kept is the path of the current entry, so memory use depends on the depth of the tree rather
+ * than its size.
+ */
+class SnapshotDiff {
+    private final SnapshotDiffVisitor visitor;
+    private final StringBuilder path = new StringBuilder();
+
+    SnapshotDiff(SnapshotDiffVisitor visitor) {
+        this.visitor = visitor;
+    }
+
+    void diff(DirectorySnapshot previous, DirectorySnapshot current) {
+        if (!previous.hasSameHash(current)) {
+            diffChildren(previous, current);
+        }
+    }
+
+    /**
+     * Returns false when the visitor has terminated the diff.
+     */
+    private boolean diffChildren(DirectorySnapshot previous, DirectorySnapshot current) {
+        List<? extends FileSnapshot> previousChildren = previous.getChildren();
+        List<? extends FileSnapshot> currentChildren = current.getChildren();
+        int i = 0;
+        int j = 0;
+        while (i < previousChildren.size() || j < currentChildren.size()) {
+            FileSnapshot previousChild = i < previousChildren.size() ? previousChildren.get(i) : null;
+            FileSnapshot currentChild = j < currentChildren.size() ? currentChildren.get(j) : null;
+            int diff = previousChild == null ? 1 : currentChild == null ? -1 : previousChild.getName().compareTo(currentChild.getName());
+            int length = enter(diff <= 0 ? previousChild.getName() : currentChild.getName());
+            boolean carryOn;
+            if (diff < 0) {
+                carryOn = removed(previousChild);
+                i++;
+            } else if (diff > 0) {
+                carryOn = added(currentChild);
+                j++;
+            } else {
+                carryOn = changed(previousChild, currentChild);
+                i++;
+                j++;
+            }
+            path.setLength(length);
+            if (!carryOn) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean changed(FileSnapshot previous, FileSnapshot current) {
+        if (previous.getType() != current.getType()) {
+            FileVisitor.Result result = visitor.typeChanged(path.toString(), previous, current);
+            if (result != FileVisitor.Result.Continue) {
+                return result != FileVisitor.Result.Terminate;
+            }
+            if (previous.getType() == FileInfo.Type.Directory) {
+                return removedChildren((DirectorySnapshot) previous);
+            }
+            if (current.getType() == FileInfo.Type.Directory) {
+                return addedChildren((DirectorySnapshot) current);
+            }
+            return true;
+        }
+        if (previous.hasSameHash(current)) {
+            return true;
+        }
+        if (current.getType() == FileInfo.Type.Directory) {
+            return diffChildren((DirectorySnapshot) previous, (DirectorySnapshot) current);
+        }
+        return visitor.modified(path.toString(), previous, current) != FileVisitor.Result.Terminate;
+    }
+
+    private boolean added(FileSnapshot current) {
+        FileVisitor.Result result = visitor.added(path.toString(), current);
+        if (result == FileVisitor.Result.Continue && current.getType() == FileInfo.Type.Directory) {
+            return addedChildren((DirectorySnapshot) current);
+        }
+        return result != FileVisitor.Result.Terminate;
+    }
+
+    private boolean addedChildren(DirectorySnapshot dir) {
+        for (FileSnapshot child : dir.getChildren()) {
+            int length = enter(child.getName());
+            boolean carryOn = added(child);
+            path.setLength(length);
+            if (!carryOn) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean removed(FileSnapshot previous) {
+        FileVisitor.Result result = visitor.removed(path.toString(), previous);
+        if (result == FileVisitor.Result.Continue && previous.getType() == FileInfo.Type.Directory) {
+            return removedChildren((DirectorySnapshot) previous);
+        }
+        return result != FileVisitor.Result.Terminate;
+    }
+
+    private boolean removedChildren(DirectorySnapshot dir) {
+        for (FileSnapshot child : dir.getChildren()) {
+            int length = enter(child.getName());
+            boolean carryOn = removed(child);
+            path.setLength(length);
+            if (!carryOn) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Appends the given name to the current path, returning the length of the path to restore afterwards.
+     */
+    private int enter(String name) {
+        int length = path.length();
+        if (length > 0) {
+            path.append('/');
+        }
+        path.append(name);
+        return length;
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2012 Adam Murdoch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.rubygrapefruit.platform.internal;
+
+import net.rubygrapefruit.platform.NativeException;
+import net.rubygrapefruit.platform.internal.jni.UnixSocketFunctions;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.File;
+
+/**
+ * A Unix domain socket that accepts connections.
+ */
+public class UnixServerSocket implements Closeable {
+    private static final int BACKLOG = 50;
+
+    private final File socketFile;
+    private final int fd;
+    private final Object lock = new Object();
+    private boolean shutdown;
+    private boolean closed;
+
+    private UnixServerSocket(File socketFile, int fd) {
+        this.socketFile = socketFile;
+        this.fd = fd;
+    }
+
+    /**
+     * Creates a socket bound to the given file. The file must not exist.
+     */
+    public static UnixServerSocket listen(File socketFile) throws NativeException {
+        FunctionResult result = new FunctionResult();
+        int fd = UnixSocketFunctions.listen(socketFile.getPath(), BACKLOG, result);
+        if (result.isFailed()) {
+            throw new NativeException(String.format("Could not listen on socket %s: %s", socketFile, result.getMessage()));
+        }
+        return new UnixServerSocket(socketFile, fd);
+    }
+
+    public File getSocketFile() {
+        return socketFile;
+    }
+
+    /**
+     * Waits for the next connection. Returns null when this socket has been shut down.
+     */
+    @Nullable
+    public UnixSocket accept() throws NativeException {
+        FunctionResult result = new FunctionResult();
+        int connection = UnixSocketFunctions.accept(fd, result);
+        synchronized (lock) {
+            if (shutdown) {
+                if (!result.isFailed()) {
+                    UnixSocketFunctions.close(connection);
+                }
+                return null;
+            }
+        }
+        if (result.isFailed()) {
+            throw new NativeException(String.format("Could not accept connection on socket %s: %s", socketFile, result.getMessage()));
+        }
+        return new UnixSocket(connection);
+    }
+
+    /**
+     * Stops accepting connections, waking up any thread blocked in {@link #accept()}.
+     */
+    public void shutdown() {
+        synchronized (lock) {
+            if (!shutdown && !closed) {
+                shutdown = true;
+                UnixSocketFunctions.shutdown(fd);
+            }
+        }
+    }
+
+    /**
+     * Closes this socket and removes the socket file.
+     */
+    public void close() {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            shutdown = true;
+            closed = true;
+            UnixSocketFunctions.close(fd);
+        }
+        socketFile.delete();
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2012 Adam Murdoch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.rubygrapefruit.platform.internal;
+
+import net.rubygrapefruit.platform.NativeException;
+import net.rubygrapefruit.platform.file.NoSuchFileException;
+import net.rubygrapefruit.platform.internal.jni.UnixSocketFunctions;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A connection over a Unix domain socket.
+ *
+ * <p>To stop a thread that is blocked reading from the connection, call {@link #shutdown()} and wait for the thread to
+ * finish before calling {@link #close()}, so that the descriptor is not reused while it is still being read.</p>
+ */
+public class UnixSocket implements Closeable {
+    private final int fd;
+    private final InputStream inputStream = new SocketInputStream();
+    private final OutputStream outputStream = new SocketOutputStream();
+    private final Object lock = new Object();
+    private boolean closed;
+
+    UnixSocket(int fd) {
+        this.fd = fd;
+    }
+
+    public static UnixSocket connect(File socketFile) throws NativeException {
+        FunctionResult result = new FunctionResult();
+        int fd = UnixSocketFunctions.connect(socketFile.getPath(), result);
+        if (result.isFailed()) {
+            if (result.getFailure() == FunctionResult.Failure.NoSuchFile) {
+                throw new NoSuchFileException(String.format("Could not connect to socket %s as it does not exist.", socketFile));
+            }
+            throw new NativeException(String.format("Could not connect to socket %s: %s", socketFile, result.getMessage()));
+        }
+        return new UnixSocket(fd);
+    }
+
+    /**
+     * Returns the stream to read from the connection. The stream is not buffered.
+     */
+    public InputStream getInputStream() {
+        return inputStream;
+    }
+
+    /**
+     * Returns the stream to write to the connection. The stream is not buffered.
+     */
+    public OutputStream getOutputStream() {
+        return outputStream;
+    }
+
+    /**
+     * Shuts down the connection in both directions, so that reads return the end of the stream and writes fail.
+     */
+    public void shutdown() {
+        synchronized (lock) {
+            if (!closed) {
+                UnixSocketFunctions.shutdown(fd);
+            }
+        }
+    }
+
+    public void close() {
+        synchronized (lock) {
+            if (!closed) {
+                closed = true;
+                UnixSocketFunctions.close(fd);
+            }
+        }
+    }
+
+    private class SocketInputStream extends InputStream {
+        private final byte[] single = new byte[1];
+
+        @Override
+        public int read() throws IOException {
+            int count = read(single, 0, 1);
+            return count < 0 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            FunctionResult result = new FunctionResult();
+            int count = UnixSocketFunctions.read(fd, buffer, offset, length, result);
+            if (result.isFailed()) {
+                throw new IOException(String.format("Could not read from socket: %s", result.getMessage()));
+            }
+            return count == 0 ? -1 : count;
+        }
+    }
+
+    private class SocketOutputStream extends OutputStream {
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] buffer, int offset, int length) throws IOException {
+            FunctionResult result = new FunctionResult();
+            UnixSocketFunctions.write(fd, buffer, offset, length, result);
+            if (result.isFailed()) {
+                throw new IOException(String.format("Could not write to socket: %s", result.getMessage()));
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2012 Adam Murdoch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.rubygrapefruit.platform.internal;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tracks the number of inotify watches used for each watched root, so that watches can be moved from cold directory
+ * trees to active ones before the per-user limit is reached. Shared by all the watches created by a watcher.
+ */
+public class WatchBudget {
+    private static final File INOTIFY_LIMITS_DIR = new File("/proc/sys/fs/inotify");
+    // The kernel default on older systems, used when the limit cannot be read
+    private static final int DEFAULT_MAX_USER_WATCHES = 8192;
+
+    private final int maxWatches;
+    private final Map<File, Integer> watchesByRoot = new HashMap<File, Integer>();
+    private int used;
+
+    public WatchBudget(int maxWatches) {
+        this.maxWatches = maxWatches;
+    }
+
+    /**
+     * Creates a budget that uses the per-user limit on the number of watches. The limit applies to all processes of the
+     * user, so some of the watches may already be in use elsewhere. A failure to add a watch when the budget has not run out
+     * should be treated in the same way as running out.
+     */
+    public static WatchBudget fromProcFs() {
+        return new WatchBudget(readLimit("max_user_watches", DEFAULT_MAX_USER_WATCHES));
+    }
+
+    /**
+     * Reads the given limit from /proc/sys/fs/inotify, returning the given default when it cannot be read.
+     */
+    static int readLimit(String name, int defaultValue) {
+        try {
+            BufferedReader reader = new BufferedReader(new FileReader(new File(INOTIFY_LIMITS_DIR, name)));
+            try {
+                return Integer.parseInt(reader.readLine().trim());
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            return defaultValue;
+        } catch (RuntimeException e) {
+            return defaultValue;
+        }
+    }
+
+    public int getMaxWatches() {
+        return maxWatches;
+    }
+
+    public synchronized int getAvailable() {
+        return maxWatches - used;
+    }
+
+    public synchronized int getWatchCount(File root) {
+        Integer count = watchesByRoot.get(root);
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * Reserves a watch for a directory of the given root. Returns false when the budget has run out.
+     */
+    public synchronized boolean tryReserve(File root) {
+        if (used >= maxWatches) {
+            return false;
+        }
+        used++;
+        watchesByRoot.put(root, getWatchCount(root) + 1);
+        return true;
+    }
+
+    /**
+     * Returns a watch reserved for a directory of the given root to the budget.
+     */
+    public synchronized void release(File root) {
+        int count = getWatchCount(root);
+        if (count == 0) {
+            return;
+        }
+        used--;
+        if (count == 1) {
+            watchesByRoot.remove(root);
+        } else {
+            watchesByRoot.put(root, count - 1);
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "WatchBudget{used=" + used + ", max=" + maxWatches + ", byRoot=" + watchesByRoot + "}";
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2012 Adam Murdoch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package net.rubygrapefruit.platform.internal.jni;
+
+import net.rubygrapefruit.platform.internal.FunctionResult;
+
+public class FileHashCacheFunctions {
+    /**
+     * Opens and maps the given cache file, creating it when it does not exist or is not valid. Returns a handle to the cache.
+     *
+     * @param capacity The number of records to create the file with. Must be a power of two.
+     */
+    public static native long open(String path, int capacity, FunctionResult result);
+
+    public static native void close(long handle);
+
+    /**
+     * Copies the digest of the given file into the given array. Returns false when there is no entry for the file, or the entry
+     * was recorded for a different size or timestamps.
+     */
+    public static native boolean lookup(long handle, long device, long inode, int algorithm, long size, long lastModified, long changed, byte[] digest);
+
+    /**
+     * Records the digest of the given file. The entry may be dropped when another thread is writing the same record.
+     */
+    public static native void store(long handle, long device, long inode, int algorithm, long size, long lastModified, long changed, byte[] digest);
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright 2012 Adam Murdoch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.rubygrapefruit.platform.internal.jni;
+
+import net.rubygrapefruit.platform.internal.FunctionResult;
+
+public class FileHashFunctions {
+    public static native void hash(String file, int algorithm, byte[] digest, FunctionResult result);
+
+    /**
+     * Hashes the first {@code length} bytes of the given array.
+     */
+    public static native void hashBytes(byte[] data, int length, int algorithm, byte[] digest, FunctionResult result);
+
+    public static native void hashAll(String[] files, int algorithm, int threads, byte[] digests, int[] failures, int[] errnos, FunctionResult result);
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright 2012 Adam Murdoch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package net.rubygrapefruit.platform.internal.jni;
+
+import net.rubygrapefruit.platform.internal.FunctionResult;
+
+import java.nio.ByteBuffer;
+
+public class LinuxFileFunctions {
+    public static native int openDir(String path, FunctionResult result);
+
+    /**
+     * Reads raw linux_dirent64 records into the given direct buffer, starting at offset 0. Returns the number of bytes read, or 0 when there are no more entries.
+     */
+    public static native int readDirEntries(int fd, ByteBuffer buffer, FunctionResult result);
+
+    public static native void closeDir(int fd);
+}
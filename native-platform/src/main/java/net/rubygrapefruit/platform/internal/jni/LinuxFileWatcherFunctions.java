@@ -0,0 +1,60 @@
+/*
+ * Copyright 2012 Adam Murdoch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.rubygrapefruit.platform.internal.jni;
+
+import net.rubygrapefruit.platform.internal.FunctionResult;
+
+import java.nio.ByteBuffer;
+
+public class LinuxFileWatcherFunctions {
+    // Event mask bits, from <sys/inotify.h>
+    public static final int IN_MODIFY = 0x00000002;
+    public static final int IN_ATTRIB = 0x00000004;
+    public static final int IN_MOVED_FROM = 0x00000040;
+    public static final int IN_MOVED_TO = 0x00000080;
+    public static final int IN_CREATE = 0x00000100;
+    public static final int IN_DELETE = 0x00000200;
+    public static final int IN_DELETE_SELF = 0x00000400;
+    public static final int IN_MOVE_SELF = 0x00000800;
+    public static final int IN_Q_OVERFLOW = 0x00004000;
+    public static final int IN_IGNORED = 0x00008000;
+    public static final int IN_ISDIR = 0x40000000;
+
+    /**
+     * Creates an inotify instance and an event descriptor used to wake up the reader, and stores them in the given array.
+     */
+    public static native void createWatcher(int[] fds, FunctionResult result);
+
+    /**
+     * Watches the given directory, returning the watch descriptor.
+     */
+    public static native int addWatch(int watchFd, String path, FunctionResult result);
+
+    public static native void removeWatch(int watchFd, int wd, FunctionResult result);
+
+    /**
+     * Waits for events and reads raw inotify_event records into the given direct buffer, starting at offset 0. Reads until no more events are queued or the buffer is full.
+     * Returns the number of bytes read, which is 0 when no events arrive before the timeout, or -1 when the watcher has been woken up using {@link #wake(int)} or on failure. Waking up the watcher resets the event descriptor.
+     *
+     * @param timeoutMillis The maximum time to wait for events, or -1 to wait indefinitely.
+     */
+    public static native int readEvents(int watchFd, int wakeFd, int timeoutMillis, ByteBuffer buffer, FunctionResult result);
+
+    public static native void wake(int wakeFd);
+
+    public static native void closeWatcher(int watchFd, int wakeFd);
+}
@@ -16,8 +16,11 @@
 
 package net.rubygrapefruit.platform.internal.jni;
 
-import net.rubygrapefruit.platform.internal.DirList;
+import net.rubygrapefruit.platform.file.MutablePosixFileInfo;
+import net.rubygrapefruit.platform.internal.CompactDirList;
+import net.rubygrapefruit.platform.internal.ExtendedFileStat;
 import net.rubygrapefruit.platform.internal.FileStat;
+import net.rubygrapefruit.platform.internal.FileTreeWalk;
 import net.rubygrapefruit.platform.internal.FunctionResult;
 
 public class PosixFileFunctions {
@@ -25,7 +28,47 @@ public class PosixFileFunctions {
 
     public static native void stat(String file, boolean followLink, FileStat stat, FunctionResult result);
 
-    public static native void readdir(String file, boolean followLink, DirList stat, FunctionResult result);
+    /**
+     * Returns 0 on success, or the errno on failure. Does not report failures to a {@link FunctionResult}, so that no objects
+     * are allocated.
+     */
+    public static native int statInto(String file, boolean followLink, MutablePosixFileInfo details);
+
+    public static native void statExtended(String file, boolean followLink, int fields, ExtendedFileStat stat, FunctionResult result);
+
+    public static native void statAll(String[] files, boolean followLink, int[] types, int[] modes, long[] sizes, long[] lastModified, int[] failures, int[] errnos, FunctionResult result);
+
+    /**
+     * Sets the bit in {@code changed} for each file whose size or last modification time differs from the given values.
+     */
+    public static native void checkUnchanged(String[] files, boolean followLink, long[] expectedSizes, long[] expectedLastModified, long[] changed, FunctionResult result);
+
+    public static native void readdir(String file, boolean followLink, boolean namesAndTypesOnly, CompactDirList dirList, FunctionResult result);
+
+    /**
+     * Calculates a 16 byte digest of the names, types, sizes and last modification times of the entries of the given directory.
+     */
+    public static native void fingerprintDir(String file, boolean followLink, boolean namesAndTypesOnly, byte[] digest, FunctionResult result);
+
+    public static native void walk(String root, boolean followLinks, FileTreeWalk walk, FunctionResult result);
+
+    /**
+     * Returns the file descriptor of the directory, or -1 on failure.
+     */
+    public static native int openDirectory(String dir, FunctionResult result);
+
+    /**
+     * Returns the file descriptor of the directory, or -1 on failure.
+     */
+    public static native int openDirectoryAt(int dirFd, String dir, FunctionResult result);
+
+    public static native void closeDirectory(int dirFd, FunctionResult result);
+
+    public static native void statAt(int dirFd, String file, boolean followLink, FileStat stat, FunctionResult result);
+
+    public static native void readdirAt(int dirFd, boolean followLink, boolean namesAndTypesOnly, CompactDirList dirList, FunctionResult result);
+
+    public static native String readlinkAt(int dirFd, String file, FunctionResult result);
 
     public static native void symlink(String file, String content, FunctionResult result);
 
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2012 Adam Murdoch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.rubygrapefruit.platform.internal.jni;
+
+import net.rubygrapefruit.platform.internal.FunctionResult;
+
+public class UnixSocketFunctions {
+    /**
+     * Creates a socket bound to the given path and listening for connections, returning its descriptor.
+     */
+    public static native int listen(String path, int backlog, FunctionResult result);
+
+    /**
+     * Waits for a connection to the given listening socket, returning the descriptor of the connection.
+     */
+    public static native int accept(int fd, FunctionResult result);
+
+    /**
+     * Connects to the socket bound to the given path, returning the descriptor of the connection.
+     */
+    public static native int connect(String path, FunctionResult result);
+
+    /**
+     * Reads at least one byte into the given array. Returns the number of bytes read, 0 at the end of the stream, or -1 on failure.
+     */
+    public static native int read(int fd, byte[] buffer, int offset, int length, FunctionResult result);
+
+    /**
+     * Writes all of the given bytes.
+     */
+    public static native void write(int fd, byte[] buffer, int offset, int length, FunctionResult result);
+
+    /**
+     * Shuts down both directions of the given socket, which wakes up any thread that is blocked reading from or accepting
+     * connections on it.
+     */
+    public static native void shutdown(int fd);
+
+    public static native void close(int fd);
+}
@@ -47,6 +47,9 @@ int map_error_code(int error_code) {
     if (error_code == EACCES) {
         return FAILURE_PERMISSIONS;
     }
+    if (error_code == ENOSPC || error_code == EMFILE || error_code == ENFILE) {
+        return FAILURE_INSUFFICIENT_RESOURCES;
+    }
     return FAILURE_GENERIC;
 }
 
@@ -20,11 +20,204 @@
 #if defined(__linux__) || defined(__FreeBSD__)
 
 #include "generic.h"
+#include <langinfo.h>
 #include <stdlib.h>
 #include <string.h>
+#include <strings.h>
 #include <wchar.h>
 
+// Strings of up to this many characters are converted using buffers on the stack
+#define STACK_BUFFER_CHARS 256
+
+typedef enum { CODESET_OTHER, CODESET_ASCII, CODESET_UTF8 } codeset_t;
+
+/*
+ * Determines the codeset of the current locale. The JVM has already called setlocale() by the time the library is loaded.
+ */
+codeset_t current_codeset() {
+    const char* codeset = nl_langinfo(CODESET);
+    if (codeset == NULL) {
+        return CODESET_OTHER;
+    }
+    if (strcasecmp(codeset, "UTF-8") == 0 || strcasecmp(codeset, "UTF8") == 0) {
+        return CODESET_UTF8;
+    }
+    if (strcmp(codeset, "ANSI_X3.4-1968") == 0 || strcmp(codeset, "US-ASCII") == 0) {
+        return CODESET_ASCII;
+    }
+    return CODESET_OTHER;
+}
+
+// Determined once, when the library is loaded
+static const codeset_t codeset = current_codeset();
+
+/*
+ * Encodes the given UTF-16 string as UTF-8. The destination must have room for 3 bytes per char, plus the terminator.
+ *
+ * Returns false when the string contains an unpaired surrogate, which cannot be encoded.
+ */
+bool utf16_to_utf8(const jchar* src, jsize len, char* dest) {
+    unsigned char* out = (unsigned char*) dest;
+    for (jsize i = 0; i < len; i++) {
+        jchar ch = src[i];
+        if (ch < 0x80) {
+            *out++ = (unsigned char) ch;
+        } else if (ch < 0x800) {
+            *out++ = 0xC0 | (ch >> 6);
+            *out++ = 0x80 | (ch & 0x3F);
+        } else if (ch >= 0xD800 && ch <= 0xDFFF) {
+            if (ch > 0xDBFF || i + 1 >= len || src[i + 1] < 0xDC00 || src[i + 1] > 0xDFFF) {
+                return false;
+            }
+            unsigned int codePoint = 0x10000 + (((unsigned int) (ch - 0xD800)) << 10) + (src[i + 1] - 0xDC00);
+            i++;
+            *out++ = 0xF0 | (codePoint >> 18);
+            *out++ = 0x80 | ((codePoint >> 12) & 0x3F);
+            *out++ = 0x80 | ((codePoint >> 6) & 0x3F);
+            *out++ = 0x80 | (codePoint & 0x3F);
+        } else {
+            *out++ = 0xE0 | (ch >> 12);
+            *out++ = 0x80 | ((ch >> 6) & 0x3F);
+            *out++ = 0x80 | (ch & 0x3F);
+        }
+    }
+    *out = '\0';
+    return true;
+}
+
+/*
+ * Decodes the given UTF-8 string as UTF-16. The destination must have room for 1 char per byte.
+ *
+ * Returns the number of chars, or -1 when the string is not valid UTF-8.
+ */
+jsize utf8_to_utf16(const unsigned char* src, size_t len, jchar* dest) {
+    jsize count = 0;
+    size_t i = 0;
+    while (i < len) {
+        unsigned int ch = src[i];
+        unsigned int codePoint;
+        size_t extra;
+        if (ch < 0x80) {
+            dest[count++] = (jchar) ch;
+            i++;
+            continue;
+        } else if (ch >= 0xC2 && ch <= 0xDF) {
+            codePoint = ch & 0x1F;
+            extra = 1;
+        } else if (ch >= 0xE0 && ch <= 0xEF) {
+            codePoint = ch & 0x0F;
+            extra = 2;
+        } else if (ch >= 0xF0 && ch <= 0xF4) {
+            codePoint = ch & 0x07;
+            extra = 3;
+        } else {
+            return -1;
+        }
+        if (i + extra >= len) {
+            return -1;
+        }
+        for (size_t j = 1; j <= extra; j++) {
+            unsigned int next = src[i + j];
+            if ((next & 0xC0) != 0x80) {
+                return -1;
+            }
+            codePoint = (codePoint << 6) | (next & 0x3F);
+        }
+        // Reject overlong encodings, encoded surrogates and values beyond the Unicode range
+        if ((extra == 2 && codePoint < 0x800) || (extra == 3 && (codePoint < 0x10000 || codePoint > 0x10FFFF)) || (codePoint >= 0xD800 && codePoint <= 0xDFFF)) {
+            return -1;
+        }
+        if (codePoint >= 0x10000) {
+            codePoint -= 0x10000;
+            dest[count++] = (jchar) (0xD800 + (codePoint >> 10));
+            dest[count++] = (jchar) (0xDC00 + (codePoint & 0x3FF));
+        } else {
+            dest[count++] = (jchar) codePoint;
+        }
+        i += extra + 1;
+    }
+    return count;
+}
+
+/*
+ * Converts using the UTF-8 or ASCII codeset, without going through wchar_t.
+ */
+char* java_to_char_fast(JNIEnv* env, jstring string, jobject result) {
+    jsize stringLen = env->GetStringLength(string);
+    jchar stackBuffer[STACK_BUFFER_CHARS];
+    jchar* javaString = stringLen <= STACK_BUFFER_CHARS ? stackBuffer : (jchar*) malloc(sizeof(jchar) * stringLen);
+    env->GetStringRegion(string, 0, stringLen, javaString);
+
+    char* chars = NULL;
+    if (codeset == CODESET_UTF8) {
+        chars = (char*) malloc(3 * stringLen + 1);
+        if (!utf16_to_utf8(javaString, stringLen, chars)) {
+            free(chars);
+            chars = NULL;
+        }
+    } else {
+        chars = (char*) malloc(stringLen + 1);
+        for (jsize i = 0; i < stringLen; i++) {
+            if (javaString[i] >= 0x80) {
+                free(chars);
+                chars = NULL;
+                break;
+            }
+            chars[i] = (char) javaString[i];
+        }
+        if (chars != NULL) {
+            chars[stringLen] = '\0';
+        }
+    }
+    if (javaString != stackBuffer) {
+        free(javaString);
+    }
+    if (chars == NULL) {
+        mark_failed_with_message(env, "could not convert string to current locale", result);
+    }
+    return chars;
+}
+
+/*
+ * Converts using the UTF-8 or ASCII codeset, without going through wchar_t.
+ */
+jstring char_to_java_fast(JNIEnv* env, const char* chars, jobject result) {
+    const unsigned char* bytes = (const unsigned char*) chars;
+    size_t len = 0;
+    bool ascii = true;
+    for (; bytes[len] != 0; len++) {
+        if (bytes[len] >= 0x80) {
+            ascii = false;
+        }
+    }
+    if (ascii) {
+        // ASCII is also valid modified UTF-8, so the JVM can decode it directly
+        return env->NewStringUTF(chars);
+    }
+    if (codeset != CODESET_UTF8) {
+        mark_failed_with_message(env, "could not convert string from current locale", result);
+        return NULL;
+    }
+    jchar stackBuffer[STACK_BUFFER_CHARS];
+    jchar* javaString = len <= STACK_BUFFER_CHARS ? stackBuffer : (jchar*) malloc(sizeof(jchar) * len);
+    jsize stringLen = utf8_to_utf16(bytes, len, javaString);
+    jstring string = NULL;
+    if (stringLen < 0) {
+        mark_failed_with_message(env, "could not convert string from current locale", result);
+    } else {
+        string = env->NewString(javaString, stringLen);
+    }
+    if (javaString != stackBuffer) {
+        free(javaString);
+    }
+    return string;
+}
+
 char* java_to_char(JNIEnv* env, jstring string, jobject result) {
+    if (codeset != CODESET_OTHER) {
+        return java_to_char_fast(env, string, result);
+    }
+
     size_t stringLen = env->GetStringLength(string);
     wchar_t* wideString = (wchar_t*) malloc(sizeof(wchar_t) * (stringLen + 1));
     const jchar* javaString = env->GetStringChars(string, NULL);
@@ -49,6 +242,10 @@ char* java_to_char(JNIEnv* env, jstring string, jobject result) {
 }
 
 jstring char_to_java(JNIEnv* env, const char* chars, jobject result) {
+    if (codeset != CODESET_OTHER) {
+        return char_to_java_fast(env, chars, result);
+    }
+
     size_t bytes = strlen(chars);
     wchar_t* wideString = (wchar_t*) malloc(sizeof(wchar_t) * (bytes + 1));
     if (mbstowcs(wideString, chars, bytes + 1) == (size_t) -1) {
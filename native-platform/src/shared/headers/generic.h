@@ -37,11 +37,41 @@ extern "C" {
 #define FILE_TYPE_OTHER 3
 #define FILE_TYPE_MISSING 4
 
+// Corresponds to values of FileVisitor.Result
+#define VISIT_RESULT_CONTINUE 0
+#define VISIT_RESULT_SKIP_SUBTREE 1
+#define VISIT_RESULT_TERMINATE 2
+
+// Corresponds to bits for values of ExtendedFileInfo.Field
+#define STAT_FIELD_LAST_MODIFIED_TIME (1 << 0)
+#define STAT_FIELD_CHANGE_TIME (1 << 1)
+#define STAT_FIELD_CREATION_TIME (1 << 2)
+#define STAT_FIELD_INODE (1 << 3)
+#define STAT_FIELD_LINK_COUNT (1 << 4)
+#define STAT_FIELD_ALLOCATED_BLOCKS (1 << 5)
+
 // Corresponds to values of FunctionResult.Failure
 #define FAILURE_GENERIC 0
 #define FAILURE_NO_SUCH_FILE 1
 #define FAILURE_NOT_A_DIRECTORY 2
 #define FAILURE_PERMISSIONS 3
+#define FAILURE_INSUFFICIENT_RESOURCES 4
+
+/*
+ * Looks up the class references and method IDs used by the functions declared in this file, and keeps them while the
+ * library is loaded. Should be called from JNI_OnLoad.
+ *
+ * Returns false on failure, with a Java exception pending.
+ */
+extern bool init_generic_ids(JNIEnv* env);
+
+/*
+ * Finds the given class and returns a global reference to it, so that the class, and any IDs looked up from it, remain
+ * valid while the library is loaded.
+ *
+ * Returns NULL on failure, with a Java exception pending.
+ */
+extern jclass find_global_class(JNIEnv* env, const char* name);
 
 /*
  * Marks the given result as failed, using the given error message
@@ -54,7 +84,7 @@ extern void mark_failed_with_message(JNIEnv* env, const char* message, jobject r
 extern void mark_failed_with_errno(JNIEnv* env, const char* message, jobject result);
 
 /*
- * Marks the given result as failed, using the given error message and error code
+ * Marks the given result as failed, using the given error message and error code. Does nothing when the result is NULL.
  */
 extern void mark_failed_with_code(JNIEnv* env, const char* message, int error_code, const char* error_code_message, jobject result);
 
@@ -81,7 +111,7 @@ extern jstring wchar_to_java(JNIEnv* env, const wchar_t* chars, size_t len, jobj
 /*
  * Converts the given Java string to a NULL terminated char string. Should call free() when finished.
  *
- * Returns NULL on failure.
+ * Returns NULL on failure. The result may be NULL when the caller reports the failure in some other way.
  */
 extern char* java_to_char(JNIEnv* env, jstring string, jobject result);
 
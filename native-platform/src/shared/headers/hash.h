@@ -0,0 +1,80 @@
+/*
+ * Copyright 2012 Adam Murdoch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/*
+ * Streaming digest functions, used to hash file contents.
+ */
+#ifndef __INCLUDE_HASH_H__
+#define __INCLUDE_HASH_H__
+
+#include <stddef.h>
+#include <stdint.h>
+
+// Corresponds to values of FileHasher.Algorithm
+#define HASH_ALGORITHM_SHA256 0
+#define HASH_ALGORITHM_XXH64 1
+
+#define SHA256_DIGEST_LENGTH 32
+#define XXH64_DIGEST_LENGTH 8
+
+typedef struct sha256_state {
+    uint32_t h[8];
+    uint64_t length;
+    unsigned char buffer[64];
+    size_t bufferLength;
+} sha256_state_t;
+
+extern void sha256_init(sha256_state_t* state);
+extern void sha256_update(sha256_state_t* state, const void* data, size_t len);
+extern void sha256_final(sha256_state_t* state, unsigned char* digest);
+
+typedef struct xxh64_state {
+    uint64_t v[4];
+    uint64_t seed;
+    uint64_t length;
+    unsigned char buffer[32];
+    size_t bufferLength;
+} xxh64_state_t;
+
+extern void xxh64_init(xxh64_state_t* state, uint64_t seed);
+extern void xxh64_update(xxh64_state_t* state, const void* data, size_t len);
+extern uint64_t xxh64_digest(xxh64_state_t* state);
+
+/*
+ * Writes the given XXH64 value to the given buffer, in big-endian order, which is the canonical representation.
+ */
+extern void xxh64_canonical(uint64_t value, unsigned char* digest);
+
+/*
+ * Hashes using either of the algorithms above.
+ */
+typedef struct hash_state {
+    int algorithm;
+    union {
+        sha256_state_t sha256;
+        xxh64_state_t xxh64;
+    } state;
+} hash_state_t;
+
+/*
+ * Returns the length of the digest produced by the given algorithm, or 0 when the algorithm is not known.
+ */
+extern size_t hash_digest_length(int algorithm);
+extern void hash_init(hash_state_t* state, int algorithm);
+extern void hash_update(hash_state_t* state, const void* data, size_t len);
+extern void hash_final(hash_state_t* state, unsigned char* digest);
+
+#endif
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2012 Adam Murdoch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/*
+ * The class references, method IDs and field IDs of the Java callbacks used by the native-platform library.
+ * These are looked up once, when the library is loaded, rather than on each call.
+ */
+#ifndef __INCLUDE_JNI_IDS_H__
+#define __INCLUDE_JNI_IDS_H__
+
+#include <jni.h>
+
+typedef struct jni_ids {
+    // MutableSystemInfo
+    jclass systemInfoClass;
+#ifdef _WIN32
+    jmethodID systemInfoWindows;
+#else
+    jfieldID systemInfoOsName;
+    jfieldID systemInfoOsVersion;
+    jfieldID systemInfoHostname;
+    jfieldID systemInfoMachineArchitecture;
+#endif
+
+    // MutableTerminalSize
+    jclass terminalSizeClass;
+    jfieldID terminalSizeCols;
+    jfieldID terminalSizeRows;
+
+    // FileSystemList
+    jclass fileSystemListClass;
+    jmethodID fileSystemListAdd;
+    jmethodID fileSystemListAddForUnknownCaseSensitivity;
+
+#ifdef _WIN32
+    // WindowsFileStat
+    jclass windowsFileStatClass;
+    jmethodID windowsFileStatDetails;
+
+    // DirList
+    jclass dirListClass;
+    jmethodID dirListAddFile;
+
+    // CharInputBuffer
+    jclass charInputBufferClass;
+    jmethodID charInputBufferKey;
+    jmethodID charInputBufferCharacter;
+
+    // java.util.List
+    jclass listClass;
+    jmethodID listAdd;
+
+    // DefaultWindowsMemoryInfo
+    jclass windowsMemoryInfoClass;
+    jmethodID windowsMemoryInfoDetails;
+#else
+    // MutableTypeInfo
+    jclass typeInfoClass;
+    jfieldID typeInfoIntBytes;
+    jfieldID typeInfoULongBytes;
+    jfieldID typeInfoSizeTBytes;
+    jfieldID typeInfoUidTBytes;
+    jfieldID typeInfoGidTBytes;
+    jfieldID typeInfoOffTBytes;
+
+    // FileStat
+    jclass fileStatClass;
+    jmethodID fileStatDetails;
+
+    // MutablePosixFileInfo
+    jclass mutablePosixFileInfoClass;
+    jmethodID mutablePosixFileInfoDetails;
+
+    // ExtendedFileStat
+    jclass extendedFileStatClass;
+    jmethodID extendedFileStatDetails;
+
+    // CompactDirList
+    jclass compactDirListClass;
+    jmethodID compactDirListEntries;
+
+    // FileTreeWalk
+    jclass fileTreeWalkClass;
+    jmethodID fileTreeWalkEnterDirectory;
+    jmethodID fileTreeWalkVisitFile;
+    jmethodID fileTreeWalkExitDirectory;
+    jmethodID fileTreeWalkFailed;
+    jmethodID fileTreeWalkStatFailed;
+#endif
+
+#ifdef __APPLE__
+    // DefaultOsxMemoryInfo
+    jclass osxMemoryInfoClass;
+    jmethodID osxMemoryInfoDetails;
+#endif
+} jni_ids_t;
+
+extern jni_ids_t jni_ids;
+
+#endif
@@ -0,0 +1,240 @@
+/*
+ * Copyright 2012 Adam Murdoch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package net.rubygrapefruit.platform.file
+
+import net.rubygrapefruit.platform.NativeException
+import net.rubygrapefruit.platform.NativePlatformSpec
+import net.rubygrapefruit.platform.internal.Platform
+import spock.lang.IgnoreIf
+
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+@IgnoreIf({ Platform.current().windows })
+class FileHashCacheTest extends NativePlatformSpec {
+    static final long AN_HOUR_AGO = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis()) - TimeUnit.HOURS.toNanos(1)
+
+    File tmpDir
+    File cacheFile
+    final FileHasher hasher = getIntegration(FileHasher)
+    final PosixFiles files = getIntegration(PosixFiles)
+    FileHashCache cache
+
+    void setup() {
+        tmpDir = File.createTempDir()
+        cacheFile = new File(tmpDir, "hashes.bin")
+        cache = hasher.openCache(cacheFile, 100)
+    }
+
+    def cleanup() {
+        cache?.close()
+        tmpDir?.deleteDir()
+    }
+
+    def "can put and get hash of file"() {
+        def details = details(12, 100)
+        def hash = (0..<algorithm.digestLength).collect { it as byte } as byte[]
+
+        expect:
+        cache.get(details, algorithm) == null
+
+        when:
+        cache.put(details, algorithm, hash)
+
+        then:
+        cache.get(details, algorithm) == hash
+        cache.get(details(12, 100), algorithm) == hash
+
+        where:
+        algorithm << FileHasher.Algorithm.values()
+    }
+
+    def "does not use hash of file that has changed"() {
+        def hash = new byte[8]
+        cache.put(details(12, 100), FileHasher.Algorithm.XXH64, hash)
+
+        expect:
+        cache.get(details(12, 100), FileHasher.Algorithm.XXH64) == hash
+        cache.get(details(12, 101), FileHasher.Algorithm.XXH64) == null
+        cache.get(details(12, 100, AN_HOUR_AGO + 1), FileHasher.Algorithm.XXH64) == null
+        cache.get(details(12, 100, AN_HOUR_AGO, AN_HOUR_AGO + 1), FileHasher.Algorithm.XXH64) == null
+        cache.get(details(13, 100), FileHasher.Algorithm.XXH64) == null
+        cache.get(details(12, 100), FileHasher.Algorithm.SHA256) == null
+    }
+
+    def "does not cache file that has recently changed"() {
+        def now = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis())
+        def details = details(12, 100, AN_HOUR_AGO, now)
+
+        when:
+        cache.put(details, FileHasher.Algorithm.XXH64, new byte[8])
+
+        then:
+        cache.get(details, FileHasher.Algorithm.XXH64) == null
+    }
+
+    def "does not cache details that are missing fields"() {
+        def details = Stub(ExtendedFileInfo) {
+            getType() >> FileInfo.Type.File
+            isAvailable(_) >> false
+        }
+
+        when:
+        cache.put(details, FileHasher.Algorithm.XXH64, new byte[8])
+
+        then:
+        cache.get(details, FileHasher.Algorithm.XXH64) == null
+    }
+
+    def "cannot put hash of wrong length"() {
+        when:
+        cache.put(details(12, 100), FileHasher.Algorithm.SHA256, new byte[8])
+
+        then:
+        def e = thrown(IllegalArgumentException)
+        e.message == "Expected a 32 byte digest, got 8 bytes."
+    }
+
+    def "entries are kept when the cache is reopened"() {
+        def hash = (0..<32).collect { it as byte } as byte[]
+        cache.put(details(12, 100), FileHasher.Algorithm.SHA256, hash)
+        cache.close()
+
+        when:
+        cache = hasher.openCache(cacheFile, 100)
+
+        then:
+        cache.get(details(12, 100), FileHasher.Algorithm.SHA256) == hash
+    }
+
+    def "can open a cache that is already open"() {
+        def hash = new byte[8]
+        def other = hasher.openCache(cacheFile, 100)
+
+        when:
+        other.put(details(12, 100), FileHasher.Algorithm.XXH64, hash)
+
+        then:
+        cache.get(details(12, 100), FileHasher.Algorithm.XXH64) == hash
+
+        cleanup:
+        other?.close()
+    }
+
+    def "discards cache file that is not valid"() {
+        cache.close()
+        cacheFile.text = "not a cache"
+
+        when:
+        cache = hasher.openCache(cacheFile, 100)
+        cache.put(details(12, 100), FileHasher.Algorithm.XXH64, new byte[8])
+
+        then:
+        cache.get(details(12, 100), FileHasher.Algorithm.XXH64) == new byte[8]
+    }
+
+    def "can put and get hashes concurrently"() {
+        def executor = Executors.newFixedThreadPool(8)
+
+        when:
+        def results = (0..<8).collect { thread ->
+            executor.submit({
+                (0..<500).every { inode ->
+                    def hash = [inode, inode >> 8, 0, 0, 0, 0, 0, 1] as byte[]
+                    cache.put(details(inode, inode), FileHasher.Algorithm.XXH64, hash)
+                    def cached = cache.get(details(inode, inode), FileHasher.Algorithm.XXH64)
+                    cached == null || cached == hash
+                }
+            } as Callable)
+        }*.get()
+
+        then:
+        results.every()
+
+        cleanup:
+        executor?.shutdown()
+    }
+
+    def "uses cached hash of unchanged file"() {
+        def file = new File(tmpDir, "test.txt")
+        file.text = "content"
+        file.setLastModified(System.currentTimeMillis() - 60000)
+        // Wait until the change time of the file is old enough to be cached
+        Thread.sleep(2100)
+
+        when:
+        def hash = cache.hash(file, FileHasher.Algorithm.SHA256)
+
+        then:
+        hash == hasher.hash(file, FileHasher.Algorithm.SHA256)
+        cache.get(files.statExtended(file, true, FileHashCache.FIELDS), FileHasher.Algorithm.SHA256) == hash
+
+        when:
+        file.text = "changed"
+
+        then:
+        cache.get(files.statExtended(file, true, FileHashCache.FIELDS), FileHasher.Algorithm.SHA256) == null
+        cache.hash(file, FileHasher.Algorithm.SHA256) == hasher.hash(file, FileHasher.Algorithm.SHA256)
+    }
+
+    def "cannot hash file that does not exist"() {
+        def file = new File(tmpDir, "missing.txt")
+
+        when:
+        cache.hash(file, FileHasher.Algorithm.XXH64)
+
+        then:
+        def e = thrown(NoSuchFileException)
+        e.message == "Could not hash file $file as it does not exist."
+    }
+
+    def "cannot use cache after it has been closed"() {
+        cache.close()
+
+        when:
+        cache.get(details(12, 100), FileHasher.Algorithm.XXH64)
+
+        then:
+        def e = thrown(IllegalStateException)
+        e.message == "File hash cache $cacheFile has been closed."
+    }
+
+    def "cannot open cache in directory that does not exist"() {
+        def file = new File(tmpDir, "missing/hashes.bin")
+
+        when:
+        hasher.openCache(file, 100)
+
+        then:
+        def e = thrown(NativeException)
+        e.message == "Could not open file hash cache $file: could not open cache file (errno 2: No such file or directory)"
+    }
+
+    private ExtendedFileInfo details(long inode, long size, long lastModified = AN_HOUR_AGO, long changed = AN_HOUR_AGO) {
+        return Stub(ExtendedFileInfo) {
+            getType() >> FileInfo.Type.File
+            isAvailable(_) >> true
+            getDevice() >> 1
+            getInode() >> inode
+            getSize() >> size
+            getLastModifiedTimeNanos() >> lastModified
+            getChangeTimeNanos() >> changed
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2012 Adam Murdoch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.rubygrapefruit.platform.file
+
+import net.rubygrapefruit.platform.NativeException
+import net.rubygrapefruit.platform.NativePlatformSpec
+import net.rubygrapefruit.platform.internal.Platform
+import spock.lang.IgnoreIf
+
+import java.security.MessageDigest
+
+@IgnoreIf({ Platform.current().windows })
+class FileHasherTest extends NativePlatformSpec {
+    File tmpDir
+    final FileHasher hasher = getIntegration(FileHasher)
+
+    void setup() {
+        tmpDir = File.createTempDir()
+    }
+
+    def cleanup() {
+        tmpDir?.deleteDir()
+    }
+
+    def "caches file hasher instance"() {
+        expect:
+        getIntegration(FileHasher) == hasher
+    }
+
+    def "can calculate SHA-256 hash of file"() {
+        def file = new File(tmpDir, "test.bin")
+        file.bytes = content
+
+        expect:
+        hasher.hash(file, FileHasher.Algorithm.SHA256) == MessageDigest.getInstance("SHA-256").digest(content)
+
+        where:
+        content << [new byte[0], "abc".bytes, randomBytes(1024 * 1024 + 17)]
+    }
+
+    def "can calculate XXH64 hash of file"() {
+        def file = new File(tmpDir, "test.txt")
+        file.bytes = content.bytes
+
+        expect:
+        hasher.hash(file, FileHasher.Algorithm.XXH64).encodeHex().toString() == hash
+
+        where:
+        content | hash
+        ""      | "ef46db3751d8e999"
+        "a"     | "d24ec4f1a98c6e5b"
+        "abc"   | "44bc2cf5ad770999"
+    }
+
+    def "cannot hash file that does not exist"() {
+        def file = new File(tmpDir, "missing")
+
+        when:
+        hasher.hash(file, FileHasher.Algorithm.SHA256)
+
+        then:
+        def e = thrown(NoSuchFileException)
+        e.message == "Could not hash file $file as it does not exist."
+    }
+
+    def "cannot hash directory"() {
+        when:
+        hasher.hash(tmpDir, FileHasher.Algorithm.SHA256)
+
+        then:
+        def e = thrown(NativeException)
+        e.message.startsWith("Could not hash file $tmpDir: could not read file")
+    }
+
+    def "can hash a batch of files"() {
+        def files = (0..<50).collect { new File(tmpDir, "file$it") }
+        files.eachWithIndex { file, i -> file.bytes = randomBytes(i * 10000) }
+        def missing = new File(tmpDir, "missing")
+
+        when:
+        def batch = hasher.hashAll(files + [missing], FileHasher.Algorithm.SHA256)
+
+        then:
+        batch.size() == 51
+        files.eachWithIndex { file, i ->
+            assert batch.getFile(i) == file
+            assert !batch.isFailed(i)
+            assert batch.getFailure(i) == null
+            assert batch.getHash(i) == MessageDigest.getInstance("SHA-256").digest(file.bytes)
+        }
+        batch.getFile(50) == missing
+        batch.isFailed(50)
+        batch.getFailure(50) instanceof NoSuchFileException
+
+        when:
+        batch.getHash(50)
+
+        then:
+        def e = thrown(NoSuchFileException)
+        e.message == "Could not hash file $missing as it does not exist."
+    }
+
+    def "can hash an empty batch of files"() {
+        expect:
+        hasher.hashAll([], FileHasher.Algorithm.XXH64).size() == 0
+    }
+
+    private static byte[] randomBytes(int count) {
+        def bytes = new byte[count]
+        new Random(count).nextBytes(bytes)
+        return bytes
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2012 Adam Murdoch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package net.rubygrapefruit.platform.file
+
+import spock.lang.Specification
+
+class FileIdentitySetTest extends Specification {
+    def set = new FileIdentitySet()
+
+    def "can add and query identities"() {
+        expect:
+        set.empty
+        !set.contains(1, 2)
+
+        set.add(1, 2)
+        set.add(2, 1)
+        !set.add(1, 2)
+        set.size() == 2
+
+        set.contains(1, 2)
+        set.contains(2, 1)
+        !set.contains(1, 1)
+        !set.contains(2, 2)
+    }
+
+    def "can add identity made up of zeros"() {
+        expect:
+        !set.contains(0, 0)
+        set.add(0, 0)
+        !set.add(0, 0)
+        set.contains(0, 0)
+        set.size() == 1
+        !set.contains(0, 1)
+    }
+
+    def "grows to hold many identities"() {
+        def count = 10000
+
+        when:
+        for (long inode = 1; inode <= count; inode++) {
+            assert set.add(7, inode)
+        }
+
+        then:
+        set.size() == count
+        (1..count).every { set.contains(7, it) && !set.add(7, it) }
+        !set.contains(7, count + 1)
+        !set.contains(8, 1)
+    }
+
+    def "can clear the set"() {
+        set.add(1, 2)
+        set.add(0, 0)
+
+        when:
+        set.clear()
+
+        then:
+        set.empty
+        !set.contains(1, 2)
+        !set.contains(0, 0)
+        set.add(1, 2)
+    }
+}
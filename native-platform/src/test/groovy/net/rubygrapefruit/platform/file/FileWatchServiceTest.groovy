@@ -0,0 +1,226 @@
+/*
+ * Copyright 2012 Adam Murdoch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.rubygrapefruit.platform.file
+
+import net.rubygrapefruit.platform.NativeException
+import net.rubygrapefruit.platform.NativePlatformSpec
+import net.rubygrapefruit.platform.internal.Platform
+import spock.lang.Requires
+
+import java.util.concurrent.BlockingQueue
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.TimeUnit
+
+@Requires({ Platform.current().linux })
+class FileWatchServiceTest extends NativePlatformSpec {
+    File tmpDir
+    File socketFile
+    final FileWatchService service = getIntegration(FileWatchService)
+    FileWatchServer server
+    final List<FileWatch> watches = []
+
+    void setup() {
+        tmpDir = File.createTempDir()
+        // Socket paths are limited in length, so do not use a path inside the test directory
+        socketFile = new File(File.createTempDir(), "watch.sock")
+        server = service.startServer(socketFile, FileWatchOptions.defaults())
+    }
+
+    def cleanup() {
+        watches*.close()
+        server?.close()
+        socketFile.parentFile.deleteDir()
+        tmpDir?.deleteDir()
+    }
+
+    def "caches file watch service instance"() {
+        expect:
+        getIntegration(FileWatchService) == service
+    }
+
+    def "client receives events for its watched directory trees"() {
+        def received = new LinkedBlockingQueue<Object>()
+        def watch = newWatch(received)
+        def dir = new File(tmpDir, "a")
+        dir.mkdirs()
+        def file = new File(dir, "test.txt")
+
+        given:
+        watch.startWatching(tmpDir)
+
+        when:
+        file.createNewFile()
+
+        then:
+        receivedEvent(received, FileWatchEvent.Type.Created, file)
+
+        when:
+        file.delete()
+
+        then:
+        receivedEvent(received, FileWatchEvent.Type.Removed, file)
+    }
+
+    def "clients share the watches of the server"() {
+        def received1 = new LinkedBlockingQueue<Object>()
+        def received2 = new LinkedBlockingQueue<Object>()
+        def watch1 = newWatch(received1)
+        def watch2 = newWatch(received2)
+        def dir1 = new File(tmpDir, "a")
+        def dir2 = new File(tmpDir, "b")
+        dir1.mkdirs()
+        dir2.mkdirs()
+        def file1 = new File(dir1, "test.txt")
+        def file2 = new File(dir2, "test.txt")
+
+        given:
+        watch1.startWatching(dir1)
+        watch2.startWatching(dir1)
+        watch2.startWatching(dir2)
+
+        when:
+        file1.createNewFile()
+        file2.createNewFile()
+
+        then:
+        receivedEvent(received1, FileWatchEvent.Type.Created, file1)
+        receivedEvent(received2, FileWatchEvent.Type.Created, file1)
+        receivedEvent(received2, FileWatchEvent.Type.Created, file2)
+        received1.empty
+
+        when:
+        watch2.stopWatching(dir1)
+        file1.text = "content"
+
+        then:
+        receivedEvent(received1, FileWatchEvent.Type.Modified, file1)
+    }
+
+    def "client applies its filter to the events received from the server"() {
+        def received = new LinkedBlockingQueue<Object>()
+        def watch = newWatch(received, { type, dir, name -> name.toString().endsWith(".java") } as FileWatchFilter)
+        def ignored = new File(tmpDir, "ignored.txt")
+        def file = new File(tmpDir, "Test.java")
+
+        given:
+        watch.startWatching(tmpDir)
+
+        when:
+        ignored.createNewFile()
+        file.createNewFile()
+
+        then:
+        def event = received.poll(5, TimeUnit.SECONDS)
+        event instanceof FileWatchEvent
+        event.type == FileWatchEvent.Type.Created
+        event.file == file
+    }
+
+    def "server reports failure to watch directory to the client"() {
+        def watch = newWatch(new LinkedBlockingQueue<Object>())
+        def dir = new File(tmpDir, "missing")
+
+        when:
+        watch.startWatching(dir)
+
+        then:
+        def e = thrown(NoSuchFileException)
+        e.message == "Could not watch directory $dir as this directory does not exist."
+    }
+
+    def "client is notified when the server stops"() {
+        def received = new LinkedBlockingQueue<Object>()
+        def watch = newWatch(received)
+
+        given:
+        watch.startWatching(tmpDir)
+
+        when:
+        server.close()
+
+        then:
+        def failure = received.poll(5, TimeUnit.SECONDS)
+        failure instanceof NativeException
+        failure.message == "Lost connection to file watch server $socketFile."
+        !socketFile.exists()
+    }
+
+    def "cannot start a second server on the same socket"() {
+        when:
+        service.startServer(socketFile, FileWatchOptions.defaults())
+
+        then:
+        def e = thrown(NativeException)
+        e.message == "Could not start file watch server on $socketFile as another server is listening on this socket."
+    }
+
+    def "replaces a socket file left behind by a server that is no longer running"() {
+        given:
+        server.close()
+        socketFile.createNewFile()
+
+        when:
+        server = service.startServer(socketFile, FileWatchOptions.defaults())
+        def received = new LinkedBlockingQueue<Object>()
+        newWatch(received).startWatching(tmpDir)
+        def file = new File(tmpDir, "test.txt")
+        file.createNewFile()
+
+        then:
+        receivedEvent(received, FileWatchEvent.Type.Created, file)
+    }
+
+    def "cannot connect when no server is running"() {
+        def missing = new File(socketFile.parentFile, "missing.sock")
+
+        when:
+        service.connect(missing).newWatch(Stub(FileWatchListener))
+
+        then:
+        def e = thrown(NoSuchFileException)
+        e.message == "Could not connect to socket $missing as it does not exist."
+    }
+
+    private FileWatch newWatch(BlockingQueue<Object> received, FileWatchFilter filter = null) {
+        def watch = service.connect(socketFile).newWatch(FileWatchOptions.defaults().withFilter(filter), new FileWatchListener() {
+            @Override
+            void onChanges(List<FileWatchEvent> events) {
+                received.addAll(events)
+            }
+
+            @Override
+            void onFailure(NativeException failure) {
+                received.add(failure)
+            }
+        })
+        watches << watch
+        return watch
+    }
+
+    /**
+     * Waits for the given event, skipping any other events received before it.
+     */
+    private static boolean receivedEvent(BlockingQueue<Object> received, FileWatchEvent.Type type, File file) {
+        while (true) {
+            def event = received.poll(5, TimeUnit.SECONDS)
+            assert event instanceof FileWatchEvent
+            if (event.type == type && event.file == file) {
+                return true
+            }
+        }
+    }
+}
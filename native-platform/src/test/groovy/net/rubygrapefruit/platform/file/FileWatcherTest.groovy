@@ -0,0 +1,368 @@
+/*
+ * Copyright 2012 Adam Murdoch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.rubygrapefruit.platform.file
+
+import net.rubygrapefruit.platform.NativeException
+import net.rubygrapefruit.platform.NativePlatformSpec
+import net.rubygrapefruit.platform.internal.Platform
+import spock.lang.Requires
+
+import java.util.concurrent.BlockingQueue
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.TimeUnit
+
+@Requires({ Platform.current().linux })
+class FileWatcherTest extends NativePlatformSpec {
+    File tmpDir
+    final FileWatcher watcher = getIntegration(FileWatcher)
+    final BlockingQueue<Object> received = new LinkedBlockingQueue<>()
+    FileWatch watch
+
+    void setup() {
+        tmpDir = File.createTempDir()
+        watch = watcher.newWatch(new FileWatchListener() {
+            @Override
+            void onChanges(List<FileWatchEvent> events) {
+                received.addAll(events)
+            }
+
+            @Override
+            void onFailure(NativeException failure) {
+                received.add(failure)
+            }
+        })
+    }
+
+    def cleanup() {
+        watch?.close()
+        tmpDir?.deleteDir()
+    }
+
+    def "caches file watcher instance"() {
+        expect:
+        getIntegration(FileWatcher) == watcher
+    }
+
+    def "reports files created, modified and removed in a watched directory tree"() {
+        def dir = new File(tmpDir, "a/b")
+        dir.mkdirs()
+        def file = new File(dir, "test.txt")
+
+        given:
+        watch.startWatching(tmpDir)
+
+        when:
+        file.createNewFile()
+
+        then:
+        receivedEvent(FileWatchEvent.Type.Created, file)
+
+        when:
+        file.text = "content"
+
+        then:
+        receivedEvent(FileWatchEvent.Type.Modified, file)
+
+        when:
+        file.delete()
+
+        then:
+        receivedEvent(FileWatchEvent.Type.Removed, file)
+    }
+
+    def "watches directories that are created in a watched directory tree"() {
+        def dir = new File(tmpDir, "new")
+        def file = new File(dir, "test.txt")
+
+        given:
+        watch.startWatching(tmpDir)
+
+        when:
+        dir.mkdirs()
+
+        then:
+        receivedEvent(FileWatchEvent.Type.Created, dir)
+
+        when:
+        file.createNewFile()
+
+        then:
+        receivedEvent(FileWatchEvent.Type.Created, file)
+    }
+
+    def "delivers only the events accepted by the filter"() {
+        def filtered = watcher.newWatch({ type, dir, name -> name.toString().endsWith(".java") } as FileWatchFilter, new FileWatchListener() {
+            @Override
+            void onChanges(List<FileWatchEvent> events) {
+                received.addAll(events)
+            }
+
+            @Override
+            void onFailure(NativeException failure) {
+                received.add(failure)
+            }
+        })
+        def ignored = new File(tmpDir, "ignored.txt")
+        def file = new File(tmpDir, "Test.java")
+
+        given:
+        watch.close()
+        filtered.startWatching(tmpDir)
+
+        when:
+        ignored.createNewFile()
+        file.createNewFile()
+
+        then:
+        def event = received.poll(5, TimeUnit.SECONDS)
+        event.type == FileWatchEvent.Type.Created
+        event.file == file
+
+        cleanup:
+        filtered?.close()
+    }
+
+    def "coalesces events over the latency window"() {
+        def coalesced = watcher.newWatch(FileWatchOptions.defaults().withLatency(100), new FileWatchListener() {
+            @Override
+            void onChanges(List<FileWatchEvent> events) {
+                received.add(events)
+            }
+
+            @Override
+            void onFailure(NativeException failure) {
+                received.add(failure)
+            }
+        })
+        def original = new File(tmpDir, "original.txt")
+        original.text = "content"
+        def renamed = new File(tmpDir, "renamed.txt")
+        def temporary = new File(tmpDir, "transient.txt")
+
+        given:
+        watch.close()
+        coalesced.startWatching(tmpDir)
+
+        when:
+        temporary.createNewFile()
+        original.renameTo(renamed)
+        renamed << "more"
+        temporary.delete()
+
+        then:
+        def events = received.poll(5, TimeUnit.SECONDS)
+        events.size() == 1
+        events[0].type == FileWatchEvent.Type.Renamed
+        events[0].previousFile == original
+        events[0].file == renamed
+
+        cleanup:
+        coalesced?.close()
+    }
+
+    def "reports an overflow when events are lost"() {
+        def overflowed = newBlockedWatch(FileWatchOptions.defaults())
+
+        when:
+        floodWithEvents(overflowed)
+
+        then:
+        receivedEvent(FileWatchEvent.Type.Overflow, tmpDir)
+
+        cleanup:
+        overflowed.watch?.close()
+    }
+
+    def "recovers from lost events by rescanning the watched directory tree"() {
+        def unchanged = new File(tmpDir, "unchanged.txt")
+        unchanged.text = "unchanged"
+        def modified = new File(tmpDir, "modified.txt")
+        modified.text = "content"
+        def removed = new File(tmpDir, "removed.txt")
+        removed.createNewFile()
+        def recovering = newBlockedWatch(FileWatchOptions.defaults().withOverflowRecovery(true))
+
+        when:
+        def created = floodWithEvents(recovering) {
+            modified.text = "new content"
+            removed.delete()
+        }
+
+        then:
+        def events = [received.poll(5, TimeUnit.SECONDS)]
+        while (events.last() != null) {
+            events << received.poll(1, TimeUnit.SECONDS)
+        }
+        events.any { it?.file == created.last() }
+        !events.any { it?.type == FileWatchEvent.Type.Overflow }
+        events.any { it?.type == FileWatchEvent.Type.Modified && it.file == modified }
+        events.any { it?.type == FileWatchEvent.Type.Removed && it.file == removed }
+        !events.any { it?.file == unchanged }
+
+        cleanup:
+        recovering.watch?.close()
+    }
+
+    def "polls directories that cannot be watched"() {
+        def limited = watcher.newWatch(FileWatchOptions.defaults().withMaxWatches(1), new FileWatchListener() {
+            @Override
+            void onChanges(List<FileWatchEvent> events) {
+                received.addAll(events)
+            }
+
+            @Override
+            void onFailure(NativeException failure) {
+                received.add(failure)
+            }
+        })
+        watch.close()
+        watch = limited
+        def dir = new File(tmpDir, "a/b")
+        dir.mkdirs()
+        def file = new File(dir, "test.txt")
+        def newDir = new File(tmpDir, "new")
+        def newFile = new File(newDir, "test.txt")
+
+        given:
+        watch.startWatching(tmpDir)
+
+        when:
+        file.createNewFile()
+
+        then:
+        receivedEvent(FileWatchEvent.Type.Created, file)
+
+        when:
+        file.delete()
+
+        then:
+        receivedEvent(FileWatchEvent.Type.Removed, file)
+
+        when:
+        newDir.mkdirs()
+
+        then:
+        receivedEvent(FileWatchEvent.Type.Created, newDir)
+
+        when:
+        newFile.createNewFile()
+
+        then:
+        receivedEvent(FileWatchEvent.Type.Created, newFile)
+    }
+
+    def "does not report changes once stopped watching"() {
+        def file = new File(tmpDir, "test.txt")
+
+        given:
+        watch.startWatching(tmpDir)
+        watch.stopWatching(tmpDir)
+
+        when:
+        file.createNewFile()
+
+        then:
+        received.poll(200, TimeUnit.MILLISECONDS) == null
+    }
+
+    def "cannot watch directory that does not exist"() {
+        def dir = new File(tmpDir, "missing")
+
+        when:
+        watch.startWatching(dir)
+
+        then:
+        def e = thrown(NoSuchFileException)
+        e.message == "Could not watch directory $dir as this directory does not exist."
+    }
+
+    def "cannot watch a file"() {
+        def file = new File(tmpDir, "test.txt")
+        file.createNewFile()
+
+        when:
+        watch.startWatching(file)
+
+        then:
+        def e = thrown(NotADirectoryException)
+        e.message == "Could not watch directory $file as it is not a directory."
+    }
+
+    def "cannot watch directory once closed"() {
+        given:
+        watch.close()
+
+        when:
+        watch.startWatching(tmpDir)
+
+        then:
+        def e = thrown(NativeException)
+        e.message == "Could not watch directory $tmpDir as this watch has been closed."
+    }
+
+    /**
+     * Creates a watch whose listener blocks until released, so that events can be queued until they overflow.
+     */
+    private Map<String, Object> newBlockedWatch(FileWatchOptions options) {
+        def release = new CountDownLatch(1)
+        def blocked = watcher.newWatch(options, new FileWatchListener() {
+            @Override
+            void onChanges(List<FileWatchEvent> events) {
+                release.await()
+                received.addAll(events)
+            }
+
+            @Override
+            void onFailure(NativeException failure) {
+                received.add(failure)
+            }
+        })
+        watch.close()
+        blocked.startWatching(tmpDir)
+        return [watch: blocked, release: release]
+    }
+
+    /**
+     * Creates more files than the event queue can hold while the listener is blocked, then releases the listener.
+     */
+    private List<File> floodWithEvents(Map<String, Object> blocked, Closure action = {}) {
+        def marker = new File(tmpDir, "marker")
+        marker.createNewFile()
+        // Wait for the reader thread to block in the listener
+        Thread.sleep(200)
+        def queueSize = new File("/proc/sys/fs/inotify/max_queued_events").text.trim() as int
+        def created = (0..queueSize).collect { new File(tmpDir, "file$it") }
+        created.each { it.createNewFile() }
+        action()
+        blocked.release.countDown()
+        return created
+    }
+
+    /**
+     * Waits for the given event, skipping any other events received before it.
+     */
+    private boolean receivedEvent(FileWatchEvent.Type type, File file) {
+        while (true) {
+            def event = received.poll(5, TimeUnit.SECONDS)
+            assert event instanceof FileWatchEvent
+            if (event.type == type && event.file == file) {
+                return true
+            }
+        }
+    }
+}
@@ -15,6 +15,7 @@
  */
 package net.rubygrapefruit.platform.file
 
+import net.rubygrapefruit.platform.NativeException
 import net.rubygrapefruit.platform.internal.Platform
 import org.junit.jupiter.api.Assumptions
 import spock.lang.IgnoreIf
@@ -417,6 +418,85 @@ abstract class FilesTest extends AbstractFilesTest {
         stat.type == FileInfo.Type.Directory
     }
 
+    def "can stat a batch of files"() {
+        def testFile = new File(tmpDir, "test.file")
+        testFile.text = 'hi'
+        def testDir = new File(tmpDir, "test-dir")
+        testDir.mkdirs()
+        def missingFile = new File(tmpDir, "missing")
+        def missingParent = new File(testFile, "missing")
+
+        when:
+        def batch = files.statAll([testFile, testDir, missingFile, missingParent], false)
+
+        then:
+        batch.size() == 4
+
+        batch.getFile(0) == testFile
+        batch.getType(0) == FileInfo.Type.File
+        batch.getSize(0) == 2
+        assertTimestampMatches(batch.getLastModifiedTime(0), testFile.lastModified())
+
+        batch.getType(1) == FileInfo.Type.Directory
+        batch.getSize(1) == 0
+        assertTimestampMatches(batch.getLastModifiedTime(1), testDir.lastModified())
+
+        batch.getType(2) == FileInfo.Type.Missing
+        batch.getLastModifiedTime(2) == 0
+        batch.getType(3) == FileInfo.Type.Missing
+
+        (0..3).every { !batch.isFailed(it) && batch.getFailure(it) == null }
+    }
+
+    def "can stat an empty batch of files"() {
+        expect:
+        files.statAll([], false).size() == 0
+    }
+
+    def "can check whether a batch of files is unchanged"() {
+        def unchanged = new File(tmpDir, "unchanged.file")
+        unchanged.text = 'hi'
+        def modified = new File(tmpDir, "modified.file")
+        modified.text = 'hi'
+        def touched = new File(tmpDir, "touched.file")
+        touched.text = 'hi'
+        def removed = new File(tmpDir, "removed.file")
+        removed.text = 'hi'
+        def missing = new File(tmpDir, "missing")
+        def batch = [unchanged, modified, touched, removed, missing]
+        def details = files.statAll(batch, false)
+        def sizes = (0..4).collect { details.getSize(it) } as long[]
+        def lastModified = (0..4).collect { details.getLastModifiedTime(it) } as long[]
+
+        expect:
+        files.checkUnchanged(batch, false, sizes, lastModified).empty
+
+        when:
+        modified.text = 'changed'
+        touched.setLastModified(touched.lastModified() - 10000)
+        removed.delete()
+        def changed = files.checkUnchanged(batch, false, sizes, lastModified)
+
+        then:
+        changed == new BitSet().with { set(1); set(2); set(3); it }
+    }
+
+    def "can check an empty batch of files"() {
+        expect:
+        files.checkUnchanged([], false, new long[0], new long[0]).empty
+    }
+
+    def "cannot check a batch of files with the wrong number of expected details"() {
+        def testFile = new File(tmpDir, "test.file")
+
+        when:
+        files.checkUnchanged([testFile], false, new long[0], new long[1])
+
+        then:
+        def e = thrown(IllegalArgumentException)
+        e.message == "Expected the details of 1 files, got 0 sizes and 1 last modification times."
+    }
+
     @Unroll
     def "can list contents of an empty directory"() {
         def dir = new File(tmpDir, "test-dir")
@@ -577,6 +657,59 @@ abstract class FilesTest extends AbstractFilesTest {
         followLinks << [true, false]
     }
 
+    @Unroll
+    def "can list names and types of contents of a directory"() {
+        def dir = new File(tmpDir, "test-dir")
+        dir.mkdirs()
+        def testDir = new File(dir, fileName)
+        testDir.mkdirs()
+
+        def childDir = new File(testDir, testDir.name + ".a")
+        childDir.mkdirs()
+        def childFile = new File(testDir, testDir.name + ".b")
+        childFile.text = 'contents'
+
+        when:
+        def files = files.listDir(testDir, ListOptions.namesAndTypesOnly())
+
+        then:
+        files.size() == 2
+        files.sort { it.name }
+
+        files[0].name == childDir.name
+        files[0].type == FileInfo.Type.Directory
+
+        files[1].name == childFile.name
+        files[1].type == FileInfo.Type.File
+
+        where:
+        fileName << names
+    }
+
+    @IgnoreIf({ !FilesTest.supportsSymbolicLinks() })
+    def "can list names and types of contents of a directory with symbolic links and follow links option"() {
+        def testDir = new File(tmpDir, "test-dir")
+        testDir.mkdirs()
+        def childFile = new File(testDir, "file")
+        childFile.text = 'contents'
+        createFileSymbolicLink(new File(testDir, "link"), childFile.name)
+        createFileSymbolicLink(new File(testDir, "missing.link"), "missing")
+
+        when:
+        def files = files.listDir(testDir, ListOptions.namesAndTypesOnly().withLinkTarget(followLinks))
+
+        then:
+        files.size() == 3
+        files.sort { it.name }
+        files*.name == ["file", "link", "missing.link"]
+        files*.type == types
+
+        where:
+        followLinks | types
+        false       | [FileInfo.Type.File, FileInfo.Type.Symlink, FileInfo.Type.Symlink]
+        true        | [FileInfo.Type.File, FileInfo.Type.File, FileInfo.Type.Missing]
+    }
+
     def "cannot list contents of file"() {
         def testFile = File.createTempFile("test", ".txt", tmpDir)
 
@@ -605,6 +738,158 @@ abstract class FilesTest extends AbstractFilesTest {
         fileName << names
     }
 
+    def "can fingerprint a directory"() {
+        def dir = new File(tmpDir, "dir")
+        dir.mkdirs()
+        def other = new File(tmpDir, "other")
+        other.mkdirs()
+        ["a", "b.txt", "c"].each { new File(dir, it).text = it; new File(other, it).text = it }
+        other.listFiles().each { it.setLastModified(new File(dir, it.name).lastModified()) }
+        def empty = new File(tmpDir, "empty")
+        empty.mkdirs()
+
+        when:
+        def fingerprint = files.fingerprintDir(dir, ListOptions.defaults())
+
+        then:
+        fingerprint.length == 16
+        files.fingerprintDir(dir, ListOptions.defaults()) == fingerprint
+        files.fingerprintDir(other, ListOptions.defaults()) == fingerprint
+        files.fingerprintDir(empty, ListOptions.defaults()) != fingerprint
+    }
+
+    def "fingerprint of a directory changes when its entries change"() {
+        def dir = new File(tmpDir, "dir")
+        dir.mkdirs()
+        new File(dir, "a.txt").text = "a"
+        new File(dir, "b").mkdirs()
+        def original = files.fingerprintDir(dir, options)
+
+        when:
+        change(dir)
+
+        then:
+        files.fingerprintDir(dir, options) != original
+
+        where:
+        options                           | change
+        ListOptions.defaults()            | { File dir -> new File(dir, "c.txt").text = "c" }
+        ListOptions.defaults()            | { File dir -> new File(dir, "a.txt").delete() }
+        ListOptions.defaults()            | { File dir -> new File(dir, "a.txt").renameTo(new File(dir, "A.txt")) }
+        ListOptions.defaults()            | { File dir -> new File(dir, "a.txt").text = "changed" }
+        ListOptions.defaults()            | { File dir -> new File(dir, "b").delete(); new File(dir, "b").text = "b" }
+        ListOptions.namesAndTypesOnly()   | { File dir -> new File(dir, "c.txt").text = "c" }
+        ListOptions.namesAndTypesOnly()   | { File dir -> new File(dir, "b").delete(); new File(dir, "b").text = "b" }
+    }
+
+    def "fingerprint of names and types does not change when a file is modified"() {
+        def dir = new File(tmpDir, "dir")
+        dir.mkdirs()
+        def file = new File(dir, "a.txt")
+        file.text = "a"
+        def original = files.fingerprintDir(dir, ListOptions.namesAndTypesOnly())
+
+        when:
+        file.text = "changed"
+
+        then:
+        files.fingerprintDir(dir, ListOptions.namesAndTypesOnly()) == original
+    }
+
+    def "cannot fingerprint a file"() {
+        def testFile = File.createTempFile("test", ".txt", tmpDir)
+
+        when:
+        files.fingerprintDir(testFile, ListOptions.defaults())
+
+        then:
+        def e = thrown(NotADirectoryException)
+        e.message == "Could not list directory $testFile as it is not a directory."
+    }
+
+    def "cannot fingerprint a missing directory"() {
+        def testFile = new File(tmpDir, "missing")
+
+        when:
+        files.fingerprintDir(testFile, ListOptions.defaults())
+
+        then:
+        def e = thrown(NoSuchFileException)
+        e.message == "Could not list directory $testFile as this directory does not exist."
+    }
+
+    def "can walk a directory tree"() {
+        def rootDir = new File(tmpDir, "root")
+        def childDir = new File(rootDir, "a")
+        def emptyDir = new File(rootDir, "b")
+        childDir.mkdirs()
+        emptyDir.mkdirs()
+        def childFile = new File(childDir, "file.txt")
+        childFile.text = 'contents'
+
+        when:
+        def visited = []
+        files.walk(rootDir, recordingVisitor(visited))
+
+        then:
+        visited.size() == 7
+        visited.first() == "pre ${rootDir.path}"
+        visited.last() == "post ${rootDir.path}"
+        visited.indexOf("pre ${childDir.path}") < visited.indexOf("file ${childFile.path}")
+        visited.indexOf("file ${childFile.path}") < visited.indexOf("post ${childDir.path}")
+        visited.contains("pre ${emptyDir.path}")
+        visited.contains("post ${emptyDir.path}")
+    }
+
+    def "can skip the entries of a directory when walking a directory tree"() {
+        def rootDir = new File(tmpDir, "root")
+        def childDir = new File(rootDir, "skip")
+        childDir.mkdirs()
+        new File(childDir, "file.txt").text = 'contents'
+
+        when:
+        def visited = []
+        files.walk(rootDir, recordingVisitor(visited) { it.name == "skip" ? FileVisitor.Result.SkipSubtree : FileVisitor.Result.Continue })
+
+        then:
+        visited == ["pre ${rootDir.path}", "pre ${childDir.path}", "post ${rootDir.path}"]*.toString()
+    }
+
+    def "cannot walk a missing directory"() {
+        def testDir = new File(tmpDir, "missing")
+
+        when:
+        files.walk(testDir, recordingVisitor([]))
+
+        then:
+        def e = thrown(NoSuchFileException)
+        e.message == "Could not list directory $testDir as this directory does not exist."
+    }
+
+    protected static FileVisitor recordingVisitor(List<String> visited, Closure<FileVisitor.Result> preVisit = { FileVisitor.Result.Continue }) {
+        return new FileVisitor() {
+            FileVisitor.Result preVisitDirectory(String path, DirEntry dir) {
+                visited << "pre $path".toString()
+                return preVisit(dir)
+            }
+
+            FileVisitor.Result visitFile(String path, DirEntry file) {
+                visited << "file $path".toString()
+                return FileVisitor.Result.Continue
+            }
+
+            FileVisitor.Result postVisitDirectory(String path, DirEntry dir) {
+                visited << "post $path".toString()
+                return FileVisitor.Result.Continue
+            }
+
+            FileVisitor.Result visitFailed(String path, NativeException failure) {
+                visited << "failed $path".toString()
+                return FileVisitor.Result.Continue
+            }
+        }
+    }
+
     protected def assumeLongSymlinksSupported(String fileName) {
         // We can't run this test with long paths on Windows, because the createDirectorySymbolicLink
         // and createFileSymbolicLink methods use the "mklink" command on that platform, and it is currently
@@ -1,11 +1,15 @@
 package net.rubygrapefruit.platform.file
 
+import groovy.transform.CompileStatic
 import net.rubygrapefruit.platform.NativeException
+import net.rubygrapefruit.platform.ResourceClosedException
 import net.rubygrapefruit.platform.internal.Platform
 import spock.lang.IgnoreIf
 import spock.lang.Unroll
 
+import java.lang.management.ManagementFactory
 import java.nio.file.LinkOption
+import java.nio.file.attribute.FileTime
 import java.nio.file.attribute.PosixFileAttributeView
 import java.nio.file.attribute.PosixFileAttributes
 import java.nio.file.attribute.PosixFilePermission
@@ -150,6 +154,228 @@ class PosixFilesTest extends FilesTest {
     }
 
     @Unroll
+    def "reports failure for a single entry when stating a batch of files"() {
+        def testDir = new File(tmpDir, "test-dir")
+        testDir.mkdirs()
+        def inaccessibleFile = new File(testDir, "test.file")
+        def testFile = new File(tmpDir, "test.file")
+        testFile.text = 'hi'
+        chmod(testDir, [])
+
+        when:
+        def batch = posixFiles.statAll([inaccessibleFile, testFile], false)
+
+        then:
+        batch.isFailed(0)
+        def e = batch.getFailure(0)
+        e instanceof FilePermissionException
+        e.message == "Could not get file details of $inaccessibleFile: permission denied"
+
+        !batch.isFailed(1)
+        batch.getType(1) == FileInfo.Type.File
+        batch.getMode(1) == mode(attributes(testFile))
+
+        cleanup:
+        chmod(testDir, [OWNER_READ, OWNER_WRITE, OWNER_EXECUTE])
+    }
+
+    def "can stat files into a reusable holder"() {
+        def testFile = new File(tmpDir, "test.file")
+        testFile.text = 'hi'
+        def testDir = new File(tmpDir, "test-dir")
+        testDir.mkdirs()
+        def missing = new File(tmpDir, "missing")
+        def details = new MutablePosixFileInfo()
+
+        expect:
+        posixFiles.stat(testFile, false, details) == 0
+        assertIsFile(details, testFile)
+
+        posixFiles.stat(testDir, false, details) == 0
+        assertIsDirectory(details, testDir)
+
+        posixFiles.stat(missing, false, details) == 0
+        assertIsMissing(details)
+    }
+
+    def "reports failure when stating a file into a reusable holder"() {
+        def testDir = new File(tmpDir, "test-dir")
+        testDir.mkdirs()
+        def testFile = new File(testDir, "test.file")
+        chmod(testDir, [])
+
+        expect:
+        posixFiles.stat(testFile, false, new MutablePosixFileInfo()) == 13 // EACCES
+
+        cleanup:
+        chmod(testDir, [OWNER_READ, OWNER_WRITE, OWNER_EXECUTE])
+    }
+
+    def "does not allocate when stating a file into a reusable holder"() {
+        def testFile = new File(tmpDir, "test.file")
+        testFile.text = 'hi'
+        def missing = new File(tmpDir, "missing")
+        def details = new MutablePosixFileInfo()
+        def threads = ManagementFactory.threadMXBean as com.sun.management.ThreadMXBean
+        def threadId = Thread.currentThread().id
+        def iterations = 100000
+
+        when:
+        // Warm up, so that class loading and compilation do not count towards the allocations
+        statInto(testFile, missing, details, iterations)
+        def before = threads.getThreadAllocatedBytes(threadId)
+        statInto(testFile, missing, details, iterations)
+        def allocated = threads.getThreadAllocatedBytes(threadId) - before
+
+        then:
+        // Even the smallest object takes more than one byte per call
+        allocated < iterations
+    }
+
+    @CompileStatic
+    private void statInto(File file, File missing, MutablePosixFileInfo details, int iterations) {
+        for (int i = 0; i < iterations; i++) {
+            posixFiles.stat(file, false, details)
+            posixFiles.stat(missing, false, details)
+        }
+    }
+
+    def "can query the identity of a file"() {
+        def testFile = new File(tmpDir, "test.file")
+        testFile.text = 'hi'
+        def hardLink = new File(tmpDir, "hard.link")
+        java.nio.file.Files.createLink(hardLink.toPath(), testFile.toPath())
+        def otherFile = new File(tmpDir, "other.file")
+        otherFile.text = 'hi'
+
+        when:
+        def stat = posixFiles.stat(testFile)
+
+        then:
+        stat.inode == java.nio.file.Files.getAttribute(testFile.toPath(), "unix:ino")
+        stat.device == java.nio.file.Files.getAttribute(testFile.toPath(), "unix:dev")
+
+        and:
+        def linkStat = posixFiles.stat(hardLink)
+        linkStat.inode == stat.inode
+        linkStat.device == stat.device
+
+        and:
+        posixFiles.stat(otherFile).inode != stat.inode
+        posixFiles.stat(new File(tmpDir, "missing")).inode == 0
+        posixFiles.stat(new File(tmpDir, "missing")).device == 0
+    }
+
+    def "can query extended details of a file"() {
+        def testFile = new File(tmpDir, "test.file")
+        testFile.text = "content"
+        def fileTime = FileTime.from(1234567890123456789L, java.util.concurrent.TimeUnit.NANOSECONDS)
+        java.nio.file.Files.setLastModifiedTime(testFile.toPath(), fileTime)
+        def unixAttributes = java.nio.file.Files.readAttributes(testFile.toPath(), "unix:*", LinkOption.NOFOLLOW_LINKS)
+
+        when:
+        def stat = posixFiles.statExtended(testFile, EnumSet.allOf(ExtendedFileInfo.Field))
+
+        then:
+        stat.type == FileInfo.Type.File
+        stat.size == 7
+        stat.mode == mode(attributes(testFile))
+        stat.isAvailable(ExtendedFileInfo.Field.LastModifiedTime)
+        stat.lastModifiedTimeNanos == unixAttributes.lastModifiedTime.to(java.util.concurrent.TimeUnit.NANOSECONDS)
+        stat.lastModifiedTime == stat.lastModifiedTimeNanos.intdiv(1000000)
+        stat.changeTimeNanos == unixAttributes.ctime.to(java.util.concurrent.TimeUnit.NANOSECONDS)
+        stat.inode == unixAttributes.ino
+        stat.device == unixAttributes.dev
+        stat.linkCount == 1
+        stat.allocatedBlocks >= 0
+        !stat.isAvailable(ExtendedFileInfo.Field.CreationTime) || stat.creationTimeNanos > 0
+    }
+
+    def "queries only requested extended details of a file"() {
+        def testFile = new File(tmpDir, "test.file")
+        testFile.text = "content"
+
+        when:
+        def stat = posixFiles.statExtended(testFile, EnumSet.of(ExtendedFileInfo.Field.Inode))
+
+        then:
+        stat.type == FileInfo.Type.File
+        stat.size == 7
+        stat.isAvailable(ExtendedFileInfo.Field.Inode)
+        stat.inode != 0
+        !stat.isAvailable(ExtendedFileInfo.Field.LastModifiedTime)
+        stat.lastModifiedTimeNanos == 0
+        !stat.isAvailable(ExtendedFileInfo.Field.LinkCount)
+        stat.linkCount == 0
+    }
+
+    def "always queries the last modified time of a file"() {
+        def testFile = new File(tmpDir, "test.file")
+        testFile.text = "content"
+        testFile.setLastModified(1000000000L)
+
+        when:
+        def stat = posixFiles.statExtended(testFile, EnumSet.of(ExtendedFileInfo.Field.Inode))
+
+        then:
+        stat.lastModifiedTime == 1000000000L
+        stat.lastModifiedTime == posixFiles.stat(testFile).lastModifiedTime
+        stat.lastModifiedTimeNanos == 0
+    }
+
+    def "can query extended details of a symlink and its target"() {
+        def testFile = new File(tmpDir, "test.file")
+        testFile.text = "content"
+        def linkFile = new File(tmpDir, "link")
+        posixFiles.symlink(linkFile, testFile.name)
+        def fields = EnumSet.of(ExtendedFileInfo.Field.Inode)
+
+        expect:
+        posixFiles.statExtended(linkFile, fields).type == FileInfo.Type.Symlink
+        def target = posixFiles.statExtended(linkFile, true, fields)
+        target.type == FileInfo.Type.File
+        target.inode == posixFiles.statExtended(testFile, fields).inode
+    }
+
+    def "can query extended details of a missing file"() {
+        def testFile = new File(tmpDir, "unknown")
+
+        when:
+        def stat = posixFiles.statExtended(testFile, EnumSet.allOf(ExtendedFileInfo.Field))
+
+        then:
+        stat.type == FileInfo.Type.Missing
+        stat.inode == 0
+        stat.device == 0
+        !stat.isAvailable(ExtendedFileInfo.Field.Inode)
+    }
+
+    @IgnoreIf({ !"UTF-8".equalsIgnoreCase(System.getProperty("sun.jnu.encoding")) })
+    def "can stat and list a file whose name contains supplementary characters"() {
+        def dir = new File(tmpDir, "test-dir")
+        dir.mkdirs()
+        def testFile = new File(dir, "test\ud83d\ude00.txt")
+        testFile.text = "content"
+
+        expect:
+        posixFiles.stat(testFile).type == FileInfo.Type.File
+        posixFiles.listDir(dir)*.name == [testFile.name]
+    }
+
+    def "can stat a file with a long path"() {
+        def dir = tmpDir
+        10.times { dir = new File(dir, maybeWithUnicde("dir\u03b1-$it-" + ("x" * 20))) }
+        dir.mkdirs()
+        def testFile = new File(dir, "test.file")
+        testFile.text = "content"
+
+        expect:
+        testFile.path.length() > 256
+        def stat = posixFiles.stat(testFile)
+        assertIsFile(stat, testFile)
+        posixFiles.listDir(dir)*.name == ["test.file"]
+    }
+
     def "stat follows symlinks to parent directory"() {
         def parentDir = new File(tmpDir, "first-test-dir")
         parentDir.mkdirs()
@@ -191,6 +417,219 @@ class PosixFilesTest extends FilesTest {
         list*.name.sort() == ["a", "b"]
     }
 
+    def "can query files relative to an open directory"() {
+        def dir = new File(tmpDir, "test-dir")
+        dir.mkdirs()
+        def testFile = new File(dir, "test.file")
+        testFile.text = 'hi'
+        def childDir = new File(dir, "child")
+        childDir.mkdirs()
+        new File(childDir, "nested").text = 'nested'
+        posixFiles.symlink(new File(dir, "link"), "test.file")
+
+        when:
+        def handle = posixFiles.openDirectory(dir)
+
+        then:
+        handle.directory == dir
+        assertIsFile(handle.stat("test.file"), testFile)
+        assertIsDirectory(handle.stat("child"), childDir)
+        assertIsMissing(handle.stat("missing"))
+        handle.stat("link").type == FileInfo.Type.Symlink
+        handle.stat("link", true).type == FileInfo.Type.File
+        handle.readLink("link") == "test.file"
+        handle.listDir(ListOptions.defaults())*.name.sort() == ["child", "link", "test.file"]
+
+        when:
+        def child = handle.openDirectory("child")
+
+        then:
+        child.directory == childDir
+        child.listDir(ListOptions.namesAndTypesOnly())*.name == ["nested"]
+
+        cleanup:
+        child?.close()
+        handle?.close()
+    }
+
+    def "open directory continues to refer to the same directory when it is renamed"() {
+        def dir = new File(tmpDir, "test-dir")
+        dir.mkdirs()
+        def testFile = new File(dir, "test.file")
+        testFile.text = 'hi'
+        def handle = posixFiles.openDirectory(dir)
+
+        when:
+        dir.renameTo(new File(tmpDir, "renamed"))
+
+        then:
+        handle.stat("test.file").type == FileInfo.Type.File
+        handle.listDir(ListOptions.defaults())*.name == ["test.file"]
+
+        cleanup:
+        handle?.close()
+    }
+
+    def "cannot use an open directory after it has been closed"() {
+        def dir = new File(tmpDir, "test-dir")
+        dir.mkdirs()
+        def handle = posixFiles.openDirectory(dir)
+        def child = new File(dir, "child")
+        child.mkdirs()
+        def childHandle = handle.openDirectory("child")
+
+        when:
+        handle.close()
+        handle.close()
+        handle.stat("child")
+
+        then:
+        def e = thrown(ResourceClosedException)
+        e.message == "Directory handle for $dir has been closed."
+
+        and:
+        childHandle.stat(".").type == FileInfo.Type.Directory
+
+        cleanup:
+        childHandle?.close()
+    }
+
+    def "cannot open a directory that does not exist or is not a directory"() {
+        def dir = new File(tmpDir, "test-dir")
+        dir.mkdirs()
+        def testFile = new File(dir, "test.file")
+        testFile.text = 'hi'
+        def missing = new File(dir, "missing")
+
+        when:
+        posixFiles.openDirectory(missing)
+
+        then:
+        def e = thrown(NoSuchFileException)
+        e.message == "Could not open directory $missing as this directory does not exist."
+
+        when:
+        def handle = posixFiles.openDirectory(dir)
+        handle.openDirectory("test.file")
+
+        then:
+        e = thrown(NotADirectoryException)
+        e.message == "Could not open directory $testFile as it is not a directory."
+
+        cleanup:
+        handle?.close()
+    }
+
+    def "directory listing reports the inode of each entry"() {
+        def dir = new File(tmpDir, "test-dir")
+        dir.mkdirs()
+        def testFile = new File(dir, "test.file")
+        testFile.text = 'hi'
+        def childDir = new File(dir, "child")
+        childDir.mkdirs()
+        def link = new File(dir, "link")
+        posixFiles.symlink(link, "test.file")
+
+        expect:
+        def list = posixFiles.listDir(dir, options)
+        def inodes = list.collectEntries { [it.name, it.inode] }
+        inodes == ["test.file": posixFiles.stat(testFile).inode, "child": posixFiles.stat(childDir).inode, "link": posixFiles.stat(link, linkTarget).inode]
+
+        where:
+        options                                              | linkTarget
+        ListOptions.defaults()                               | false
+        ListOptions.defaults().withLinkTarget(true)          | true
+        ListOptions.namesAndTypesOnly()                      | false
+        ListOptions.namesAndTypesOnly().withLinkTarget(true) | true
+    }
+
+    def "can walk a directory tree following symlinks"() {
+        def rootDir = new File(tmpDir, "root")
+        def childDir = new File(rootDir, "a")
+        childDir.mkdirs()
+        def childFile = new File(childDir, "file.txt")
+        childFile.text = 'contents'
+        def cycle = new File(childDir, "cycle")
+        posixFiles.symlink(cycle, "..")
+        def broken = new File(rootDir, "broken")
+        posixFiles.symlink(broken, "missing")
+
+        when:
+        def visited = []
+        posixFiles.walk(rootDir, false, recordingVisitor(visited))
+
+        then:
+        visited.sort() == ["pre $rootDir", "post $rootDir", "pre $childDir", "post $childDir", "file $childFile", "file $cycle", "file $broken"]*.toString().sort()
+
+        when:
+        def types = [:]
+        posixFiles.walk(rootDir, true, new FileVisitor() {
+            FileVisitor.Result preVisitDirectory(String path, DirEntry dir) {
+                types[path] = "pre"
+                return FileVisitor.Result.Continue
+            }
+
+            FileVisitor.Result visitFile(String path, DirEntry file) {
+                types[path] = file.type
+                return FileVisitor.Result.Continue
+            }
+
+            FileVisitor.Result postVisitDirectory(String path, DirEntry dir) {
+                return FileVisitor.Result.Continue
+            }
+
+            FileVisitor.Result visitFailed(String path, NativeException failure) {
+                types[path] = failure
+                return FileVisitor.Result.Continue
+            }
+        })
+
+        then:
+        types == [
+            (rootDir.path): "pre",
+            (childDir.path): "pre",
+            (childFile.path): FileInfo.Type.File,
+            (cycle.path): FileInfo.Type.Directory,
+            (broken.path): FileInfo.Type.Missing
+        ]
+    }
+
+    def "reports the entry that cannot be queried when walking a directory tree following symlinks"() {
+        def rootDir = new File(tmpDir, "root")
+        rootDir.mkdirs()
+        def childFile = new File(rootDir, "file.txt")
+        childFile.text = 'contents'
+        def loop = new File(rootDir, "loop")
+        posixFiles.symlink(loop, "loop")
+
+        when:
+        def visited = []
+        def failures = [:]
+        def visitor = recordingVisitor(visited)
+        posixFiles.walk(rootDir, true, new FileVisitor() {
+            FileVisitor.Result preVisitDirectory(String path, DirEntry dir) {
+                return visitor.preVisitDirectory(path, dir)
+            }
+
+            FileVisitor.Result visitFile(String path, DirEntry file) {
+                return visitor.visitFile(path, file)
+            }
+
+            FileVisitor.Result postVisitDirectory(String path, DirEntry dir) {
+                return visitor.postVisitDirectory(path, dir)
+            }
+
+            FileVisitor.Result visitFailed(String path, NativeException failure) {
+                failures[path] = failure.message
+                return visitor.visitFailed(path, failure)
+            }
+        })
+
+        then:
+        visited.sort() == ["pre $rootDir", "post $rootDir", "file $childFile", "failed $loop"]*.toString().sort()
+        failures[loop.path].startsWith("Could not get file details of $loop: could not stat file (errno ")
+    }
+
     def "cannot list directory without read and execute permissions"() {
         def dir = new File(tmpDir, "first-test-dir")
         dir.mkdirs()
@@ -216,6 +655,134 @@ class PosixFilesTest extends FilesTest {
         [OWNER_READ]    | _
     }
 
+    def "can copy a file"() {
+        def source = new File(tmpDir, "source.bin")
+        def bytes = new byte[3 * 1024 * 1024 + 17]
+        new Random(1).nextBytes(bytes)
+        source.bytes = bytes
+        def destination = new File(tmpDir, "destination.bin")
+
+        when:
+        def strategy = posixFiles.copy(source, destination, CopyOptions.defaults())
+
+        then:
+        strategy != null
+        destination.bytes == bytes
+        source.bytes == bytes
+    }
+
+    def "can copy an empty file"() {
+        def source = new File(tmpDir, "source.txt")
+        source.createNewFile()
+        def destination = new File(tmpDir, "destination.txt")
+
+        when:
+        posixFiles.copy(source, destination, CopyOptions.defaults())
+
+        then:
+        destination.file
+        destination.length() == 0
+    }
+
+    def "copy replaces the contents of an existing file"() {
+        def source = new File(tmpDir, "source.txt")
+        source.text = "new"
+        def destination = new File(tmpDir, "destination.txt")
+        destination.text = "some much longer existing content"
+
+        when:
+        posixFiles.copy(source, destination, CopyOptions.defaults())
+
+        then:
+        destination.text == "new"
+    }
+
+    @IgnoreIf({ !Platform.current().linux })
+    def "can copy a file that the kernel cannot copy"() {
+        def destination = new File(tmpDir, "destination.txt")
+
+        when:
+        def strategy = posixFiles.copy(new File("/proc/self/status"), destination, CopyOptions.defaults())
+
+        then:
+        strategy == CopyStrategy.ReadWrite
+        destination.text.contains("Pid:")
+    }
+
+    def "can preserve mode and timestamps when copying a file"() {
+        def source = new File(tmpDir, "source.txt")
+        source.text = "content"
+        posixFiles.setMode(source, 0751)
+        source.setLastModified(1000000000L)
+        def destination = new File(tmpDir, "destination.txt")
+        destination.text = "existing"
+        posixFiles.setMode(destination, 0600)
+
+        when:
+        posixFiles.copy(source, destination, CopyOptions.defaults().withPreserveMode(true).withPreserveTimestamps(true))
+
+        then:
+        destination.text == "content"
+        posixFiles.getMode(destination) == 0751
+        destination.lastModified() == 1000000000L
+    }
+
+    def "does not preserve mode and timestamps when copying a file by default"() {
+        def source = new File(tmpDir, "source.txt")
+        source.text = "content"
+        posixFiles.setMode(source, 0751)
+        source.setLastModified(1000000000L)
+        def destination = new File(tmpDir, "destination.txt")
+
+        when:
+        posixFiles.copy(source, destination, CopyOptions.defaults())
+
+        then:
+        posixFiles.getMode(destination) != 0751
+        destination.lastModified() != 1000000000L
+    }
+
+    def "cannot copy a file that does not exist"() {
+        def source = new File(tmpDir, "missing")
+        def destination = new File(tmpDir, "destination.txt")
+
+        when:
+        posixFiles.copy(source, destination, CopyOptions.defaults())
+
+        then:
+        NativeException e = thrown()
+        e.message == "Could not copy $source to $destination: could not open source file (errno 2: No such file or directory)"
+        !destination.exists()
+    }
+
+    def "cannot copy a directory"() {
+        def source = new File(tmpDir, "dir")
+        source.mkdirs()
+        def destination = new File(tmpDir, "destination.txt")
+
+        when:
+        posixFiles.copy(source, destination, CopyOptions.defaults())
+
+        then:
+        NativeException e = thrown()
+        e.message == "Could not copy $source to $destination: source is not a file"
+    }
+
+    def "cannot copy a file to itself"() {
+        def source = new File(tmpDir, "source.txt")
+        source.text = "content"
+        def link = new File(tmpDir, "source.link")
+        posixFiles.symlink(link, source.name)
+
+        when:
+        posixFiles.copy(source, link, CopyOptions.defaults())
+
+        then:
+        NativeException e = thrown()
+        e.message == "Could not copy $source to $link: source and destination are the same file"
+        source.text == "content"
+    }
+
     @Unroll
     def "can set mode on a file"() {
         def testFile = new File(tmpDir, fileName)
@@ -0,0 +1,247 @@
+/*
+ * Copyright 2012 Adam Murdoch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.rubygrapefruit.platform.file
+
+import net.rubygrapefruit.platform.NativePlatformSpec
+import net.rubygrapefruit.platform.internal.Platform
+import spock.lang.IgnoreIf
+
+import java.nio.file.Files as NioFiles
+
+@IgnoreIf({ Platform.current().windows })
+class TreeSnapshotterTest extends NativePlatformSpec {
+    File tmpDir
+    final TreeSnapshotter snapshotter = getIntegration(TreeSnapshotter)
+    final FileHasher hasher = getIntegration(FileHasher)
+
+    void setup() {
+        tmpDir = File.createTempDir()
+    }
+
+    def cleanup() {
+        tmpDir?.deleteDir()
+    }
+
+    def "caches tree snapshotter instance"() {
+        expect:
+        getIntegration(TreeSnapshotter) == snapshotter
+    }
+
+    def "takes snapshot of directory tree"() {
+        def root = new File(tmpDir, "root")
+        def file = new File(root, "a.txt")
+        def dir = new File(root, "dir")
+        def nested = new File(dir, "b.txt")
+        dir.mkdirs()
+        file.text = "a"
+        nested.text = "b"
+        NioFiles.createSymbolicLink(new File(root, "link").toPath(), file.toPath())
+
+        when:
+        def snapshot = snapshotter.snapshot(root, algorithm)
+
+        then:
+        snapshot.name == "root"
+        snapshot.type == FileInfo.Type.Directory
+        snapshot.children.name == ["a.txt", "dir", "link"]
+        snapshot.children.type == [FileInfo.Type.File, FileInfo.Type.Directory, FileInfo.Type.Symlink]
+
+        def fileSnapshot = snapshot.getChild("a.txt")
+        fileSnapshot.size == 1
+        fileSnapshot.hash == hasher.hash(file, algorithm)
+
+        def dirSnapshot = snapshot.getChild("dir") as DirectorySnapshot
+        dirSnapshot.children.name == ["b.txt"]
+        dirSnapshot.getChild("b.txt").hash == hasher.hash(nested, algorithm)
+        snapshot.getChild("missing") == null
+
+        where:
+        algorithm << FileHasher.Algorithm.values()
+    }
+
+    def "directory trees with the same contents have the same hash"() {
+        def root1 = new File(tmpDir, "root1")
+        def root2 = new File(tmpDir, "root2")
+        [root1, root2].each {
+            new File(it, "a/b").mkdirs()
+            new File(it, "a/b/c.txt").text = "content"
+            new File(it, "d.txt").text = "other"
+        }
+
+        when:
+        def snapshot1 = snapshotter.snapshot(root1, FileHasher.Algorithm.SHA256)
+        def snapshot2 = snapshotter.snapshot(root2, FileHasher.Algorithm.SHA256)
+
+        then:
+        snapshot1.hasSameHash(snapshot2)
+        snapshot1.hash == snapshot2.hash
+    }
+
+    def "hash of directory changes when a descendant changes"() {
+        def root = new File(tmpDir, "root")
+        def file = new File(root, "a/b/c.txt")
+        file.parentFile.mkdirs()
+        file.text = "content"
+        def original = snapshotter.snapshot(root, FileHasher.Algorithm.XXH64)
+
+        when:
+        change(root, file)
+        def snapshot = snapshotter.snapshot(root, FileHasher.Algorithm.XXH64)
+
+        then:
+        !snapshot.hasSameHash(original)
+
+        where:
+        change << [
+            { root, file -> file.text = "changed" },
+            { root, file -> file.delete() },
+            { root, file -> new File(file.parentFile, "new.txt").createNewFile() },
+            { root, file -> file.renameTo(new File(file.parentFile, "renamed.txt")) },
+            { root, file -> file.delete(); file.mkdir() }
+        ]
+    }
+
+    def "snapshots directory with many files"() {
+        def root = new File(tmpDir, "root")
+        (0..<20).each { dir ->
+            (0..<50).each { file ->
+                def f = new File(root, "dir$dir/file$file")
+                f.parentFile.mkdirs()
+                f.text = "$dir $file"
+            }
+        }
+
+        when:
+        def snapshot = snapshotter.snapshot(root, FileHasher.Algorithm.XXH64)
+
+        then:
+        snapshot.children.size() == 20
+        snapshot.children.every { (it as DirectorySnapshot).children.size() == 50 }
+        (snapshot.getChild("dir7") as DirectorySnapshot).getChild("file42").hash == hasher.hash(new File(root, "dir7/file42"), FileHasher.Algorithm.XXH64)
+    }
+
+    def "takes snapshot using hash cache"() {
+        def root = new File(tmpDir, "root")
+        new File(root, "a/b").mkdirs()
+        new File(root, "a/b/c.txt").text = "content"
+        new File(root, "d.txt").text = "other"
+        def cache = hasher.openCache(new File(tmpDir, "hashes.bin"), 100)
+
+        when:
+        def snapshot = snapshotter.snapshot(root, FileHasher.Algorithm.SHA256, cache)
+        def again = snapshotter.snapshot(root, FileHasher.Algorithm.SHA256, cache)
+
+        then:
+        snapshot.hasSameHash(snapshotter.snapshot(root, FileHasher.Algorithm.SHA256))
+        again.hasSameHash(snapshot)
+
+        cleanup:
+        cache?.close()
+    }
+
+    def "reports differences between snapshots"() {
+        def root = new File(tmpDir, "root")
+        ["a/unchanged.txt", "a/modified.txt", "a/removed.txt", "removed/b/c.txt", "type"].each {
+            def file = new File(root, it)
+            file.parentFile.mkdirs()
+            file.text = it
+        }
+        def previous = snapshotter.snapshot(root, FileHasher.Algorithm.XXH64)
+        new File(root, "a/modified.txt").text = "changed"
+        new File(root, "a/removed.txt").delete()
+        new File(root, "a/added.txt").text = "added"
+        new File(root, "removed").deleteDir()
+        new File(root, "type").delete()
+        new File(root, "type/d").mkdirs()
+        def current = snapshotter.snapshot(root, FileHasher.Algorithm.XXH64)
+
+        when:
+        def differences = diff(previous, current)
+
+        then:
+        differences == [
+            "added a/added.txt",
+            "modified a/modified.txt",
+            "removed a/removed.txt",
+            "removed removed",
+            "removed removed/b",
+            "removed removed/b/c.txt",
+            "typeChanged type",
+            "added type/d"
+        ]
+
+        and:
+        diff(current, current).empty
+        diff(previous, current, FileVisitor.Result.SkipSubtree) == [
+            "added a/added.txt",
+            "modified a/modified.txt",
+            "removed a/removed.txt",
+            "removed removed",
+            "typeChanged type"
+        ]
+        diff(previous, current, FileVisitor.Result.Terminate) == ["added a/added.txt"]
+    }
+
+    def "cannot snapshot directory that does not exist"() {
+        def dir = new File(tmpDir, "missing")
+
+        when:
+        snapshotter.snapshot(dir, FileHasher.Algorithm.XXH64)
+
+        then:
+        def e = thrown(NoSuchFileException)
+        e.message == "Could not snapshot directory $dir as it does not exist."
+    }
+
+    def "cannot snapshot a file"() {
+        def file = new File(tmpDir, "test.txt")
+        file.createNewFile()
+
+        when:
+        snapshotter.snapshot(file, FileHasher.Algorithm.XXH64)
+
+        then:
+        def e = thrown(NotADirectoryException)
+        e.message == "Could not snapshot directory $file as it is not a directory."
+    }
+
+    private List<String> diff(DirectorySnapshot previous, DirectorySnapshot current, FileVisitor.Result result = FileVisitor.Result.Continue) {
+        def differences = []
+        snapshotter.diff(previous, current, new SnapshotDiffVisitor() {
+            FileVisitor.Result added(String path, FileSnapshot snapshot) {
+                differences << "added $path".toString()
+                return result
+            }
+
+            FileVisitor.Result removed(String path, FileSnapshot snapshot) {
+                differences << "removed $path".toString()
+                return result
+            }
+
+            FileVisitor.Result modified(String path, FileSnapshot previousSnapshot, FileSnapshot currentSnapshot) {
+                differences << "modified $path".toString()
+                return result
+            }
+
+            FileVisitor.Result typeChanged(String path, FileSnapshot previousSnapshot, FileSnapshot currentSnapshot) {
+                differences << "typeChanged $path".toString()
+                return result
+            }
+        })
+        return differences
+    }
+}
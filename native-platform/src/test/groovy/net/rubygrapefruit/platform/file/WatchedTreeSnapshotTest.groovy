@@ -0,0 +1,145 @@
+/*
+ * Copyright 2012 Adam Murdoch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package net.rubygrapefruit.platform.file
+
+import net.rubygrapefruit.platform.NativePlatformSpec
+import net.rubygrapefruit.platform.internal.Platform
+import spock.lang.Requires
+
+import java.nio.file.Files as NioFiles
+
+@Requires({ Platform.current().linux })
+class WatchedTreeSnapshotTest extends NativePlatformSpec {
+    File tmpDir
+    File root
+    final TreeSnapshotter snapshotter = getIntegration(TreeSnapshotter)
+    final FileWatcher watcher = getIntegration(FileWatcher)
+    WatchedTreeSnapshot watched
+
+    void setup() {
+        tmpDir = File.createTempDir()
+        root = new File(tmpDir, "root")
+        (0..<5).each { dir ->
+            (0..<5).each { file ->
+                def f = new File(root, "dir$dir/sub/file$file")
+                f.parentFile.mkdirs()
+                f.text = "$dir $file"
+            }
+        }
+        watched = snapshotter.watch(root, FileHasher.Algorithm.XXH64, watcher, null)
+    }
+
+    def cleanup() {
+        watched?.close()
+        tmpDir?.deleteDir()
+    }
+
+    def "takes initial snapshot"() {
+        expect:
+        watched.root == root
+        watched.snapshot.hasSameHash(snapshotter.snapshot(root, FileHasher.Algorithm.XXH64))
+        watched.snapshot.is(watched.snapshot)
+    }
+
+    def "updates snapshot when tree changes"() {
+        def original = watched.snapshot
+
+        when:
+        change(root)
+
+        then:
+        upToDate()
+        !watched.snapshot.hasSameHash(original)
+
+        where:
+        change << [
+            { root -> new File(root, "dir1/sub/file1").text = "changed" },
+            { root -> new File(root, "dir1/new.txt").createNewFile() },
+            { root -> new File(root, "dir1/sub/new/deeper").mkdirs(); new File(root, "dir1/sub/new/deeper/file").text = "new" },
+            { root -> new File(root, "dir2").deleteDir() },
+            { root -> new File(root, "dir2/sub/file0").renameTo(new File(root, "dir3/sub/moved")) },
+            { root -> new File(root, "dir2").renameTo(new File(root, "renamed")) },
+            { root -> new File(root, "dir2/sub/file0").delete(); new File(root, "dir2/sub/file0").mkdir() },
+            { root -> NioFiles.createSymbolicLink(new File(root, "link").toPath(), new File(root, "dir1").toPath()) }
+        ]
+    }
+
+    def "updates snapshot when a directory is replaced by another directory"() {
+        when:
+        new File(root, "dir2").renameTo(new File(root, "moved"))
+        new File(root, "dir2").mkdir()
+
+        then:
+        upToDate()
+        (watched.snapshot.getChild("dir2") as DirectorySnapshot).children.empty
+    }
+
+    def "reuses unchanged parts of snapshot"() {
+        def original = watched.snapshot
+
+        when:
+        new File(root, "dir1/sub/file1").text = "changed"
+
+        then:
+        upToDate()
+        watched.snapshot.getChild("dir0").is(original.getChild("dir0"))
+        !watched.snapshot.getChild("dir1").is(original.getChild("dir1"))
+        (watched.snapshot.getChild("dir1") as DirectorySnapshot).getChild("sub").getChild("file0").is((original.getChild("dir1") as DirectorySnapshot).getChild("sub").getChild("file0"))
+    }
+
+    def "takes snapshot using hash cache"() {
+        def cache = getIntegration(FileHasher).openCache(new File(tmpDir, "hashes.bin"), 100)
+        def watched = snapshotter.watch(root, FileHasher.Algorithm.SHA256, watcher, cache)
+
+        when:
+        new File(root, "dir1/sub/file1").text = "changed"
+
+        then:
+        upToDate(watched, FileHasher.Algorithm.SHA256)
+
+        cleanup:
+        watched?.close()
+        cache?.close()
+    }
+
+    def "cannot watch directory that does not exist"() {
+        def dir = new File(tmpDir, "missing")
+
+        when:
+        snapshotter.watch(dir, FileHasher.Algorithm.XXH64, watcher, null)
+
+        then:
+        def e = thrown(NoSuchFileException)
+        e.message.contains(dir.toString())
+    }
+
+    /**
+     * Waits for the watched snapshot to catch up with the changes made to the tree.
+     */
+    private boolean upToDate(WatchedTreeSnapshot watched = this.watched, FileHasher.Algorithm algorithm = FileHasher.Algorithm.XXH64) {
+        def expected = snapshotter.snapshot(root, algorithm)
+        def timeout = System.currentTimeMillis() + 5000
+        while (!watched.snapshot.hasSameHash(expected)) {
+            if (System.currentTimeMillis() > timeout) {
+                return false
+            }
+            Thread.sleep(20)
+        }
+        return true
+    }
+}
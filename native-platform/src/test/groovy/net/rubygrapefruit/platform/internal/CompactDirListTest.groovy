@@ -0,0 +1,118 @@
+/*
+ * Copyright 2012 Adam Murdoch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.rubygrapefruit.platform.internal
+
+import net.rubygrapefruit.platform.file.FileInfo
+import spock.lang.Specification
+
+import java.nio.ByteBuffer
+
+class CompactDirListTest extends Specification {
+    def "can add entries"() {
+        def list = new CompactDirList()
+        def names = (0..<100).collect { "file-$it".toString() }
+
+        when:
+        names.each { add(list, it, FileInfo.Type.File) }
+        add(list, "dir", FileInfo.Type.Directory)
+
+        then:
+        list.size() == 101
+        list*.name == names + ["dir"]
+        list[0].type == FileInfo.Type.File
+        list[100].type == FileInfo.Type.Directory
+        list.every { it.size == 0 && it.lastModifiedTime == 0 }
+        list[100].toString() == "dir"
+    }
+
+    def "can receive all entries at once"() {
+        def list = new CompactDirList()
+
+        when:
+        list.entries("abcde".bytes, [1, 3, 5] as int[], [0, 1, 2] as byte[], [10, 0, 0] as long[], [100, 200, 300] as long[], [7, 8, 9] as long[])
+
+        then:
+        list*.name == ["a", "bc", "de"]
+        list*.type == [FileInfo.Type.File, FileInfo.Type.Directory, FileInfo.Type.Symlink]
+        list*.size == [10, 0, 0]
+        list*.lastModifiedTime == [100, 200, 300]
+        list*.inode == [7, 8, 9]
+    }
+
+    def "reports size and last modified time as 0 when not received"() {
+        def list = new CompactDirList()
+
+        when:
+        list.entries("ab".bytes, [1, 2] as int[], [0, 1] as byte[], null, null, [1, 2] as long[])
+
+        then:
+        list*.name == ["a", "b"]
+        list*.size == [0, 0]
+        list*.lastModifiedTime == [0, 0]
+    }
+
+    def "is empty when no entries added"() {
+        expect:
+        new CompactDirList().empty
+    }
+
+    def "cannot get entry outside the list"() {
+        def list = new CompactDirList()
+        add(list, "a", FileInfo.Type.File)
+
+        when:
+        list.get(1)
+
+        then:
+        thrown(IndexOutOfBoundsException)
+    }
+
+    def "can sort entries in place"() {
+        def list = new CompactDirList()
+        ["c", "a", "b"].each { add(list, it, FileInfo.Type.File) }
+
+        when:
+        list.sort { it.name }
+
+        then:
+        list*.name == ["a", "b", "c"]
+        list.getName(0) == "c"
+    }
+
+    def "can add and remove entries"() {
+        def list = new CompactDirList()
+        ["a", "b"].each { add(list, it, FileInfo.Type.File) }
+        def entry = list[0]
+
+        when:
+        list.remove(0)
+        list.add(entry)
+        Collections.sort(list, { a, b -> b.name <=> a.name } as Comparator)
+
+        then:
+        list*.name == ["b", "a"]
+        list.size() == 2
+    }
+
+    void add(CompactDirList list, String name, FileInfo.Type type) {
+        def bytes = name.getBytes(CompactDirList.FILE_NAME_CHARSET)
+        def buffer = ByteBuffer.allocate(bytes.length + 4)
+        buffer.position(4)
+        buffer.put(bytes)
+        list.add(buffer, 4, bytes.length, type.ordinal(), 0)
+    }
+}
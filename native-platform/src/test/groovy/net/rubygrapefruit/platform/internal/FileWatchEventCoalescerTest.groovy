@@ -0,0 +1,194 @@
+/*
+ * Copyright 2012 Adam Murdoch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.rubygrapefruit.platform.internal
+
+import net.rubygrapefruit.platform.file.FileWatchEvent
+import spock.lang.Specification
+
+import static net.rubygrapefruit.platform.file.FileWatchEvent.Type.*
+
+class FileWatchEventCoalescerTest extends Specification {
+    def coalescer = new FileWatchEventCoalescer(100)
+    def root = new File("/root")
+    def a = new File(root, "a")
+    def b = new File(root, "b")
+
+    def "reports repeated changes to a file as a single event"() {
+        when:
+        add(Modified, a)
+        add(Modified, a)
+        add(Modified, a)
+
+        then:
+        flush() == ["Modified $a"]
+    }
+
+    def "folds events for a file"() {
+        when:
+        events.each { add(it, a) }
+
+        then:
+        flush() == expected.collect { "$it $a".toString() }
+
+        where:
+        events                      | expected
+        [Created, Modified]         | [Created]
+        [Created, Removed]          | []
+        [Modified, Removed]         | [Removed]
+        [Removed, Created]          | [Created]
+        [Modified, Created]         | [Modified]
+        [Created, Removed, Created] | [Created]
+    }
+
+    def "pairs the two halves of a move into a rename"() {
+        when:
+        add(Removed, a, 12)
+        add(Created, b, 12)
+        add(Modified, b)
+
+        then:
+        flush() == ["Renamed $a -> $b"]
+    }
+
+    def "reports a move of a file that was created in the window as created"() {
+        when:
+        add(Created, a)
+        add(Modified, a)
+        add(Removed, a, 12)
+        add(Created, b, 12)
+
+        then:
+        flush() == ["Created $b"]
+    }
+
+    def "reports unpaired halves of a move as removed and created"() {
+        when:
+        add(Removed, a, 12)
+        add(Created, b, 13)
+
+        then:
+        flush() == ["Removed $a", "Created $b"]
+    }
+
+    def "reports a renamed file that is removed as a removal of its original location"() {
+        when:
+        add(Removed, a, 12)
+        add(Created, b, 12)
+        add(Removed, b)
+
+        then:
+        flush() == ["Removed $a"]
+    }
+
+    def "discards the events for the descendants of a removed directory"() {
+        def dir = new File(root, "dir")
+
+        when:
+        add(Modified, new File(dir, "a"))
+        add(Removed, new File(dir, "b"))
+        add(Created, new File(dir, "c/d"))
+        add(Removed, dir)
+
+        then:
+        flush() == ["Removed $dir"]
+    }
+
+    def "discards the events for the descendants of a renamed directory"() {
+        def dir = new File(root, "dir")
+        def dir2 = new File(root, "dir2")
+
+        when:
+        add(Created, new File(dir, "a"))
+        add(Modified, new File(dir, "b/c"))
+        add(Removed, dir, 12)
+        add(Created, dir2, 12)
+
+        then:
+        flush() == ["Renamed $dir -> $dir2"]
+    }
+
+    def "reports a file moved into a renamed directory as a removal of its original location"() {
+        def dir = new File(root, "dir")
+        def dir2 = new File(root, "dir2")
+
+        when:
+        add(Removed, a, 12)
+        add(Created, new File(dir, "a"), 12)
+        add(Removed, dir, 13)
+        add(Created, dir2, 13)
+
+        then:
+        flush() == ["Removed $a", "Renamed $dir -> $dir2"]
+    }
+
+    def "reports a directory removed and recreated within the window as created"() {
+        def dir = new File(root, "dir")
+
+        when:
+        add(Removed, new File(dir, "f"))
+        add(Removed, new File(dir, "g"))
+        add(Removed, dir)
+        add(Created, dir)
+
+        then:
+        flush() == ["Created $dir"]
+    }
+
+    def "discards the events in a tree whose events have overflowed"() {
+        when:
+        add(Modified, a)
+        add(Overflow, root)
+        add(Modified, b)
+
+        then:
+        flush() == ["Overflow $root"]
+    }
+
+    def "delivers events once the latency window has ended"() {
+        def events = []
+
+        when:
+        coalescer.add(Modified, a, 0, 1000)
+
+        then:
+        coalescer.getFlushDelayMillis(1000) == 100
+        coalescer.getFlushDelayMillis(1000 + 50_000_000) == 50
+
+        when:
+        coalescer.flushDue(1000 + 99_000_000, events)
+
+        then:
+        events.empty
+
+        when:
+        coalescer.flushDue(1000 + 100_000_000, events)
+
+        then:
+        events*.toString() == ["Modified $a"]
+        coalescer.getFlushDelayMillis(1000 + 100_000_000) == -1
+    }
+
+    private void add(FileWatchEvent.Type type, File file, int moveCookie = 0) {
+        coalescer.add(type, file, moveCookie, 0)
+    }
+
+    private List<String> flush() {
+        def events = []
+        coalescer.flush(events)
+        return events*.toString()
+    }
+}
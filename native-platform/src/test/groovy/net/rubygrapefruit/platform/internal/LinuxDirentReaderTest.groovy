@@ -0,0 +1,77 @@
+/*
+ * Copyright 2012 Adam Murdoch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.rubygrapefruit.platform.internal
+
+import net.rubygrapefruit.platform.NativePlatformSpec
+import net.rubygrapefruit.platform.file.FileInfo
+import net.rubygrapefruit.platform.file.PosixFiles
+import spock.lang.IgnoreIf
+
+import java.nio.ByteBuffer
+
+@IgnoreIf({ !Platform.current().linux })
+class LinuxDirentReaderTest extends NativePlatformSpec {
+    File tmpDir
+
+    def setup() {
+        // Ensure the native library is loaded
+        getIntegration(PosixFiles)
+        tmpDir = File.createTempDir()
+    }
+
+    def cleanup() {
+        tmpDir?.deleteDir()
+    }
+
+    def "reads entries of a directory using multiple reads into a small buffer"() {
+        def names = (0..<500).collect { "file-${it}-with-a-long-name".toString() }
+        names.each { new File(tmpDir, it).text = 'contents' }
+        new File(tmpDir, "dir").mkdirs()
+        def reader = new LinuxDirentReader(ByteBuffer.allocateDirect(LinuxDirentReader.MIN_BUFFER_SIZE))
+        def result = new FunctionResult()
+        def dirList = new CompactDirList()
+
+        when:
+        reader.read(tmpDir.path, false, dirList, result)
+
+        then:
+        !result.failed
+        dirList*.name.sort() == (names + ["dir"]).sort()
+        dirList.find { it.name == "dir" }.type == FileInfo.Type.Directory
+        dirList.findAll { it.name != "dir" }.every { it.type == FileInfo.Type.File && it.size == 0 && it.lastModifiedTime == 0 }
+    }
+
+    def "reports failure to read a missing directory"() {
+        def reader = new LinuxDirentReader(ByteBuffer.allocateDirect(LinuxDirentReader.MIN_BUFFER_SIZE))
+        def result = new FunctionResult()
+
+        when:
+        reader.read(new File(tmpDir, "missing").path, false, new CompactDirList(), result)
+
+        then:
+        result.failed
+        result.failure == FunctionResult.Failure.NoSuchFile
+    }
+
+    def "cannot use a heap buffer"() {
+        when:
+        new LinuxDirentReader(ByteBuffer.allocate(LinuxDirentReader.MIN_BUFFER_SIZE))
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+}
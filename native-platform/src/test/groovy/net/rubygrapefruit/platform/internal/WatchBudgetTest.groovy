@@ -0,0 +1,65 @@
+/*
+ * Copyright 2012 Adam Murdoch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.rubygrapefruit.platform.internal
+
+import spock.lang.Specification
+
+class WatchBudgetTest extends Specification {
+    def budget = new WatchBudget(3)
+    def a = new File("/a")
+    def b = new File("/b")
+
+    def "tracks the watches reserved for each root"() {
+        when:
+        budget.tryReserve(a)
+        budget.tryReserve(a)
+        budget.tryReserve(b)
+
+        then:
+        budget.getWatchCount(a) == 2
+        budget.getWatchCount(b) == 1
+        budget.available == 0
+
+        when:
+        budget.release(a)
+
+        then:
+        budget.getWatchCount(a) == 1
+        budget.available == 1
+    }
+
+    def "cannot reserve more watches than the limit"() {
+        expect:
+        budget.tryReserve(a)
+        budget.tryReserve(a)
+        budget.tryReserve(b)
+        !budget.tryReserve(b)
+        budget.getWatchCount(b) == 1
+    }
+
+    def "ignores watches released for a root without reserved watches"() {
+        given:
+        budget.tryReserve(a)
+
+        when:
+        budget.release(b)
+
+        then:
+        budget.available == 2
+        budget.getWatchCount(b) == 0
+    }
+}
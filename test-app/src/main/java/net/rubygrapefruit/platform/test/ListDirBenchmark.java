@@ -0,0 +1,93 @@
+/*
+ * Copyright 2012 Adam Murdoch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package net.rubygrapefruit.platform.test;
+
+import net.rubygrapefruit.platform.file.DirEntry;
+import net.rubygrapefruit.platform.file.Files;
+import net.rubygrapefruit.platform.file.ListOptions;
+import net.rubygrapefruit.platform.internal.DefaultPosixFiles;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Compares the time taken to list a directory using the different listing strategies. When run against a directory
+ * with only a few entries, this measures the fixed cost of each call rather than the cost per entry.
+ */
+class ListDirBenchmark {
+    private static final int WARMUP_ITERATIONS = 50;
+    private static final long WARMUP_DURATION_NANOS = 1000000000L;
+    private static final int MIN_ITERATIONS = 20;
+    private static final long MIN_DURATION_NANOS = 2000000000L;
+
+    private final File dir;
+
+    ListDirBenchmark(File dir) {
+        this.dir = dir;
+    }
+
+    void run(Files files) {
+        System.out.println();
+        System.out.println("* Directory: " + dir);
+        System.out.println("* Entries: " + files.listDir(dir).size());
+        // The portable path, using readdir() and passing all entries to Java in one call
+        Files readdirFiles = new DefaultPosixFiles();
+        measure("listDir() - readdir", new Op() {
+            public List<? extends DirEntry> run() {
+                return readdirFiles.listDir(dir);
+            }
+        });
+        measure("listDir(namesAndTypesOnly) - readdir", new Op() {
+            public List<? extends DirEntry> run() {
+                return readdirFiles.listDir(dir, ListOptions.namesAndTypesOnly());
+            }
+        });
+        // Uses the most efficient strategy for the current platform, which is getdents64() on Linux
+        measure("listDir(namesAndTypesOnly)", new Op() {
+            public List<? extends DirEntry> run() {
+                return files.listDir(dir, ListOptions.namesAndTypesOnly());
+            }
+        });
+        measure("java.io.File.list()", new Op() {
+            public List<? extends DirEntry> run() {
+                dir.list();
+                return null;
+            }
+        });
+        System.out.println();
+    }
+
+    private static void measure(String name, Op op) {
+        // Warm up for a minimum time as well, so that small directories are listed enough times to be compiled
+        long warmupStart = System.nanoTime();
+        for (int i = 0; i < WARMUP_ITERATIONS || System.nanoTime() - warmupStart < WARMUP_DURATION_NANOS; i++) {
+            op.run();
+        }
+        int iterations = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            op.run();
+            iterations++;
+            elapsed = System.nanoTime() - start;
+        } while (iterations < MIN_ITERATIONS || elapsed < MIN_DURATION_NANOS);
+        System.out.println(String.format("    * %s: %.1f us/op (%d iterations)", name, elapsed / 1000.0 / iterations, iterations));
+    }
+
+    private interface Op {
+        List<? extends DirEntry> run();
+    }
+}
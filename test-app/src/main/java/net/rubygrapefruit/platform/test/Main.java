@@ -59,6 +59,7 @@ public class Main {
         optionParser.accepts("stat-L", "Display details about the specified file or directory, following symbolic links").withRequiredArg();
         optionParser.accepts("ls", "Display contents of the specified directory").withRequiredArg();
         optionParser.accepts("ls-L", "Display contents of the specified directory, following symbolic links").withRequiredArg();
+        optionParser.accepts("benchmark-ls", "Measure the time taken to list the specified directory").withRequiredArg();
         optionParser.accepts("machine", "Display details about the current machine");
         optionParser.accepts("terminal", "Display details about the terminal");
         optionParser.accepts("input", "Reads input from the terminal");
@@ -104,6 +105,11 @@ public class Main {
             return;
         }
 
+        if (result.has("benchmark-ls")) {
+            new ListDirBenchmark(new File((String) result.valueOf("benchmark-ls"))).run(nativeIntegration.get(Files.class));
+            return;
+        }
+
         if (result.has("machine")) {
             machine();
             return;